@@ -0,0 +1,135 @@
+package com.door43.translationstudio.core;
+
+import android.content.Context;
+import android.text.Editable;
+import android.text.SpannableStringBuilder;
+import android.text.SpannedString;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.door43.translationstudio.IntegrationTest;
+import com.door43.translationstudio.rendering.USFMRenderer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.unfoldingword.tools.logger.Logger;
+
+import java.util.Random;
+
+import javax.inject.Inject;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+import dagger.hilt.android.testing.HiltAndroidRule;
+import dagger.hilt.android.testing.HiltAndroidTest;
+
+/**
+ * Checks that updating the compiled text of a 60 verse chunk on every keystroke gives the same
+ * text as compiling the whole chunk again
+ */
+@HiltAndroidTest
+@RunWith(AndroidJUnit4.class)
+@IntegrationTest
+public class TranslationCompilerEquivalenceTest {
+
+    @Rule
+    public HiltAndroidRule hiltRule = new HiltAndroidRule(this);
+
+    @Inject
+    @ApplicationContext
+    Context appContext;
+
+    private static final int VERSES = 60;
+    private static final int KEYSTROKES = 500;
+
+    @Before
+    public void setUp() {
+        Logger.flush();
+        hiltRule.inject();
+    }
+
+    @Test
+    public void test01CompileOnKeystroke() throws Exception {
+        Editable legacyText = renderChunk();
+        Editable fullText = renderChunk();
+        Editable incrementalText = renderChunk();
+        TranslationCompiler compiler = new TranslationCompiler();
+        compiler.compile(incrementalText);
+
+        Random random = new Random(0);
+        for(int i = 0; i < KEYSTROKES; i ++) {
+            SpannedString[] verses = fullText.getSpans(0, fullText.length(), SpannedString.class);
+            int position = fullText.getSpanEnd(verses[random.nextInt(verses.length)]) + 1;
+            // mostly typing with the occasional backspace
+            boolean delete = random.nextInt(5) == 0;
+            int before = delete ? 1 : 0;
+            int count = delete ? 0 : 1;
+            edit(legacyText, position, delete);
+            edit(fullText, position, delete);
+            edit(incrementalText, position, delete);
+
+            String legacy = compileLegacy(legacyText);
+            String full = Translator.compileTranslation(fullText);
+            String incremental = compiler.update(incrementalText, position, before, count);
+
+            Assert.assertEquals(legacy, full);
+            Assert.assertEquals("keystroke " + i, full, incremental);
+        }
+    }
+
+    @Test
+    public void test02EditTouchingVerse() throws Exception {
+        Editable text = renderChunk();
+        TranslationCompiler compiler = new TranslationCompiler();
+        compiler.compile(text);
+
+        // deleting a verse marker recompiles the text
+        SpannedString verse = text.getSpans(0, text.length(), SpannedString.class)[0];
+        int start = text.getSpanStart(verse);
+        int length = text.getSpanEnd(verse) - start;
+        text.delete(start, start + length);
+
+        Assert.assertEquals(compileLegacy(text), compiler.update(text, start, length, 0));
+        Assert.assertEquals(VERSES - 1, text.getSpans(0, text.length(), SpannedString.class).length);
+    }
+
+    private static void edit(Editable text, int position, boolean delete) {
+        if(delete) {
+            text.delete(position, position + 1);
+        } else {
+            text.insert(position, "a");
+        }
+    }
+
+    private Editable renderChunk() {
+        StringBuilder usfm = new StringBuilder();
+        for(int i = 1; i <= VERSES; i ++) {
+            usfm.append("\\v ").append(i).append(" In the beginning was the Word, and the Word was with God, and the Word was God. ");
+        }
+        USFMRenderer renderer = new USFMRenderer(appContext);
+        renderer.setVersesEnabled(true);
+        return new SpannableStringBuilder(renderer.render(usfm.toString()));
+    }
+
+    /**
+     * The previous implementation that copied the whole text for every span
+     */
+    private static String compileLegacy(Editable text) {
+        StringBuilder compiledString = new StringBuilder();
+        int next;
+        int lastIndex = 0;
+        for(int i = 0; i < text.length(); i = next) {
+            next = text.nextSpanTransition(i, text.length(), SpannedString.class);
+            SpannedString[] verses = text.getSpans(i, next, SpannedString.class);
+            for(SpannedString s:verses) {
+                compiledString.append(text.toString().substring(lastIndex, text.getSpanStart(s)));
+                compiledString.append(s.toString());
+                lastIndex = text.getSpanEnd(s);
+            }
+        }
+        compiledString.append(text.toString().substring(lastIndex));
+        return compiledString.toString().trim();
+    }
+}
@@ -0,0 +1,166 @@
+package com.door43.translationstudio.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.door43.translationstudio.IntegrationTest;
+import com.door43.util.FileUtilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+import dagger.hilt.android.testing.HiltAndroidRule;
+import dagger.hilt.android.testing.HiltAndroidTest;
+
+/**
+ * Searches a real index and compares the results with a substring scan of the same text
+ */
+@HiltAndroidTest
+@RunWith(AndroidJUnit4.class)
+@IntegrationTest
+public class TranslationSearchIndexDatabaseTest {
+
+    @Rule
+    public HiltAndroidRule hiltRule = new HiltAndroidRule(this);
+
+    @Inject
+    @ApplicationContext
+    Context appContext;
+
+    private static final String CONTAINER = TranslationSearchIndex.targetContainer("aa_gen_text_reg");
+    private static final String[][] CORPUS = {
+            {"01", "01", "In the beginning God created the heavens and the earth."},
+            {"01", "03", "God said, Let there be light, and there was light."},
+            {"01", "04", "God saw the light, that it was good."},
+            {"01", "05", "The Lord is my delight and my LIGHTHOUSE."},
+            {"01", "06", "The skylight was open."},
+            {"01", "07", "Darkness was over the deep."},
+            {"02", "title", "Chapter Two"},
+            {"02", "01", "Thus the heavens and the earth were finished."},
+    };
+
+    private File databaseFile;
+    private TranslationSearchIndex index;
+
+    @Before
+    public void setUp() {
+        hiltRule.inject();
+        databaseFile = new File(appContext.getCacheDir(), "search_test.sqlite");
+        FileUtilities.deleteQuietly(databaseFile);
+        index = new TranslationSearchIndex(appContext, databaseFile);
+        index.beginTransaction();
+        for (String[] chunk : CORPUS) {
+            index.index(CONTAINER, chunk[0], chunk[1], chunk[2].hashCode(), chunk[2]);
+        }
+        index.endTransaction(true);
+        // another container must never match
+        index.index(TranslationSearchIndex.sourceContainer("en_gen_ulb"), "01", "03", 0, "light light");
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+        SQLiteDatabase.deleteDatabase(databaseFile);
+    }
+
+    @Test
+    public void matchesTheSameChunksAsASubstringScan() {
+        String[] queries = {"light", "LIGHT", "ligh", "ight", "the", "he", "god said", "s, let", "earth.", "two", "missing"};
+        for (String query : queries) {
+            Map<String, int[]> expected = scan(query);
+            Map<String, int[]> actual = index.search(CONTAINER, query);
+            assertEquals(query, expected.keySet(), actual.keySet());
+            for (String key : expected.keySet()) {
+                assertArrayEquals(query + " in " + key, expected.get(key), actual.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void findsMatchesWithinWords() {
+        Map<String, int[]> matches = index.search(CONTAINER, "light");
+        // whole words, the start of a word and within words are all matched
+        assertTrue(matches.containsKey(TranslationSearchIndex.chunkKey("01", "03")));
+        assertTrue(matches.containsKey(TranslationSearchIndex.chunkKey("01", "05")));
+        assertTrue(matches.containsKey(TranslationSearchIndex.chunkKey("01", "06")));
+        assertFalse(matches.containsKey(TranslationSearchIndex.chunkKey("01", "07")));
+        assertArrayEquals(new int[]{17, 30}, matches.get(TranslationSearchIndex.chunkKey("01", "05")));
+    }
+
+    @Test
+    public void reindexedChunksAreSearched() {
+        index.index(CONTAINER, "01", "07", 1, "Light shone in the darkness.");
+        index.invalidate(CONTAINER, "01", "06");
+
+        Map<String, int[]> matches = index.search(CONTAINER, "light");
+        assertTrue(matches.containsKey(TranslationSearchIndex.chunkKey("01", "07")));
+        assertFalse(matches.containsKey(TranslationSearchIndex.chunkKey("01", "06")));
+        assertEquals(Long.valueOf(1), index.getChunkStamps(CONTAINER).get(TranslationSearchIndex.chunkKey("01", "07")));
+    }
+
+    @Test
+    public void findsQueriesShorterThanAGram() {
+        Map<String, int[]> matches = index.search(CONTAINER, "ky");
+        assertEquals(1, matches.size());
+        assertArrayEquals(new int[]{5}, matches.get(TranslationSearchIndex.chunkKey("01", "06")));
+        assertEquals(scan("t").keySet(), index.search(CONTAINER, "t").keySet());
+    }
+
+    @Test
+    public void reindexedChunksDropTheirOldText() {
+        String key = TranslationSearchIndex.chunkKey("01", "06");
+        index.index(CONTAINER, "01", "06", 2, "The window was open.");
+
+        assertFalse(index.search(CONTAINER, "skylight").containsKey(key));
+        assertFalse(index.search(CONTAINER, "sk").containsKey(key));
+        assertTrue(index.search(CONTAINER, "window").containsKey(key));
+        assertEquals(Long.valueOf(2), index.getChunkStamps(CONTAINER).get(key));
+    }
+
+    @Test
+    public void deletedContainersAreNotSearched() {
+        String source = TranslationSearchIndex.sourceContainer("en_gen_ulb");
+        // the stamp is only recorded once the container has been completely indexed
+        assertNull(index.getContainerStamp(CONTAINER));
+        index.setContainerStamp(CONTAINER, "1");
+        assertEquals("1", index.getContainerStamp(CONTAINER));
+
+        index.delete(CONTAINER);
+
+        assertTrue(index.search(CONTAINER, "light").isEmpty());
+        assertTrue(index.getChunkStamps(CONTAINER).isEmpty());
+        assertNull(index.getContainerStamp(CONTAINER));
+        assertEquals(1, index.search(source, "light").size());
+    }
+
+    private static Map<String, int[]> scan(String query) {
+        String search = query.toLowerCase();
+        Map<String, int[]> matches = new HashMap<>();
+        for (String[] chunk : CORPUS) {
+            String body = chunk[2].toLowerCase();
+            if (body.contains(search)) {
+                matches.put(TranslationSearchIndex.chunkKey(chunk[0], chunk[1]),
+                        TranslationSearchIndex.findOffsets(body, search));
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,110 @@
+package com.door43.translationstudio.core;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.door43.data.AssetsProvider;
+import com.door43.translationstudio.IntegrationTest;
+import com.door43.translationstudio.rendering.LegacyUSFMRenderer;
+import com.door43.translationstudio.rendering.USFMRenderer;
+import com.door43.translationstudio.ui.translate.ReviewModeAdapter;
+import com.door43.util.FileUtilities;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.unfoldingword.tools.logger.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.inject.Inject;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+import dagger.hilt.android.testing.HiltAndroidRule;
+import dagger.hilt.android.testing.HiltAndroidTest;
+
+/**
+ * Checks that the single pass USFM renderer produces the same text as the legacy multi-pass
+ * renderer on a full book
+ */
+@HiltAndroidTest
+@RunWith(AndroidJUnit4.class)
+@IntegrationTest
+public class USFMRendererEquivalenceTest {
+
+    @Rule
+    public HiltAndroidRule hiltRule = new HiltAndroidRule(this);
+
+    @Inject
+    @ApplicationContext
+    Context appContext;
+    @Inject
+    AssetsProvider assetsProvider;
+
+    private static final String BOOK = "usfm/43-LUK.usfm";
+
+    @Before
+    public void setUp() {
+        Logger.flush();
+        hiltRule.inject();
+    }
+
+    @Test
+    public void test01RenderBook() throws Exception {
+        String book = readBook();
+
+        String legacy = new LegacyUSFMRenderer(appContext).render(book);
+        CharSequence rendered = createRenderer(null).render(book);
+
+        Assert.assertEquals(legacy, rendered.toString());
+    }
+
+    @Test
+    public void test02RenderBookWithSearch() throws Exception {
+        String book = readBook();
+
+        String legacy = new LegacyUSFMRenderer(appContext).render(book);
+        CharSequence rendered = createRenderer("the").render(book);
+
+        Assert.assertEquals(legacy, rendered.toString());
+    }
+
+    @Test
+    public void test03StopRendering() throws Exception {
+        String book = readBook();
+        USFMRenderer renderer = createRenderer(null);
+        renderer.stop();
+
+        CharSequence rendered = renderer.render(book);
+
+        Assert.assertSame(book, rendered);
+    }
+
+    @Test
+    public void test04RenderVerses() throws Exception {
+        String book = readBook();
+
+        String legacy = new LegacyUSFMRenderer(appContext).renderVerse(book);
+        CharSequence rendered = createRenderer(null).renderVerse(book);
+
+        Assert.assertEquals(legacy, rendered.toString());
+    }
+
+    private USFMRenderer createRenderer(String search) {
+        USFMRenderer renderer = new USFMRenderer(appContext);
+        renderer.setSearchString(search, ReviewModeAdapter.HIGHLIGHT_COLOR);
+        return renderer;
+    }
+
+    private String readBook() throws IOException {
+        InputStream stream = assetsProvider.open(BOOK);
+        String book = FileUtilities.readStreamToString(stream);
+        Assert.assertNotNull(book);
+        Assert.assertFalse(book.isEmpty());
+        return book;
+    }
+}
@@ -1,5 +1,6 @@
 package com.door43.translationstudio.core;
 
+import android.content.Context;
 import android.util.Log;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -7,7 +8,9 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.door43.data.AssetsProvider;
 import com.door43.translationstudio.IntegrationTest;
 import com.door43.translationstudio.ui.translate.ReviewModeAdapter;
+import com.door43.translationstudio.rendering.LegacyUSXRenderer;
 import com.door43.translationstudio.rendering.RenderingGroup;
+import com.door43.translationstudio.rendering.USXRenderer;
 import com.door43.util.FileUtilities;
 
 import org.junit.Assert;
@@ -22,6 +25,7 @@ import java.io.InputStream;
 
 import javax.inject.Inject;
 
+import dagger.hilt.android.qualifiers.ApplicationContext;
 import dagger.hilt.android.testing.HiltAndroidRule;
 import dagger.hilt.android.testing.HiltAndroidTest;
 
@@ -36,6 +40,9 @@ public class UsxBrokenRenderTest {
     @Rule
     public HiltAndroidRule hiltRule = new HiltAndroidRule(this);
 
+    @Inject
+    @ApplicationContext
+    Context appContext;
     @Inject
     AssetsProvider assetsProvider;
     @Inject
@@ -180,6 +187,23 @@ public class UsxBrokenRenderTest {
         verifyProcessedText(expectedText, out);
     }
 
+    @Test
+    public void test11MatchesLegacyRenderer() throws Exception {
+        String[] testIds = {"usx/mk_1_1", "usx/mk_7_6", "usx/mk_7_14", "usx/mk_11_24", "usx/mk_16_19"};
+        for(String testId : testIds) {
+            //given
+            String testText = FileUtilities.readStreamToString(assetsProvider.open(testId + "_raw.data"));
+            Assert.assertNotNull(testText);
+
+            //when
+            String legacy = new LegacyUSXRenderer(appContext).render(testText).toString();
+            String out = new USXRenderer(appContext).render(testText).toString();
+
+            //then
+            verifyProcessedText(legacy, out);
+        }
+    }
+
     private String doRender(String search, String testId) throws IOException {
         String testTextFile = testId+ "_raw.data";
         String expectTextFile = testId+ "_processed.data";
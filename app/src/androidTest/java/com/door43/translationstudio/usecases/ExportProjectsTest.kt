@@ -6,7 +6,9 @@ import androidx.test.ext.junit.runners.AndroidJUnit4
 import com.door43.data.AssetsProvider
 import com.door43.data.IDirectoryProvider
 import com.door43.translationstudio.IntegrationTest
+import com.door43.translationstudio.R
 import com.door43.translationstudio.TestUtils
+import com.door43.translationstudio.core.PdfPrinter
 import com.door43.translationstudio.core.ProcessUSFM
 import com.door43.translationstudio.core.Profile
 import com.door43.translationstudio.core.TargetTranslation
@@ -18,6 +20,8 @@ import com.door43.usecases.ExportProjects
 import com.door43.usecases.ExportProjects.ExportType
 import com.door43.usecases.ImportProjects
 import com.door43.util.Zip
+import com.itextpdf.text.pdf.PdfReader
+import com.itextpdf.text.pdf.parser.PdfTextExtractor
 import dagger.hilt.android.qualifiers.ApplicationContext
 import dagger.hilt.android.testing.HiltAndroidRule
 import dagger.hilt.android.testing.HiltAndroidTest
@@ -191,6 +195,74 @@ class ExportProjectsTest {
         assertTrue("Temp file should not be empty", tempFile.length() > 0)
     }
 
+    @Test
+    fun testExportProjectToPDFReportsProgress() {
+        assertNotNull("Target translation should not be null", targetTranslation)
+
+        val tempFile = directoryProvider.createTempFile("aa_mrk_text_reg", ".pdf")
+        val progress = arrayListOf<Pair<Int, Int>>()
+
+        val result = exportProjects.exportPDF(
+            targetTranslation!!,
+            Uri.fromFile(tempFile),
+            includeImages = false,
+            includeIncompleteFrames = true,
+            null
+        ) { value, max, _ -> progress.add(Pair(value, max)) }
+
+        assertTrue("Result should be successful", result.success)
+        val chapterCount = targetTranslation!!.chapterTranslations.size
+        assertEquals(
+            "Progress should be reported for each chapter and when done",
+            chapterCount + 1,
+            progress.size
+        )
+        progress.forEachIndexed { index, (value, max) ->
+            assertEquals("Progress should count the printed chapters", index, value)
+            assertEquals("Max should be the number of chapters", chapterCount, max)
+        }
+    }
+
+    @Test
+    fun testPrintPDFWithBoundedMemory() {
+        assertNotNull("Target translation should not be null", targetTranslation)
+
+        // flush after every couple of rows so every chapter is written in several parts
+        val bounded = printPDF(boundMemory = true, flushRows = 2)
+        val unbounded = printPDF(boundMemory = false)
+
+        val boundedReader = PdfReader(bounded.absolutePath)
+        val unboundedReader = PdfReader(unbounded.absolutePath)
+        try {
+            assertEquals(
+                "Flushing rows should not change the pages",
+                unboundedReader.numberOfPages,
+                boundedReader.numberOfPages
+            )
+            for (page in 1..unboundedReader.numberOfPages) {
+                assertEquals(
+                    "Flushing rows should not change page $page",
+                    PdfTextExtractor.getTextFromPage(unboundedReader, page),
+                    PdfTextExtractor.getTextFromPage(boundedReader, page)
+                )
+            }
+        } finally {
+            boundedReader.close()
+            unboundedReader.close()
+        }
+    }
+
+    private fun printPDF(boundMemory: Boolean, flushRows: Int = 20): File {
+        val fontPath = "assets/fonts/" + appContext.getString(R.string.pref_default_translation_typeface)
+        val printer = PdfPrinter(
+            appContext, targetTranslation!!, targetTranslation!!.format, fontPath,
+            16f, false, fontPath, null, directoryProvider, library
+        )
+        printer.includeMedia(false)
+        printer.boundMemory(boundMemory, flushRows)
+        return printer.print()
+    }
+
     private fun testExportedProjectCorrect(file: File) {
         assertEquals("This should be project file", file.extension, TSTUDIO_EXTENSION)
         assertTrue("Temp file should exist", file.exists())
@@ -0,0 +1,191 @@
+package org.unfoldingword.door43client;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.door43.translationstudio.IntegrationTest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import dagger.hilt.android.testing.HiltAndroidRule;
+import dagger.hilt.android.testing.HiltAndroidTest;
+
+/**
+ * Writes rows into a real database with each of the write strategies the device supports
+ */
+@HiltAndroidTest
+@RunWith(AndroidJUnit4.class)
+@IntegrationTest
+public class IndexWriterDatabaseTest {
+
+    @Rule
+    public HiltAndroidRule hiltRule = new HiltAndroidRule(this);
+
+    private static final String[] SCHEMA = {
+            "create table versification (id integer primary key autoincrement, slug text not null, name text, unique (slug))",
+            "create table chunk_marker (id integer primary key autoincrement, project_slug text not null,"
+                    + " versification_id integer not null, chapter text not null, verse text not null,"
+                    + " label text, unique (project_slug, versification_id, chapter, verse))",
+    };
+
+    @Before
+    public void setUp() {
+        hiltRule.inject();
+    }
+
+    @Test
+    public void insertOrIgnoreInsertsNewRows() throws Exception {
+        forEachMode((db, writer) -> {
+            IndexWriter.Result first = writer.insertOrIgnore("versification", versification("kjv", "King James"), new String[]{"slug"});
+            IndexWriter.Result second = writer.insertOrIgnore("versification", versification("ufw", "unfoldingWord"), new String[]{"slug"});
+
+            Assert.assertTrue(first.inserted);
+            Assert.assertTrue(second.inserted);
+            Assert.assertNotEquals(first.id, second.id);
+            Assert.assertEquals("King James", selectName(db, first.id));
+            Assert.assertEquals("unfoldingWord", selectName(db, second.id));
+        });
+    }
+
+    @Test
+    public void insertOrIgnoreKeepsExistingRows() throws Exception {
+        forEachMode((db, writer) -> {
+            long id = writer.insertOrIgnore("versification", versification("kjv", "King James"), new String[]{"slug"}).id;
+
+            IndexWriter.Result result = writer.insertOrIgnore("versification", versification("kjv", "Changed"), new String[]{"slug"});
+
+            Assert.assertFalse(result.inserted);
+            Assert.assertEquals(id, result.id);
+            Assert.assertEquals("King James", selectName(db, id));
+            Assert.assertEquals(1, DatabaseUtils.queryNumEntries(db, "versification"));
+        });
+    }
+
+    @Test
+    public void insertOrUpdateInsertsNewRows() throws Exception {
+        forEachMode((db, writer) -> {
+            long first = writer.insertOrUpdate("versification", versification("kjv", "King James"), new String[]{"slug"}).id;
+            long second = writer.insertOrUpdate("versification", versification("ufw", "unfoldingWord"), new String[]{"slug"}).id;
+
+            Assert.assertNotEquals(first, second);
+            Assert.assertEquals("King James", selectName(db, first));
+            Assert.assertEquals("unfoldingWord", selectName(db, second));
+        });
+    }
+
+    @Test
+    public void insertOrUpdateUpdatesExistingRows() throws Exception {
+        forEachMode((db, writer) -> {
+            long id = writer.insertOrUpdate("versification", versification("kjv", "King James"), new String[]{"slug"}).id;
+            writer.insertOrUpdate("versification", versification("ufw", "unfoldingWord"), new String[]{"slug"});
+
+            IndexWriter.Result result = writer.insertOrUpdate("versification", versification("kjv", "Changed"), new String[]{"slug"});
+
+            Assert.assertFalse(result.inserted);
+            Assert.assertEquals(id, result.id);
+            Assert.assertEquals("Changed", selectName(db, id));
+            Assert.assertEquals(2, DatabaseUtils.queryNumEntries(db, "versification"));
+        });
+    }
+
+    @Test
+    public void insertOrUpdateMatchesEveryUniqueColumn() throws Exception {
+        forEachMode((db, writer) -> {
+            String[] unique = {"project_slug", "versification_id", "chapter", "verse"};
+            long id = writer.insertOrUpdate("chunk_marker", chunkMarker("gen", "01", "01", "first"), unique).id;
+            long other = writer.insertOrUpdate("chunk_marker", chunkMarker("gen", "01", "05", "second"), unique).id;
+
+            IndexWriter.Result result = writer.insertOrUpdate("chunk_marker", chunkMarker("gen", "01", "01", "changed"), unique);
+
+            Assert.assertEquals(id, result.id);
+            Assert.assertNotEquals(id, other);
+            Assert.assertEquals("changed", selectString(db, "select label from chunk_marker where id=" + id));
+            Assert.assertEquals("second", selectString(db, "select label from chunk_marker where id=" + other));
+        });
+    }
+
+    @Test
+    public void insertOrUpdateWithoutConstraint() throws Exception {
+        forEachMode((db, writer) -> {
+            // there is no unique constraint on the name so the upsert cannot be compiled
+            long id = writer.insertOrUpdate("versification", versification("kjv", "King James"), new String[]{"name"}).id;
+
+            IndexWriter.Result result = writer.insertOrUpdate("versification", versification("ufw", "King James"), new String[]{"name"});
+
+            Assert.assertEquals(id, result.id);
+            Assert.assertEquals("ufw", selectString(db, "select slug from versification where id=" + id));
+        });
+    }
+
+    @Test
+    public void insertOrUpdateWithOnlyUniqueColumns() throws Exception {
+        forEachMode((db, writer) -> {
+            ContentValues values = new ContentValues();
+            values.put("slug", "kjv");
+            long id = writer.insertOrUpdate("versification", values, new String[]{"slug"}).id;
+
+            Assert.assertEquals(id, writer.insertOrUpdate("versification", values, new String[]{"slug"}).id);
+            Assert.assertEquals(1, DatabaseUtils.queryNumEntries(db, "versification"));
+        });
+    }
+
+    /**
+     * Runs a test against a new database with each write strategy supported by the device
+     */
+    private static void forEachMode(WriterTest test) throws Exception {
+        for(int mode = IndexWriter.MODE_LEGACY; mode <= IndexWriter.MODE_UPSERT_RETURNING; mode ++) {
+            SQLiteDatabase db = SQLiteDatabase.create(null);
+            IndexWriter writer = new IndexWriter(db, mode);
+            try {
+                if(mode > IndexWriter.detectMode(db)) continue;
+                for(String sql:SCHEMA) db.execSQL(sql);
+                test.run(db, writer);
+            } catch (AssertionError e) {
+                throw new AssertionError("mode " + mode + ": " + e.getMessage(), e);
+            } finally {
+                writer.close();
+                db.close();
+            }
+        }
+    }
+
+    private static ContentValues versification(String slug, String name) {
+        ContentValues values = new ContentValues();
+        values.put("slug", slug);
+        values.put("name", name);
+        return values;
+    }
+
+    private static ContentValues chunkMarker(String project, String chapter, String verse, String label) {
+        ContentValues values = new ContentValues();
+        values.put("project_slug", project);
+        values.put("versification_id", 1);
+        values.put("chapter", chapter);
+        values.put("verse", verse);
+        values.put("label", label);
+        return values;
+    }
+
+    private static String selectName(SQLiteDatabase db, long id) {
+        return selectString(db, "select name from versification where id=" + id);
+    }
+
+    private static String selectString(SQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            Assert.assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        }
+    }
+
+    private interface WriterTest {
+        void run(SQLiteDatabase db, IndexWriter writer) throws Exception;
+    }
+}
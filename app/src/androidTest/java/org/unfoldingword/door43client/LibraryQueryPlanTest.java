@@ -0,0 +1,173 @@
+package org.unfoldingword.door43client;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.door43.translationstudio.IntegrationTest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.unfoldingword.door43client.models.Category;
+import org.unfoldingword.door43client.models.ChunkMarker;
+import org.unfoldingword.door43client.models.SourceLanguage;
+import org.unfoldingword.door43client.models.TargetLanguage;
+import org.unfoldingword.door43client.models.Versification;
+import org.unfoldingword.resourcecontainer.Project;
+import org.unfoldingword.resourcecontainer.Resource;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+import dagger.hilt.android.testing.HiltAndroidRule;
+import dagger.hilt.android.testing.HiltAndroidTest;
+
+/**
+ * Checks the query plans of the library lookups so they keep using the indexes
+ */
+@HiltAndroidTest
+@RunWith(AndroidJUnit4.class)
+@IntegrationTest
+public class LibraryQueryPlanTest {
+
+    @Rule
+    public HiltAndroidRule hiltRule = new HiltAndroidRule(this);
+
+    @Inject
+    @ApplicationContext
+    Context appContext;
+
+    private static final String DATABASE_NAME = "query_plan_test";
+    // a table that is read without an index. Scans of subqueries are not included
+    private static final Pattern TABLE_SCAN = Pattern.compile("^SCAN (TABLE )?(\\w+)( AS (\\w+))?$");
+
+    private final List<String> queries = new ArrayList<>();
+    private String schema;
+    private SQLiteHelper helper;
+
+    @Before
+    public void setUp() throws Exception {
+        hiltRule.inject();
+        appContext.deleteDatabase(DATABASE_NAME);
+        schema = readSchema();
+        helper = new SQLiteHelper(appContext, schema, DATABASE_NAME, new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+                // TRICKY: the query only exposes its sql through toString
+                queries.add(query.toString().replaceFirst("^SQLiteQuery: ", ""));
+                return new SQLiteCursor(driver, editTable, query);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        appContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void test01LookupsUseIndexes() throws Exception {
+        Library library = new Library(helper);
+        addContent(library);
+
+        queries.clear();
+        library.listSourceLanguagesLastModified();
+        library.listProjectsLastModified("en");
+        library.findTranslations("en", "gen", "ulb", "book", null, 1, -1);
+        library.getImportedTranslations();
+        library.getTargetLanguage("en");
+        library.getProjects("en");
+        library.getProjectCategories(0, "en", "all");
+        library.getResources("en", "gen");
+        library.getChunkMarkers("gen", "en-US");
+        library.getCategories("en", "gen");
+        List<String> recorded = new ArrayList<>(queries);
+        Assert.assertFalse(recorded.isEmpty());
+
+        SQLiteDatabase db = helper.getReadableDatabase();
+        for(String query:recorded) {
+            List<String> plan = explain(db, query);
+            for(String detail:plan) {
+                Assert.assertFalse(query + "\n" + plan, detail.contains("AUTOMATIC"));
+                Matcher matcher = TABLE_SCAN.matcher(detail);
+                if(matcher.matches()) {
+                    String table = matcher.group(4) != null ? matcher.group(4) : matcher.group(2);
+                    Assert.assertTrue(query + "\n" + plan, plan.contains("MATERIALIZE " + table));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test02UpgradeAddsIndexes() throws Exception {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.execSQL("DROP INDEX resource_format_resource_id");
+        db.setVersion(1);
+        helper.close();
+
+        helper = new SQLiteHelper(appContext, schema, DATABASE_NAME);
+        db = helper.getWritableDatabase();
+        Assert.assertEquals(SQLiteHelper.DATABASE_VERSION, db.getVersion());
+        Cursor cursor = db.rawQuery("select name from sqlite_master where type='index' and name=?",
+                new String[]{"resource_format_resource_id"});
+        Assert.assertTrue(cursor.moveToFirst());
+        cursor.close();
+        Assert.assertTrue(db.isWriteAheadLoggingEnabled());
+    }
+
+    private static void addContent(Library library) throws Exception {
+        long languageId = library.addSourceLanguage(new SourceLanguage("en", "English", "ltr"));
+        long projectId = library.addProject(new Project("gen", "Genesis", 1),
+                Arrays.asList(new Category("bible-ot", "Old Testament")), languageId);
+        Resource resource = new Resource("ulb", "Unlocked Literal Bible", "book", "all", "3", "1");
+        resource.addFormat(new Resource.Format("1", "application/tsrc+book", 1, "https://example.com/ulb.zip", true));
+        library.addResource(resource, projectId);
+        long versificationId = library.addVersification(new Versification("en-US", "American English"), languageId);
+        library.addChunkMarker(new ChunkMarker("01", "01"), "gen", versificationId);
+        library.addTargetLanguage(new TargetLanguage("en", "English", "English", "ltr", "Europe", true));
+    }
+
+    private static List<String> explain(SQLiteDatabase db, String query) {
+        // the plan does not depend on the values of the arguments
+        String[] args = new String[query.length() - query.replace("?", "").length()];
+        Arrays.fill(args, "en");
+        List<String> plan = new ArrayList<>();
+        Cursor cursor = db.rawQuery("explain query plan " + query, args);
+        while(cursor.moveToNext()) {
+            plan.add(cursor.getString(cursor.getColumnIndex("detail")));
+        }
+        cursor.close();
+        return plan;
+    }
+
+    private String readSchema() throws Exception {
+        InputStream is = appContext.getAssets().open("schema.sqlite");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            sb.append(line).append("\n");
+        }
+        reader.close();
+        return sb.toString();
+    }
+}
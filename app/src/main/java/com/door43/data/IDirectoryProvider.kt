@@ -122,6 +122,13 @@ interface IDirectoryProvider {
      */
     fun deleteLibrary()
 
+    /**
+     * Deletes the journal files of the library database.
+     * This must be done whenever the database file is replaced
+     * so the new database is not mixed with the old one.
+     */
+    fun deleteDatabaseJournal()
+
     /**
      * Creates a temporary directory.
      */
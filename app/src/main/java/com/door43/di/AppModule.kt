@@ -7,8 +7,12 @@ import com.door43.data.IPreferenceRepository
 import com.door43.data.getDefaultPref
 import com.door43.repositories.LanguageRequestRepository
 import com.door43.translationstudio.core.ArchiveImporter
+import com.door43.translationstudio.core.BackupJournal
 import com.door43.translationstudio.core.Profile
+import com.door43.translationstudio.core.TargetTranslationCatalog
+import com.door43.translationstudio.core.TranslationSearchIndex
 import com.door43.translationstudio.core.Translator
+import com.door43.translationstudio.rendering.RenderedTextCache
 import com.door43.usecases.BackupRC
 import dagger.Module
 import dagger.Provides
@@ -16,6 +20,7 @@ import dagger.hilt.InstallIn
 import dagger.hilt.android.qualifiers.ApplicationContext
 import dagger.hilt.components.SingletonComponent
 import org.json.JSONObject
+import java.io.File
 import org.unfoldingword.door43client.Door43Client
 import javax.inject.Singleton
 
@@ -68,4 +73,35 @@ object AppModule {
             library
         )
     }
-}
\ No newline at end of file
+
+    @Provides
+    @Singleton
+    fun provideRenderedTextCache(): RenderedTextCache {
+        return RenderedTextCache()
+    }
+
+    @Provides
+    @Singleton
+    fun provideTranslationSearchIndex(
+        @ApplicationContext context: Context,
+        directoryProvider: IDirectoryProvider
+    ): TranslationSearchIndex {
+        return TranslationSearchIndex(context, File(directoryProvider.databaseDir, "search.sqlite"))
+    }
+
+    @Provides
+    @Singleton
+    fun provideTargetTranslationCatalog(
+        directoryProvider: IDirectoryProvider
+    ): TargetTranslationCatalog {
+        return TargetTranslationCatalog(File(directoryProvider.databaseDir, "target_translations.catalog"))
+    }
+
+    @Provides
+    @Singleton
+    fun provideBackupJournal(
+        directoryProvider: IDirectoryProvider
+    ): BackupJournal {
+        return BackupJournal(File(directoryProvider.databaseDir, "backups.journal"))
+    }
+}
@@ -162,12 +162,7 @@ class DirectoryProvider (
         }
 
         // Delete old journal to avoid corrupt database errors
-        val shmFile = File(databaseFile.absolutePath + "-shm")
-        if (shmFile.exists()) { FileUtilities.deleteQuietly(shmFile) }
-        val walFile = File(databaseFile.absolutePath + "-wal")
-        if (walFile.exists()) { FileUtilities.deleteQuietly(walFile) }
-        val journalFile = File(databaseFile.absolutePath + "-journal")
-        if (journalFile.exists()) { FileUtilities.deleteQuietly(journalFile) }
+        deleteDatabaseJournal()
 
         // extract resource containers
         containersDir.mkdirs()
@@ -176,9 +171,19 @@ class DirectoryProvider (
 
     override fun deleteLibrary() {
         FileUtilities.deleteQuietly(databaseFile)
+        deleteDatabaseJournal()
         FileUtilities.deleteQuietly(containersDir)
     }
 
+    override fun deleteDatabaseJournal() {
+        val shmFile = File(databaseFile.absolutePath + "-shm")
+        if (shmFile.exists()) { FileUtilities.deleteQuietly(shmFile) }
+        val walFile = File(databaseFile.absolutePath + "-wal")
+        if (walFile.exists()) { FileUtilities.deleteQuietly(walFile) }
+        val journalFile = File(databaseFile.absolutePath + "-journal")
+        if (journalFile.exists()) { FileUtilities.deleteQuietly(journalFile) }
+    }
+
     override fun createTempDir(name: String?): File {
         val tempName = name ?: System.currentTimeMillis().toString()
         val tempDir = File(cacheDir, tempName)
@@ -14,6 +14,7 @@ import java.io.FileInputStream
 import java.io.IOException
 import java.io.InputStream
 import java.util.Locale
+import java.util.zip.ZipException
 import javax.inject.Inject
 
 /**
@@ -108,41 +109,23 @@ class ArchiveDetails private constructor(
                 "." + Translator.TSTUDIO_EXTENSION
             )
             copyInputStreamToFile(archiveStream, tempFile)
-
-            val rawManifest = Zip.read(tempFile, MANIFEST_JSON)
-            if (rawManifest != null) {
-                val json = JSONObject(rawManifest)
-                if (json.has(PACKAGE_VERSION)) {
-                    val manifestVersion = json.getInt(PACKAGE_VERSION)
-                    when (manifestVersion) {
-                        1 -> return parseV1Manifest(json)
-                        2 -> return parseV2Manifest(
-                            FileInputStream(tempFile),
-                            json,
-                            preferredLocale
-                        )
-                    }
-                }
-            }
-            return null
+            return processFile(tempFile, preferredLocale)
         }
 
         private fun processFile(archive: File, preferredLocale: String): ArchiveDetails? {
             if (archive.exists()) {
-                val rawManifest = Zip.read(archive, MANIFEST_JSON)
-                if (rawManifest != null) {
-                    val json = JSONObject(rawManifest)
-                    if (json.has(PACKAGE_VERSION)) {
-                        val manifestVersion = json.getInt(PACKAGE_VERSION)
-                        when (manifestVersion) {
-                            1 -> return parseV1Manifest(json)
-                            2 -> return parseV2Manifest(
-                                FileInputStream(archive),
-                                json,
-                                preferredLocale
-                            )
-                        }
+                try {
+                    // TRICKY: archives are read through their central directory so only the
+                    // manifests are decompressed.
+                    return Zip.Reader(archive).use { reader ->
+                        parseManifest({ path -> reader.read(path) }, preferredLocale)
                     }
+                } catch (e: ZipException) {
+                    // TRICKY: archives without a readable central directory can still be streamed
+                    return parseManifest(
+                        { path -> FileInputStream(archive).use { Zip.readInputStream(it, path) } },
+                        preferredLocale
+                    )
                 }
             }
             return null
@@ -153,22 +136,30 @@ class ArchiveDetails private constructor(
             preferredLocale: String
         ): ArchiveDetails? {
             if (archive.exists()) {
-                val ais = context.contentResolver.openInputStream(archive.uri)
-                val rawManifest = Zip.readInputStream(ais, MANIFEST_JSON)
-                if (rawManifest != null) {
-                    val json = JSONObject(rawManifest)
-                    if (json.has(PACKAGE_VERSION)) {
-                        val manifestVersion = json.getInt(PACKAGE_VERSION)
-                        when (manifestVersion) {
-                            1 -> return parseV1Manifest(json)
-                            2 -> context.contentResolver.openInputStream(archive.uri)?.let {
-                                return parseV2Manifest(
-                                    it,
-                                    json,
-                                    preferredLocale
-                                )
-                            }
+                return parseManifest(
+                    { path ->
+                        context.contentResolver.openInputStream(archive.uri)?.use {
+                            Zip.readInputStream(it, path)
                         }
+                    },
+                    preferredLocale
+                )
+            }
+            return null
+        }
+
+        private fun parseManifest(
+            readEntry: (String) -> String?,
+            preferredLocale: String
+        ): ArchiveDetails? {
+            val rawManifest = readEntry(MANIFEST_JSON)
+            if (rawManifest != null) {
+                val json = JSONObject(rawManifest)
+                if (json.has(PACKAGE_VERSION)) {
+                    val manifestVersion = json.getInt(PACKAGE_VERSION)
+                    when (manifestVersion) {
+                        1 -> return parseV1Manifest(json)
+                        2 -> return parseV2Manifest(readEntry, json, preferredLocale)
                     }
                 }
             }
@@ -181,7 +172,7 @@ class ArchiveDetails private constructor(
 
         @Throws(JSONException::class, IOException::class)
         private fun parseV2Manifest(
-            ais: InputStream,
+            readEntry: (String) -> String?,
             archiveManifest: JSONObject,
             preferredLocale: String
         ): ArchiveDetails {
@@ -192,84 +183,81 @@ class ArchiveDetails private constructor(
                 val translationRecordJson = translationsJson.getJSONObject(i)
                 val path = translationRecordJson.getString("path")
 
-                ais.use { stream ->
-                    val rawTranslationManifest = Zip.readInputStream(
-                        stream,
-                        path.replace("/+$".toRegex(), "") + "/manifest.json"
-                    )
-                    if (rawTranslationManifest != null) {
-                        var manifest: JSONObject? = JSONObject(rawTranslationManifest)
+                val rawTranslationManifest = readEntry(
+                    path.replace("/+$".toRegex(), "") + "/manifest.json"
+                )
+                if (rawTranslationManifest != null) {
+                    var manifest: JSONObject? = JSONObject(rawTranslationManifest)
 
-                        // migrate the manifest
-                        manifest = migrator.migrateManifest(manifest!!)
+                    // migrate the manifest
+                    manifest = migrator.migrateManifest(manifest!!)
 
-                        if (manifest != null) {
-                            val targetLanguageJson = manifest.getJSONObject("target_language")
-                            val projectJson = manifest.getJSONObject("project")
+                    if (manifest != null) {
+                        val targetLanguageJson = manifest.getJSONObject("target_language")
+                        val projectJson = manifest.getJSONObject("project")
 
-                            // get target language
-                            val targetLanguageName: String?
-                            val targetLanguageSlug = targetLanguageJson.getString("id")
-                            val targetLanguageDirection = targetLanguageJson.getString("direction")
-                            val tl = library.index.getTargetLanguage(targetLanguageSlug)
-                            targetLanguageName = if (tl != null) {
-                                tl.name
-                            } else {
-                                targetLanguageSlug.uppercase(Locale.getDefault())
-                            }
+                        // get target language
+                        val targetLanguageName: String?
+                        val targetLanguageSlug = targetLanguageJson.getString("id")
+                        val targetLanguageDirection = targetLanguageJson.getString("direction")
+                        val tl = library.index.getTargetLanguage(targetLanguageSlug)
+                        targetLanguageName = if (tl != null) {
+                            tl.name
+                        } else {
+                            targetLanguageSlug.uppercase(Locale.getDefault())
+                        }
 
-                            // get project
-                            val projectName: String?
-                            val projectSlug = projectJson.getString("id")
-                            val project = library.index.getProject(
-                                preferredLocale,
-                                projectSlug,
-                                true
-                            )
-                            projectName = if (project != null) {
-                                project.name
-                            } else {
-                                projectSlug.uppercase(Locale.getDefault())
-                            }
+                        // get project
+                        val projectName: String?
+                        val projectSlug = projectJson.getString("id")
+                        val project = library.index.getProject(
+                            preferredLocale,
+                            projectSlug,
+                            true
+                        )
+                        projectName = if (project != null) {
+                            project.name
+                        } else {
+                            projectSlug.uppercase(Locale.getDefault())
+                        }
 
-                            // git commit hash
-                            val commit = translationRecordJson.getString("commit_hash")
+                        // git commit hash
+                        val commit = translationRecordJson.getString("commit_hash")
 
-                            // translation type
-                            var resourceType = ResourceType.get(
-                                manifest.getJSONObject("type").getString("id")
-                            )
-                            if (resourceType == null) {
-                                resourceType = ResourceType.TEXT
-                            }
+                        // translation type
+                        var resourceType = ResourceType.get(
+                            manifest.getJSONObject("type").getString("id")
+                        )
+                        if (resourceType == null) {
+                            resourceType = ResourceType.TEXT
+                        }
+
+                        // resource
+                        var resourceSlug: String? = null
+                        if (manifest.has("resource")) {
+                            resourceSlug = manifest.getJSONObject("resource")
+                                .getString("id")
+                        }
 
-                            // resource
-                            var resourceSlug: String? = null
-                            if (manifest.has("resource")) {
-                                resourceSlug = manifest.getJSONObject("resource")
-                                    .getString("id")
-                            }
+                        // build id
+                        val targetTranslationId = TargetTranslation.generateTargetTranslationId(
+                            targetLanguageSlug,
+                            projectSlug,
+                            resourceType,
+                            resourceSlug
+                        )
 
-                            // build id
-                            val targetTranslationId = TargetTranslation.generateTargetTranslationId(
+                        targetDetails.add(
+                            TargetTranslationDetails(
+                                targetTranslationId,
                                 targetLanguageSlug,
+                                targetLanguageName,
                                 projectSlug,
-                                resourceType,
-                                resourceSlug
-                            )
-
-                            targetDetails.add(
-                                TargetTranslationDetails(
-                                    targetTranslationId,
-                                    targetLanguageSlug,
-                                    targetLanguageName,
-                                    projectSlug,
-                                    projectName,
-                                    targetLanguageDirection,
-                                    commit
-                                )
+                                projectName,
+                                targetLanguageDirection,
+                                commit
                             )
-                        }
+                        )
                     }
                 }
             }
@@ -0,0 +1,166 @@
+package com.door43.translationstudio.core;
+
+import com.door43.util.FileUtilities;
+
+import org.unfoldingword.tools.logger.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the commit that was last backed up for each target translation.
+ *
+ * The backup service uses the journal to decide which target translations have changed without
+ * opening the repositories or reading the previous backup archives.
+ * An entry is only trusted while the backup file still has the size and modification time that
+ * were recorded with it.
+ *
+ * Saving rewrites the whole journal, which stays small since it holds a single short entry
+ * per target translation. The previous journal is kept if the new one cannot be written.
+ */
+public class BackupJournal {
+    private static final String TAG = BackupJournal.class.getSimpleName();
+    private static final int MAGIC = 0x54544a6e;
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    /**
+     * @param file the file in which the journal will be stored
+     */
+    public BackupJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the journal entry of a target translation
+     * @param targetTranslationId
+     * @return null if the target translation has never been backed up
+     */
+    public synchronized Entry get(String targetTranslationId) {
+        load();
+        return entries.get(targetTranslationId);
+    }
+
+    /**
+     * Checks if the backup of a target translation already contains a commit
+     * @param targetTranslationId
+     * @param commit the commit to look for
+     * @param backup the backup file of the target translation
+     * @return
+     */
+    public synchronized boolean isBackedUp(String targetTranslationId, String commit, File backup) {
+        Entry entry = get(targetTranslationId);
+        if(entry == null || commit == null || !commit.equals(entry.commit)) return false;
+        if(entry.length < 0) return true;
+        return backup.isFile()
+                && backup.length() == entry.length
+                && backup.lastModified() == entry.modified;
+    }
+
+    /**
+     * Records a backup of a target translation
+     * @param targetTranslationId
+     * @param commit the commit that was backed up
+     * @param backup the backup file
+     */
+    public synchronized void record(String targetTranslationId, String commit, File backup) {
+        load();
+        entries.put(targetTranslationId, new Entry(commit, backup.length(), backup.lastModified()));
+        dirty = true;
+    }
+
+    /**
+     * Records that a commit was checked but did not need to be backed up
+     * @param targetTranslationId
+     * @param commit
+     */
+    public synchronized void recordSkipped(String targetTranslationId, String commit) {
+        load();
+        entries.put(targetTranslationId, new Entry(commit, -1, 0));
+        dirty = true;
+    }
+
+    /**
+     * Removes a target translation from the journal
+     * @param targetTranslationId
+     */
+    public synchronized void remove(String targetTranslationId) {
+        load();
+        if(entries.remove(targetTranslationId) != null) dirty = true;
+    }
+
+    /**
+     * Writes the journal to the disk if it has changed
+     */
+    public synchronized void save() {
+        if(!dirty) return;
+        try {
+            boolean written = FileUtilities.writeAtomically(file, tempFile -> {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(entries.size());
+                    for(Map.Entry<String, Entry> e:entries.entrySet()) {
+                        out.writeUTF(e.getKey());
+                        out.writeUTF(e.getValue().commit);
+                        out.writeLong(e.getValue().length);
+                        out.writeLong(e.getValue().modified);
+                    }
+                }
+            });
+            if(written) dirty = false;
+        } catch (Exception e) {
+            Logger.w(TAG, "Failed to save the backup journal", e);
+        }
+    }
+
+    private void load() {
+        if(loaded) return;
+        loaded = true;
+        if(!file.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int count = in.readInt();
+            for(int i = 0; i < count; i ++) {
+                String id = in.readUTF();
+                entries.put(id, new Entry(in.readUTF(), in.readLong(), in.readLong()));
+            }
+        } catch (IOException e) {
+            // TRICKY: a lost journal only causes the next backup to run again
+            Logger.w(TAG, "Failed to read the backup journal", e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * A journaled backup
+     */
+    public static class Entry {
+        public final String commit;
+        public final long length;
+        public final long modified;
+
+        /**
+         * @param commit the commit that was backed up
+         * @param length the size of the backup file or -1 if no backup was written
+         * @param modified the modification time of the backup file
+         */
+        public Entry(String commit, long length, long modified) {
+            this.commit = commit;
+            this.length = length;
+            this.modified = modified;
+        }
+    }
+}
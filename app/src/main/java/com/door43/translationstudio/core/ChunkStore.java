@@ -0,0 +1,123 @@
+package com.door43.translationstudio.core;
+
+import com.door43.util.FileUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the text of the chunks in a target translation in memory.
+ *
+ * Each chunk file is read from the disk the first time it is requested and the saved text
+ * replaces it whenever the chunk is saved. Operations that change the files in other ways
+ * such as merges, imports and resets must invalidate the store.
+ *
+ * There is one store per target translation directory shared by every {@link TargetTranslation}
+ * that opens it. Only the most recently used stores are kept.
+ */
+public class ChunkStore {
+    /**
+     * The number of target translations whose chunks are kept in memory
+     */
+    public static final int MAX_STORES = 4;
+
+    private static final LinkedHashMap<String, ChunkStore> sStores = new LinkedHashMap<String, ChunkStore>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ChunkStore> eldest) {
+            return size() > MAX_STORES;
+        }
+    };
+
+    // the text of each chunk or null if the chunk file does not exist
+    private final Map<String, String> chunks = new HashMap<>();
+    private long reads = 0;
+    private long hits = 0;
+
+    private ChunkStore() {
+    }
+
+    /**
+     * Returns the store of a target translation
+     * @param targetTranslationDir
+     * @return
+     */
+    public static synchronized ChunkStore get(File targetTranslationDir) {
+        String key = targetTranslationDir.getAbsolutePath();
+        ChunkStore store = sStores.get(key);
+        if(store == null) {
+            store = new ChunkStore();
+            sStores.put(key, store);
+        }
+        return store;
+    }
+
+    /**
+     * Discards the stored chunks of a target translation.
+     * This must be called after the files have been changed outside of the save methods.
+     *
+     * @param targetTranslationDir
+     */
+    public static synchronized void invalidate(File targetTranslationDir) {
+        sStores.remove(targetTranslationDir.getAbsolutePath());
+    }
+
+    /**
+     * Returns the text of a chunk
+     * @param chapterSlug
+     * @param chunkSlug
+     * @param file the file that contains the chunk
+     * @return the text or null if the file does not exist
+     * @throws IOException
+     */
+    public synchronized String read(String chapterSlug, String chunkSlug, File file) throws IOException {
+        String key = chapterSlug + "/" + chunkSlug;
+        if(chunks.containsKey(key)) {
+            hits ++;
+            return chunks.get(key);
+        }
+        String text = null;
+        if(file.exists()) {
+            reads ++;
+            text = FileUtilities.readFileToString(file);
+        }
+        chunks.put(key, text);
+        return text;
+    }
+
+    /**
+     * Replaces the text of a chunk after it has been saved
+     * @param chapterSlug
+     * @param chunkSlug
+     * @param text the saved text or null if the file was deleted
+     */
+    public synchronized void put(String chapterSlug, String chunkSlug, String text) {
+        chunks.put(chapterSlug + "/" + chunkSlug, text);
+    }
+
+    /**
+     * Returns the number of chunk files that have been read from the disk
+     * @return
+     */
+    public synchronized long getReadCount() {
+        return reads;
+    }
+
+    /**
+     * Returns the number of chunks that were returned without reading the disk
+     * @return
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Resets the counters
+     */
+    public synchronized void resetStats() {
+        reads = 0;
+        hits = 0;
+    }
+}
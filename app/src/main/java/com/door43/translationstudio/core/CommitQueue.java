@@ -0,0 +1,170 @@
+package com.door43.translationstudio.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the commits of a single target translation repository.
+ *
+ * The queue records the paths that have been saved since the last commit so an auto save
+ * only needs to stage those paths. Commit requests that arrive while another request is still
+ * waiting are merged into the waiting request.
+ *
+ * There is one queue per repository shared by every {@link TargetTranslation} that opens it.
+ */
+class CommitQueue {
+    private static final Map<String, CommitQueue> sQueues = new HashMap<>();
+
+    private final ThreadPoolExecutor executor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<String> dirtyPaths = new LinkedHashSet<>();
+    // true once the dirty paths account for every change since the last full commit
+    private boolean tracked = false;
+    private List<TargetTranslation.OnCommitListener> pendingListeners = null;
+
+    private CommitQueue(final String name) {
+        // TRICKY: the thread is released when the queue is idle
+        executor = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "commit-" + name);
+            }
+        });
+    }
+
+    /**
+     * Returns the queue of a repository
+     * @param repoDir the directory of the repository
+     * @return
+     */
+    public static synchronized CommitQueue get(File repoDir) {
+        String key = repoDir.getAbsolutePath();
+        CommitQueue queue = sQueues.get(key);
+        if(queue == null) {
+            queue = new CommitQueue(repoDir.getName());
+            sQueues.put(key, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Returns the lock that must be held while the repository is being committed
+     * @return
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Records that a path has changed
+     * @param path the path relative to the repository
+     */
+    public synchronized void markDirty(String path) {
+        dirtyPaths.add(path);
+    }
+
+    /**
+     * Checks if the dirty paths include every change since the last full commit
+     * @return
+     */
+    public synchronized boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * Checks if any paths have changed since the last commit
+     * @return
+     */
+    public synchronized boolean hasDirtyPaths() {
+        return !dirtyPaths.isEmpty();
+    }
+
+    /**
+     * Removes and returns the dirty paths
+     * @return
+     */
+    public synchronized Set<String> takeDirtyPaths() {
+        Set<String> paths = new LinkedHashSet<>(dirtyPaths);
+        dirtyPaths.clear();
+        return paths;
+    }
+
+    /**
+     * Returns paths to the dirty set after a failed commit
+     * @param paths
+     */
+    public synchronized void restoreDirtyPaths(Set<String> paths) {
+        dirtyPaths.addAll(paths);
+    }
+
+    /**
+     * Records the result of a commit that staged the whole working tree
+     * @param success
+     */
+    public synchronized void onFullCommit(boolean success) {
+        tracked = success;
+    }
+
+    /**
+     * Requires the next commit to stage the whole working tree
+     */
+    public synchronized void untrack() {
+        tracked = false;
+    }
+
+    /**
+     * Queues a commit.
+     * If a commit is already waiting to run the listener will be notified when that commit finishes.
+     *
+     * @param commit performs the commit and returns the result
+     * @param listener an optional listener
+     */
+    public void enqueue(final Commit commit, TargetTranslation.OnCommitListener listener) {
+        synchronized (this) {
+            if(pendingListeners != null) {
+                if(listener != null) pendingListeners.add(listener);
+                return;
+            }
+            pendingListeners = new ArrayList<>();
+            if(listener != null) pendingListeners.add(listener);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<TargetTranslation.OnCommitListener> listeners;
+                synchronized (CommitQueue.this) {
+                    // later requests will queue a new commit
+                    listeners = pendingListeners;
+                    pendingListeners = null;
+                }
+                boolean result;
+                try {
+                    result = commit.run();
+                } catch (Exception e) {
+                    result = false;
+                }
+                for(TargetTranslation.OnCommitListener l:listeners) {
+                    l.onCommit(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * A commit operation
+     */
+    interface Commit {
+        boolean run() throws Exception;
+    }
+}
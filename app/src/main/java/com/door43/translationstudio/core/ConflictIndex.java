@@ -0,0 +1,250 @@
+package com.door43.translationstudio.core;
+
+import com.door43.util.FileUtilities;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps track of the chunks in a target translation that contain merge conflicts.
+ *
+ * The conflicted paths reported by git are recorded when a merge finishes and are removed
+ * as the chunks are saved without conflicts, so the conflicts can be counted without reading
+ * every chunk. The index is stored in the git directory so it is not committed.
+ *
+ * Chunks may be committed while they still contain conflicts, so a merge that git reports
+ * as clean can still bring in conflicted chunks. The chunks that changed in a merge must be
+ * checked with {@link #updateChanged(Repository, ObjectId, ObjectId)}.
+ *
+ * An index that has not been built yet (e.g. a translation that was merged before the index
+ * existed) must be built once from the chunk files.
+ */
+public class ConflictIndex {
+    private static final String INDEX_FILE = ".git/conflicts";
+    // only chunk files are tracked. e.g. 01/01.txt, 01/title.txt, front/title.txt
+    private static final Pattern CHUNK_PATH = Pattern.compile("^[^/]+/[^/]+\\.txt$");
+
+    private static final Map<String, ConflictIndex> sIndexes = new HashMap<>();
+
+    private final File targetTranslationDir;
+    private final File file;
+    private final TreeSet<String> paths = new TreeSet<>();
+    private boolean built;
+
+    private ConflictIndex(File targetTranslationDir) {
+        this.targetTranslationDir = targetTranslationDir;
+        this.file = new File(targetTranslationDir, INDEX_FILE);
+        if(file.exists()) {
+            try {
+                for(String path:FileUtilities.readFileToString(file).split("\n")) {
+                    if(!path.isEmpty()) paths.add(path);
+                }
+                built = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns the conflict index of a target translation
+     * @param targetTranslationDir
+     * @return
+     */
+    public static synchronized ConflictIndex get(File targetTranslationDir) {
+        String key = targetTranslationDir.getAbsolutePath();
+        ConflictIndex index = sIndexes.get(key);
+        if(index == null) {
+            index = new ConflictIndex(targetTranslationDir);
+            sIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Discards the conflict index of a target translation so it will be built again.
+     * This must be called after the files have been replaced outside of a merge.
+     *
+     * @param targetTranslationDir
+     */
+    public static synchronized void invalidate(File targetTranslationDir) {
+        sIndexes.remove(targetTranslationDir.getAbsolutePath());
+        FileUtilities.deleteQuietly(new File(targetTranslationDir, INDEX_FILE));
+    }
+
+    /**
+     * Returns the path of a chunk file relative to the target translation directory
+     * @param chapterSlug
+     * @param chunkSlug
+     * @return
+     */
+    public static String chunkPath(String chapterSlug, String chunkSlug) {
+        return chapterSlug + "/" + chunkSlug + ".txt";
+    }
+
+    /**
+     * Checks if the index has been built
+     * @return
+     */
+    public synchronized boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Replaces the conflicted paths
+     * @param conflictedPaths
+     */
+    public synchronized void build(Collection<String> conflictedPaths) {
+        paths.clear();
+        built = true;
+        add(conflictedPaths);
+        save();
+    }
+
+    /**
+     * Records the paths that were conflicted by a merge.
+     * Paths that are not chunks are ignored.
+     *
+     * @param conflictedPaths the paths relative to the target translation directory
+     */
+    public synchronized void add(Collection<String> conflictedPaths) {
+        if(!built) return;
+        boolean changed = false;
+        for(String path:conflictedPaths) {
+            if(CHUNK_PATH.matcher(path).matches()) changed |= paths.add(path);
+        }
+        if(changed) save();
+    }
+
+    /**
+     * Updates a chunk after it has been saved
+     * @param chapterSlug
+     * @param chunkSlug
+     * @param conflicted true if the saved text still contains conflicts
+     */
+    public synchronized void update(String chapterSlug, String chunkSlug, boolean conflicted) {
+        if(!built) return;
+        String path = chunkPath(chapterSlug, chunkSlug);
+        boolean changed = conflicted ? paths.add(path) : paths.remove(path);
+        if(changed) save();
+    }
+
+    /**
+     * Checks the chunks that changed between two commits for conflicts.
+     * The chunks are read from the working tree so this must be called after the merge
+     * has been checked out.
+     *
+     * @param repository
+     * @param from the commit before the merge. null if the repository was empty
+     * @param to the commit that was merged
+     * @throws IOException
+     */
+    public synchronized void updateChanged(Repository repository, ObjectId from, ObjectId to) throws IOException {
+        if(!built || to == null || to.equals(from)) return;
+        boolean changed = false;
+        for(String path:changedPaths(repository, from, to)) {
+            if(!CHUNK_PATH.matcher(path).matches()) continue;
+            File chunkFile = new File(targetTranslationDir, path);
+            boolean conflicted = chunkFile.isFile()
+                    && MergeConflictsHandler.isMergeConflicted(FileUtilities.readFileToString(chunkFile));
+            changed |= conflicted ? paths.add(path) : paths.remove(path);
+        }
+        if(changed) save();
+    }
+
+    /**
+     * Returns the paths of the files that are different in two commits
+     * @param repository
+     * @param from
+     * @param to
+     * @return
+     * @throws IOException
+     */
+    private static List<String> changedPaths(Repository repository, ObjectId from, ObjectId to) throws IOException {
+        List<String> changed = new ArrayList<>();
+        RevWalk revWalk = new RevWalk(repository);
+        TreeWalk treeWalk = new TreeWalk(repository);
+        try {
+            if(from != null) {
+                treeWalk.addTree(revWalk.parseCommit(from).getTree());
+            } else {
+                treeWalk.addTree(new EmptyTreeIterator());
+            }
+            treeWalk.addTree(revWalk.parseCommit(to).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            while(treeWalk.next()) {
+                changed.add(treeWalk.getPathString());
+            }
+        } finally {
+            treeWalk.release();
+            revWalk.release();
+        }
+        return changed;
+    }
+
+    /**
+     * Checks if a chunk is conflicted
+     * @param chapterSlug
+     * @param chunkSlug
+     * @return
+     */
+    public synchronized boolean contains(String chapterSlug, String chunkSlug) {
+        return paths.contains(chunkPath(chapterSlug, chunkSlug));
+    }
+
+    /**
+     * Checks if any chunk in the chapter is conflicted
+     * @param chapterSlug
+     * @return
+     */
+    public synchronized boolean containsChapter(String chapterSlug) {
+        String prefix = chapterSlug + "/";
+        String next = paths.ceiling(prefix);
+        return next != null && next.startsWith(prefix);
+    }
+
+    /**
+     * Returns the number of conflicted chunks
+     * @return
+     */
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    /**
+     * Returns the conflicted chunk paths
+     * @return
+     */
+    public synchronized Set<String> getPaths() {
+        return new TreeSet<>(paths);
+    }
+
+    private void save() {
+        StringBuilder sb = new StringBuilder();
+        for(String path:paths) {
+            sb.append(path).append("\n");
+        }
+        try {
+            file.getParentFile().mkdirs();
+            FileUtilities.writeStringToFile(file, sb.toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.door43.translationstudio.core;
 
 import org.unfoldingword.door43client.Door43Client;
+import org.unfoldingword.door43client.PackedContainer;
 import org.unfoldingword.door43client.models.Translation;
 import org.unfoldingword.resourcecontainer.ContainerTools;
 import org.unfoldingword.resourcecontainer.Language;
@@ -10,41 +11,74 @@ import org.unfoldingword.resourcecontainer.errors.InvalidRCException;
 import org.unfoldingword.tools.logger.Logger;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides a cache of resource containers.
  * This should usually only be used to load source containers since they will not change very often.
+ *
+ * Each container is loaded at most once at a time. Threads asking for a container that is already
+ * being loaded wait for that load instead of opening it again. The cache keeps the most recently
+ * used containers up to {@link #MAX_CONTAINERS}. Pinned containers (e.g. the open source translation)
+ * are never evicted. Containers that could not be opened are remembered for {@link #NEGATIVE_TTL}.
  */
 public class ContainerCache {
     /**
-     * A map of cached containers
+     * The number of unpinned containers to keep in memory
      */
-    private Map<String, ResourceContainer> resourceContainers = new ConcurrentHashMap<>();
+    public static final int MAX_CONTAINERS = 12;
 
     /**
-     * A base for the synchronized list below
-      */
-    private List<String> inspected_list = new ArrayList<>();
+     * How long a container that could not be opened will be skipped (milliseconds)
+     */
+    public static final long NEGATIVE_TTL = 60 * 1000;
+
+    /**
+     * The cached containers in access order
+     */
+    private final LinkedHashMap<String, ResourceContainer> resourceContainers = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The slugs of containers that will not be evicted
+     */
+    private final Set<String> pinnedContainers = new HashSet<>();
 
     /**
-     * A list of container slugs that have already been searched for
+     * Containers that are currently being loaded
      */
-    private List<String> inspectedContainers = Collections.synchronizedList(inspected_list);
+    private final Map<String, FutureTask<ResourceContainer>> loadingContainers = new ConcurrentHashMap<>();
 
     /**
-     * A base for the synchronized list below
+     * Containers that could not be opened mapped to the time they may be tried again
      */
-    private List<String> inspecting_list = new ArrayList<>();
+    private final Map<String, Long> missingContainers = new ConcurrentHashMap<>();
 
     /**
-     * A list of container slugs that are currently being inspected
+     * The packed content of containers in access order
      */
-    private List<String> loadingContainers = Collections.synchronizedList(inspecting_list);
+    private final LinkedHashMap<String, PackedContainer> packedContainers = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Containers that have not been packed mapped to the time they may be tried again
+     */
+    private final Map<String, Long> missingPacks = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadTime = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
     private static ContainerCache sInstance = null;
 
@@ -53,11 +87,16 @@ public class ContainerCache {
     }
 
     /**
-     * Empties the cache
+     * Empties the cache.
+     * Pins are kept so the open source translation is pinned again when it is reloaded.
      */
     public static void empty() {
-        sInstance.resourceContainers.clear();
-        sInstance.inspectedContainers.clear();
+        synchronized (sInstance) {
+            sInstance.resourceContainers.clear();
+            sInstance.packedContainers.clear();
+        }
+        sInstance.missingContainers.clear();
+        sInstance.missingPacks.clear();
     }
 
     /**
@@ -68,37 +107,41 @@ public class ContainerCache {
      * @param resourceContainerSlug
      * @return
      */
-    public static ResourceContainer cache(Door43Client client, String resourceContainerSlug) {
-        // wait for other threads
-        waitForLoadingContainers(resourceContainerSlug);
+    public static ResourceContainer cache(final Door43Client client, final String resourceContainerSlug) {
+        if(resourceContainerSlug == null) return null;
 
         // check cache
-        if (sInstance.resourceContainers.containsKey(resourceContainerSlug)) {
-            return sInstance.resourceContainers.get(resourceContainerSlug);
+        ResourceContainer cached = sInstance.lookup(resourceContainerSlug);
+        if(cached != null) {
+            sInstance.hits.incrementAndGet();
+            return cached;
+        }
+        if(sInstance.isMissing(resourceContainerSlug)) {
+            sInstance.hits.incrementAndGet();
+            return null;
         }
 
         // load from disk once
-        if(!sInstance.inspectedContainers.contains(resourceContainerSlug)) {
-            // flag as loading
-            sInstance.loadingContainers.add(resourceContainerSlug);
+        FutureTask<ResourceContainer> task = new FutureTask<>(new Callable<ResourceContainer>() {
+            @Override
+            public ResourceContainer call() {
+                return sInstance.load(client, resourceContainerSlug);
+            }
+        });
+        FutureTask<ResourceContainer> loading = sInstance.loadingContainers.putIfAbsent(resourceContainerSlug, task);
+        if(loading == null) {
+            sInstance.misses.incrementAndGet();
             try {
-                ResourceContainer rc = client.open(resourceContainerSlug);
-                sInstance.resourceContainers.put(rc.slug, rc);
-                return rc;
-            } catch (InvalidRCException e) {
-                Logger.w("ContainerCache", "Deleting corrupt RC " + resourceContainerSlug, e);
-                // delete invalid container
-                client.delete(resourceContainerSlug);
-            } catch (Exception e) {
-                Logger.w("ContainerCache", "Failed to open the RC " + resourceContainerSlug, e);
+                task.run();
             } finally {
-                // fag as inspected
-                sInstance.inspectedContainers.add(resourceContainerSlug);
-                // remove loading flag
-                sInstance.loadingContainers.remove(resourceContainerSlug);
+                sInstance.loadingContainers.remove(resourceContainerSlug, task);
             }
+            loading = task;
+        } else {
+            // another thread is already loading it
+            sInstance.hits.incrementAndGet();
         }
-        return null;
+        return await(loading);
     }
 
     /**
@@ -131,30 +174,61 @@ public class ContainerCache {
     }
 
     /**
-     * Puts the thread to sleep while the container is loading
-     * @param containerSlug the translation to load
+     * Looks up a resource container from the cache without hitting the disk.
+     * If the container is being loaded this will wait for it.
+     * @return
      */
-    private static void waitForLoadingContainers(String containerSlug) {
-        while (sInstance.loadingContainers.contains(containerSlug)) {
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-                Thread.currentThread().interrupt();
-            }
+    public static ResourceContainer get(String containerSlug) {
+        if(containerSlug == null) return null;
+        FutureTask<ResourceContainer> loading = sInstance.loadingContainers.get(containerSlug);
+        if(loading != null) return await(loading);
+        return sInstance.lookup(containerSlug);
+    }
+
+    /**
+     * Returns the packed content of a resource container.
+     * Chunks are read from a memory mapped file instead of a file per chunk
+     * so this should be preferred when reading many chunks.
+     *
+     * @param client
+     * @param resourceContainerSlug
+     * @return the packed container or null if the container has not been packed yet
+     */
+    public static PackedContainer cachePacked(Door43Client client, String resourceContainerSlug) {
+        if(resourceContainerSlug == null) return null;
+        synchronized (sInstance) {
+            PackedContainer packed = sInstance.packedContainers.get(resourceContainerSlug);
+            if(packed != null) return packed;
         }
+        Long retryAt = sInstance.missingPacks.get(resourceContainerSlug);
+        if(retryAt != null && System.currentTimeMillis() < retryAt) return null;
+
+        PackedContainer packed = client.openPacked(resourceContainerSlug);
+        if(packed == null) {
+            sInstance.missingPacks.put(resourceContainerSlug, System.currentTimeMillis() + NEGATIVE_TTL);
+            return null;
+        }
+        sInstance.missingPacks.remove(resourceContainerSlug);
+        synchronized (sInstance) {
+            sInstance.packedContainers.put(resourceContainerSlug, packed);
+            sInstance.trim(sInstance.packedContainers);
+        }
+        return packed;
     }
 
     /**
-     * Looks up a resource container from the cache without hitting the disk
-     * @return
+     * Packs a resource container in the calling thread so later calls to
+     * {@link #cachePacked(Door43Client, String)} can read from the pack.
+     * This reads every chunk of the container so it should not be called on the main thread.
+     *
+     * @param client
+     * @param resourceContainerSlug
      */
-    public static ResourceContainer get(String containerSlug) {
-        waitForLoadingContainers(containerSlug);
-        if(sInstance.resourceContainers.containsKey(containerSlug)) {
-            return sInstance.resourceContainers.get(containerSlug);
+    public static void pack(Door43Client client, String resourceContainerSlug) {
+        if(resourceContainerSlug == null) return;
+        if(client.pack(resourceContainerSlug)) {
+            sInstance.missingPacks.remove(resourceContainerSlug);
         }
-        return null;
     }
 
     /**
@@ -221,8 +295,183 @@ public class ContainerCache {
      * @param resourceContainerSlug the slug of the resource container that will be removed
      */
     public static void remove(String resourceContainerSlug) {
-        // TODO: 2/8/17 this could be slow since these are synchronized lists.
-        sInstance.resourceContainers.remove(resourceContainerSlug);
-        sInstance.inspectedContainers.remove(resourceContainerSlug);
+        synchronized (sInstance) {
+            sInstance.resourceContainers.remove(resourceContainerSlug);
+            sInstance.packedContainers.remove(resourceContainerSlug);
+        }
+        sInstance.missingContainers.remove(resourceContainerSlug);
+        sInstance.missingPacks.remove(resourceContainerSlug);
+    }
+
+    /**
+     * Prevents a resource container from being evicted.
+     * The container does not need to be cached yet.
+     *
+     * @param resourceContainerSlug
+     */
+    public static void pin(String resourceContainerSlug) {
+        if(resourceContainerSlug == null) return;
+        synchronized (sInstance) {
+            sInstance.pinnedContainers.add(resourceContainerSlug);
+        }
+    }
+
+    /**
+     * Allows a resource container to be evicted again
+     * @param resourceContainerSlug
+     */
+    public static void unpin(String resourceContainerSlug) {
+        if(resourceContainerSlug == null) return;
+        synchronized (sInstance) {
+            sInstance.pinnedContainers.remove(resourceContainerSlug);
+            sInstance.trim();
+        }
+    }
+
+    /**
+     * Returns the cache statistics
+     * @return
+     */
+    public static Stats getStats() {
+        int size;
+        synchronized (sInstance) {
+            size = sInstance.resourceContainers.size();
+        }
+        return new Stats(size, sInstance.hits.get(), sInstance.misses.get(), sInstance.loads.get(),
+                sInstance.loadTime.get(), sInstance.evictions.get());
+    }
+
+    /**
+     * Resets the cache statistics
+     */
+    public static void resetStats() {
+        sInstance.hits.set(0);
+        sInstance.misses.set(0);
+        sInstance.loads.set(0);
+        sInstance.loadTime.set(0);
+        sInstance.evictions.set(0);
+    }
+
+    private synchronized ResourceContainer lookup(String containerSlug) {
+        return resourceContainers.get(containerSlug);
+    }
+
+    private boolean isMissing(String containerSlug) {
+        Long retryAt = missingContainers.get(containerSlug);
+        if(retryAt == null) return false;
+        if(System.currentTimeMillis() < retryAt) return true;
+        missingContainers.remove(containerSlug, retryAt);
+        return false;
+    }
+
+    /**
+     * Opens a container from the disk and caches the result.
+     * This is only called by the thread that owns the load.
+     */
+    private ResourceContainer load(Door43Client client, String containerSlug) {
+        long start = System.currentTimeMillis();
+        ResourceContainer rc = null;
+        try {
+            rc = client.open(containerSlug);
+        } catch (InvalidRCException e) {
+            Logger.w("ContainerCache", "Deleting corrupt RC " + containerSlug, e);
+            // delete invalid container
+            client.delete(containerSlug);
+        } catch (Exception e) {
+            Logger.w("ContainerCache", "Failed to open the RC " + containerSlug, e);
+        } finally {
+            loads.incrementAndGet();
+            loadTime.addAndGet(System.currentTimeMillis() - start);
+        }
+
+        if(rc != null) {
+            synchronized (this) {
+                resourceContainers.put(containerSlug, rc);
+                trim();
+            }
+            missingContainers.remove(containerSlug);
+        } else {
+            missingContainers.put(containerSlug, System.currentTimeMillis() + NEGATIVE_TTL);
+        }
+        return rc;
+    }
+
+    /**
+     * Evicts the least recently used containers and packs that are not pinned
+     */
+    private synchronized void trim() {
+        evictions.addAndGet(trim(resourceContainers));
+        trim(packedContainers);
+    }
+
+    /**
+     * Evicts the least recently used entries that are not pinned
+     * @param containers the cached entries in access order
+     * @return the number of evicted entries
+     */
+    private synchronized int trim(Map<String, ?> containers) {
+        int unpinned = 0;
+        for(String slug:containers.keySet()) {
+            if(!pinnedContainers.contains(slug)) unpinned ++;
+        }
+        int evicted = 0;
+        Iterator<String> it = containers.keySet().iterator();
+        while(unpinned > MAX_CONTAINERS && it.hasNext()) {
+            if(!pinnedContainers.contains(it.next())) {
+                it.remove();
+                unpinned --;
+                evicted ++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Waits for a container to finish loading
+     */
+    private static ResourceContainer await(FutureTask<ResourceContainer> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Logger.w("ContainerCache", "Failed to load the RC", e);
+        }
+        return null;
+    }
+
+    /**
+     * A snapshot of the cache statistics
+     */
+    public static class Stats {
+        public final int size;
+        public final long hits;
+        public final long misses;
+        public final long loads;
+        public final long loadTime;
+        public final long evictions;
+
+        Stats(int size, long hits, long misses, long loads, long loadTime, long evictions) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.loadTime = loadTime;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Returns the average time it took to open a container
+         * @return milliseconds
+         */
+        public long getAverageLoadTime() {
+            return loads > 0 ? loadTime / loads : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "size=%d hits=%d misses=%d loads=%d avgLoad=%dms evictions=%d",
+                    size, hits, misses, loads, getAverageLoadTime(), evictions);
+        }
     }
 }
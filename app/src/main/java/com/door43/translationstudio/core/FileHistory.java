@@ -3,7 +3,6 @@ package com.door43.translationstudio.core;
 import com.door43.translationstudio.git.Repo;
 
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
@@ -14,7 +13,6 @@ import org.eclipse.jgit.treewalk.filter.PathFilter;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 
 /**
  * Represents the commit history of a single file within a git repository
@@ -23,7 +21,7 @@ public class FileHistory {
     private final Repo repo;
     private final File file;
     private final Git git;
-    private RevCommit[] history = new RevCommit[0];
+    private FileHistoryIndex.Entry[] history = new FileHistoryIndex.Entry[0];
     private int index = 0;
 
     /**
@@ -49,7 +47,8 @@ public class FileHistory {
     }
 
     /**
-     * Reloads the commit history
+     * Reloads the commit history.
+     * The history is read from the {@link FileHistoryIndex} of the repository.
      */
     public void loadCommits() throws IOException, GitAPIException {
         if(this.file != null) {
@@ -61,32 +60,19 @@ public class FileHistory {
 
             // load history
             Repository repository = this.git.getRepository();
-            ObjectId head = repository.resolve("HEAD");
-            if(head != null) {
-                LogCommand log = this.git.log();
-                log.add(head);
-                log.addPath(this.file.toString());
-                Iterable<RevCommit> commits = log.call();
-                ArrayList<RevCommit> historyList = new ArrayList<>();
-                for (RevCommit commit : commits) {
-                    historyList.add(commit);
-
-                    // restore current position
-                    if (currentCommit != null) {
-                        String hash = commit.toString().split(" ")[1];
-                        String currentHash = currentCommit.toString().split(" ")[1];
-                        if (hash.equals(currentHash)) {
-                            index = historyList.size() - 1;
-                            currentCommit = null;
-                        }
+            this.history = FileHistoryIndex.get(this.repo.getDir()).getHistory(repository, this.file.toString());
+
+            // restore current position
+            if(currentCommit != null) {
+                for(int i = 0; i < this.history.length; i ++) {
+                    if(this.history[i].isCommit(currentCommit)) {
+                        index = i;
+                        break;
                     }
                 }
-                this.history = historyList.toArray(new RevCommit[historyList.size()]);
-            } else {
-                this.history = new RevCommit[0];
             }
         } else {
-            this.history = new RevCommit[0];
+            this.history = new FileHistoryIndex.Entry[0];
         }
     }
 
@@ -164,7 +150,7 @@ public class FileHistory {
      */
     private RevCommit getCommit(int pos) {
         if(pos >= 0 && pos < this.history.length) {
-            return this.history[pos];
+            return this.history[pos].commit;
         } else {
             return null;
         }
@@ -177,14 +163,21 @@ public class FileHistory {
      */
     public String read(RevCommit commit) throws IOException, IllegalStateException {
         if(commit != null) {
-            TreeWalk walk = new TreeWalk(this.git.getRepository());
-            walk.addTree(commit.getTree());
-            walk.setRecursive(true);
-            walk.setFilter(PathFilter.create(this.file.toString()));
-            if (!walk.next()) {
+            ObjectId objectId = null;
+            boolean indexed = false;
+            for(FileHistoryIndex.Entry entry:this.history) {
+                if(entry.isCommit(commit)) {
+                    objectId = entry.blob;
+                    indexed = true;
+                    break;
+                }
+            }
+            if(!indexed) {
+                objectId = findBlob(commit);
+            }
+            if(objectId == null) {
                 throw new IllegalStateException("Did not find expected file '" + this.file.toString() + "'");
             }
-            ObjectId objectId = walk.getObjectId(0);
             ObjectLoader loader = this.git.getRepository().open(objectId);
             return new String(loader.getBytes(), "UTF-8");
         } else {
@@ -192,6 +185,23 @@ public class FileHistory {
         }
     }
 
+    /**
+     * Looks up the file in a commit that is not in the history
+     * @param commit
+     * @return null if the file is not in the commit
+     */
+    private ObjectId findBlob(RevCommit commit) throws IOException {
+        TreeWalk walk = new TreeWalk(this.git.getRepository());
+        try {
+            walk.addTree(commit.getTree());
+            walk.setRecursive(true);
+            walk.setFilter(PathFilter.create(this.file.toString()));
+            return walk.next() ? walk.getObjectId(0) : null;
+        } finally {
+            walk.release();
+        }
+    }
+
     /**
      * Checks if the history cursor is currently at the HEAD
      * @return
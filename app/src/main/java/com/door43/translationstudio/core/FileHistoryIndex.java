@@ -0,0 +1,364 @@
+package com.door43.translationstudio.core;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the commits that changed each file in a git repository.
+ *
+ * The index is built with a single walk of the commit graph that diffs every commit against its
+ * parents, so the history of any file can be looked up without walking the repository again.
+ * When new commits are added on top of the indexed HEAD only those commits are diffed.
+ * Merges and rewritten history cause the index to be rebuilt.
+ *
+ * The history of a file matches the output of {@code git log <path>}, including the history
+ * simplification that is applied at merge commits.
+ *
+ * There is one index per repository shared by every {@link FileHistory} that reads it.
+ */
+public class FileHistoryIndex {
+    private static final Map<String, FileHistoryIndex> sIndexes = new HashMap<>();
+    // new commits are only diffed one at a time while there are fewer than this
+    private static final int MAX_EXTEND = 1000;
+
+    // the commits of each path ordered from oldest to newest
+    private final Map<String, List<Entry>> histories = new HashMap<>();
+    private ObjectId head = null;
+
+    private FileHistoryIndex() {
+    }
+
+    /**
+     * Returns the index of a repository
+     * @param repoDir the directory of the repository
+     * @return
+     */
+    public static synchronized FileHistoryIndex get(File repoDir) {
+        String key = repoDir.getAbsolutePath();
+        FileHistoryIndex index = sIndexes.get(key);
+        if(index == null) {
+            index = new FileHistoryIndex();
+            sIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the commits that changed a file.
+     * The index is brought up to date with the repository HEAD first.
+     *
+     * @param repository
+     * @param path the path of the file relative to the repository
+     * @return the commits ordered from newest to oldest
+     * @throws IOException
+     */
+    public synchronized Entry[] getHistory(Repository repository, String path) throws IOException {
+        update(repository);
+        List<Entry> history = histories.get(path);
+        if(history == null) return new Entry[0];
+        Entry[] entries = new Entry[history.size()];
+        for(int i = 0; i < entries.length; i ++) {
+            entries[i] = history.get(history.size() - 1 - i);
+        }
+        return entries;
+    }
+
+    /**
+     * Brings the index up to date with the repository HEAD
+     * @param repository
+     * @throws IOException
+     */
+    public synchronized void update(Repository repository) throws IOException {
+        ObjectId newHead = repository.resolve("HEAD");
+        if(newHead == null) {
+            histories.clear();
+            head = null;
+            return;
+        }
+        if(newHead.equals(head)) return;
+
+        try {
+            if(head == null || !extend(repository, newHead)) {
+                rebuild(repository, newHead);
+            }
+            head = newHead.copy();
+        } catch (IOException e) {
+            // TRICKY: a partial update would corrupt the index so it is rebuilt next time
+            histories.clear();
+            head = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Indexes the commits added on top of the indexed HEAD.
+     * This only succeeds if the new commits form a straight line from the indexed HEAD.
+     *
+     * @param repository
+     * @param newHead
+     * @return false if the index must be rebuilt
+     * @throws IOException
+     */
+    private boolean extend(Repository repository, ObjectId newHead) throws IOException {
+        RevWalk walk = new RevWalk(repository);
+        TreeWalk treeWalk = new TreeWalk(repository);
+        try {
+            walk.setRetainBody(false);
+            treeWalk.setRecursive(true);
+            List<RevCommit> commits = new ArrayList<>();
+            RevCommit commit = walk.parseCommit(newHead);
+            while(!commit.equals(head)) {
+                if(commit.getParentCount() != 1 || commits.size() >= MAX_EXTEND) return false;
+                commits.add(commit);
+                commit = walk.parseCommit(commit.getParent(0));
+            }
+            for(int i = commits.size() - 1; i >= 0; i --) {
+                commit = commits.get(i);
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+                treeWalk.reset(commit.getParent(0).getTree(), commit.getTree());
+                while(treeWalk.next()) {
+                    add(histories, treeWalk.getPathString(), commit, treeWalk, 1);
+                }
+            }
+            return true;
+        } finally {
+            treeWalk.release();
+            walk.release();
+        }
+    }
+
+    /**
+     * Indexes every commit reachable from HEAD
+     * @param repository
+     * @param newHead
+     * @throws IOException
+     */
+    private void rebuild(Repository repository, ObjectId newHead) throws IOException {
+        histories.clear();
+        RevWalk walk = new RevWalk(repository);
+        TreeWalk treeWalk = new TreeWalk(repository);
+        try {
+            walk.setRetainBody(false);
+            // children must be visited before their parents to know which paths reach each commit
+            walk.sort(RevSort.TOPO);
+            walk.sort(RevSort.COMMIT_TIME_DESC, true);
+            RevCommit start = walk.parseCommit(newHead);
+            walk.markStart(start);
+            treeWalk.setRecursive(true);
+
+            Map<String, List<Entry>> newestFirst = new HashMap<>();
+            Map<RevCommit, Reach> pending = new HashMap<>();
+            pending.put(start, Reach.ALL);
+            RevCommit commit;
+            while((commit = walk.next()) != null) {
+                Reach reach = pending.remove(commit);
+                if(reach == null) continue;
+                RevCommit[] parents = commit.getParents();
+                for(RevCommit p:parents) walk.parseHeaders(p);
+
+                if(parents.length == 0) {
+                    treeWalk.setFilter(TreeFilter.ALL);
+                    treeWalk.reset(commit.getTree());
+                    while(treeWalk.next()) {
+                        String path = treeWalk.getPathString();
+                        if(reach.contains(path)) add(newestFirst, path, commit, treeWalk, 0);
+                    }
+                } else if(parents.length == 1) {
+                    treeWalk.setFilter(TreeFilter.ANY_DIFF);
+                    treeWalk.reset(parents[0].getTree(), commit.getTree());
+                    while(treeWalk.next()) {
+                        String path = treeWalk.getPathString();
+                        if(reach.contains(path)) add(newestFirst, path, commit, treeWalk, 1);
+                    }
+                    enqueue(pending, parents[0], reach);
+                } else {
+                    indexMerge(treeWalk, commit, parents, reach, newestFirst, pending);
+                }
+            }
+
+            for(Map.Entry<String, List<Entry>> e:newestFirst.entrySet()) {
+                Collections.reverse(e.getValue());
+                histories.put(e.getKey(), e.getValue());
+            }
+        } finally {
+            treeWalk.release();
+            walk.release();
+        }
+    }
+
+    /**
+     * Indexes a merge commit.
+     * A path that is unchanged from one of the parents is only followed into that parent.
+     * A path that differs from every parent is recorded against the merge and followed into
+     * every parent that contains it.
+     */
+    private static void indexMerge(TreeWalk treeWalk, RevCommit commit, RevCommit[] parents, Reach reach,
+                                   Map<String, List<Entry>> newestFirst, Map<RevCommit, Reach> pending) throws IOException {
+        int self = parents.length;
+        ObjectId[] trees = new ObjectId[parents.length + 1];
+        for(int i = 0; i < parents.length; i ++) trees[i] = parents[i].getTree();
+        trees[self] = commit.getTree();
+
+        // paths that are not followed into the first parent and paths that are followed into the others
+        Set<String> leaveFirst = new HashSet<>();
+        List<Set<String>> follow = new ArrayList<>();
+        for(int i = 0; i < parents.length; i ++) follow.add(new HashSet<String>());
+
+        treeWalk.setFilter(TreeFilter.ANY_DIFF);
+        treeWalk.reset(trees);
+        while(treeWalk.next()) {
+            String path = treeWalk.getPathString();
+            int mode = treeWalk.getRawMode(self);
+            int same = -1;
+            for(int i = 0; i < parents.length; i ++) {
+                if(treeWalk.getRawMode(i) == mode && treeWalk.idEqual(i, self)) {
+                    same = i;
+                    break;
+                }
+            }
+            if(same >= 0) {
+                if(same > 0) {
+                    leaveFirst.add(path);
+                    follow.get(same).add(path);
+                }
+                continue;
+            }
+
+            if(reach.contains(path)) add(newestFirst, path, commit, treeWalk, self);
+            for(int i = 0; i < parents.length; i ++) {
+                // a parent without the file does not contribute to its history
+                boolean added = treeWalk.getRawMode(i) == 0 && mode != 0;
+                if(i == 0) {
+                    if(added) leaveFirst.add(path);
+                } else if(!added) {
+                    follow.get(i).add(path);
+                }
+            }
+        }
+
+        enqueue(pending, parents[0], reach.remove(leaveFirst));
+        for(int i = 1; i < parents.length; i ++) {
+            enqueue(pending, parents[i], reach.retain(follow.get(i)));
+        }
+    }
+
+    private static void enqueue(Map<RevCommit, Reach> pending, RevCommit parent, Reach reach) {
+        if(reach.isEmpty()) return;
+        Reach existing = pending.get(parent);
+        pending.put(parent, existing == null ? reach : existing.union(reach));
+    }
+
+    private static void add(Map<String, List<Entry>> histories, String path, RevCommit commit, TreeWalk treeWalk, int tree) {
+        List<Entry> history = histories.get(path);
+        if(history == null) {
+            history = new ArrayList<>();
+            histories.put(path, history);
+        }
+        ObjectId blob = treeWalk.getRawMode(tree) != 0 ? treeWalk.getObjectId(tree) : null;
+        history.add(new Entry(commit, blob));
+    }
+
+    /**
+     * A commit that changed a file
+     */
+    public static class Entry {
+        public final RevCommit commit;
+        public final ObjectId blob;
+
+        /**
+         * @param commit the commit
+         * @param blob the contents of the file after the commit or null if the file was deleted
+         */
+        public Entry(RevCommit commit, ObjectId blob) {
+            this.commit = commit;
+            this.blob = blob;
+        }
+
+        /**
+         * Checks if this entry belongs to a commit
+         * @param id
+         * @return
+         */
+        public boolean isCommit(AnyObjectId id) {
+            return commit.equals(id);
+        }
+    }
+
+    /**
+     * The set of paths whose history passes through a commit.
+     * This is either every path except some or a specific set of paths.
+     */
+    private static class Reach {
+        static final Reach ALL = new Reach(true, Collections.<String>emptySet());
+
+        private final boolean except;
+        private final Set<String> paths;
+
+        private Reach(boolean except, Set<String> paths) {
+            this.except = except;
+            this.paths = paths;
+        }
+
+        boolean contains(String path) {
+            return except != paths.contains(path);
+        }
+
+        boolean isEmpty() {
+            return !except && paths.isEmpty();
+        }
+
+        Reach remove(Set<String> removed) {
+            if(removed.isEmpty()) return this;
+            Set<String> result = new HashSet<>(paths);
+            if(except) {
+                result.addAll(removed);
+            } else {
+                result.removeAll(removed);
+            }
+            return new Reach(except, result);
+        }
+
+        Reach retain(Set<String> retained) {
+            Set<String> result = new HashSet<>();
+            for(String path:retained) {
+                if(contains(path)) result.add(path);
+            }
+            return new Reach(false, result);
+        }
+
+        Reach union(Reach other) {
+            Set<String> result;
+            if(except && other.except) {
+                result = new HashSet<>(paths);
+                result.retainAll(other.paths);
+                return new Reach(true, result);
+            } else if(except || other.except) {
+                Reach all = except ? this : other;
+                Reach some = except ? other : this;
+                result = new HashSet<>(all.paths);
+                result.removeAll(some.paths);
+                return new Reach(true, result);
+            } else {
+                result = new HashSet<>(paths);
+                result.addAll(other.paths);
+                return new Reach(false, result);
+            }
+        }
+    }
+}
@@ -60,7 +60,7 @@ public class MergeConflictsHandler {
     }
 
     /**
-     * search for first merge conflict - We need this to double check that there is a conflict in any chunks
+     * Checks the conflict index for merge conflicts - We need this to double check that there is a conflict in any chunks
      *
      * @param targetTranslationId
      * @return
@@ -78,38 +78,11 @@ public class MergeConflictsHandler {
             return false;
         }
 
-        ProjectTranslation pt = targetTranslation.getProjectTranslation();
-        if(pt == null) {
-            return false;
-        }
-
-        if(isMergeConflicted(pt.getTitle())) {
-            return true;
-        }
-
-        ChapterTranslation[] chapters = targetTranslation.getChapterTranslations();
-        for(ChapterTranslation ct:chapters) {
-            if(isMergeConflicted(ct.title)) {
-                return true;
-            }
-
-            if(isMergeConflicted(ct.reference)) {
-                return true;
-            }
-
-            FrameTranslation[] frames = targetTranslation.getFrameTranslations(ct.id, TranslationFormat.DEFAULT);
-            for (FrameTranslation frame : frames) {
-                if (isMergeConflicted(frame.body)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return targetTranslation.getConflictIndex().size() > 0;
     }
 
     /**
-     * check the whole project to see if there is actually a chunk conflict
+     * check the project to see if there is actually a chunk conflict
      * @param targetTranslationId
      * @param listener
      */
@@ -0,0 +1,66 @@
+package com.door43.translationstudio.core
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import com.door43.util.FileUtilities
+import java.io.File
+import java.io.FileOutputStream
+
+/**
+ * Keeps copies of the images printed in pdfs scaled down to the width of the page.
+ * The frame images are much larger than they are printed, so embedding the originals makes
+ * the pdf very large and slow to write. The scaled copies are kept between exports.
+ */
+class PdfImageCache(private val cacheDir: File) {
+
+    /**
+     * Returns a copy of the image that is no wider than the width.
+     * The original image is returned if it is already small enough or it cannot be scaled.
+     * @param source the original image
+     * @param width the maximum width in pixels
+     * @return
+     */
+    @Synchronized
+    fun get(source: File, width: Int): File {
+        val cached = File(cacheDir, "${source.nameWithoutExtension}-$width.jpg")
+        if (cached.exists() && cached.lastModified() >= source.lastModified()) {
+            return cached
+        }
+
+        val bounds = BitmapFactory.Options()
+        bounds.inJustDecodeBounds = true
+        BitmapFactory.decodeFile(source.absolutePath, bounds)
+        if (bounds.outWidth <= width) return source
+
+        // decode a smaller bitmap first so the full image is never held in memory
+        val options = BitmapFactory.Options()
+        options.inSampleSize = 1
+        while (bounds.outWidth / (options.inSampleSize * 2) >= width) {
+            options.inSampleSize *= 2
+        }
+        val sampled = BitmapFactory.decodeFile(source.absolutePath, options) ?: return source
+        val height = sampled.height * width / sampled.width
+        val scaled = Bitmap.createScaledBitmap(sampled, width, height, true)
+        if (scaled != sampled) sampled.recycle()
+
+        cacheDir.mkdirs()
+        val tempFile = File(cacheDir, cached.name + ".tmp")
+        try {
+            FileOutputStream(tempFile).use { output ->
+                scaled.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output)
+            }
+        } finally {
+            scaled.recycle()
+        }
+        FileUtilities.deleteQuietly(cached)
+        if (!tempFile.renameTo(cached)) {
+            FileUtilities.deleteQuietly(tempFile)
+            return source
+        }
+        return cached
+    }
+
+    companion object {
+        private const val JPEG_QUALITY = 85
+    }
+}
@@ -3,6 +3,7 @@ package com.door43.translationstudio.core
 import android.content.Context
 import android.graphics.Bitmap
 import android.graphics.BitmapFactory
+import com.door43.OnProgressListener
 import com.door43.data.IDirectoryProvider
 import com.door43.translationstudio.R
 import com.door43.translationstudio.ui.spannables.Span
@@ -65,6 +66,8 @@ class PdfPrinter(
     private val licenseBaseFont: BaseFont
     private var includeMedia = true
     private var includeIncomplete = true
+    private var boundMemory = true
+    private var flushRows = FLUSH_ROWS
     private val tocPlaceholder: MutableMap<String, PdfTemplate> = HashMap()
     private val pageByTitle: MutableMap<String, Int> = HashMap()
     private var writer: PdfWriter? = null
@@ -88,6 +91,7 @@ class PdfPrinter(
 
         targetLanguageFontSize = fontSize / RATIO_OF_SP_TO_PT
 
+        // iText caches the fonts by path and only embeds the glyphs that are used
         baseFont = BaseFont.createFont(fontPath, BaseFont.IDENTITY_H, BaseFont.EMBEDDED)
         titleFont = Font(baseFont, targetLanguageFontSize * 2.5f, Font.BOLD)
         chapterFont = Font(baseFont, targetLanguageFontSize * 2)
@@ -120,8 +124,23 @@ class PdfPrinter(
         this.includeIncomplete = include
     }
 
+    /**
+     * Write the rows of each chapter to the pdf as they are added instead of keeping the whole chapter in memory
+     * @param bound
+     * @param flushRows the number of rows that are kept before they are written
+     */
+    fun boundMemory(bound: Boolean, flushRows: Int = FLUSH_ROWS) {
+        this.boundMemory = bound
+        this.flushRows = flushRows
+    }
+
+    /**
+     * Prints the translation to a temporary pdf file
+     * @param progressListener receives the progress as each chapter is printed
+     * @return the pdf file
+     */
     @Throws(Exception::class)
-    fun print(): File {
+    fun print(progressListener: OnProgressListener? = null): File {
         val tempFile = directoryProvider.createTempFile(translation.id, ".pdf")
 
         val document = Document(
@@ -141,7 +160,7 @@ class PdfPrinter(
             addTitlePage(document)
             addLicensePage(document)
             addTOC(document)
-            addContent(document)
+            addContent(document, progressListener)
             document.close()
         }
 
@@ -362,19 +381,22 @@ class PdfPrinter(
     /**
      * Adds the content of the book
      * @param document
+     * @param progressListener
      */
     @Throws(DocumentException::class, IOException::class)
-    private fun addContent(document: Document) {
+    private fun addContent(document: Document, progressListener: OnProgressListener?) {
         val chapterTranslations = translation.chapterTranslations
-        val chapterCount = chapterTranslations.size + 1
-        val increments = 1.0 / chapterCount
-        var progress = 0.0
-        for (c in chapterTranslations) {
+        val chapterCount = chapterTranslations.size
+        val printing = context.resources.getString(R.string.printing)
+        val imageCache = PdfImageCache(File(directoryProvider.cacheDir, IMAGE_CACHE_DIR))
+        val imageWidth = (pageWidth(document) / 72 * IMAGE_DPI).toInt()
+        for ((index, c) in chapterTranslations.withIndex()) {
+            progressListener?.onProgress(index, chapterCount, printing + chapterTitle(c))
+
             val table = PdfPTable(1)
             table.widthPercentage = 100f
-
-            // TODO send progress via listener or callback
-            // task?.updateProgress(increments.let { progress += it; progress })
+            // rows are written to the document as they are added so the chapter is not kept in memory
+            table.isComplete = !boundMemory
 
             val chapter0 = (Util.strToInt(c.id, 0) == 0)
             if (!chapter0) { // if chapter 00, then skip title since that was already printed as first page.
@@ -413,7 +435,13 @@ class PdfPrinter(
                                         table
                                     ) // add space between text above and image below
                                 }
-                                addImage(document, table, imageFile.absolutePath)
+                                val scaledFile = try {
+                                    imageCache.get(imageFile, imageWidth)
+                                } catch (e: Exception) {
+                                    e.printStackTrace()
+                                    imageFile
+                                }
+                                addImage(document, table, scaledFile.absolutePath)
                             }
                         } catch (e: Exception) {
                             e.printStackTrace()
@@ -427,6 +455,10 @@ class PdfPrinter(
                         addBidiTextToTable(16, body, this.bodyFont, table)
                     }
                 }
+                if (boundMemory && table.size() >= flushRows) {
+                    // the rows are removed from the table once they are written
+                    document.add(table)
+                }
             }
 
             // chapter reference
@@ -435,8 +467,10 @@ class PdfPrinter(
                 addBidiTextToTable(16, c.reference, subFont, table)
             }
 
+            table.isComplete = true
             document.add(table)
         }
+        progressListener?.onProgress(chapterCount, chapterCount, printing)
     }
 
     private fun addUSFM(usfm: String, table: PdfPTable) {
@@ -764,6 +798,9 @@ class PdfPrinter(
         private const val VERTICAL_PADDING = 72.0f // 1 inch
         private const val HORIZONTAL_PADDING = 72.0f // 1 inch
         const val RATIO_OF_SP_TO_PT: Float = 2.5f
+        private const val IMAGE_CACHE_DIR = "pdf_images"
+        private const val IMAGE_DPI = 150
+        private const val FLUSH_ROWS = 20
         private fun addEmptyLine(paragraph: Paragraph, number: Int) {
             for (i in 0 until number) {
                 paragraph.add(Paragraph(" "))
@@ -28,7 +28,11 @@ import java.io.File
 import java.io.FileInputStream
 import java.io.InputStream
 import java.util.Locale
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 import java.util.regex.Pattern
+import kotlin.math.max
+import kotlin.math.min
 
 /**
  * For processing USFM input file or zip files into importable package.
@@ -58,6 +62,12 @@ class ProcessUSFM {
     private val sourceFiles = arrayListOf<File>()
     private val chunks: HashMap<String, List<String>> = hashMapOf()
 
+    /** keys of [chunks] by chapter number so chapters are found regardless of zero padding */
+    private val chapterKeys: HashMap<Int, String> = hashMapOf()
+
+    /** verse to chunk maps of the chapters by chapter id */
+    private val chunkMaps: HashMap<String, VerseChunkMap> = hashMapOf()
+
     /** get array of the imported project folders */
     val importProjects: List<File> = arrayListOf()
     private val errors = arrayListOf<String>()
@@ -77,6 +87,15 @@ class ProcessUSFM {
     val booksMissingNames: List<MissingNameItem> = arrayListOf()
     private val chapters = arrayListOf<String>()
 
+    /** the number of books that may be processed at the same time */
+    private var parallelism = 1
+    /** the books claimed by the workers of a parallel import */
+    private var bookClaims: BookClaims? = null
+    /** set when another worker is importing the same book */
+    private var deferred = false
+    /** the progress of each book in a parallel import */
+    private var bookProgress: FloatArray? = null
+
     private constructor(
         context: Context,
         directoryProvider: IDirectoryProvider,
@@ -84,7 +103,8 @@ class ProcessUSFM {
         library: Door43Client,
         assetsProvider: AssetsProvider,
         targetLanguage: TargetLanguage?,
-        progressListener: OnProgressListener?
+        progressListener: OnProgressListener?,
+        parallelism: Int = 1
     ) {
         this.context = context
         this.directoryProvider = directoryProvider
@@ -93,6 +113,32 @@ class ProcessUSFM {
         this.assetsProvider = assetsProvider
         this.targetLanguage = targetLanguage
         this.progressListener = progressListener
+        this.parallelism = parallelism
+    }
+
+    /**
+     * creates a worker that processes a single book of a parallel import
+     * @param parent the import the book belongs to
+     * @param bookClaims the books claimed by the other workers. If null the book is always processed.
+     * @param progressListener
+     */
+    private constructor(
+        parent: ProcessUSFM,
+        bookClaims: BookClaims?,
+        progressListener: OnProgressListener
+    ): this(
+        parent.context,
+        parent.directoryProvider,
+        parent.profile,
+        parent.library,
+        parent.assetsProvider,
+        parent.targetLanguage,
+        progressListener
+    ) {
+        this.tempDir = parent.tempDir
+        this.tempSrc = parent.tempSrc
+        this.projectsFolder = parent.projectsFolder
+        this.bookClaims = bookClaims
     }
 
     /**
@@ -108,7 +154,8 @@ class ProcessUSFM {
         assetsProvider: AssetsProvider,
         targetLanguage: TargetLanguage,
         file: File,
-        progressListener: OnProgressListener?
+        progressListener: OnProgressListener?,
+        parallelism: Int
     ): this(
         context,
         directoryProvider,
@@ -116,7 +163,8 @@ class ProcessUSFM {
         library,
         assetsProvider,
         targetLanguage,
-        progressListener
+        progressListener,
+        parallelism
     ) {
         createTempFolders()
         readFile(file)
@@ -130,7 +178,8 @@ class ProcessUSFM {
         assetsProvider: AssetsProvider,
         targetLanguage: TargetLanguage,
         uri: Uri,
-        progressListener: OnProgressListener?
+        progressListener: OnProgressListener?,
+        parallelism: Int
     ): this(
         context,
         directoryProvider,
@@ -138,7 +187,8 @@ class ProcessUSFM {
         library,
         assetsProvider,
         targetLanguage,
-        progressListener
+        progressListener,
+        parallelism
     ) {
         createTempFolders()
         readUri(uri)
@@ -152,7 +202,8 @@ class ProcessUSFM {
         assetsProvider: AssetsProvider,
         targetLanguage: TargetLanguage,
         rcPath: String,
-        progressListener: OnProgressListener?
+        progressListener: OnProgressListener?,
+        parallelism: Int
     ): this(
         context,
         directoryProvider,
@@ -160,7 +211,8 @@ class ProcessUSFM {
         library,
         assetsProvider,
         targetLanguage,
-        progressListener
+        progressListener,
+        parallelism
     ) {
         createTempFolders()
         readResourceFile(rcPath)
@@ -222,6 +274,7 @@ class ProcessUSFM {
         private var file: File? = null
         private var uri: Uri? = null
         private var rcPath: String? = null
+        private var parallelism = DEFAULT_PARALLELISM
 
         fun fromFile(
             targetLanguage: TargetLanguage,
@@ -256,6 +309,16 @@ class ProcessUSFM {
             return this
         }
 
+        /**
+         * sets how many books of a zip file may be processed at the same time
+         * @param threads
+         * @return
+         */
+        fun setParallelism(threads: Int): Builder {
+            this.parallelism = max(1, threads)
+            return this
+        }
+
         /**
          * rebuild object from JSON string
          * @param jsonStr
@@ -303,7 +366,8 @@ class ProcessUSFM {
                         assetsProvider,
                         targetLanguage!!,
                         file!!,
-                        progressListener
+                        progressListener,
+                        parallelism
                     )
                     targetLanguage != null && uri != null -> ProcessUSFM(
                         context,
@@ -313,7 +377,8 @@ class ProcessUSFM {
                         assetsProvider,
                         targetLanguage!!,
                         uri!!,
-                        progressListener
+                        progressListener,
+                        parallelism
                     )
                     targetLanguage != null && rcPath != null -> ProcessUSFM(
                         context,
@@ -323,7 +388,8 @@ class ProcessUSFM {
                         assetsProvider,
                         targetLanguage!!,
                         rcPath!!,
-                        progressListener
+                        progressListener,
+                        parallelism
                     )
                     else -> null
                 }
@@ -593,18 +659,22 @@ class ProcessUSFM {
 
             Logger.i(TAG, "found files: " + TextUtils.join("\n", sourceFiles))
 
-            currentBook = 0
-            while (currentBook < sourceFiles.size) {
-                currentChapter = 0
-                val file = sourceFiles[currentBook]
-                val name = file.name
-                updateStatus(R.string.found_book, name)
-                success = processBook(file)
-                if (!success) {
-                    addError(R.string.could_not_parse, getShortFilePath(file.toString()))
+            if (parallelism > 1 && sourceFiles.size > 1) {
+                successOverall = processBooksInParallel()
+            } else {
+                currentBook = 0
+                while (currentBook < sourceFiles.size) {
+                    currentChapter = 0
+                    val file = sourceFiles[currentBook]
+                    val name = file.name
+                    updateStatus(R.string.found_book, name)
+                    success = processBook(file)
+                    if (!success) {
+                        addError(R.string.could_not_parse, getShortFilePath(file.toString()))
+                    }
+                    successOverall = successOverall && success
+                    currentBook++
                 }
-                successOverall = successOverall && success
-                currentBook++
             }
             currentBook = sourceFiles.size - 1 // set to last book
         } catch (e: Exception) {
@@ -618,6 +688,107 @@ class ProcessUSFM {
         return successOverall
     }
 
+    /**
+     * process the books on a pool of workers.
+     * The results of the books are merged in the order of [sourceFiles] so they are the same as
+     * when the books are processed one at a time.
+     *
+     * @return
+     */
+    private fun processBooksInParallel(): Boolean {
+        val bookCount = sourceFiles.size
+        val claims = BookClaims()
+        bookProgress = FloatArray(bookCount)
+
+        val executor = Executors.newFixedThreadPool(min(parallelism, bookCount))
+        val workers = try {
+            sourceFiles.mapIndexed { index, file ->
+                executor.submit(Callable { processBookWorker(index, file, claims) })
+            }.map { it.get() }
+        } finally {
+            executor.shutdown()
+        }
+
+        var successOverall = true
+        for ((index, result) in workers.withIndex()) {
+            var worker = result
+            if (worker.deferred || claims.isShared(worker.bookShortName)) {
+                // TRICKY: books that write to the same project are processed again in order
+                // so the last book wins just like it would when processed one at a time.
+                worker = processBookWorker(index, sourceFiles[index], null)
+            }
+            mergeBook(index, worker)
+            successOverall = successOverall && worker.isProcessSuccess
+        }
+        bookProgress = null
+        return successOverall
+    }
+
+    /**
+     * process a single book of a parallel import
+     * @param index the position of the book in [sourceFiles]
+     * @param file
+     * @param claims the books claimed by the other workers
+     * @return the worker that processed the book
+     */
+    private fun processBookWorker(index: Int, file: File, claims: BookClaims?): ProcessUSFM {
+        val worker = ProcessUSFM(this, claims) { value, total, message ->
+            onBookProgress(index, value.toFloat() / total, message)
+        }
+        worker.updateStatus(R.string.found_book, file.name)
+        val success = worker.processBook(file)
+        if (!success && !worker.deferred) {
+            worker.addError(R.string.could_not_parse, getShortFilePath(file.toString()))
+        }
+        worker.isProcessSuccess = success
+        onBookProgress(index, 1f, null)
+        return worker
+    }
+
+    /**
+     * combines the progress of the books in a parallel import
+     * @param index the position of the book in [sourceFiles]
+     * @param done the fraction of the book that has been processed
+     * @param message
+     */
+    private fun onBookProgress(index: Int, done: Float, message: String?) {
+        val progress = bookProgress ?: return
+        synchronized(progress) {
+            progress[index] = max(progress[index], done)
+            val total = 100
+            val percentDone = Math.round(total * progress.sum() / progress.size)
+            if (message != null) {
+                progressListener?.onProgress(percentDone, total, message)
+            }
+        }
+    }
+
+    /**
+     * adds the results of a book to the results of this import
+     * @param index the position of the book in [sourceFiles]
+     * @param worker the worker that processed the book
+     */
+    private fun mergeBook(index: Int, worker: ProcessUSFM) {
+        currentBook = index
+        normalizeBookQueue()
+        normalizeMessageQueue()
+        foundBooks[index] = worker.foundBooks.getOrElse(0) { "" }
+        errors[index] = worker.errors.getOrElse(0) { "" }
+
+        booksMissingNames as ArrayList
+        booksMissingNames.addAll(worker.booksMissingNames)
+        importProjects as ArrayList
+        importProjects.addAll(worker.importProjects)
+
+        bookName = worker.bookName
+        bookShortName = worker.bookShortName
+        chapter = worker.chapter
+        currentChapter = worker.currentChapter
+        chapterCount = worker.chapterCount
+        tempDest = worker.tempDest
+        projectFolder = worker.projectFolder
+    }
+
     /**
      * import single file
      *
@@ -781,6 +952,12 @@ class ProcessUSFM {
 
             bookShortName = bookShortName!!.lowercase(Locale.getDefault())
 
+            if (bookClaims?.claim(bookShortName!!) == false) {
+                // another worker is importing this book so it will be processed afterwards
+                deferred = true
+                return false
+            }
+
             setBookName(bookShortName!!, description)
 
             if (!hasVerses) {
@@ -817,6 +994,7 @@ class ProcessUSFM {
 
                 chunks.clear()
                 chunks.putAll(sortedChunks)
+                indexChapters()
                 chapterCount = chapters.size
 
                 success = extractChaptersFromBook(book)
@@ -901,7 +1079,8 @@ class ProcessUSFM {
     }
 
     /**
-     * extract chapters in book
+     * extract chapters in book.
+     * Each chapter is referenced by its offsets in the book text rather than copied out of it.
      *
      * @param text
      * @return
@@ -910,10 +1089,11 @@ class ProcessUSFM {
         chapter = null
         lastChapter = 0
 
+        // remove CRLF and replace with newlines
+        val book = normalizeLineEndings(text)
         val pattern = PATTERN_CHAPTER_NUMBER_MARKER
-        val matcher = pattern.matcher(text)
+        val matcher = pattern.matcher(book)
         var lastIndex = 0
-        var section: CharSequence
         var successOverall = true
         var success: Boolean
         var foundChapter = false
@@ -921,9 +1101,6 @@ class ProcessUSFM {
         while (matcher.find()) {
             foundChapter = true
 
-            // get section before this chapter marker
-            section = text.subSequence(lastIndex, matcher.start())
-
             val chapterNumber = matcher.group(1) ?: "0" // chapter number for next section
 
             currentChapter = chapterNumber.toInt()
@@ -938,7 +1115,13 @@ class ProcessUSFM {
             val expectedChapter = lastChapter + 1
             if (currentChapter != expectedChapter) { // if out of order
                 if (currentChapter > expectedChapter) { // if gap
-                    success = processChapterGap(section, lastChapter, currentChapter)
+                    success = processChapterGap(
+                        book,
+                        lastIndex,
+                        matcher.start(),
+                        lastChapter,
+                        currentChapter
+                    )
                     lastChapter = currentChapter - 1
                 } else {
                     Logger.e(TAG, "out of order chapter $chapter after $lastChapter")
@@ -949,8 +1132,8 @@ class ProcessUSFM {
                     )
                     return false
                 }
-            } else {
-                success = breakUpChapter(section, chapter)
+            } else { // get section before this chapter marker
+                success = breakUpChapter(book, lastIndex, matcher.start(), chapter)
             }
 
             successOverall = success
@@ -971,8 +1154,7 @@ class ProcessUSFM {
         }
 
         if (successOverall) {
-            section = text.subSequence(lastIndex, text.length) // get last section
-            success = breakUpChapter(section, chapter)
+            success = breakUpChapter(book, lastIndex, book.length, chapter) // get last section
             lastChapter = chapter!!.toInt()
             successOverall = success
         }
@@ -981,7 +1163,7 @@ class ProcessUSFM {
             currentChapter = chapter!!.toInt()
             if (chapter == null || currentChapter != chapters.size) {
                 if (currentChapter < chapters.size) {
-                    success = processChapterGap("", currentChapter + 1, chapters.size + 1)
+                    success = processChapterGap("", 0, 0, currentChapter + 1, chapters.size + 1)
                     successOverall = success
                 } else {
                     val lastChapter = if (chapter != null) chapter else "(null)"
@@ -999,29 +1181,33 @@ class ProcessUSFM {
 
     /**
      * handle missing chapters in book
-     * @param section
+     * @param text the book text
+     * @param start the offset of the section in the book text
+     * @param end the end offset of the section in the book text
      * @param missingStart
      * @param missingEnd
      * @return
      */
     private fun processChapterGap(
-        section: CharSequence,
+        text: String,
+        start: Int,
+        end: Int,
         missingStart: Int,
         missingEnd: Int
     ): Boolean {
-        var start = missingStart
-        if (start <= 0) { // if first chapter is missing, then we start processing there
-            start = 1
-            Logger.w(TAG, "missing chapter $start")
-            addWarning(R.string.missing_chapter_n, start.toString())
+        var firstChapter = missingStart
+        if (firstChapter <= 0) { // if first chapter is missing, then we start processing there
+            firstChapter = 1
+            Logger.w(TAG, "missing chapter $firstChapter")
+            addWarning(R.string.missing_chapter_n, firstChapter.toString())
         }
 
-        val success = breakUpChapter(section, start.toString())
+        val success = breakUpChapter(text, start, end, firstChapter.toString())
 
-        for (i in start + 1 until missingEnd) { // skip missing gaps
+        for (i in firstChapter + 1 until missingEnd) { // skip missing gaps
             Logger.w(TAG, "missing chapter $i")
             addWarning(R.string.missing_chapter_n, i.toString())
-            breakUpChapter("", i.toString())
+            breakUpChapter("", 0, 0, i.toString())
         }
         return success
     }
@@ -1029,18 +1215,24 @@ class ProcessUSFM {
     /**
      * break up chapter into sections based on chunk list
      *
-     * @param text
+     * @param text the book text with normalized line endings
+     * @param start the offset of the chapter in the book text
+     * @param end the end offset of the chapter in the book text
      * @return
      */
-    private fun breakUpChapter(text: CharSequence, currentChapterStr: String?): Boolean {
+    private fun breakUpChapter(
+        text: String,
+        start: Int,
+        end: Int,
+        currentChapterStr: String?
+    ): Boolean {
         var successOverall = true
         var success = true
 
-        // remove CRLF and replace with newlines
-        val cleanedString = text.toString().replace("\r\n".toRegex(), "\n")
-
         if (!isMissing(currentChapterStr)) {
             try {
+                val verses = ChapterVerses(text, start, end)
+
                 val chapter = getChapterFolderName(currentChapterStr)
                 if (null == chapter) {
                     addError(R.string.could_not_find_chapter, currentChapterStr)
@@ -1062,13 +1254,13 @@ class ProcessUSFM {
                 var i = 0
                 while (i < verseBreaks.size && success) {
                     val first = verseBreaks[i]
-                    success = extractVerses(chapter, cleanedString, lastFirst, first)
+                    success = extractVerses(chapter, verses, lastFirst, first)
                     successOverall = success
                     lastFirst = first
                     i++
                 }
                 if (successOverall) {
-                    success = extractVerses(chapter, cleanedString, lastFirst, END_MARKER.toString())
+                    success = extractVerses(chapter, verses, lastFirst, END_MARKER.toString())
                     successOverall = success
                 }
             } catch (e: Exception) {
@@ -1119,12 +1311,11 @@ class ProcessUSFM {
      * @return
      */
     private fun getChunkFileName(findChapter: String, firstVerse: String): String {
-        val chunks = getVerseBreaks(findChapter)
-        for (i in chunks.indices) {
-            val firstVerseFile = chunks[i]
-            if (Util.strToInt(firstVerse, 0) == Util.strToInt(firstVerseFile, 0)) {
-                return getRightFileNameLength(firstVerseFile)
-            }
+        val chunkMap = chunkMaps.getOrPut(findChapter) {
+            VerseChunkMap(getVerseBreaks(findChapter))
+        }
+        chunkMap.getChunkStartingAt(firstVerse)?.let {
+            return getRightFileNameLength(it)
         }
 
         return firstVerse // if not found, use same as chapter id
@@ -1136,67 +1327,58 @@ class ProcessUSFM {
      * @return
      */
     private fun getVerseBreaks(findChapter: String): List<String> {
-        var chapter = findChapter
-        if (chunks.containsKey(chapter)) {
-            return chunks[chapter]!!
-        }
+        chunks[findChapter]?.let { return it }
 
-        // Add first leading zero and search
-        chapter = "0$chapter"
-        if (chunks.containsKey(chapter)) {
+        // ignore zero padding
+        chapterKeys[Util.strToInt(findChapter, -1)]?.let { chapter ->
             return chunks[chapter]!!
         }
 
-        // Add second leading zero and search
-        chapter = "0$chapter"
-        if (chunks.containsKey(chapter)) {
-            return chunks[chapter]!!
-        }
+        addError(R.string.could_not_find_chapter, findChapter)
+        return listOf()
+    }
 
-        //try removing leading spaces
-        chapter = findChapter
-        while (chapter.isNotEmpty() && chapter[0] == '0') {
-            chapter = chapter.substring(1)
-            if (chunks.containsKey(chapter)) {
-                return chunks[chapter]!!
+    /**
+     * index the chunk lists by chapter number
+     */
+    private fun indexChapters() {
+        chapterKeys.clear()
+        chunkMaps.clear()
+        for (chapter in chunks.keys) {
+            val number = Util.strToInt(chapter, -1)
+            if (number >= 0) {
+                chapterKeys.getOrPut(number) { chapter }
             }
         }
-
-        addError(R.string.could_not_find_chapter, findChapter)
-        return listOf()
     }
 
     /**
      * extract verses in range of start to end into new section
      *
      * @param chapter
-     * @param text
+     * @param verses the verse markers of the chapter
      * @param start
      * @param end
      * @return
      */
     private fun extractVerses(
         chapter: String,
-        text: CharSequence,
+        verses: ChapterVerses,
         start: String?,
         end: String
     ): Boolean {
         if (start == null) { // skip over stuff before verse 1 for now
             if (!isMissing(chapter)) {
-                val pattern = PATTERN_USFM_VERSE_SPAN
-                val matcher = pattern.matcher(text)
-                if (matcher.find()) {
-                    val verseStart = matcher.start()
-                    if (verseStart > 0) {
+                if (verses.size > 0) {
+                    val verseStart = verses.start(0)
+                    if (verseStart > verses.textStart) {
                         var chapterTitle: String? = null
-                        var chapterTitleEnd = 0
-                        val chapterTitlePattern = PATTERN_CHAPTER_TITLE_MARKER
-                        val chapterTitleMatcher = chapterTitlePattern.matcher(text)
+                        val chapterTitleMatcher = PATTERN_CHAPTER_TITLE_MARKER.matcher(verses.text)
+                            .region(verses.textStart, verses.textEnd)
                         if (chapterTitleMatcher.find()) {
                             chapterTitle = chapterTitleMatcher.group(1)?.let {
                                 removeKnownUSFMTags(it)
                             }
-                            chapterTitleEnd = chapterTitleMatcher.end(1)
                         }
 
                         getChapterFolderName(chapter)?.let {
@@ -1210,14 +1392,14 @@ class ProcessUSFM {
 
         val startVerse = start.toInt()
         val endVerse = end.toInt()
-        return extractVerseRange(chapter, text, startVerse, endVerse, start)
+        return extractVerseRange(chapter, verses, startVerse, endVerse, start)
     }
 
     /**
      * extract verses in range of start to end into new section
      *
      * @param chapter
-     * @param text
+     * @param verses the verse markers of the chapter
      * @param start
      * @param end
      * @param firstVerse
@@ -1225,7 +1407,7 @@ class ProcessUSFM {
      */
     private fun extractVerseRange(
         chapter: String,
-        text: CharSequence,
+        verses: ChapterVerses,
         start: Int,
         end: Int,
         firstVerse: String
@@ -1233,18 +1415,21 @@ class ProcessUSFM {
         var successOverall = true
         val success: Boolean
         if (!isMissing(chapter)) {
-            val pattern = PATTERN_USFM_VERSE_SPAN
-            val matcher = pattern.matcher(text)
-            var lastIndex = 0
-            var section = ""
+            val text = verses.text
+            var lastIndex = verses.textStart
+            val section = StringBuilder()
             var currentVerse = 0
             var foundVerseCount = 0
             var endVerseRange = 0
             var done = false
-            var matchesFound = false
+            val matchesFound = verses.size > 0
+            // TRICKY: only the text after the last verse before the range is kept, so it is
+            // split once we know which verse that is.
+            var pretextStart = -1
             var pretext: CharSequence = ""
-            while (matcher.find()) {
-                matchesFound = true
+            var next = 0
+            while (next < verses.size) {
+                var marker = next++
 
                 if (currentVerse >= end) {
                     done = true
@@ -1252,6 +1437,9 @@ class ProcessUSFM {
                 }
 
                 if (currentVerse >= start) {
+                    if (pretextStart >= 0) {
+                        pretext = splitAtVerseEnd(text, pretextStart, lastIndex).extra
+                    }
                     while (true) { // find the end of the section
                         if (endVerseRange > 0) {
                             foundVerseCount += (endVerseRange - currentVerse + 1)
@@ -1259,47 +1447,47 @@ class ProcessUSFM {
                             foundVerseCount++
                         }
 
-                        val verse = matcher.group(1)
-                        val verseRange = verse?.let(::getVerseRange) ?: break
+                        val verseRange = verses.verse(marker)?.let(::getVerseRange) ?: break
                         currentVerse = verseRange[0]
                         endVerseRange = verseRange[1]
 
-                        var results = splitAtVerseEnd(text, lastIndex, matcher.start())
-                        section = section + pretext + results.verse
+                        var results = splitAtVerseEnd(text, lastIndex, verses.start(marker))
+                        section.append(pretext).append(results.verse)
                         pretext = results.extra
-                        lastIndex = matcher.start() // update end of chunk
+                        lastIndex = verses.start(marker) // update end of chunk
 
                         if (currentVerse >= end) {
                             break
                         }
 
-                        val found = matcher.find()
-                        if (!found) { // we have reached the end, use this verse
-                            results = splitAtVerseEnd(text, lastIndex, text.length)
-                            section = section + pretext + results.verse
+                        if (next >= verses.size) { // we have reached the end, use this verse
+                            results = splitAtVerseEnd(text, lastIndex, verses.textEnd)
+                            section.append(pretext).append(results.verse)
                             pretext = ""
                             foundVerseCount++
                             break
                         }
+                        marker = next++
                     }
 
                     done = true
                     break
                 }
 
-                val verse = matcher.group(1)
-                val verseRange = verse?.let(::getVerseRange) ?: return false
+                val verseRange = verses.verse(marker)?.let(::getVerseRange) ?: return false
                 currentVerse = verseRange[0]
                 endVerseRange = verseRange[1]
 
-                val results = splitAtVerseEnd(text, lastIndex, matcher.start())
-                pretext = results.extra
-                lastIndex = matcher.start()
+                pretextStart = lastIndex
+                lastIndex = verses.start(marker)
             }
 
             if (!done && matchesFound && (currentVerse >= start) && (currentVerse < end)) {
-                val results = splitAtVerseEnd(text, lastIndex, text.length)
-                section = section + pretext + results.verse
+                if (pretextStart >= 0) {
+                    pretext = splitAtVerseEnd(text, pretextStart, lastIndex).extra
+                }
+                val results = splitAtVerseEnd(text, lastIndex, verses.textEnd)
+                section.append(pretext).append(results.verse)
             }
 
             if (start != 0) { // text before first verse is not a concern
@@ -1538,18 +1726,25 @@ class ProcessUSFM {
      * @return
      */
     private fun removePattern(text: CharSequence): String {
-        var out = ""
+        val out = StringBuilder(text.length)
         val matcher = PATTERN_SECTION_MARKER.matcher(text)
         var lastIndex = 0
         while (matcher.find()) {
-            out += text.subSequence(
-                lastIndex,
-                matcher.start()
-            ) // get section before this chunk marker
+            out.append(text, lastIndex, matcher.start()) // get section before this chunk marker
             lastIndex = matcher.end()
         }
-        out += text.subSequence(lastIndex, text.length) // get last section
-        return out
+        out.append(text, lastIndex, text.length) // get last section
+        return out.toString()
+    }
+
+    /**
+     * replaces CRLF line endings with newlines
+     * @param text
+     * @return
+     */
+    private fun normalizeLineEndings(text: CharSequence): String {
+        val str = text.toString()
+        return if (str.indexOf('\r') >= 0) str.replace("\r\n", "\n") else str
     }
 
     /**
@@ -1681,8 +1876,85 @@ class ProcessUSFM {
         return name
     }
 
+    /**
+     * The verse markers of a chapter.
+     * The chapter is scanned once and each verse is referenced by its offset in the book text
+     * so chunks can be extracted without scanning or copying the chapter again.
+     *
+     * @param text the book text
+     * @param textStart the offset of the chapter in the book text
+     * @param textEnd the end offset of the chapter in the book text
+     */
+    private class ChapterVerses(
+        val text: String,
+        val textStart: Int,
+        val textEnd: Int
+    ) {
+        private val starts = arrayListOf<Int>()
+        private val verses = arrayListOf<String?>()
+
+        init {
+            val matcher = PATTERN_USFM_VERSE_SPAN.matcher(text).region(textStart, textEnd)
+            while (matcher.find()) {
+                starts.add(matcher.start())
+                verses.add(matcher.group(1))
+            }
+        }
+
+        /** the number of verse markers */
+        val size: Int
+            get() = starts.size
+
+        /**
+         * returns the offset of a verse marker in the book text
+         * @param index
+         * @return
+         */
+        fun start(index: Int): Int = starts[index]
+
+        /**
+         * returns the verse (or verse range) of a verse marker
+         * @param index
+         * @return
+         */
+        fun verse(index: Int): String? = verses[index]
+    }
+
+    /**
+     * Keeps track of the books imported by the workers of a parallel import
+     */
+    private class BookClaims {
+        private val claimed = hashSetOf<String>()
+        private val shared = hashSetOf<String>()
+
+        /**
+         * claims a book for a worker
+         * @param book
+         * @return false if another worker has already claimed the book
+         */
+        @Synchronized
+        fun claim(book: String): Boolean {
+            if (claimed.add(book)) return true
+            shared.add(book)
+            return false
+        }
+
+        /**
+         * checks if more than one worker tried to claim a book
+         * @param book
+         * @return
+         */
+        @Synchronized
+        fun isShared(book: String?): Boolean {
+            return book != null && shared.contains(book)
+        }
+    }
+
     companion object {
         val TAG: String = ProcessUSFM::class.java.simpleName
+
+        /** the default number of books processed at the same time when importing a zip file */
+        val DEFAULT_PARALLELISM: Int = min(4, Runtime.getRuntime().availableProcessors())
         private const val CHAPTER_TITLE_MARKER: String = "\\\\cl\\s([^\\n]*)"
         val PATTERN_CHAPTER_TITLE_MARKER: Pattern = Pattern.compile(CHAPTER_TITLE_MARKER)
         val PATTERN_FOOTNOTE_MARKER: Pattern = Pattern.compile(USFMNoteSpan.PATTERN)
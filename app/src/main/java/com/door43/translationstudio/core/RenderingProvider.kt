@@ -6,13 +6,15 @@ import com.door43.translationstudio.rendering.Clickables
 import com.door43.translationstudio.rendering.DefaultRenderer
 import com.door43.translationstudio.rendering.HtmlRenderer
 import com.door43.translationstudio.rendering.LinkToHtmlRenderer
+import com.door43.translationstudio.rendering.RenderedTextCache
 import com.door43.translationstudio.rendering.RenderingGroup
 import com.door43.translationstudio.ui.spannables.Span
 import dagger.hilt.android.qualifiers.ApplicationContext
 import javax.inject.Inject
 
 class RenderingProvider @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    val renderedTextCache: RenderedTextCache
 ) {
 
     fun createDefaultRenderer(): DefaultRenderer {
@@ -25,8 +25,11 @@ import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.MergeCommand;
 import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.StatusCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -39,9 +42,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -637,10 +643,9 @@ public class TargetTranslation {
      * @return
      */
     public FrameTranslation getFrameTranslation(String chapterId, String frameId, TranslationFormat format) {
-        File frameFile = getFrameFile(chapterId, frameId);
-        if(frameFile.exists()) {
-            try {
-                String body = FileUtilities.readFileToString(frameFile);
+        try {
+            String body = getChunkStore().read(chapterId, frameId, getFrameFile(chapterId, frameId));
+            if(body != null) {
                 return RenderingProvider.Companion.getFrameTranslation(
                         frameId,
                         chapterId,
@@ -648,9 +653,9 @@ public class TargetTranslation {
                         format,
                         isFrameFinished(chapterId + "-" + frameId)
                 );
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
         // give empty translation
         return RenderingProvider.Companion.getFrameTranslation(frameId, chapterId, "", format, false);
@@ -662,24 +667,8 @@ public class TargetTranslation {
      * @return
      */
     public ChapterTranslation getChapterTranslation(String chapterSlug) {
-        File referenceFile = getChapterReferenceFile(chapterSlug);
-        File titleFile = getChapterTitleFile(chapterSlug);
-        String reference = "";
-        String title = "";
-        if(referenceFile.exists()) {
-            try {
-                reference = FileUtilities.readFileToString(referenceFile);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        if(titleFile.exists()) {
-            try {
-                title = FileUtilities.readFileToString(titleFile);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        String reference = readChunk(chapterSlug, "reference", getChapterReferenceFile(chapterSlug));
+        String title = readChunk(chapterSlug, "title", getChapterTitleFile(chapterSlug));
         return new ChapterTranslation(title, reference, chapterSlug, isChapterTitleFinished(chapterSlug), isChapterReferenceFinished(chapterSlug), getFormat());
     }
 
@@ -690,16 +679,136 @@ public class TargetTranslation {
      * @return
      */
     public ProjectTranslation getProjectTranslation() {
-        File titleFile = getProjectTitleFile();
-        String title = "";
-        if(titleFile.exists()) {
-            try {
-                title = FileUtilities.readFileToString(titleFile);
-            } catch (IOException e) {
-                e.printStackTrace();
+        String title = readChunk("front", "title", getProjectTitleFile());
+        return new ProjectTranslation(title, isProjectComponentFinished("title"));
+    }
+
+    /**
+     * Reads the text of a chunk file through the chunk store
+     * @param chapterSlug
+     * @param chunkSlug
+     * @param file
+     * @return the text or an empty string if the file does not exist
+     */
+    private String readChunk(String chapterSlug, String chunkSlug, File file) {
+        try {
+            String text = getChunkStore().read(chapterSlug, chunkSlug, file);
+            if(text != null) return text;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return "";
+    }
+
+    /**
+     * Returns the store that keeps the chunks of this target translation in memory
+     * @return
+     */
+    public ChunkStore getChunkStore() {
+        return ChunkStore.get(targetTranslationDir);
+    }
+
+    /**
+     * Discards the chunks kept in memory.
+     * This must be called after the files have been changed without using the save methods.
+     */
+    public void invalidateChunks() {
+        ChunkStore.invalidate(targetTranslationDir);
+    }
+
+    /**
+     * Updates the chunk store and conflict index after a chunk has been saved
+     * @param chapterSlug
+     * @param chunkSlug
+     * @param translatedText the saved text. Empty if the file was deleted
+     */
+    private void chunkSaved(String chapterSlug, String chunkSlug, String translatedText) {
+        getChunkStore().put(chapterSlug, chunkSlug, translatedText.isEmpty() ? null : translatedText);
+        ConflictIndex.get(targetTranslationDir).update(chapterSlug, chunkSlug,
+                MergeConflictsHandler.isMergeConflicted(translatedText));
+    }
+
+    /**
+     * Returns the index of the chunks that have merge conflicts.
+     * The first time this is called on a translation that was merged before the index existed
+     * all of the chunks will be checked.
+     *
+     * @return
+     */
+    public ConflictIndex getConflictIndex() {
+        ConflictIndex index = ConflictIndex.get(targetTranslationDir);
+        if(!index.isBuilt()) {
+            index.build(findConflictedChunks());
+        }
+        return index;
+    }
+
+    /**
+     * Records the paths that git reported as conflicted after a merge
+     * @param conflictedPaths paths relative to the target translation directory
+     */
+    public void addMergeConflicts(Collection<String> conflictedPaths) {
+        getConflictIndex().add(conflictedPaths);
+    }
+
+    /**
+     * Checks the chunks brought in by a merge for conflicts.
+     * Chunks may have been committed with conflicts so this is needed even when git reports
+     * that the merge was clean.
+     *
+     * @param oldHead the head commit before the merge
+     * @param result the result of the merge
+     */
+    public void updateMergeConflicts(ObjectId oldHead, MergeResult result) {
+        if(result == null || result.getMergedCommits() == null
+                || result.getMergeStatus() == MergeResult.MergeStatus.ALREADY_UP_TO_DATE) {
+            return;
+        }
+        try {
+            ConflictIndex index = getConflictIndex();
+            Repository repository = getRepo().getGit().getRepository();
+            for(ObjectId commit:result.getMergedCommits()) {
+                index.updateChanged(repository, oldHead, commit);
             }
+        } catch (Exception e) {
+            Logger.e(TAG, "Failed to check the merged chunks of " + getId() + " for conflicts", e);
+            ConflictIndex.invalidate(targetTranslationDir);
         }
-        return new ProjectTranslation(title, isProjectComponentFinished("title"));
+    }
+
+    /**
+     * Checks if a chunk has merge conflicts
+     * @param chapterSlug
+     * @param chunkSlug
+     * @return
+     */
+    public boolean hasMergeConflicts(String chapterSlug, String chunkSlug) {
+        return getConflictIndex().contains(chapterSlug, chunkSlug);
+    }
+
+    /**
+     * Reads every chunk to find the ones that have merge conflicts
+     * @return the paths of the conflicted chunks
+     */
+    private List<String> findConflictedChunks() {
+        List<String> paths = new ArrayList<>();
+        if(MergeConflictsHandler.isMergeConflicted(getProjectTranslation().getTitle())) {
+            paths.add(ConflictIndex.chunkPath("front", "title"));
+        }
+        for(ChapterTranslation ct:getChapterTranslations()) {
+            if(MergeConflictsHandler.isMergeConflicted(ct.title)) {
+                paths.add(ConflictIndex.chunkPath(ct.id, "title"));
+            }
+            if(MergeConflictsHandler.isMergeConflicted(ct.reference)) {
+                paths.add(ConflictIndex.chunkPath(ct.id, "reference"));
+            }
+            for(FrameTranslation frame:getFrameTranslations(ct.id, TranslationFormat.DEFAULT)) {
+                if(MergeConflictsHandler.isMergeConflicted(frame.body)) {
+                    paths.add(ConflictIndex.chunkPath(ct.id, frame.id));
+                }
+            }
+        }
+        return paths;
     }
 
     /**
@@ -728,6 +837,8 @@ public class TargetTranslation {
             titleFile.getParentFile().mkdirs();
             FileUtilities.writeStringToFile(titleFile, translatedText);
         }
+        chunkSaved("front", "title", translatedText);
+        markDirty(titleFile);
     }
 
     /**
@@ -744,6 +855,8 @@ public class TargetTranslation {
             frameFile.getParentFile().mkdirs();
             FileUtilities.writeStringToFile(frameFile, translatedText);
         }
+        chunkSaved(frameTranslation.getChapterId(), frameTranslation.id, translatedText);
+        markDirty(frameFile);
     }
 
     /**
@@ -761,6 +874,8 @@ public class TargetTranslation {
             chapterReferenceFile.getParentFile().mkdirs();
             FileUtilities.writeStringToFile(chapterReferenceFile, translatedText);
         }
+        chunkSaved(chapterTranslation.id, "reference", translatedText);
+        markDirty(chapterReferenceFile);
     }
 
     /**
@@ -778,6 +893,8 @@ public class TargetTranslation {
             chapterTitleFile.getParentFile().mkdirs();
             FileUtilities.writeStringToFile(chapterTitleFile, translatedText);
         }
+        chunkSaved(chapterTranslation.id, "title", translatedText);
+        markDirty(chapterTitleFile);
     }
 
     /**
@@ -964,11 +1081,7 @@ public class TargetTranslation {
      * @return
      */
     private boolean closeChunk(String complexId) {
-        if(!isChunkClosed(complexId)) {
-            JSONArray finishedChunks = manifest.getJSONArray(FIELD_FINISHED_CHUNKS);
-            finishedChunks.put(complexId);
-            manifest.put(FIELD_FINISHED_CHUNKS, finishedChunks);
-        }
+        manifest.addValue(FIELD_FINISHED_CHUNKS, complexId);
         return true;
     }
 
@@ -978,21 +1091,8 @@ public class TargetTranslation {
      * @return
      */
     private boolean openChunk(String complexId) {
-        JSONArray finishedChunks = manifest.getJSONArray(FIELD_FINISHED_CHUNKS);
-        JSONArray updatedChunks = new JSONArray();
-        try {
-            for (int i = 0; i < finishedChunks.length(); i++) {
-                String currId = finishedChunks.getString(i);
-                if(!currId.equals(complexId)) {
-                    updatedChunks.put(finishedChunks.getString(i));
-                }
-            }
-            manifest.put(FIELD_FINISHED_CHUNKS, updatedChunks);
-            return true;
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
-        return false;
+        manifest.removeValue(FIELD_FINISHED_CHUNKS, complexId);
+        return true;
     }
 
     /**
@@ -1001,17 +1101,22 @@ public class TargetTranslation {
      * @return
      */
     private boolean isChunkClosed(String complexId) {
-        JSONArray finishedChunks = manifest.getJSONArray(FIELD_FINISHED_CHUNKS);
-        try {
-            for (int i = 0; i < finishedChunks.length(); i++) {
-                if(finishedChunks.getString(i).equals(complexId)) {
-                    return true;
-                }
-            }
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return manifest.hasValue(FIELD_FINISHED_CHUNKS, complexId);
+    }
+
+    /**
+     * Holds changes to the manifest in memory until {@link #endBatchUpdate()} is called.
+     * Use this when marking many chunks at once.
+     */
+    public void beginBatchUpdate() {
+        manifest.beginBatch();
+    }
+
+    /**
+     * Writes the changes made since {@link #beginBatchUpdate()} to the manifest
+     */
+    public void endBatchUpdate() {
+        manifest.endBatch();
     }
 
     public boolean commitSync() throws Exception {
@@ -1047,8 +1152,26 @@ public class TargetTranslation {
     }
 
     public boolean commitSync(String filePattern, boolean forced) throws Exception {
+        CommitQueue queue = getCommitQueue();
+        queue.getLock().lock();
+        Set<String> dirtyPaths = queue.takeDirtyPaths();
+        boolean success = false;
+        try {
+            success = commitAllSync(filePattern, forced);
+            return success;
+        } finally {
+            if(!success) queue.restoreDirtyPaths(dirtyPaths);
+            if(filePattern.equals(".")) queue.onFullCommit(success);
+            queue.getLock().unlock();
+        }
+    }
+
+    private boolean commitAllSync(String filePattern, boolean forced) throws Exception {
         Git git = getRepo().getGit();
 
+        // write pending manifest changes so they are included
+        manifest.flush();
+
         // check if dirty
         if(isClean()) {
             return true;
@@ -1089,6 +1212,106 @@ public class TargetTranslation {
         return true;
     }
 
+    /**
+     * Commits only the paths that have been saved since the last commit.
+     * This requires a previous full commit in this session so that no other changes are missed.
+     * @return
+     */
+    private boolean commitDirtySync() {
+        CommitQueue queue = getCommitQueue();
+        queue.getLock().lock();
+        Set<String> dirtyPaths = queue.takeDirtyPaths();
+        try {
+            manifest.flush();
+            // TRICKY: manifest changes are not tracked so it is always checked
+            Set<String> paths = new LinkedHashSet<>(dirtyPaths);
+            paths.add(Manifest.MANIFEST_JSON);
+
+            Git git = getRepo().getGit();
+            StatusCommand status = git.status();
+            for(String path:paths) {
+                status.addPath(path);
+            }
+            if(status.call().isClean()) {
+                dirtyPaths.clear();
+                return true;
+            }
+
+            // stage changes
+            AddCommand add = git.add();
+            AddCommand update = git.add().setUpdate(true);
+            boolean hasDeletions = false;
+            for(String path:paths) {
+                if(new File(targetTranslationDir, path).exists()) {
+                    add.addFilepattern(path);
+                } else {
+                    update.addFilepattern(path);
+                    hasDeletions = true;
+                }
+            }
+            add.call();
+            if(hasDeletions) update.call();
+
+            // commit changes
+            CommitCommand commit = git.commit();
+            if(author != null) {
+                commit.setAuthor(author);
+            }
+            commit.setMessage("auto save");
+            commit.call();
+            dirtyPaths.clear();
+            return true;
+        } catch (Exception e) {
+            Logger.e(TAG, "Failed to commit changes for " + getId(), e);
+            return false;
+        } finally {
+            queue.restoreDirtyPaths(dirtyPaths);
+            queue.getLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a file has been changed so it is included in the next auto save
+     * @param file
+     */
+    private void markDirty(File file) {
+        String path = targetTranslationDir.toURI().relativize(file.toURI()).getPath();
+        getCommitQueue().markDirty(path);
+    }
+
+    /**
+     * Requires the next auto save to stage every file in the target translation.
+     * This must be called after the files have been changed without using the save methods.
+     *
+     * @param targetTranslationDir
+     */
+    public static void untrackChanges(File targetTranslationDir) {
+        CommitQueue.get(targetTranslationDir).untrack();
+    }
+
+    /**
+     * Requires the next auto save to stage every file in this target translation
+     */
+    public void untrackChanges() {
+        untrackChanges(targetTranslationDir);
+    }
+
+    private CommitQueue getCommitQueue() {
+        return CommitQueue.get(targetTranslationDir);
+    }
+
+    /**
+     * Checks if a target translation may have changes that have not been committed.
+     * This does not open the repository so it may be called for every target translation.
+     *
+     * @param targetTranslationDir
+     * @return false only if every change since the last full commit has been committed
+     */
+    public static boolean hasUncommittedChanges(File targetTranslationDir) {
+        CommitQueue queue = CommitQueue.get(targetTranslationDir);
+        return !queue.isTracked() || queue.hasDirtyPaths();
+    }
+
     /**
      * Stages and commits changes to the repository
      * @throws Exception
@@ -1112,23 +1335,16 @@ public class TargetTranslation {
      * @param listener the listener that will be called when finished
      */
     private void commit(final String filePattern, final OnCommitListener listener) throws Exception {
-
-        Thread thread = new Thread() {
+        final CommitQueue queue = getCommitQueue();
+        queue.enqueue(new CommitQueue.Commit() {
             @Override
-            public void run() {
-                try {
-                    boolean result = commitSync(filePattern);
-                    if(listener != null) {
-                        listener.onCommit(result);
-                    }
-                } catch (Exception e) {
-                    if(listener != null) {
-                        listener.onCommit(false);
-                    }
+            public boolean run() throws Exception {
+                if(filePattern.equals(".") && queue.isTracked()) {
+                    return commitDirtySync();
                 }
+                return commitSync(filePattern);
             }
-        };
-        thread.start();
+        }, listener);
     }
 
     /**
@@ -1162,6 +1378,9 @@ public class TargetTranslation {
         } catch (Exception e) {
             e.printStackTrace();
             return false;
+        } finally {
+            invalidateChunks();
+            ConflictIndex.invalidate(targetTranslationDir);
         }
         return true;
     }
@@ -1213,16 +1432,25 @@ public class TargetTranslation {
         branch.call();
 
         // perform merge
+        ObjectId oldHead = git.getRepository().resolve("HEAD");
         MergeCommand merge = repo.getGit().merge();
         merge.setFastForward(MergeCommand.FastForwardMode.NO_FF);
         merge.include(repo.getGit().getRepository().getRef("new"));
-        MergeResult result = merge.call();
+        MergeResult result;
+        try {
+            result = merge.call();
+        } finally {
+            invalidateChunks();
+            untrackChanges();
+        }
 
         // merge manifests
         mergeManifests(manifest, importedManifest);
+        updateMergeConflicts(oldHead, result);
 
         if (result.getMergeStatus().equals(MergeResult.MergeStatus.CONFLICTING)) {
             System.out.println(result.getConflicts().toString());
+            addMergeConflicts(result.getConflicts().keySet());
             return false;
         }
         return true;
@@ -1270,9 +1498,11 @@ public class TargetTranslation {
             String json = request.toJson();
             if (json != null) {
                 FileUtilities.writeStringToFile(requestFile, json);
+                markDirty(requestFile);
             }
         } else if(requestFile.exists()) {
             FileUtilities.safeDelete(requestFile);
+            markDirty(requestFile);
         }
     }
 
@@ -0,0 +1,263 @@
+package com.door43.translationstudio.core;
+
+import com.door43.util.FileUtilities;
+
+import org.unfoldingword.tools.logger.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A persistent catalog of the target translations on the device.
+ *
+ * Each entry records the progress of a target translation so the home screen does not need to
+ * open the source container of every project to count its chunks.
+ * An entry is only valid while the manifest modification time and git HEAD of the target
+ * translation match the values recorded with it.
+ *
+ * The catalog is only read once and is written back when the home screen finishes loading,
+ * so a crash while saving at worst costs one recount of the changed projects.
+ */
+public class TargetTranslationCatalog {
+    private static final String TAG = TargetTranslationCatalog.class.getSimpleName();
+    private static final int MAGIC = 0x54544361;
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    /**
+     * @param file the file in which the catalog will be stored
+     */
+    public TargetTranslationCatalog(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the entry of a target translation if it is still valid
+     * @param targetTranslationDir the directory of the target translation
+     * @param sourceTranslationId the selected source translation. This may be null.
+     * @return null if the target translation has not been cataloged or has changed
+     */
+    public synchronized Entry get(File targetTranslationDir, String sourceTranslationId) {
+        load();
+        Entry entry = entries.get(targetTranslationDir.getName());
+        if(entry == null) return null;
+        if(!equals(entry.sourceTranslationId, sourceTranslationId)
+                || entry.manifestModified != manifestModified(targetTranslationDir)
+                || !equals(entry.head, readHead(targetTranslationDir))) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns all of the entries regardless of whether they are still valid
+     * @return
+     */
+    public synchronized List<Entry> getEntries() {
+        load();
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Adds or replaces the entry of a target translation
+     * @param entry
+     */
+    public synchronized void put(Entry entry) {
+        load();
+        entries.put(entry.id, entry);
+        dirty = true;
+    }
+
+    /**
+     * Removes a target translation from the catalog
+     * @param targetTranslationId
+     */
+    public synchronized void remove(String targetTranslationId) {
+        load();
+        if(entries.remove(targetTranslationId) != null) dirty = true;
+    }
+
+    /**
+     * Writes the catalog to the disk if it has changed
+     */
+    public synchronized void save() {
+        if(!dirty) return;
+        try {
+            boolean written = FileUtilities.writeAtomically(file, tempFile -> {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(entries.size());
+                    for(Entry entry:entries.values()) {
+                        out.writeUTF(entry.id);
+                        out.writeUTF(entry.targetLanguageId);
+                        out.writeUTF(entry.projectId);
+                        out.writeUTF(entry.format);
+                        writeNullable(out, entry.sourceTranslationId);
+                        out.writeInt(entry.finishedChunks);
+                        out.writeInt(entry.sourceChunks);
+                        out.writeLong(entry.manifestModified);
+                        writeNullable(out, entry.head);
+                    }
+                }
+            });
+            if(written) dirty = false;
+        } catch (Exception e) {
+            Logger.w(TAG, "Failed to save the target translation catalog", e);
+        }
+    }
+
+    private void load() {
+        if(loaded) return;
+        loaded = true;
+        if(!file.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int count = in.readInt();
+            for(int i = 0; i < count; i ++) {
+                Entry entry = new Entry(
+                        in.readUTF(),
+                        in.readUTF(),
+                        in.readUTF(),
+                        in.readUTF(),
+                        readNullable(in),
+                        in.readInt(),
+                        in.readInt(),
+                        in.readLong(),
+                        readNullable(in));
+                entries.put(entry.id, entry);
+            }
+        } catch (IOException e) {
+            // TRICKY: the catalog is only a cache so it is rebuilt if corrupt
+            Logger.w(TAG, "Failed to read the target translation catalog", e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the modification time of a target translation's manifest
+     * @param targetTranslationDir
+     * @return
+     */
+    public static long manifestModified(File targetTranslationDir) {
+        return new File(targetTranslationDir, "manifest.json").lastModified();
+    }
+
+    /**
+     * Reads the commit that HEAD points to without opening the repository
+     * @param targetTranslationDir
+     * @return null if the target translation is not a git repository or has no commits
+     */
+    public static String readHead(File targetTranslationDir) {
+        File gitDir = new File(targetTranslationDir, ".git");
+        String head = readLine(new File(gitDir, "HEAD"));
+        if(head == null || !head.startsWith("ref:")) return head;
+
+        String ref = head.substring(4).trim();
+        String commit = readLine(new File(gitDir, ref));
+        if(commit != null) return commit;
+
+        // look for the ref in the packed refs
+        File packedRefs = new File(gitDir, "packed-refs");
+        if(!packedRefs.isFile()) return null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(packedRefs))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.endsWith(" " + ref)) {
+                    return line.substring(0, line.indexOf(' '));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static String readLine(File file) {
+        if(!file.isFile()) return null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            return line != null ? line.trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if(value != null) out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * The cataloged state of a target translation
+     */
+    public static class Entry {
+        public final String id;
+        public final String targetLanguageId;
+        public final String projectId;
+        public final String format;
+        public final String sourceTranslationId;
+        public final int finishedChunks;
+        public final int sourceChunks;
+        public final long manifestModified;
+        public final String head;
+
+        /**
+         * @param id the target translation id
+         * @param targetLanguageId
+         * @param projectId
+         * @param format the translation format
+         * @param sourceTranslationId the selected source translation when the progress was calculated
+         * @param finishedChunks the number of finished chunks in the target translation
+         * @param sourceChunks the number of chunks in the source translation
+         * @param manifestModified the modification time of the manifest
+         * @param head the commit HEAD pointed to
+         */
+        public Entry(String id, String targetLanguageId, String projectId, String format,
+                     String sourceTranslationId, int finishedChunks, int sourceChunks,
+                     long manifestModified, String head) {
+            this.id = id;
+            this.targetLanguageId = targetLanguageId;
+            this.projectId = projectId;
+            this.format = format;
+            this.sourceTranslationId = sourceTranslationId;
+            this.finishedChunks = finishedChunks;
+            this.sourceChunks = sourceChunks;
+            this.manifestModified = manifestModified;
+            this.head = head;
+        }
+
+        /**
+         * Returns the translation progress
+         * @return a value between 0 and 1
+         */
+        public double getProgress() {
+            if(sourceChunks <= 0) return 0.0;
+            return Math.min(1.0, (double) finishedChunks / (double) sourceChunks);
+        }
+    }
+}
@@ -129,6 +129,9 @@ class TargetTranslationMigrator @Inject constructor(
             e.printStackTrace()
             migratedDir = null
         }
+        // the migration may have rewritten any of the files
+        ChunkStore.invalidate(targetTranslationDir)
+        TargetTranslation.untrackChanges(targetTranslationDir)
         if (migratedDir != null) {
             // import new language requests
             val tt = TargetTranslation.open(targetTranslationDir, null)
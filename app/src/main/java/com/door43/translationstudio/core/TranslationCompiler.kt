@@ -0,0 +1,114 @@
+package com.door43.translationstudio.core
+
+import android.text.Spanned
+import android.text.SpannedString
+
+/**
+ * Compiles rendered translation text back into source that could be either USX or USFM.
+ *
+ * The displayed text of each span is replaced with its mark-up in a single pass over the text.
+ * The compiler remembers where the spans were so an edit that does not touch a span only
+ * replaces the edited characters in the compiled text. Any other change is compiled again.
+ *
+ * A compiler keeps the state of a single text so each editor should have its own.
+ */
+class TranslationCompiler {
+    private var text: Spanned? = null
+    private var length = 0
+    private val compiled = StringBuilder()
+    private var spanStarts = IntArray(0)
+    private var spanEnds = IntArray(0)
+    // the difference between the compiled and rendered positions after each span
+    private var shifts = IntArray(0)
+
+    /**
+     * Compiles all of the text
+     * @param text
+     * @return the compiled translation
+     */
+    fun compile(text: Spanned): String {
+        val spans = text.getSpans(0, text.length, SpannedString::class.java)
+        // pack the start with the index so the spans are sorted by position
+        val order = LongArray(spans.size) {
+            (text.getSpanStart(spans[it]).toLong() shl 32) or it.toLong()
+        }
+        order.sort()
+
+        spanStarts = IntArray(spans.size)
+        spanEnds = IntArray(spans.size)
+        shifts = IntArray(spans.size)
+        compiled.setLength(0)
+        var lastIndex = 0
+        var shift = 0
+        for (i in order.indices) {
+            val span = spans[order[i].toInt()]
+            val start = (order[i] ushr 32).toInt()
+            val end = text.getSpanEnd(span)
+            // attach preceding text
+            compiled.append(text, lastIndex, start)
+            // explode span
+            compiled.append(span)
+            shift += span.length - (end - start)
+            spanStarts[i] = start
+            spanEnds[i] = end
+            shifts[i] = shift
+            lastIndex = end
+        }
+        // grab the last bit of text
+        compiled.append(text, lastIndex, text.length)
+
+        this.text = text
+        length = text.length
+        return compiled.toString().trim()
+    }
+
+    /**
+     * Updates the compiled text after an edit.
+     * The arguments are the same as those given to [android.text.TextWatcher.onTextChanged].
+     * If this is not the text that was last compiled or the edit touched a span
+     * the text will be compiled again.
+     *
+     * @param text the edited text
+     * @param start the position of the edit
+     * @param before the number of characters that were replaced
+     * @param count the number of characters that replaced them
+     * @return the compiled translation
+     */
+    fun update(text: Spanned, start: Int, before: Int, count: Int): String {
+        if (text !== this.text || text.length != length - before + count) return compile(text)
+
+        val index = firstSpanEndingAfter(start)
+        if (index < spanStarts.size && spanStarts[index] < start + before) return compile(text)
+        if (count > 0 && text.getSpans(start, start + count, SpannedString::class.java).isNotEmpty()) {
+            return compile(text)
+        }
+
+        val offset = start + if (index > 0) shifts[index - 1] else 0
+        compiled.delete(offset, offset + before)
+        compiled.insert(offset, text, start, start + count)
+        val delta = count - before
+        for (i in index until spanStarts.size) {
+            spanStarts[i] += delta
+            spanEnds[i] += delta
+        }
+        length = text.length
+        return compiled.toString().trim()
+    }
+
+    /**
+     * Returns the index of the first span that ends after the position
+     */
+    private fun firstSpanEndingAfter(position: Int): Int {
+        var low = 0
+        var high = spanEnds.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (spanEnds[mid] <= position) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+        return low
+    }
+}
@@ -0,0 +1,400 @@
+package com.door43.translationstudio.core;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A substring index of the rendered chunk text in source containers and target translations.
+ *
+ * Each chunk is stored as the lower case plain text of its render so match offsets line up
+ * with the text displayed in the translation cards. Rows also record a stamp of the raw text
+ * they were built from so callers can re-index only the chunks that have changed.
+ *
+ * A chunk matches when its text contains the search string anywhere, including within a word.
+ * To support this the index records the trigrams of each chunk (see {@link #grams(String)}).
+ * Only the chunks that contain every trigram of the search string are read and checked, so
+ * searches do not scan the text of the whole container.
+ * Containers are identified by an integer id within the index so the trigram rows stay small.
+ */
+public class TranslationSearchIndex {
+    private static final int DATABASE_VERSION = 3;
+    static final int GRAM_LENGTH = 3;
+    // keeps long searches within the sqlite limit on bound arguments
+    private static final int MAX_QUERY_GRAMS = 32;
+
+    private final Helper helper;
+
+    /**
+     * @param context
+     * @param databaseFile the file in which the index will be stored
+     */
+    public TranslationSearchIndex(Context context, File databaseFile) {
+        helper = new Helper(context, databaseFile.getAbsolutePath());
+    }
+
+    /**
+     * Builds the container slug used to index a source container
+     * @param sourceSlug
+     * @return
+     */
+    public static String sourceContainer(String sourceSlug) {
+        return "source:" + sourceSlug;
+    }
+
+    /**
+     * Builds the container slug used to index a target translation
+     * @param targetTranslationId
+     * @return
+     */
+    public static String targetContainer(String targetTranslationId) {
+        return "target:" + targetTranslationId;
+    }
+
+    /**
+     * Returns the stamp recorded for an entire container e.g. the modified date of a source container
+     * @param container
+     * @return null if the container has not been completely indexed
+     */
+    public synchronized String getContainerStamp(String container) {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT stamp FROM container WHERE slug=?", new String[]{container})) {
+            if(cursor.moveToFirst()) return cursor.getString(0);
+        }
+        return null;
+    }
+
+    /**
+     * Records the stamp of a container once all of its chunks have been indexed
+     * @param container
+     * @param stamp
+     */
+    public synchronized void setContainerStamp(String container, String stamp) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long containerId = findContainer(db, container, true);
+        if(containerId < 0) return;
+        ContentValues values = new ContentValues();
+        values.put("stamp", stamp);
+        db.update("container", values, "id=?", new String[]{String.valueOf(containerId)});
+    }
+
+    /**
+     * Returns the stamps of the indexed chunks in a container
+     * @param container
+     * @return a map of chunk keys (see {@link #chunkKey(String, String)}) to stamps
+     */
+    public synchronized Map<String, Long> getChunkStamps(String container) {
+        Map<String, Long> stamps = new HashMap<>();
+        SQLiteDatabase db = helper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT chapter, chunk, chunk.stamp FROM chunk"
+                + " JOIN container ON container.id=chunk.container_id WHERE container.slug=?", new String[]{container})) {
+            while(cursor.moveToNext()) {
+                stamps.put(chunkKey(cursor.getString(0), cursor.getString(1)), cursor.getLong(2));
+            }
+        }
+        return stamps;
+    }
+
+    /**
+     * Builds the key used to identify a chunk within a container
+     * @param chapterSlug
+     * @param chunkSlug
+     * @return
+     */
+    public static String chunkKey(String chapterSlug, String chunkSlug) {
+        return chapterSlug + "-" + chunkSlug;
+    }
+
+    /**
+     * Opens a transaction. Use this when indexing many chunks at once
+     */
+    public synchronized void beginTransaction() {
+        helper.getWritableDatabase().beginTransactionNonExclusive();
+    }
+
+    /**
+     * Closes a transaction
+     * @param success set to false if the changes should be rolled back
+     */
+    public synchronized void endTransaction(boolean success) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        if(success) {
+            db.setTransactionSuccessful();
+        }
+        db.endTransaction();
+    }
+
+    /**
+     * Adds or replaces the indexed text of a chunk
+     * @param container
+     * @param chapterSlug
+     * @param chunkSlug
+     * @param stamp identifies the raw text that was indexed e.g. a hash of the text
+     * @param renderedText the rendered chunk text
+     */
+    public synchronized void index(String container, String chapterSlug, String chunkSlug, long stamp, CharSequence renderedText) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long containerId = findContainer(db, container, true);
+        if(containerId < 0) return;
+        long id = findChunk(db, containerId, chapterSlug, chunkSlug);
+        String body = renderedText == null ? "" : renderedText.toString().toLowerCase();
+        ContentValues values = new ContentValues();
+        values.put("stamp", stamp);
+        values.put("body", body);
+        if(id < 0) {
+            values.put("container_id", containerId);
+            values.put("chapter", chapterSlug);
+            values.put("chunk", chunkSlug);
+            id = db.insert("chunk", null, values);
+        } else {
+            db.update("chunk", values, "id=?", new String[]{String.valueOf(id)});
+            db.delete("chunk_gram", "chunk=?", new String[]{String.valueOf(id)});
+        }
+        if(id < 0) return;
+
+        SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO chunk_gram(container_id, gram, chunk) VALUES(?, ?, ?)");
+        try {
+            for(String gram : grams(body)) {
+                insert.bindLong(1, containerId);
+                insert.bindString(2, gram);
+                insert.bindLong(3, id);
+                insert.executeInsert();
+            }
+        } finally {
+            insert.close();
+        }
+    }
+
+    /**
+     * Removes a chunk from the index so it will be indexed again
+     * @param container
+     * @param chapterSlug
+     * @param chunkSlug
+     */
+    public synchronized void invalidate(String container, String chapterSlug, String chunkSlug) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long containerId = findContainer(db, container, false);
+        if(containerId < 0) return;
+        long id = findChunk(db, containerId, chapterSlug, chunkSlug);
+        if(id < 0) return;
+        db.delete("chunk_gram", "chunk=?", new String[]{String.valueOf(id)});
+        db.delete("chunk", "id=?", new String[]{String.valueOf(id)});
+    }
+
+    /**
+     * Removes everything indexed for a container
+     * @param container
+     */
+    public synchronized void delete(String container) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long containerId = findContainer(db, container, false);
+        if(containerId < 0) return;
+        String[] args = new String[]{String.valueOf(containerId)};
+        db.beginTransactionNonExclusive();
+        try {
+            db.delete("chunk_gram", "container_id=?", args);
+            db.delete("chunk", "container_id=?", args);
+            db.delete("container", "id=?", args);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Searches the indexed text of a container
+     * @param container
+     * @param query the search string. Matching is case insensitive
+     * @return the matching chunks with the offsets of every match in the rendered text
+     */
+    public synchronized Map<String, int[]> search(String container, String query) {
+        Map<String, int[]> matches = new HashMap<>();
+        String search = query == null ? "" : query.toLowerCase();
+        if(search.trim().isEmpty()) return matches;
+
+        SQLiteDatabase db = helper.getReadableDatabase();
+        long containerId = findContainer(db, container, false);
+        if(containerId < 0) return matches;
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(containerId));
+        String candidates;
+        if(search.length() >= GRAM_LENGTH) {
+            // chunks that contain every trigram of the search string
+            List<String> grams = new ArrayList<>(queryGrams(search));
+            StringBuilder placeholders = new StringBuilder();
+            for(String gram : grams) {
+                if(placeholders.length() > 0) placeholders.append(',');
+                placeholders.append('?');
+                args.add(gram);
+            }
+            candidates = "SELECT chunk FROM chunk_gram WHERE container_id=? AND gram IN (" + placeholders + ")"
+                    + " GROUP BY chunk HAVING COUNT(*)=" + grams.size();
+        } else {
+            // chunks with a gram that begins with the search string
+            args.add(search);
+            candidates = "SELECT DISTINCT chunk FROM chunk_gram WHERE container_id=? AND gram>=?";
+            String end = prefixEnd(search);
+            if(end != null) {
+                args.add(end);
+                candidates += " AND gram<?";
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT chapter, chunk, body FROM chunk WHERE id IN (" + candidates + ")",
+                args.toArray(new String[0]))) {
+            while(cursor.moveToNext()) {
+                int[] offsets = findOffsets(cursor.getString(2), search);
+                if(offsets.length > 0) {
+                    matches.put(chunkKey(cursor.getString(0), cursor.getString(1)), offsets);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Closes the database
+     */
+    public synchronized void close() {
+        helper.close();
+    }
+
+    /**
+     * Finds the offsets of all non-overlapping occurrences of the search string
+     * @param body
+     * @param search
+     * @return
+     */
+    static int[] findOffsets(String body, String search) {
+        List<Integer> found = new ArrayList<>();
+        int pos = body.indexOf(search);
+        while(pos >= 0) {
+            found.add(pos);
+            pos = body.indexOf(search, pos + search.length());
+        }
+        int[] offsets = new int[found.size()];
+        for(int i = 0; i < offsets.length; i ++) {
+            offsets[i] = found.get(i);
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns the distinct grams of the text.
+     * A gram begins at every character and is {@link #GRAM_LENGTH} characters long, or shorter
+     * at the end of the text. This way a shorter search string always begins some gram.
+     * @param text the lower case text
+     * @return
+     */
+    static Set<String> grams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for(int i = 0; i < text.length(); i ++) {
+            grams.add(text.substring(i, Math.min(i + GRAM_LENGTH, text.length())));
+        }
+        return grams;
+    }
+
+    /**
+     * Returns the distinct trigrams of a search string that is at least {@link #GRAM_LENGTH} long.
+     * Any chunk containing the search string contains all of them.
+     * @param search the lower case search string
+     * @return
+     */
+    static Set<String> queryGrams(String search) {
+        Set<String> grams = new LinkedHashSet<>();
+        for(int i = 0; i + GRAM_LENGTH <= search.length() && grams.size() < MAX_QUERY_GRAMS; i ++) {
+            grams.add(search.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    /**
+     * Returns the smallest string that sorts after every string beginning with the prefix
+     * @param prefix
+     * @return null if there is no such string
+     */
+    static String prefixEnd(String prefix) {
+        int codePoint = prefix.codePointBefore(prefix.length());
+        String head = prefix.substring(0, prefix.length() - Character.charCount(codePoint));
+        int next = codePoint + 1;
+        if(next == Character.MIN_SURROGATE) {
+            next = Character.MAX_SURROGATE + 1;
+        } else if(next > Character.MAX_CODE_POINT) {
+            return null;
+        }
+        return head + new String(Character.toChars(next));
+    }
+
+    /**
+     * Looks up the id of a container
+     * @param db
+     * @param container
+     * @param create set to true if the container should be added when it is missing
+     * @return the id or -1 if the container is not in the index
+     */
+    private static long findContainer(SQLiteDatabase db, String container, boolean create) {
+        try (Cursor cursor = db.rawQuery("SELECT id FROM container WHERE slug=?", new String[]{container})) {
+            if(cursor.moveToFirst()) return cursor.getLong(0);
+        }
+        if(!create) return -1;
+        ContentValues values = new ContentValues();
+        values.put("slug", container);
+        return db.insert("container", null, values);
+    }
+
+    private static long findChunk(SQLiteDatabase db, long containerId, String chapterSlug, String chunkSlug) {
+        try (Cursor cursor = db.rawQuery("SELECT id FROM chunk WHERE container_id=? AND chapter=? AND chunk=?",
+                new String[]{String.valueOf(containerId), chapterSlug, chunkSlug})) {
+            if(cursor.moveToFirst()) return cursor.getLong(0);
+        }
+        return -1;
+    }
+
+    /**
+     * Manages the index schema
+     */
+    private static class Helper extends SQLiteOpenHelper {
+
+        Helper(Context context, String name) {
+            super(context, name, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            // the stamp is only set once the container has been completely indexed
+            db.execSQL("CREATE TABLE container (id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + " slug TEXT NOT NULL UNIQUE, stamp TEXT)");
+            db.execSQL("CREATE TABLE chunk (id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + " container_id INTEGER NOT NULL, chapter TEXT NOT NULL, chunk TEXT NOT NULL,"
+                    + " stamp INTEGER NOT NULL, body TEXT NOT NULL, UNIQUE (container_id, chapter, chunk))");
+            db.execSQL("CREATE TABLE chunk_gram (container_id INTEGER NOT NULL, gram TEXT NOT NULL,"
+                    + " chunk INTEGER NOT NULL, PRIMARY KEY (container_id, gram, chunk)) WITHOUT ROWID");
+            db.execSQL("CREATE INDEX chunk_gram_chunk ON chunk_gram (chunk)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // the index can always be rebuilt
+            db.execSQL("DROP TABLE IF EXISTS container");
+            db.execSQL("DROP TABLE IF EXISTS chunk");
+            db.execSQL("DROP TABLE IF EXISTS chunk_text");
+            db.execSQL("DROP TABLE IF EXISTS chunk_gram");
+            onCreate(db);
+        }
+
+        @Override
+        public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            onUpgrade(db, oldVersion, newVersion);
+        }
+    }
+}
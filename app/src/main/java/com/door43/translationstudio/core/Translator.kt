@@ -231,6 +231,9 @@ class Translator (
         if (targetTranslationId != null) {
             val targetTranslationDir = File(path, targetTranslationId)
             FileUtilities.safeDelete(targetTranslationDir)
+            ChunkStore.invalidate(targetTranslationDir)
+            ConflictIndex.invalidate(targetTranslationDir)
+            TargetTranslation.untrackChanges(targetTranslationDir)
         }
     }
 
@@ -242,6 +245,9 @@ class Translator (
         if (projectDir.exists()) {
             FileUtilities.safeDelete(projectDir)
         }
+        ChunkStore.invalidate(projectDir)
+        ConflictIndex.invalidate(projectDir)
+        TargetTranslation.untrackChanges(projectDir)
     }
 
     /**
@@ -348,6 +354,9 @@ class Translator (
             val destDir = File(path, tempTargetTranslation.id)
             FileUtilities.safeDelete(destDir)
             FileUtilities.moveOrCopyQuietly(tempTargetTranslation.path, destDir)
+            ChunkStore.invalidate(destDir)
+            ConflictIndex.invalidate(destDir)
+            TargetTranslation.untrackChanges(destDir)
         }
     }
 
@@ -522,35 +531,13 @@ class Translator (
         /**
          * Compiles all the editable text back into source that could be either USX or USFM.  It replaces
          * the displayed text in spans with their mark-ups.
+         * Use a [TranslationCompiler] to recompile the text as it is edited.
          * @param text
          * @return
          */
         @JvmStatic
         fun compileTranslation(text: Editable): String {
-            val compiledString = StringBuilder()
-            var next: Int
-            var lastIndex = 0
-            var i = 0
-            while (i < text.length) {
-                next = text.nextSpanTransition(i, text.length, SpannedString::class.java)
-                val verses = text.getSpans(i, next, SpannedString::class.java)
-                for (s in verses) {
-                    val sStart = text.getSpanStart(s)
-                    val sEnd = text.getSpanEnd(s)
-                    // attach preceding text
-                    if ((lastIndex >= text.length) or (sStart >= text.length)) {
-                        // out of bounds
-                    }
-                    compiledString.append(text.toString().substring(lastIndex, sStart))
-                    // explode span
-                    compiledString.append(s.toString())
-                    lastIndex = sEnd
-                }
-                i = next
-            }
-            // grab the last bit of text
-            compiledString.append(text.toString().substring(lastIndex, text.length))
-            return compiledString.toString().trim()
+            return TranslationCompiler().compile(text)
         }
 
         /**
@@ -561,30 +548,7 @@ class Translator (
          */
         @JvmStatic
         fun compileTranslationSpanned(text: SpannedString): String {
-            val compiledString = StringBuilder()
-            var next: Int
-            var lastIndex = 0
-            var i = 0
-            while (i < text.length) {
-                next = text.nextSpanTransition(i, text.length, SpannedString::class.java)
-                val verses = text.getSpans(i, next, SpannedString::class.java)
-                for (s in verses) {
-                    val sStart = text.getSpanStart(s)
-                    val sEnd = text.getSpanEnd(s)
-                    // attach preceding text
-                    if ((lastIndex >= text.length) or (sStart >= text.length)) {
-                        // out of bounds
-                    }
-                    compiledString.append(text.toString().substring(lastIndex, sStart))
-                    // explode span
-                    compiledString.append(s.toString())
-                    lastIndex = sEnd
-                }
-                i = next
-            }
-            // grab the last bit of text
-            compiledString.append(text.toString().substring(lastIndex, text.length))
-            return compiledString.toString().trim()
+            return TranslationCompiler().compile(text)
         }
     }
 }
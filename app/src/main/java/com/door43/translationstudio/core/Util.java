@@ -10,7 +10,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Arrays;
 import java.util.Date;
 
 /**
@@ -153,6 +152,7 @@ public class Util {
 
     /**
      * Maps a verse to a chunk.
+     * The chunks of the chapter are indexed once and cached with the container.
      *
      * @param rc
      * @param chapter
@@ -161,25 +161,9 @@ public class Util {
      */
     public static String mapVerseToChunk(ResourceContainer rc, String chapter, String verse) {
         try {
-            String[] chunks = rc.chunks(chapter);
-            if (chunks != null) {
-                Arrays.sort(chunks, (o1, o2) -> {
-                    Integer i1;
-                    Integer i2;
-                    // TRICKY: push strings to top
-                    try {
-                        i1 = Integer.valueOf(o1);
-                    } catch (NumberFormatException e) {
-                        return 1;
-                    }
-                    try {
-                        i2 = Integer.valueOf(o2);
-                    } catch (NumberFormatException e) {
-                        return 1;
-                    }
-                    return i1.compareTo(i2);
-                });
-                return Util.verseToChunk(verse, chunks);
+            VerseChunkMap map = VerseChunkMap.forChapter(rc, chapter);
+            if (map != null) {
+                return map.getChunk(verse);
             } else {
                 return null;
             }
@@ -0,0 +1,133 @@
+package com.door43.translationstudio.core;
+
+import org.unfoldingword.resourcecontainer.ResourceContainer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Maps the verses of a chapter to the chunks that contain them.
+ * The chunk ids are parsed and sorted once so each lookup is a binary search.
+ */
+public class VerseChunkMap {
+    /**
+     * Chapter maps of the containers that have been used.
+     * TRICKY: the containers are weakly referenced so the maps are released along with the container.
+     */
+    private static final Map<ResourceContainer, Map<String, VerseChunkMap>> sMaps = new WeakHashMap<>();
+
+    // the numeric chunks sorted by their first verse
+    private final int[] firstVerses;
+    private final String[] chunkIds;
+
+    /**
+     * @param chunks the chunk ids of a chapter. These do not need to be sorted.
+     */
+    public VerseChunkMap(String[] chunks) {
+        int count = 0;
+        long[] entries = new long[chunks.length];
+        for(int i = 0; i < chunks.length; i ++) {
+            int verse = parse(chunks[i]);
+            if(verse < 0) continue;
+            // pack the verse with the original index so equal verses keep their order
+            entries[count ++] = ((long) verse << 32) | i;
+        }
+        entries = Arrays.copyOf(entries, count);
+        Arrays.sort(entries);
+
+        firstVerses = new int[count];
+        chunkIds = new String[count];
+        for(int i = 0; i < count; i ++) {
+            firstVerses[i] = (int) (entries[i] >>> 32);
+            chunkIds[i] = chunks[(int) entries[i]];
+        }
+    }
+
+    /**
+     * @param chunks the chunk ids of a chapter. These do not need to be sorted.
+     */
+    public VerseChunkMap(List<String> chunks) {
+        this(chunks.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the cached map of a chapter in a resource container.
+     *
+     * @param rc
+     * @param chapter
+     * @return null if the chapter does not have any chunks
+     */
+    public static VerseChunkMap forChapter(ResourceContainer rc, String chapter) {
+        Map<String, VerseChunkMap> chapters;
+        synchronized (sMaps) {
+            chapters = sMaps.get(rc);
+            if(chapters == null) {
+                chapters = new HashMap<>();
+                sMaps.put(rc, chapters);
+            }
+        }
+        synchronized (chapters) {
+            if(chapters.containsKey(chapter)) return chapters.get(chapter);
+            String[] chunks = rc.chunks(chapter);
+            VerseChunkMap map = chunks != null ? new VerseChunkMap(chunks) : null;
+            chapters.put(chapter, map);
+            return map;
+        }
+    }
+
+    /**
+     * Returns the chunk that contains the verse.
+     * If the verse is not a number or comes before the first chunk the verse will be returned.
+     *
+     * @param verse
+     * @return
+     */
+    public String getChunk(String verse) {
+        int v = parse(verse);
+        if(v < 0) return verse;
+        int index = indexOf(v);
+        return index >= 0 ? chunkIds[index] : verse;
+    }
+
+    /**
+     * Returns the chunk that begins with the verse
+     * @param verse
+     * @return null if no chunk begins with the verse
+     */
+    public String getChunkStartingAt(String verse) {
+        int v = parse(verse);
+        if(v < 0) return null;
+        int index = indexOf(v);
+        return index >= 0 && firstVerses[index] == v ? chunkIds[index] : null;
+    }
+
+    /**
+     * Returns the index of the last chunk that begins on or before the verse
+     */
+    private int indexOf(int verse) {
+        int low = 0;
+        int high = firstVerses.length - 1;
+        int match = -1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(firstVerses[mid] <= verse) {
+                match = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return match;
+    }
+
+    private static int parse(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.door43.translationstudio.rendering;
 
+import java.util.List;
+
 /**
  * This is an abstract base class for clickable rendering engine. This handles all of the rendering for USX formatted source and translation
  * NOTE: when rendering large chunks of text it is important to always keep things as a CharSequence and not string
@@ -63,5 +65,41 @@ public abstract class ClickableRenderingEngine extends RenderingEngine {
     public abstract CharSequence getLeadingMajorSectionHeading(CharSequence in);
 
     public abstract boolean isAddedMissingVerse();
+
+    /**
+     * Finds the search string in rendered text.
+     * Matches that overlap a note are skipped since notes indicate matches with their own highlight.
+     * @param text the rendered text
+     * @param search the lower case search string
+     * @param notes the start and end of each note in the text in order
+     * @param engine the engine that is rendering the text. This may be null.
+     * @param highlighter receives each match
+     * @return false if the engine was stopped
+     */
+    public static boolean highlightSearch(CharSequence text, String search, List<int[]> notes,
+                                          RenderingEngine engine, Highlighter highlighter) {
+        String lowerCaseText = text.toString().toLowerCase();
+        int noteIndex = 0;
+        int pos = lowerCaseText.indexOf(search);
+        while(pos >= 0) {
+            if(engine != null && engine.isStopped()) return false;
+            int end = pos + search.length();
+            while(noteIndex < notes.size() && notes.get(noteIndex)[1] <= pos) {
+                noteIndex ++;
+            }
+            if(noteIndex >= notes.size() || notes.get(noteIndex)[0] >= end) {
+                highlighter.highlight(pos, end);
+            }
+            pos = lowerCaseText.indexOf(search, end);
+        }
+        return true;
+    }
+
+    /**
+     * Receives the search matches found by {@link #highlightSearch(CharSequence, String, List, RenderingEngine, Highlighter)}
+     */
+    public interface Highlighter {
+        void highlight(int start, int end);
+    }
 }
 
@@ -0,0 +1,286 @@
+package com.door43.translationstudio.rendering;
+
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.style.BackgroundColorSpan;
+import android.util.LruCache;
+import android.view.View;
+
+import com.door43.translationstudio.core.TranslationFormat;
+import com.door43.translationstudio.ui.spannables.NoteSpan;
+import com.door43.translationstudio.ui.spannables.Span;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memory bounded LRU cache of rendered chunk text shared by the translation view modes.
+ *
+ * Renders are cached without search highlighting so that searching does not invalidate them.
+ * Use {@link #highlightSearch(CharSequence, CharSequence, int)} to overlay the highlights on a cached render.
+ *
+ * The rendered spans keep a reference to the note click listener that was given when they were
+ * rendered. To avoid leaking stale adapters the listener is routed through the cache entry and
+ * replaced with the current listener each time the entry is requested.
+ */
+public class RenderedTextCache {
+    public static final int FLAG_VERSES_DISABLED = 1;
+    public static final int FLAG_PARAGRAPHS_DISABLED = 1 << 1;
+    public static final int FLAG_LINEBREAKS_ENABLED = 1 << 2;
+    public static final int FLAG_TARGET = 1 << 3;
+
+    // measured in characters of rendered and raw text
+    private static final int DEFAULT_MAX_SIZE = 512 * 1024;
+
+    private final LruCache<Key, Entry> mCache;
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    public RenderedTextCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of characters to keep.
+     *                This counts both the rendered text and the raw text held by the key.
+     */
+    public RenderedTextCache(int maxSize) {
+        mCache = new LruCache<Key, Entry>(maxSize) {
+            @Override
+            protected int sizeOf(Key key, Entry entry) {
+                return Math.max(1, entry.getText().length() + key.mText.length());
+            }
+        };
+    }
+
+    /**
+     * Returns the cached render or renders the text and caches the result
+     * @param key identifies the text and the render options
+     * @param noteClickListener the listener that will receive clicks on the rendered notes
+     * @param factory creates the rendering group on a cache miss
+     * @return
+     */
+    public Entry render(Key key, Span.OnClickListener noteClickListener, RenderingGroupFactory factory) {
+        Entry entry = mCache.get(key);
+        if(entry != null) {
+            mHits.incrementAndGet();
+            entry.mNoteClickListener.setListener(noteClickListener);
+            return entry;
+        }
+        mMisses.incrementAndGet();
+
+        ClickListenerRelay relay = new ClickListenerRelay();
+        relay.setListener(noteClickListener);
+        RenderingGroup renderingGroup = factory.create(relay);
+        renderingGroup.init(key.mText);
+        CharSequence text = renderingGroup.start();
+        entry = new Entry(text, renderingGroup.isAddedMissingVerse(), relay);
+        mCache.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Removes all of the cached renders
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * Returns the number of rendered and raw characters currently cached
+     * @return
+     */
+    public int size() {
+        return mCache.size();
+    }
+
+    @Override
+    public String toString() {
+        return "RenderedTextCache[hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount()
+                + ", size=" + size() + "]";
+    }
+
+    /**
+     * Highlights the search matches in a copy of the rendered text.
+     * Matches inside of notes are not highlighted, instead the entire note is highlighted
+     * when its text contains the search string.
+     *
+     * @param rendered the rendered text
+     * @param searchString the lower case search string
+     * @param highlightColor
+     * @return the highlighted copy or the rendered text if there is nothing to highlight
+     */
+    public static CharSequence highlightSearch(CharSequence rendered, CharSequence searchString, int highlightColor) {
+        if(searchString == null || searchString.length() == 0) return rendered;
+        String search = searchString.toString();
+        SpannableStringBuilder out = new SpannableStringBuilder(rendered);
+
+        // collect the notes in order
+        List<int[]> notes = new ArrayList<>();
+        Span.ClickHandler[] handlers = out.getSpans(0, out.length(), Span.ClickHandler.class);
+        for(Span.ClickHandler handler:handlers) {
+            if(!(handler.getSpan() instanceof NoteSpan)) continue;
+            int start = out.getSpanStart(handler);
+            int end = out.getSpanEnd(handler);
+            notes.add(new int[]{start, end});
+            CharSequence noteText = ((NoteSpan) handler.getSpan()).getNotes();
+            if(noteText != null && noteText.toString().toLowerCase().contains(search)) {
+                out.setSpan(new BackgroundColorSpan(highlightColor), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        }
+        Collections.sort(notes, (a, b) -> a[0] - b[0]);
+
+        ClickableRenderingEngine.highlightSearch(out, search, notes, null, (start, end) ->
+                out.setSpan(new BackgroundColorSpan(highlightColor), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE));
+        return out;
+    }
+
+    /**
+     * Creates the rendering group used to render a cache miss
+     */
+    public interface RenderingGroupFactory {
+        /**
+         * @param noteClickListener the listener that must be given to the rendering engines for notes
+         * @return
+         */
+        RenderingGroup create(Span.OnClickListener noteClickListener);
+    }
+
+    /**
+     * A cached render
+     */
+    public static class Entry {
+        private final CharSequence mText;
+        private final boolean mAddedMissingVerse;
+        private final ClickListenerRelay mNoteClickListener;
+
+        private Entry(CharSequence text, boolean addedMissingVerse, ClickListenerRelay noteClickListener) {
+            mText = text;
+            mAddedMissingVerse = addedMissingVerse;
+            mNoteClickListener = noteClickListener;
+        }
+
+        /**
+         * Returns the rendered text without search highlighting
+         * @return
+         */
+        public CharSequence getText() {
+            return mText;
+        }
+
+        /**
+         * Checks if the renderer added missing verses to the text
+         * @return
+         */
+        public boolean isAddedMissingVerse() {
+            return mAddedMissingVerse;
+        }
+    }
+
+    /**
+     * Identifies a render.
+     * The chunk text is compared by hash first so lookups are cheap.
+     */
+    public static class Key {
+        private final String mRenderer;
+        private final String mContainerSlug;
+        private final String mChapterSlug;
+        private final String mChunkSlug;
+        private final TranslationFormat mFormat;
+        private final int mFlags;
+        private final String mText;
+        private final int mHash;
+
+        /**
+         * @param renderer identifies the caller and the listeners it attaches e.g. "review-source"
+         * @param containerSlug the resource container or target translation
+         * @param chapterSlug
+         * @param chunkSlug
+         * @param format
+         * @param flags a combination of the FLAG_ constants
+         * @param text the raw chunk text
+         */
+        public Key(String renderer, String containerSlug, String chapterSlug, String chunkSlug,
+                   TranslationFormat format, int flags, String text) {
+            mRenderer = renderer;
+            mContainerSlug = containerSlug;
+            mChapterSlug = chapterSlug;
+            mChunkSlug = chunkSlug;
+            mFormat = format;
+            mFlags = flags;
+            mText = text == null ? "" : text;
+
+            int hash = mText.hashCode();
+            hash = 31 * hash + (mRenderer != null ? mRenderer.hashCode() : 0);
+            hash = 31 * hash + (mContainerSlug != null ? mContainerSlug.hashCode() : 0);
+            hash = 31 * hash + (mChapterSlug != null ? mChapterSlug.hashCode() : 0);
+            hash = 31 * hash + (mChunkSlug != null ? mChunkSlug.hashCode() : 0);
+            hash = 31 * hash + (mFormat != null ? mFormat.hashCode() : 0);
+            hash = 31 * hash + mFlags;
+            mHash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return mHash == key.mHash
+                    && mFlags == key.mFlags
+                    && mFormat == key.mFormat
+                    && equal(mRenderer, key.mRenderer)
+                    && equal(mContainerSlug, key.mContainerSlug)
+                    && equal(mChapterSlug, key.mChapterSlug)
+                    && equal(mChunkSlug, key.mChunkSlug)
+                    && mText.equals(key.mText);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * Forwards clicks to a listener that can be replaced after the text has been rendered
+     */
+    private static class ClickListenerRelay implements Span.OnClickListener {
+        private volatile Span.OnClickListener mListener;
+
+        void setListener(Span.OnClickListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onClick(View view, Span span, int start, int end) {
+            Span.OnClickListener listener = mListener;
+            if(listener != null) listener.onClick(view, span, start, end);
+        }
+
+        @Override
+        public void onLongClick(View view, Span span, int start, int end) {
+            Span.OnClickListener listener = mListener;
+            if(listener != null) listener.onLongClick(view, span, start, end);
+        }
+    }
+}
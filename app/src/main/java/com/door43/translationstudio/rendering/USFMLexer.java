@@ -0,0 +1,383 @@
+package com.door43.translationstudio.rendering;
+
+/**
+ * A streaming tokenizer for the markers understood by {@link USFMRenderer}.
+ * Tokens are reported as offsets into the input so the renderer can build its output
+ * in a single pass without slicing or re-scanning the text.
+ *
+ * Marker matching mirrors the patterns used by the original multi-pass renderer
+ * (see {@link com.door43.translationstudio.ui.spannables.USFMVerseSpan#PATTERN},
+ * {@link com.door43.translationstudio.ui.spannables.USFMNoteSpan#PATTERN} etc.).
+ */
+class USFMLexer {
+    public static final int TOKEN_EOF = 0;
+    public static final int TOKEN_TEXT = 1;
+    public static final int TOKEN_WHITESPACE = 2;
+    public static final int TOKEN_CHAPTER = 3;
+    public static final int TOKEN_VERSE = 4;
+    public static final int TOKEN_PARAGRAPH = 5;
+    public static final int TOKEN_NOTE = 6;
+    public static final int TOKEN_SELAH = 7;
+    public static final int TOKEN_PARA = 8;
+    public static final int TOKEN_PARA_EMPTY = 9;
+
+    private static final String NOTE_CLOSE = "\\f*";
+    private static final String PARA_OPEN = "<para";
+    private static final String PARA_CLOSE = "</para>";
+
+    private final String mIn;
+    private final int mEnd;
+    private int mPos;
+
+    private int mTokenStart;
+    private int mTokenEnd;
+    private int mValueStart;
+    private int mValueEnd;
+    private String mStyle;
+
+    // cached look ahead so unterminated markers do not cause repeated scans
+    private int mNextNoteClose = -1;
+    private int mNoteCloseFrom = Integer.MAX_VALUE;
+    private int mNextParaClose = -1;
+    private int mParaCloseFrom = Integer.MAX_VALUE;
+
+    /**
+     * @param in the text to tokenize
+     * @param start the inclusive start offset
+     * @param end the exclusive end offset
+     */
+    USFMLexer(String in, int start, int end) {
+        mIn = in;
+        mPos = start;
+        mEnd = end;
+    }
+
+    /**
+     * Reads the next token
+     * @return the token type or {@link #TOKEN_EOF} when the input is exhausted
+     */
+    public int next() {
+        mTokenStart = mPos;
+        mValueStart = mValueEnd = mPos;
+        mStyle = null;
+        if(mPos >= mEnd) {
+            return TOKEN_EOF;
+        }
+
+        char c = mIn.charAt(mPos);
+        int type = TOKEN_TEXT;
+        if(c == '\\') {
+            type = readMarker();
+        } else if(c == '<') {
+            type = readPara();
+        } else if(isSpace(c)) {
+            int p = mPos;
+            while(p < mEnd && isSpace(mIn.charAt(p))) p ++;
+            mPos = p;
+            type = TOKEN_WHITESPACE;
+        }
+
+        if(type == TOKEN_TEXT) {
+            // consume up to the next character that could begin a token
+            int p = mPos + 1;
+            while(p < mEnd) {
+                char n = mIn.charAt(p);
+                if(n == '\\' || n == '<' || isSpace(n)) break;
+                p ++;
+            }
+            mPos = p;
+        }
+        mTokenEnd = mPos;
+        return type;
+    }
+
+    /**
+     * Moves the lexer back so the remainder of the current token will be read again
+     * @param pos a position within the current token
+     */
+    public void rewind(int pos) {
+        if(pos >= mTokenStart && pos < mTokenEnd) {
+            mPos = pos;
+        }
+    }
+
+    public int getTokenStart() {
+        return mTokenStart;
+    }
+
+    public int getTokenEnd() {
+        return mTokenEnd;
+    }
+
+    /**
+     * Returns the start of the token value e.g. the verse number, note body or para content
+     * @return
+     */
+    public int getValueStart() {
+        return mValueStart;
+    }
+
+    public int getValueEnd() {
+        return mValueEnd;
+    }
+
+    /**
+     * Returns the para style or the note caller
+     * @return
+     */
+    public String getStyle() {
+        return mStyle;
+    }
+
+    /**
+     * Attempts to read a backslash marker at the current position
+     * @return the token type. {@link #TOKEN_TEXT} if this is not a recognized marker
+     */
+    private int readMarker() {
+        int p = mPos + 1;
+        if(p >= mEnd) return TOKEN_TEXT;
+        char m = mIn.charAt(p);
+        p ++;
+        switch (m) {
+            case 'c': {
+                // \c +\d+ *
+                int q = p;
+                while(q < mEnd && mIn.charAt(q) == ' ') q ++;
+                if(q == p) break;
+                int digits = q;
+                while(q < mEnd && isDigit(mIn.charAt(q))) q ++;
+                if(q == digits) break;
+                while(q < mEnd && mIn.charAt(q) == ' ') q ++;
+                mPos = q;
+                return TOKEN_CHAPTER;
+            }
+            case 'v': {
+                // \v\s(\d+(-\d+)?)\s?
+                if(p >= mEnd || !isSpace(mIn.charAt(p))) break;
+                int q = p + 1;
+                int start = q;
+                while(q < mEnd && isDigit(mIn.charAt(q))) q ++;
+                if(q == start) break;
+                if(q + 1 < mEnd && mIn.charAt(q) == '-' && isDigit(mIn.charAt(q + 1))) {
+                    q += 2;
+                    while(q < mEnd && isDigit(mIn.charAt(q))) q ++;
+                }
+                mValueStart = start;
+                mValueEnd = q;
+                if(q < mEnd && isSpace(mIn.charAt(q))) q ++;
+                mPos = q;
+                return TOKEN_VERSE;
+            }
+            case 'p': {
+                // \p\W
+                if(p >= mEnd || isWordChar(mIn.charAt(p))) break;
+                mPos = p + 1;
+                return TOKEN_PARAGRAPH;
+            }
+            case 'f': {
+                if(p < mEnd && isSpace(mIn.charAt(p))) {
+                    // \f\s(\S)\s([\s\S]+?)\f\*
+                    int caller = separatorEnd(p);
+                    if(caller >= mEnd || isSpace(mIn.charAt(caller))) break;
+                    if(caller + 1 >= mEnd || !isSpace(mIn.charAt(caller + 1))) break;
+                    int body = separatorEnd(caller + 1);
+                    int close = findNoteClose(body + 1);
+                    if(close < 0) break;
+                    mStyle = String.valueOf(mIn.charAt(caller));
+                    mValueStart = body;
+                    mValueEnd = close;
+                    mPos = close + NOTE_CLOSE.length();
+                    return TOKEN_NOTE;
+                } else if(mIn.startsWith("qs", p)) {
+                    // \fqs+\s([^\\]+)
+                    int q = p + 1;
+                    while(q < mEnd && mIn.charAt(q) == 's') q ++;
+                    if(q >= mEnd || !isSpace(mIn.charAt(q))) break;
+                    int start = separatorEnd(q);
+                    int end = start;
+                    while(end < mEnd && mIn.charAt(end) != '\\') end ++;
+                    if(end == start) break;
+                    mValueStart = start;
+                    mValueEnd = end;
+                    mPos = end;
+                    return TOKEN_SELAH;
+                }
+                break;
+            }
+        }
+        return TOKEN_TEXT;
+    }
+
+    /**
+     * Attempts to read a legacy para element at the current position
+     * e.g. <para style="s">...</para> or <para style="b"/>
+     * @return the token type. {@link #TOKEN_TEXT} if this is not a recognized element
+     */
+    private int readPara() {
+        if(!mIn.startsWith(PARA_OPEN, mPos)) return TOKEN_TEXT;
+        int p = mPos + PARA_OPEN.length();
+        int q = p;
+        while(q < mEnd && isSpace(mIn.charAt(q))) q ++;
+        if(q == p || !mIn.startsWith("style=\"", q)) return TOKEN_TEXT;
+        int styleStart = q + "style=\"".length();
+        int styleEnd = mIn.indexOf('"', styleStart);
+        if(styleEnd < 0 || styleEnd >= mEnd) return TOKEN_TEXT;
+        String style = mIn.substring(styleStart, styleEnd);
+        q = styleEnd + 1;
+        while(q < mEnd && isSpace(mIn.charAt(q))) q ++;
+        if(q >= mEnd) return TOKEN_TEXT;
+
+        if(mIn.startsWith("/>", q)) {
+            if(!style.equals("b")) return TOKEN_TEXT;
+            mStyle = style;
+            mPos = q + 2;
+            return TOKEN_PARA_EMPTY;
+        } else if(mIn.charAt(q) == '>') {
+            if(!isContentStyle(style)) return TOKEN_TEXT;
+            int start = q + 1;
+            while(start < mEnd && isSpace(mIn.charAt(start))) start ++;
+            int close = findParaClose(start);
+            if(close < 0) return TOKEN_TEXT;
+            mStyle = style;
+            mValueStart = start;
+            mValueEnd = close;
+            mPos = close + PARA_CLOSE.length();
+            return TOKEN_PARA;
+        }
+        return TOKEN_TEXT;
+    }
+
+    /**
+     * Returns the position after a single separating whitespace character.
+     * Runs of whitespace containing a line break count as a single separator because
+     * notes have always been matched after line breaks were collapsed.
+     * @param pos the position of the whitespace character
+     * @return
+     */
+    private int separatorEnd(int pos) {
+        int q = pos;
+        boolean lineBreak = false;
+        while(q < mEnd && isSpace(mIn.charAt(q))) {
+            if(mIn.charAt(q) == '\n') lineBreak = true;
+            q ++;
+        }
+        return lineBreak ? q : pos + 1;
+    }
+
+    private int findNoteClose(int from) {
+        if(from < mNoteCloseFrom || (mNextNoteClose != -1 && mNextNoteClose < from)) {
+            mNextNoteClose = indexOf(NOTE_CLOSE, from);
+        }
+        mNoteCloseFrom = from;
+        return mNextNoteClose;
+    }
+
+    private int findParaClose(int from) {
+        if(from < mParaCloseFrom || (mNextParaClose != -1 && mNextParaClose < from)) {
+            mNextParaClose = indexOf(PARA_CLOSE, from);
+        }
+        mParaCloseFrom = from;
+        return mNextParaClose;
+    }
+
+    private int indexOf(String needle, int from) {
+        int i = mIn.indexOf(needle, from);
+        if(i < 0 || i + needle.length() > mEnd) return -1;
+        return i;
+    }
+
+    /**
+     * Checks if this is a para style that wraps content
+     * @param style
+     * @return
+     */
+    private static boolean isContentStyle(String style) {
+        switch (style) {
+            case "ms":
+            case "s":
+            case "p":
+            case "cl":
+            case "qr":
+                return true;
+            default:
+                return getPoeticLevel(style) >= 0;
+        }
+    }
+
+    /**
+     * Returns the indent level of a poetic line style e.g. q1
+     * @param style
+     * @return the level or -1 if this is not a poetic line style
+     */
+    public static int getPoeticLevel(String style) {
+        if(style.length() < 2 || style.charAt(0) != 'q') return -1;
+        for(int i = 1; i < style.length(); i ++) {
+            if(!isDigit(style.charAt(i))) return -1;
+        }
+        try {
+            return Integer.parseInt(style.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Matches the regular expression character class \s
+     * @param c
+     * @return
+     */
+    public static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Matches the regular expression character class \d
+     * @param c
+     * @return
+     */
+    public static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Matches the regular expression character class \w
+     * @param c
+     * @return
+     */
+    public static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    /**
+     * Replaces runs of whitespace that contain a line break with a single space
+     * @param in
+     * @param start
+     * @param end
+     * @return
+     */
+    public static String collapseLineBreaks(String in, int start, int end) {
+        StringBuilder out = new StringBuilder(end - start);
+        int i = start;
+        while(i < end) {
+            char c = in.charAt(i);
+            if(!isSpace(c)) {
+                out.append(c);
+                i ++;
+                continue;
+            }
+            int runEnd = i;
+            boolean lineBreak = false;
+            while(runEnd < end && isSpace(in.charAt(runEnd))) {
+                if(in.charAt(runEnd) == '\n') lineBreak = true;
+                runEnd ++;
+            }
+            if(lineBreak) {
+                out.append(' ');
+            } else {
+                out.append(in, i, runEnd);
+            }
+            i = runEnd;
+        }
+        return out.toString();
+    }
+}
@@ -4,22 +4,22 @@ import android.content.Context;
 import android.graphics.Typeface;
 import android.text.Layout;
 import android.text.Spannable;
-import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.text.TextUtils;
 import android.text.style.AlignmentSpan;
 import android.text.style.BackgroundColorSpan;
 import android.text.style.StyleSpan;
 
-import com.door43.translationstudio.ui.spannables.USFMChar;
 import com.door43.translationstudio.ui.spannables.USFMNoteSpan;
 import com.door43.translationstudio.ui.spannables.Span;
-import com.door43.translationstudio.ui.spannables.USFMParagraphSpan;
 import com.door43.translationstudio.ui.spannables.USFMVersePinSpan;
 import com.door43.translationstudio.ui.spannables.USFMVerseSpan;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -127,553 +127,598 @@ public class USFMRenderer extends ClickableRenderingEngine {
     }
 
     /**
-     * Renders the USFM input into a readable form
+     * Renders the USFM input into a readable form.
+     * The input is tokenized by {@link USFMLexer} and laid out in a single linear pass.
+     * The spans are applied once the text is complete.
      * @param in the raw input string
      * @return
      */
     @Override
     public CharSequence render(CharSequence in) {
-        CharSequence out = in;
-
-        out = trimWhitespace(out);
-        if(!mRenderLinebreaks) {
-            out = renderLineBreaks(out);  // TODO: Eventually we may want to convert these to paragraphs.
-            if(isStopped()) return in;
-        }
-//        out = renderWhiteSpace(out);
-        out = renderChapterMarker(out);
-        if(isStopped()) return in;
-        out = renderMajorSectionHeading(out);
-        if(isStopped()) return in;
-        out = renderSectionHeading(out);
-        if(isStopped()) return in;
-        out = renderParagraphMarker(out);
-        if(isStopped()) return in;
-        out = renderParagraph(out);
-        if(isStopped()) return in;
-        out = renderBlankLine(out);
-        if(isStopped()) return in;
-        out = renderPoeticLine(out);
-        if(isStopped()) return in;
-        out = renderRightAlignedPoeticLine(out);
-        if(isStopped()) return in;
-        out = renderVerse(out);
-        if(isStopped()) return in;
-        out = renderHighlightSearch(out);
-        if(isStopped()) return in;
-        out = renderNote(out);
-        if(isStopped()) return in;
-        out = renderChapterLabel(out);
-        if(isStopped()) return in;
-        out = renderSelah(out);
-        if(isStopped()) return in;
-
-        return out;
+        Output out = layout(in);
+        if(out == null) return in;
+        return out.toSpannable();
     }
 
     /**
-     * Renders all the Selah tags
-     * @param in
-     * @return
+     * Lays out the rendered text without building the spannable
+     * @param in the raw input string
+     * @return the output or null if rendering was stopped
      */
-    private CharSequence renderSelah(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = USFMChar.getPattern(USFMChar.STYLE_SELAH);
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
-            span.setSpan(new StyleSpan(Typeface.ITALIC), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n", span);
-            lastIndex = matcher.end();
-        }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
-    }
+    Output layout(CharSequence in) {
+        mAddedMissingVerse = false;
+        String text = normalize(in);
+        Output out = new Output();
+        Set<Integer> foundVerses = new HashSet<>();
 
-    /**
-     * Strips out new lines and replaces them with a single space
-     * @param in
-     * @return
-     */
-    public CharSequence trimWhitespace(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile("(^\\s*|\\s*$)");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "");
-            lastIndex = matcher.end();
-        }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return stripCarriageReturns(out);
-    }
+        if(!renderTokens(text, 0, text.length(), out, foundVerses)) return null;
 
-    /**
-     * Renders section headings.
-     * @param in
-     * @return
-     */
-    public CharSequence renderSectionHeading(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("s");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
-            span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), span, "\n");
-            lastIndex = matcher.end();
+        if(mRenderVerses) {
+            populateMissingVerses(out, foundVerses);
         }
+        if(isStopped()) return null;
 
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        if(!highlightSearch(out)) return null;
         return out;
     }
 
     /**
-     * Renders highlights search string.
+     * Trims the input, strips carriage returns and (when line breaks are disabled)
+     * replaces line breaks with a single space.
      * @param in
      * @return
      */
-    public CharSequence renderHighlightSearch(CharSequence in) {
-        if(mSearch == null) {
-            return in;
+    private String normalize(CharSequence in) {
+        int start = 0;
+        int end = in.length();
+        while(start < end && USFMLexer.isSpace(in.charAt(start))) start ++;
+        while(end > start && USFMLexer.isSpace(in.charAt(end - 1))) end --;
+
+        StringBuilder out = new StringBuilder(end - start);
+        for(int i = start; i < end; i ++) {
+            char c = in.charAt(i);
+            if(c != '\r') out.append(c);
         }
-
-        CharSequence out = "";
-        String lowerCaseText = in.toString().toLowerCase();
-        int lastIndex = 0;
-
-        while(lastIndex < in.length()) {
-            if(isStopped()) return in;
-
-            int pos = lowerCaseText.indexOf(mSearch, lastIndex);
-            if(pos < 0) {
-                break;
-            }
-
-            SpannableStringBuilder span = new SpannableStringBuilder(in.subSequence(pos, pos + mSearch.length()));
-            span.setSpan(new BackgroundColorSpan(mHighlightColor), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-
-            out = TextUtils.concat(out, in.subSequence(lastIndex, pos), span);
-
-            lastIndex = pos + mSearch.length();
+        if(mRenderLinebreaks) {
+            return out.toString();
+        } else {
+            String stripped = out.toString();
+            return USFMLexer.collapseLineBreaks(stripped, 0, stripped.length());
         }
-
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
     }
 
     /**
-     * Renders major section headings.
-     * @param in
-     * @return
+     * Emits the tokens found within a range of the input
+     * @param in the normalized input
+     * @param start
+     * @param end
+     * @param out
+     * @param foundVerses collects the verses that were rendered
+     * @return false if rendering was stopped
      */
-    public CharSequence renderMajorSectionHeading(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("ms");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-
-        while(matcher.find()) {
-            if(isStopped()) return in;
-
-            if (mSuppressLeadingMajorSectionHeadings && 0 == matcher.start()) {
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
-            } else {
-                SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1).toUpperCase());
-                span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), span, "\n");
+    private boolean renderTokens(String in, int start, int end, Output out, Set<Integer> foundVerses) {
+        USFMLexer lexer = new USFMLexer(in, start, end);
+        int token;
+        while((token = lexer.next()) != USFMLexer.TOKEN_EOF) {
+            if(isStopped()) return false;
+            boolean leading = out.leading;
+            if(token != USFMLexer.TOKEN_CHAPTER) {
+                out.leading = false;
+            }
+            switch (token) {
+                case USFMLexer.TOKEN_CHAPTER:
+                    // chapter markers are trimmed from the chunks
+                    break;
+                case USFMLexer.TOKEN_VERSE:
+                    if(mRenderVerses) {
+                        out.append(renderVerse(in.substring(lexer.getValueStart(), lexer.getValueEnd()), foundVerses));
+                    } else {
+                        // just display USFM for verse
+                        out.text(in, lexer.getTokenStart(), lexer.getTokenEnd());
+                    }
+                    break;
+                case USFMLexer.TOKEN_PARAGRAPH:
+                    if(mRenderParagraphs) {
+                        out.lineBreak("\n");
+                    } else {
+                        // just display \p marker. The following character may begin another marker
+                        out.text(in, lexer.getTokenStart(), lexer.getTokenStart() + 2);
+                        lexer.rewind(lexer.getTokenStart() + 2);
+                    }
+                    break;
+                case USFMLexer.TOKEN_NOTE: {
+                    String noteText = USFMLexer.collapseLineBreaks(in, lexer.getValueStart(), lexer.getValueEnd());
+                    USFMNoteSpan note = USFMNoteSpan.parseNote(lexer.getStyle(), noteText);
+                    note.setOnClickListener(mNoteListener);
+                    if(mSearch != null) {
+                        note.setHighlight(noteText.toLowerCase().contains(mSearch));
+                    }
+                    int noteStart = out.length();
+                    out.append(note.toCharSequence(context));
+                    out.notes.add(new int[]{noteStart, out.length()});
+                    break;
+                }
+                case USFMLexer.TOKEN_SELAH: {
+                    out.write("\n");
+                    int selahStart = out.length();
+                    out.text(in, lexer.getValueStart(), lexer.getValueEnd());
+                    out.style(selahStart, Output.STYLE_RIGHT_ALIGNED);
+                    break;
+                }
+                case USFMLexer.TOKEN_PARA_EMPTY:
+                    // blank line
+                    out.lineBreak("\n\n");
+                    break;
+                case USFMLexer.TOKEN_PARA:
+                    if(!renderPara(in, lexer, leading, out, foundVerses)) return false;
+                    break;
+                default:
+                    out.text(in, lexer.getTokenStart(), lexer.getTokenEnd());
+                    break;
             }
-            lastIndex = matcher.end();
         }
-
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        return true;
     }
 
     /**
-     * Strips out extra whitespace from the text
-     * @param in
-     * @return
+     * Emits a legacy para element
+     * @param in the normalized input
+     * @param lexer the lexer positioned on the para token
+     * @param leading true if only chapter markers or suppressed headings precede the element
+     * @param out
+     * @param foundVerses
+     * @return false if rendering was stopped
      */
-    public CharSequence renderWhiteSpace(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile("(\\s+)");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), " ");
-            lastIndex = matcher.end();
+    private boolean renderPara(String in, USFMLexer lexer, boolean leading, Output out, Set<Integer> foundVerses) {
+        String style = lexer.getStyle();
+        int contentStart = lexer.getValueStart();
+        int contentEnd = lexer.getValueEnd();
+        int start;
+        switch (style) {
+            case "ms":
+                if(mSuppressLeadingMajorSectionHeadings && leading && !out.suppressedHeading) {
+                    out.leading = true;
+                    out.suppressedHeading = true;
+                    return true;
+                }
+                start = out.length();
+                String heading = in.substring(contentStart, contentEnd).toUpperCase();
+                out.text(heading, 0, heading.length());
+                out.style(start, Output.STYLE_HEADING);
+                out.lineBreak("\n");
+                return true;
+            case "s":
+                start = out.length();
+                if(!renderTokens(in, contentStart, contentEnd, out, foundVerses)) return false;
+                out.style(start, Output.STYLE_HEADING);
+                out.lineBreak("\n");
+                return true;
+            case "p":
+                if(!leading) {
+                    out.lineBreak("\n");
+                }
+                out.write("    ");
+                if(!renderTokens(in, contentStart, contentEnd, out, foundVerses)) return false;
+                out.lineBreak("\n");
+                return true;
+            case "cl":
+                start = out.length();
+                if(!renderTokens(in, contentStart, contentEnd, out, foundVerses)) return false;
+                out.style(start, Output.STYLE_LABEL);
+                out.lineStart = false;
+                return true;
+            case "qr":
+                out.write("\n");
+                start = out.length();
+                if(!renderTokens(in, contentStart, contentEnd, out, foundVerses)) return false;
+                out.style(start, Output.STYLE_RIGHT_ALIGNED);
+                out.lineStart = false;
+                return true;
+            default:
+                int level = USFMLexer.getPoeticLevel(style);
+                // don't stack new lines
+                if(!out.lineStart) {
+                    out.write("\n");
+                }
+                for(int i = 0; i < level; i ++) {
+                    out.write("    ");
+                }
+                start = out.length();
+                if(!renderTokens(in, contentStart, contentEnd, out, foundVerses)) return false;
+                out.style(start, Output.STYLE_POETRY);
+                out.lineStart = false;
+                if(hasTrailingParagraph(in, lexer.getTokenEnd())) {
+                    out.write("\n");
+                }
+                return true;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
     }
 
     /**
-     * Strips out new lines and replaces them with a single space
-     * @param in
+     * Checks if a poetic line is followed by both a line break and another para element,
+     * neither of which may directly follow the line.
+     * @param in the normalized input
+     * @param pos the end of the poetic line
      * @return
      */
-    public CharSequence renderLineBreaks(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile("(\\s*\\n+\\s*)");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), " ");
-            lastIndex = matcher.end();
+    private boolean hasTrailingParagraph(String in, int pos) {
+        USFMLexer lexer = new USFMLexer(in, pos, in.length());
+        boolean leading = true;
+        boolean lineBreak = false;
+        boolean para = false;
+        int token;
+        while(!(lineBreak && para) && (token = lexer.next()) != USFMLexer.TOKEN_EOF) {
+            switch (token) {
+                case USFMLexer.TOKEN_WHITESPACE:
+                    for(int i = lexer.getTokenStart(); i < lexer.getTokenEnd(); i ++) {
+                        char c = in.charAt(i);
+                        if(c == '\n') {
+                            if(leading) return false;
+                            lineBreak = true;
+                        }
+                        if(c != ' ') leading = false;
+                    }
+                    break;
+                case USFMLexer.TOKEN_PARAGRAPH:
+                    if(mRenderParagraphs) {
+                        if(leading) return false;
+                        lineBreak = true;
+                    } else {
+                        // the marker is displayed along with the character that follows it
+                        lineBreak = lineBreak || hasLineBreak(in, lexer);
+                    }
+                    leading = false;
+                    break;
+                case USFMLexer.TOKEN_PARA_EMPTY:
+                    if(leading) return false;
+                    lineBreak = true;
+                    leading = false;
+                    break;
+                case USFMLexer.TOKEN_PARA:
+                    String style = lexer.getStyle();
+                    if(style.equals("ms") || style.equals("s")) {
+                        // headings end with their line break
+                        if(leading && lexer.getValueStart() == lexer.getValueEnd()) return false;
+                        lineBreak = true;
+                    } else if(style.equals("p")) {
+                        if(leading) return false;
+                        lineBreak = true;
+                    } else {
+                        if(leading) return false;
+                        para = true;
+                        lineBreak = lineBreak || hasLineBreak(in, lexer);
+                    }
+                    leading = false;
+                    break;
+                case USFMLexer.TOKEN_TEXT:
+                    if(in.startsWith("<para", lexer.getTokenStart())) {
+                        // unsupported para styles are left as text
+                        if(leading) return false;
+                        para = true;
+                    }
+                    leading = false;
+                    break;
+                default:
+                    // notes may contain line breaks
+                    lineBreak = lineBreak || hasLineBreak(in, lexer);
+                    leading = false;
+                    break;
+            }
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        return lineBreak && para;
     }
 
     /**
-     * Strips out new lines and replaces them with a single space
-     * @param in
+     * Checks if the current token contains a line break or a marker within its value
+     * that will render a line break
+     * @param in the normalized input
+     * @param element the lexer positioned on the token
      * @return
      */
-    public CharSequence stripCarriageReturns(CharSequence in) {
-        if((in == null) || (in.length() <= 0)) {
-            return in;
-        }
-
-        String remove = "\r";
-        String[] parts = in.toString().split(remove);
-        if( (parts == null) || (parts.length <= 1)) {
-            return in;
+    private boolean hasLineBreak(String in, USFMLexer element) {
+        int lineBreak = in.indexOf('\n', element.getTokenStart());
+        if(lineBreak >= 0 && lineBreak < element.getTokenEnd()) return true;
+
+        USFMLexer lexer = new USFMLexer(in, element.getValueStart(), element.getValueEnd());
+        int token;
+        while((token = lexer.next()) != USFMLexer.TOKEN_EOF) {
+            switch (token) {
+                case USFMLexer.TOKEN_PARAGRAPH:
+                    if(mRenderParagraphs) return true;
+                    break;
+                case USFMLexer.TOKEN_PARA_EMPTY:
+                    return true;
+                case USFMLexer.TOKEN_PARA:
+                    String style = lexer.getStyle();
+                    if(style.equals("ms") || style.equals("s") || style.equals("p")) return true;
+                    break;
+            }
         }
-
-        String out = TextUtils.join("",parts);
-        return out;
+        return false;
     }
 
     /**
-     * Renders all note tags
-     * @param in
+     * Renders a verse marker
+     * @param number the verse number or range e.g. 1-3
+     * @param foundVerses collects the verses that were rendered
      * @return
      */
-    public CharSequence renderNote(CharSequence in) {
-        // Remove line breaks from the note
-        in = renderLineBreaks(in);
-
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile(USFMNoteSpan.PATTERN);
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            String noteText = matcher.group(2);
-            USFMNoteSpan note = USFMNoteSpan.parseNote(matcher.group(1), noteText);
-            note.setOnClickListener(mNoteListener);
-            if(mSearch != null) {
-                boolean foundSearch = noteText.toLowerCase().contains(mSearch);
-                note.setHighlight(foundSearch);
+    private CharSequence renderVerse(String number, Set<Integer> foundVerses) {
+        USFMVerseSpan verse;
+        if(mVerseListener == null) {
+            verse = new USFMVerseSpan(number);
+        } else {
+            verse = new USFMVersePinSpan(number);
+            verse.setOnClickListener(mVerseListener);
+        }
+        int startVerse = verse.getStartVerseNumber();
+        int endVerse = verse.getEndVerseNumber();
+        if(endVerse > startVerse) {
+            for(int i = startVerse; i <= endVerse; i ++) {
+                foundVerses.add(i);
             }
-            out = TextUtils.concat(
-                    out,
-                    in.subSequence(lastIndex, matcher.start()),
-                    note.toCharSequence(context)
-            );
-
-            lastIndex = matcher.end();
+        } else {
+            foundVerses.add(startVerse);
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        return verse.toCharSequence(context);
     }
 
     /**
-     * Renders all verse tags
-     * @param in
-     * @return
+     * Inserts verse markers for any expected verses that were not found in the input
+     * @param out
+     * @param foundVerses
      */
-    public CharSequence renderVerse(CharSequence in) {
-        mAddedMissingVerse = false;
-        CharSequence out = "";
-
-        CharSequence insert = "";
+    private void populateMissingVerses(Output out, Set<Integer> foundVerses) {
+        int first;
+        int last;
+        if (mExpectedVerseRange.length == 1) {
+            first = last = mExpectedVerseRange[0];
+        } else if (mExpectedVerseRange.length == 2) {
+            first = mExpectedVerseRange[0];
+            last = mExpectedVerseRange[1];
+        } else {
+            return;
+        }
 
-        Pattern pattern = Pattern.compile(USFMVerseSpan.PATTERN);
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        List<Integer> foundVerses = new ArrayList<>();
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            if(mRenderVerses) {
-                USFMVerseSpan verse;
-                if(mVerseListener == null) {
-                    verse = new USFMVerseSpan(matcher.group(1));
+        List<CharSequence> missing = new ArrayList<>();
+        for (int i = first; i <= last; i ++) {
+            if (!foundVerses.contains(i)) {
+                // generate missing verse
+                Span verse;
+                if (mVerseListener == null) {
+                    verse = new USFMVerseSpan(i);
                 } else {
-                    verse = new USFMVersePinSpan(matcher.group(1));
+                    verse = new USFMVersePinSpan(i);
                     verse.setOnClickListener(mVerseListener);
                 }
-
-                // record found verses
-                int startVerse = verse.getStartVerseNumber();
-                int endVerse = verse.getEndVerseNumber();
-                if(endVerse > startVerse) {
-                    // range of verses
-                    for(int i = startVerse; i <= endVerse; i ++) {
-                        if(!foundVerses.contains(i)) {
-                            foundVerses.add(i);
-                        }
-                    }
-                } else {
-                    if(!foundVerses.contains(startVerse)) {
-                        foundVerses.add(startVerse);
-                    }
-                }
-                // render verses not already found
-                out = TextUtils.concat(
-                        out,
-                        in.subSequence(lastIndex, matcher.start()),
-                        insert,
-                        verse.toCharSequence(context)
-                );
-            } else {
-                // just display USFM for verse
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.end()));
-            }
-            lastIndex = matcher.end();
-        }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-
-        if(mRenderVerses) {
-            // populate missing verses
-            if (mExpectedVerseRange.length == 1) {
-                if (!foundVerses.contains(mExpectedVerseRange[0])) {
-                    // generate missing verse
-                    Span verse;
-                    if (mVerseListener == null) {
-                        verse = new USFMVerseSpan(mExpectedVerseRange[0]);
-                    } else {
-                        verse = new USFMVersePinSpan(mExpectedVerseRange[0]);
-                        verse.setOnClickListener(mVerseListener);
-                    }
-                    out = TextUtils.concat(verse.toCharSequence(context), out);
-                    mAddedMissingVerse = true;
-                }
-            } else if (mExpectedVerseRange.length == 2) {
-                for (int i = mExpectedVerseRange[1]; i >= mExpectedVerseRange[0]; i--) {
-                    if (!foundVerses.contains(i)) {
-                        // generate missing verse
-                        Span verse;
-                        if (mVerseListener == null) {
-                            verse = new USFMVerseSpan(i);
-                        } else {
-                            verse = new USFMVersePinSpan(i);
-                            verse.setOnClickListener(mVerseListener);
-                        }
-                        out = TextUtils.concat(verse.toCharSequence(context), out);
-                        mAddedMissingVerse = true;
-                    }
-                }
+                missing.add(verse.toCharSequence(context));
+                mAddedMissingVerse = true;
             }
         }
-        return out;
+        out.prepend(missing);
     }
 
     /**
-     * Renders all paragraph tags
-     * @param in
-     * @return
+     * Highlights the search string in the rendered output.
+     * Notes are skipped since they indicate matches with their own highlight.
+     * @param out
+     * @return false if rendering was stopped
      */
-    public CharSequence renderParagraph(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("p");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            String lineBreak = "";
-            if(matcher.start() > 0) {
-                lineBreak = "\n";
-            }
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), lineBreak, "    ", in.subSequence(matcher.start(1), matcher.end(1)), "\n");
-            lastIndex = matcher.end();
+    private boolean highlightSearch(Output out) {
+        if(mSearch == null) {
+            return true;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        return highlightSearch(out.text, mSearch, out.notes, this,
+                (start, end) -> out.styles.add(new int[]{Output.STYLE_HIGHLIGHT, start, end}));
     }
 
     /**
-     * Replaces paragraph marker with new line
-     * @param in
-     * @return
+     * Accumulates the rendered output.
+     * The text is collected as plain characters. Rendered spans (verses and notes) and styles
+     * are recorded by offset and only applied when the spannable is built.
      */
-    public CharSequence renderParagraphMarker(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile(USFMParagraphSpan.PATTERN, Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
+    class Output {
+        static final int STYLE_HEADING = 1;
+        static final int STYLE_LABEL = 2;
+        static final int STYLE_RIGHT_ALIGNED = 3;
+        static final int STYLE_POETRY = 4;
+        static final int STYLE_HIGHLIGHT = 5;
+
+        final StringBuilder text = new StringBuilder();
+        final List<int[]> notes = new ArrayList<>();
+        final List<int[]> styles = new ArrayList<>();
+        private final List<CharSequence> mRendered = new ArrayList<>();
+        private final List<Integer> mRenderedStarts = new ArrayList<>();
+        /**
+         * Whether only chapter markers or suppressed headings have been read so far
+         */
+        boolean leading = true;
+        boolean suppressedHeading = false;
+        /**
+         * Whether nothing but spaces has been written since the last line break.
+         * Poetic lines only begin with a line break when this is false.
+         */
+        boolean lineStart = true;
+
+        int length() {
+            return text.length();
+        }
 
-            if (mRenderParagraphs) {
-                USFMParagraphSpan span = new USFMParagraphSpan();
-                out = TextUtils.concat(
-                        out,
-                        in.subSequence(lastIndex, matcher.start()),
-                        span.toCharSequence(context)
-                );
-            } else {
-                // just display \p marker
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.end()));
+        /**
+         * Appends text from the input
+         * @param in
+         * @param start
+         * @param end
+         */
+        void text(CharSequence in, int start, int end) {
+            for(int i = start; i < end; i ++) {
+                char c = in.charAt(i);
+                if(c == '\n') {
+                    lineStart = true;
+                } else if(c != ' ') {
+                    lineStart = false;
+                }
             }
-            lastIndex = matcher.end();
+            text.append(in, start, end);
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
-    }
 
-    /**
-     * Renders all blank line tags
-     * @param in
-     * @return
-     */
-    public CharSequence renderBlankLine(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraShortPattern("b");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n\n");
-            lastIndex = matcher.end();
+        /**
+         * Appends rendered content
+         * @param content
+         */
+        void append(CharSequence content) {
+            if(content.length() == 0) return;
+            mRenderedStarts.add(text.length());
+            mRendered.add(content);
+            text.append(content);
+            lineStart = false;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
-    }
 
-    /**
-     * Trims off the leading chapter marker from chunks
-     * @param in
-     * @return
-     */
-    public CharSequence renderChapterMarker(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile("\\\\c +\\d+ *", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "");
-            lastIndex = matcher.end();
+        /**
+         * Appends line breaks that end a paragraph, blank line or heading
+         * @param breaks
+         */
+        void lineBreak(String breaks) {
+            text.append(breaks);
+            lineStart = true;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
-    }
-
-    /**
-     * Renders a chapter label
-     * @param in
-     * @return
-     */
-    public CharSequence renderChapterLabel(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("cl");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while (matcher.find()) {
-            if(isStopped()) return in;
 
-            SpannableString span = new SpannableString(in.subSequence(matcher.start(1), matcher.end(1)));
-            span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-
-            out = TextUtils.concat(out,  in.subSequence(lastIndex, matcher.start()), span);
-            lastIndex = matcher.end();
+        /**
+         * Appends generated whitespace such as indentation
+         * @param whitespace
+         */
+        void write(String whitespace) {
+            text.append(whitespace);
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
-    }
 
-    /**
-     * Renders all poetic line tags
-     * @param in
-     * @return
-     */
-    public CharSequence renderPoeticLine(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("q(\\d+)");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            int level = Integer.parseInt(matcher.group(1));
-            SpannableString span = new SpannableString(in.subSequence(matcher.start(2), matcher.end(2)));
-            span.setSpan(new StyleSpan(Typeface.NORMAL), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            String padding = "";
-            for(int i = 0; i < level; i ++) {
-                padding += "    ";
+        /**
+         * Inserts rendered content at the front of the output
+         * @param content
+         */
+        void prepend(List<CharSequence> content) {
+            int length = 0;
+            for(CharSequence c : content) {
+                length += c.length();
             }
+            if(length == 0) return;
 
-            // outdent for verse markers
-            if (level > 0 && span.toString().indexOf("<verse number") == 0) {
-                padding = padding.substring(0, padding.length() - 2);
+            StringBuilder prefix = new StringBuilder(length);
+            List<Integer> starts = new ArrayList<>();
+            for(CharSequence c : content) {
+                starts.add(prefix.length());
+                prefix.append(c);
             }
+            text.insert(0, prefix);
+            for(int i = 0; i < mRenderedStarts.size(); i ++) {
+                mRenderedStarts.set(i, mRenderedStarts.get(i) + length);
+            }
+            for(int[] note : notes) {
+                note[0] += length;
+                note[1] += length;
+            }
+            for(int[] style : styles) {
+                style[1] += length;
+                style[2] += length;
+            }
+            mRendered.addAll(0, content);
+            mRenderedStarts.addAll(0, starts);
+        }
 
-            // don't stack new lines
-            String leadingLineBreak = "";
-            String trailingLineBreak = "";
+        /**
+         * Applies a style to the output from start to the current end
+         * @param start
+         * @param style
+         */
+        void style(int start, int style) {
+            if(text.length() <= start) return;
+            styles.add(new int[]{style, start, text.length()});
+        }
 
-            // leading
-            if(in.subSequence(0, matcher.start()) != null) {
-                String previous = in.subSequence(0, matcher.start()).toString().replace(" ", "");
-                int lastLineBreak = previous.lastIndexOf("\n");
-                if (lastLineBreak < previous.length() - 1) {
-                    leadingLineBreak = "\n";
+        /**
+         * Builds the spannable from the text, the rendered content and the styles
+         * @return
+         */
+        SpannableStringBuilder toSpannable() {
+            SpannableStringBuilder builder = new SpannableStringBuilder(text);
+            for(int i = 0; i < mRendered.size(); i ++) {
+                CharSequence content = mRendered.get(i);
+                if(content instanceof Spanned) {
+                    TextUtils.copySpansFrom((Spanned) content, 0, content.length(), Object.class, builder, mRenderedStarts.get(i));
                 }
             }
-
-            // trailing
-            if(in.subSequence(matcher.end(), in.length()) != null) {
-                String next = in.subSequence(matcher.end(), in.length()).toString().replace(" ", "");
-                int nextLineBreak = next.indexOf("\n");
-                int nextParagraph = next.indexOf("<para");
-                if (nextLineBreak > 0 && nextParagraph > 0) {
-                    trailingLineBreak = "\n";
+            for(int[] style : styles) {
+                switch (style[0]) {
+                    case STYLE_HEADING:
+                        setSpans(builder, style,
+                                new StyleSpan(Typeface.BOLD),
+                                new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER));
+                        break;
+                    case STYLE_LABEL:
+                        setSpans(builder, style, new StyleSpan(Typeface.BOLD));
+                        break;
+                    case STYLE_RIGHT_ALIGNED:
+                        setSpans(builder, style,
+                                new StyleSpan(Typeface.ITALIC),
+                                new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE));
+                        break;
+                    case STYLE_POETRY:
+                        setSpans(builder, style, new StyleSpan(Typeface.NORMAL));
+                        break;
+                    case STYLE_HIGHLIGHT:
+                        setSpans(builder, style, new BackgroundColorSpan(mHighlightColor));
+                        break;
                 }
             }
+            return builder;
+        }
 
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), leadingLineBreak, padding, span, trailingLineBreak);
-            lastIndex = matcher.end();
+        private void setSpans(SpannableStringBuilder builder, int[] style, Object... spans) {
+            for(Object span : spans) {
+                builder.setSpan(span, style[1], style[2], Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
     }
 
     /**
-     * Renders all right-aligned poetic line tags
+     * Renders all verse tags. The rest of the input is kept as it is.
      * @param in
      * @return
      */
-    public CharSequence renderRightAlignedPoeticLine(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("qr");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
+    public CharSequence renderVerse(CharSequence in) {
+        mAddedMissingVerse = false;
+        String text = in.toString();
+        Output out = new Output();
+        Set<Integer> foundVerses = new HashSet<>();
 
-        while(matcher.find()) {
+        USFMLexer lexer = new USFMLexer(text, 0, text.length());
+        int token;
+        while((token = lexer.next()) != USFMLexer.TOKEN_EOF) {
             if(isStopped()) return in;
-            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
-            span.setSpan(new StyleSpan(Typeface.ITALIC), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n", span);
-            lastIndex = matcher.end();
+            switch (token) {
+                case USFMLexer.TOKEN_VERSE:
+                    if(mRenderVerses) {
+                        out.append(renderVerse(text.substring(lexer.getValueStart(), lexer.getValueEnd()), foundVerses));
+                    } else {
+                        // just display USFM for verse
+                        out.text(text, lexer.getTokenStart(), lexer.getTokenEnd());
+                    }
+                    break;
+                case USFMLexer.TOKEN_TEXT:
+                case USFMLexer.TOKEN_WHITESPACE:
+                    out.text(text, lexer.getTokenStart(), lexer.getTokenEnd());
+                    break;
+                default:
+                    // other markers are kept but may contain verse markers
+                    out.text(text, lexer.getTokenStart(), lexer.getTokenStart() + 1);
+                    lexer.rewind(lexer.getTokenStart() + 1);
+                    break;
+            }
         }
 
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        if(mRenderVerses) {
+            populateMissingVerses(out, foundVerses);
+        }
+        return out.toSpannable();
     }
 
     /**
@@ -704,15 +749,6 @@ public class USFMRenderer extends ClickableRenderingEngine {
         return Pattern.compile("<para\\s+style=\""+style+"\"\\s*>\\s*(((?!</para>).)*)</para>", Pattern.DOTALL);  // TODO: 3/1/16 need to upgrade to USFM
     }
 
-    /**
-     * Returns a pattern that matches a single para tag e.g. <para style=""/>
-     * @param style a string or regular expression to identify the style
-     * @return
-     */
-    private static Pattern paraShortPattern(String style) {
-        return Pattern.compile("<para\\s+style=\""+style+"\"\\s*/>", Pattern.DOTALL); // TODO: 3/1/16 need to upgrade to USFM
-    }
-
     /**
      * see if missing verse was added
      */
@@ -0,0 +1,295 @@
+package com.door43.translationstudio.rendering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A lenient pull parser for USX fragments.
+ * Unlike a strict xml parser this tolerates the unbalanced and unrooted markup found in
+ * chunks of legacy USX. Anything that cannot be read as a tag is reported as text.
+ *
+ * A single instance can be reused for any number of inputs by calling {@link #setInput(String, int, int)}.
+ */
+class USXPullParser {
+    public static final int END_DOCUMENT = 1;
+    public static final int START_TAG = 2;
+    public static final int END_TAG = 3;
+    public static final int TEXT = 4;
+
+    private String mIn = "";
+    private int mPos;
+    private int mEnd;
+
+    private int mType = END_DOCUMENT;
+    private int mEventStart;
+    private int mEventEnd;
+    private String mName;
+    private boolean mEmptyElement;
+    private boolean mStrict;
+    private boolean mSpaceAfterName;
+    private final List<String> mAttributeNames = new ArrayList<>();
+    private final List<String> mAttributeValues = new ArrayList<>();
+
+    /**
+     * Sets the input to be parsed
+     * @param in the text
+     * @param start the inclusive start offset
+     * @param end the exclusive end offset
+     */
+    public void setInput(String in, int start, int end) {
+        mIn = in;
+        mPos = start;
+        mEnd = end;
+        mType = END_DOCUMENT;
+        mEventStart = mEventEnd = start;
+    }
+
+    /**
+     * Reads the next event
+     * @return the event type
+     */
+    public int next() {
+        mName = null;
+        mEmptyElement = false;
+        mStrict = true;
+        mSpaceAfterName = false;
+        mAttributeNames.clear();
+        mAttributeValues.clear();
+        mEventStart = mPos;
+
+        if(mPos >= mEnd) {
+            mEventEnd = mPos;
+            mType = END_DOCUMENT;
+            return mType;
+        }
+
+        if(mIn.charAt(mPos) == '<') {
+            int tagEnd = readTag(mPos);
+            if(tagEnd > 0) {
+                mPos = mEventEnd = tagEnd;
+                return mType;
+            }
+        }
+
+        // text runs until the next tag
+        int p = mPos + 1;
+        while(p < mEnd && mIn.charAt(p) != '<') p ++;
+        mPos = mEventEnd = p;
+        mName = null;
+        mAttributeNames.clear();
+        mAttributeValues.clear();
+        mType = TEXT;
+        return mType;
+    }
+
+    public int getEventType() {
+        return mType;
+    }
+
+    /**
+     * Returns the offset at which the current event begins
+     * @return
+     */
+    public int getStart() {
+        return mEventStart;
+    }
+
+    /**
+     * Returns the offset at which the current event ends
+     * @return
+     */
+    public int getEnd() {
+        return mEventEnd;
+    }
+
+    /**
+     * Returns the name of the current tag
+     * @return
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Checks if the current start tag is self closing e.g. <verse/>
+     * @return
+     */
+    public boolean isEmptyElementTag() {
+        return mEmptyElement;
+    }
+
+    /**
+     * Checks if the attributes are written exactly as name="value" and separated by whitespace.
+     * The legacy patterns only match tags written this way.
+     * @return
+     */
+    public boolean isStrict() {
+        return mStrict && mSpaceAfterName;
+    }
+
+    /**
+     * Checks if the tag name is followed by whitespace
+     * @return
+     */
+    public boolean hasSpaceAfterName() {
+        return mSpaceAfterName;
+    }
+
+    public int getAttributeCount() {
+        return mAttributeNames.size();
+    }
+
+    public String getAttributeName(int index) {
+        return mAttributeNames.get(index);
+    }
+
+    public String getAttributeValue(int index) {
+        return mAttributeValues.get(index);
+    }
+
+    /**
+     * Returns the value of an attribute on the current tag
+     * @param name
+     * @return null if the attribute does not exist
+     */
+    public String getAttributeValue(String name) {
+        for(int i = 0; i < mAttributeNames.size(); i ++) {
+            if(mAttributeNames.get(i).equals(name)) {
+                return mAttributeValues.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the text of the current event
+     * @return
+     */
+    public String getText() {
+        return mIn.substring(mEventStart, mEventEnd);
+    }
+
+    /**
+     * Attempts to read a tag
+     * @param start the position of the opening bracket
+     * @return the end of the tag or -1 if this is not a tag
+     */
+    private int readTag(int start) {
+        int p = start + 1;
+        boolean endTag = false;
+        if(p < mEnd && mIn.charAt(p) == '/') {
+            endTag = true;
+            p ++;
+        }
+        int nameStart = p;
+        if(p >= mEnd || !isNameStart(mIn.charAt(p))) return -1;
+        while(p < mEnd && isNameChar(mIn.charAt(p))) p ++;
+        String name = mIn.substring(nameStart, p);
+
+        if(endTag) {
+            while(p < mEnd && USFMLexer.isSpace(mIn.charAt(p))) p ++;
+            if(p >= mEnd || mIn.charAt(p) != '>') return -1;
+            mName = name;
+            mType = END_TAG;
+            return p + 1;
+        }
+
+        mSpaceAfterName = p < mEnd && USFMLexer.isSpace(mIn.charAt(p));
+        while(p < mEnd) {
+            int attrStart = p;
+            while(p < mEnd && USFMLexer.isSpace(mIn.charAt(p))) p ++;
+            if(p >= mEnd) return -1;
+            char c = mIn.charAt(p);
+            if(c == '>') {
+                mName = name;
+                mType = START_TAG;
+                return p + 1;
+            }
+            if(c == '/') {
+                if(p + 1 < mEnd && mIn.charAt(p + 1) == '>') {
+                    mName = name;
+                    mEmptyElement = true;
+                    mType = START_TAG;
+                    return p + 2;
+                }
+                return -1;
+            }
+            if(p == attrStart) mStrict = false;
+
+            // attribute
+            int attrNameStart = p;
+            while(p < mEnd && !USFMLexer.isSpace(mIn.charAt(p)) && "=/>\"'<".indexOf(mIn.charAt(p)) < 0) p ++;
+            if(p == attrNameStart) return -1;
+            String attrName = mIn.substring(attrNameStart, p);
+            int beforeEquals = p;
+            while(p < mEnd && USFMLexer.isSpace(mIn.charAt(p))) p ++;
+            if(p >= mEnd || mIn.charAt(p) != '=') return -1;
+            if(p != beforeEquals) mStrict = false;
+            p ++;
+            int afterEquals = p;
+            while(p < mEnd && USFMLexer.isSpace(mIn.charAt(p))) p ++;
+            if(p >= mEnd) return -1;
+            if(p != afterEquals) mStrict = false;
+            char quote = mIn.charAt(p);
+            if(quote != '"' && quote != '\'') return -1;
+            if(quote != '"') mStrict = false;
+            int valueStart = p + 1;
+            int valueEnd = mIn.indexOf(quote, valueStart);
+            if(valueEnd < 0 || valueEnd >= mEnd) return -1;
+            mAttributeNames.add(attrName);
+            mAttributeValues.add(mIn.substring(valueStart, valueEnd));
+            p = valueEnd + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':';
+    }
+
+    private static boolean isNameChar(char c) {
+        return isNameStart(c) || (c >= '0' && c <= '9') || c == '-' || c == '.';
+    }
+
+    /**
+     * Resolves the predefined xml entities and character references
+     * @param text
+     * @return the decoded text or null if the text contains an unknown entity
+     */
+    public static String decodeEntities(String text) {
+        int amp = text.indexOf('&');
+        if(amp < 0) return text;
+        StringBuilder out = new StringBuilder(text.length());
+        int last = 0;
+        while(amp >= 0) {
+            int semi = text.indexOf(';', amp);
+            if(semi < 0) return null;
+            out.append(text, last, amp);
+            String entity = text.substring(amp + 1, semi);
+            switch (entity) {
+                case "amp": out.append('&'); break;
+                case "lt": out.append('<'); break;
+                case "gt": out.append('>'); break;
+                case "quot": out.append('"'); break;
+                case "apos": out.append('\''); break;
+                default:
+                    if(entity.length() < 2 || entity.charAt(0) != '#') return null;
+                    try {
+                        int codePoint;
+                        if(entity.charAt(1) == 'x' || entity.charAt(1) == 'X') {
+                            codePoint = Integer.parseInt(entity.substring(2), 16);
+                        } else {
+                            codePoint = Integer.parseInt(entity.substring(1));
+                        }
+                        out.appendCodePoint(codePoint);
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
+            }
+            last = semi + 1;
+            amp = text.indexOf('&', last);
+        }
+        out.append(text, last, text.length());
+        return out.toString();
+    }
+}
@@ -2,16 +2,12 @@ package com.door43.translationstudio.rendering;
 
 import android.content.Context;
 import android.graphics.Typeface;
-import android.os.Build;
 import android.text.Layout;
 import android.text.Spannable;
-import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
-import android.text.TextUtils;
 import android.text.style.AlignmentSpan;
 import android.text.style.BackgroundColorSpan;
 import android.text.style.StyleSpan;
-import android.util.Pair;
 
 import com.door43.translationstudio.ui.spannables.USXChar;
 import com.door43.translationstudio.ui.spannables.USXNoteSpan;
@@ -20,7 +16,9 @@ import com.door43.translationstudio.ui.spannables.USXVersePinSpan;
 import com.door43.translationstudio.ui.spannables.USXVerseSpan;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -46,6 +44,24 @@ public class USXRenderer extends ClickableRenderingEngine {
     public static Pattern endParagraphPattern =  Pattern.compile(endParagraphStyle);
     private boolean mAddedMissingVerse = false;
 
+    private static final String PARA_OPEN = "<para";
+    private static final String PARA_CLOSE = "</para>";
+    private static final String NOTE_OPEN = "<note";
+    private static final String NOTE_CLOSE = "</note>";
+    private static final String CHAR_CLOSE = "</char>";
+    private static final int STOPPED = -2;
+    private static final int PARA_RAW = 0;
+    private static final int PARA_HEADING = 1;
+    private static final int PARA_BREAK = 2;
+
+    // parsers are reused across chunks
+    private static final ThreadLocal<USXPullParser> sParser = new ThreadLocal<USXPullParser>() {
+        @Override
+        protected USXPullParser initialValue() {
+            return new USXPullParser();
+        }
+    };
+
     /**
      * Creates a new usx rendering engine without any listeners
      */
@@ -131,542 +147,825 @@ public class USXRenderer extends ClickableRenderingEngine {
     }
 
     /**
-     * Renders the usx input into a readable form
+     * Renders the usx input into a readable form.
+     * The input is read by a reusable {@link USXPullParser} and all spans are emitted in a
+     * single linear pass into one {@link SpannableStringBuilder}.
      * @param in the raw input string
      * @return
      */
     @Override
     public CharSequence render(CharSequence in) {
-        CharSequence out = in;
+        mAddedMissingVerse = false;
+        String text = normalize(in);
+        Output out = new Output(sParser.get());
+        Set<Integer> foundVerses = new HashSet<>();
 
-        out = trimWhitespace(out);
-        if(isStopped()) return in;
-        if(!mRenderLinebreaks) {
-            out = renderLineBreaks(out);  // TODO: Eventually we may want to convert these to paragraphs.
-            if(isStopped()) return in;
+        if(!renderTokens(text, 0, text.length(), out, foundVerses)) return in;
+
+        if(mRenderVerses) {
+            populateMissingVerses(out, foundVerses);
         }
-//        out = renderWhiteSpace(out);
-        out = renderMajorSectionHeading(out);
-        if(isStopped()) return in;
-        out = renderSectionHeading(out);
-        if(isStopped()) return in;
-        out = renderParagraph(out);
-        if(isStopped()) return in;
-        out = renderBlankLine(out);
-        if(isStopped()) return in;
-        out = renderPoeticLine(out);
-        if(isStopped()) return in;
-        out = renderRightAlignedPoeticLine(out);
-        if(isStopped()) return in;
-        out = renderVerse(out);
-        if(isStopped()) return in;
-        out = renderHighlightSearch(out);
-        if(isStopped()) return in;
-        out = renderNote(out);
-        if(isStopped()) return in;
-        out = renderChapterLabel(out);
-        if(isStopped()) return in;
-        out = renderSelah(out);
-        if(isStopped()) return in;
-        out = renderBrokenMarkers(out);
-        if(isStopped()) return in;
-        out = renderCharTags(out);
         if(isStopped()) return in;
 
-        return out;
+        if(!highlightSearch(out)) return in;
+        return out.builder;
     }
 
     /**
-     * Renders all the Selah tags
+     * Trims the input and (when line breaks are disabled) replaces line breaks with a single space.
      * @param in
      * @return
      */
-    private CharSequence renderSelah(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = USXChar.getPattern(USXChar.STYLE_SELAH);
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
-            span.setSpan(new StyleSpan(Typeface.ITALIC), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n", span);
-            lastIndex = matcher.end();
+    private String normalize(CharSequence in) {
+        int start = 0;
+        int end = in.length();
+        while(start < end && USFMLexer.isSpace(in.charAt(start))) start ++;
+        while(end > start && USFMLexer.isSpace(in.charAt(end - 1))) end --;
+
+        String trimmed = in.subSequence(start, end).toString();
+        if(mRenderLinebreaks) {
+            return trimmed;
+        } else {
+            return USFMLexer.collapseLineBreaks(trimmed, 0, trimmed.length());
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
     }
 
     /**
-     * Strips out new lines and replaces them with a single space
-     * @param in
-     * @return
+     * Emits the markup found within a range of the input
+     * @param in the normalized input
+     * @param start
+     * @param end
+     * @param out
+     * @param foundVerses collects the verses that were rendered
+     * @return false if rendering was stopped
      */
-    public CharSequence trimWhitespace(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile("(^\\s*|\\s*$)");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "");
-            lastIndex = matcher.end();
+    private boolean renderTokens(String in, int start, int end, Output out, Set<Integer> foundVerses) {
+        USXPullParser parser = out.parser;
+        parser.setInput(in, start, end);
+        int event;
+        while((event = parser.next()) != USXPullParser.END_DOCUMENT) {
+            if(isStopped()) return false;
+            int tagStart = parser.getStart();
+            int tagEnd = parser.getEnd();
+            int resume = -1;
+            if(event == USXPullParser.TEXT) {
+                out.text(in, tagStart, tagEnd);
+                continue;
+            } else if(event == USXPullParser.END_TAG) {
+                if(tagEnd - tagStart == PARA_CLOSE.length() && in.startsWith(PARA_CLOSE, tagStart)) {
+                    // broken marker
+                    out.drop();
+                } else {
+                    out.markup(in, tagStart, tagEnd);
+                }
+                continue;
+            }
+
+            switch (parser.getName()) {
+                case "para":
+                    resume = renderPara(in, end, out, foundVerses);
+                    break;
+                case "verse":
+                    renderVerse(in, out, foundVerses);
+                    break;
+                case "note":
+                    resume = renderNote(in, end, out);
+                    break;
+                case "char":
+                    resume = renderChar(in, end, out, foundVerses);
+                    break;
+                default:
+                    out.markup(in, tagStart, tagEnd);
+                    break;
+            }
+            if(resume == STOPPED) return false;
+            if(resume >= 0) {
+                // nested content was read with the same parser
+                parser.setInput(in, resume, end);
+            }
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        return true;
     }
 
     /**
-     * Renders section headings.
-     * @param in
-     * @return
+     * Emits a para element.
+     * A para closes at the first closing para tag, so a para opened within another one
+     * has no closing tag of its own and is dropped as a broken marker.
+     * @param in the normalized input
+     * @param end the end of the range being rendered
+     * @param out
+     * @param foundVerses
+     * @return the position after the element, -1 if only the tag was consumed or {@link #STOPPED}
      */
-    public CharSequence renderSectionHeading(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("s");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
+    private int renderPara(String in, int end, Output out, Set<Integer> foundVerses) {
+        USXPullParser parser = out.parser;
+        int tagStart = parser.getStart();
+        int tagEnd = parser.getEnd();
+        if(!parser.isStrict() || parser.getAttributeCount() != 1 || !parser.getAttributeName(0).equals("style")) {
+            out.markup(in, tagStart, tagEnd);
+            return -1;
+        }
+        String style = parser.getAttributeValue(0);
 
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
-            span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), span, "\n");
-            lastIndex = matcher.end();
+        if(parser.isEmptyElementTag()) {
+            if(style.equals("b")) {
+                // blank line
+                out.generated("\n\n");
+            } else {
+                out.markup(in, tagStart, tagEnd);
+            }
+            return -1;
+        }
+        if(!isWordChars(style)) {
+            out.markup(in, tagStart, tagEnd);
+            return -1;
         }
 
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        int level = USFMLexer.getPoeticLevel(style);
+        boolean content = level >= 0 || style.equals("ms") || style.equals("s") || style.equals("p")
+                || style.equals("qr") || style.equals("cl");
+        int close = in.indexOf(PARA_CLOSE, tagEnd);
+        if(!content || close < 0 || close + PARA_CLOSE.length() > end) {
+            // broken marker
+            out.drop();
+            return -1;
+        }
+
+        int contentStart = tagEnd;
+        while(contentStart < close && USFMLexer.isSpace(in.charAt(contentStart))) contentStart ++;
+        int next = close + PARA_CLOSE.length();
+        int start;
+        switch (style) {
+            case "ms":
+                if(mSuppressLeadingMajorSectionHeadings && tagStart == 0) {
+                    return next;
+                }
+                start = out.builder.length();
+                out.builder.append(in.substring(contentStart, close).toUpperCase());
+                out.style(start,
+                        new StyleSpan(Typeface.BOLD),
+                        new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER));
+                out.generated("\n");
+                return next;
+            case "s":
+                start = out.builder.length();
+                if(!renderTokens(in, contentStart, close, out, foundVerses)) return STOPPED;
+                out.style(start,
+                        new StyleSpan(Typeface.BOLD),
+                        new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER));
+                out.generated("\n");
+                return next;
+            case "p":
+                if(!out.atStart) {
+                    out.builder.append("\n");
+                }
+                out.builder.append("    ");
+                if(!renderTokens(in, contentStart, close, out, foundVerses)) return STOPPED;
+                out.generated("\n");
+                return next;
+            case "cl":
+                start = out.builder.length();
+                if(!renderTokens(in, contentStart, close, out, foundVerses)) return STOPPED;
+                out.style(start, new StyleSpan(Typeface.BOLD));
+                out.drop();
+                return next;
+            case "qr":
+                out.builder.append("\n");
+                start = out.builder.length();
+                if(!renderTokens(in, contentStart, close, out, foundVerses)) return STOPPED;
+                out.style(start,
+                        new StyleSpan(Typeface.ITALIC),
+                        new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE));
+                out.drop();
+                return next;
+            default:
+                // don't stack new lines
+                if(out.lastMarkup != 0 && out.lastMarkup != '\n') {
+                    out.builder.append("\n");
+                }
+                int padding = level * 4;
+                // outdent for verse markers
+                if(level > 0 && in.startsWith("<verse number", contentStart)) {
+                    padding -= 2;
+                }
+                for(int i = 0; i < padding; i ++) {
+                    out.builder.append(' ');
+                }
+                start = out.builder.length();
+                if(!renderTokens(in, contentStart, close, out, foundVerses)) return STOPPED;
+                out.style(start, new StyleSpan(Typeface.NORMAL));
+                if(hasTrailingLineBreak(in, next, out)) {
+                    out.builder.append("\n");
+                }
+                out.drop();
+                return next;
+        }
     }
 
     /**
-     * Renders highlights search string.
+     * Checks if a poetic line should end with a line break.
+     * Poetic lines used to be rendered while the remaining verses, notes and broken para tags were still
+     * in the text, so this looks at the input as it was at that stage: a line break is added if the
+     * remaining text contains both a line break and another para tag and neither begins it.
      * @param in
+     * @param pos the end of the poetic line
+     * @param out
      * @return
      */
-    public CharSequence renderHighlightSearch(CharSequence in) {
-        if(mSearch == null) {
-            return in;
+    private static boolean hasTrailingLineBreak(String in, int pos, Output out) {
+        int next = pos;
+        while(next < in.length() && in.charAt(next) == ' ') next ++;
+        if(next >= in.length() || in.charAt(next) == '\n') return false;
+        if(in.startsWith(PARA_OPEN, next)) {
+            // section headings were already rendered and begin with their content
+            int type = classifyPara(in, next, out.parser);
+            if(type != PARA_HEADING) return false;
         }
 
-        CharSequence out = "";
-        String lowerCaseText = in.toString().toLowerCase();
-        int lastIndex = 0;
-
-        while(lastIndex < in.length()) {
-            if(isStopped()) return in;
-
-            int pos = lowerCaseText.indexOf(mSearch, lastIndex);
-            if(pos < 0) {
-                break;
+        if(out.lastRawParaTag == -2) {
+            // find the para tags that were still in the text when poetic lines were rendered
+            out.lastRawParaTag = -1;
+            out.lastRenderedParaTag = -1;
+            int i = in.indexOf(PARA_OPEN);
+            while(i >= 0) {
+                if(classifyPara(in, i, out.parser) == PARA_RAW) {
+                    out.lastRawParaTag = i;
+                } else {
+                    out.lastRenderedParaTag = i;
+                    if(out.parser.getAttributeValue(0).equals("ms")) {
+                        // the content of major section headings was upper cased
+                        i = in.indexOf(PARA_CLOSE, i);
+                    }
+                }
+                i = in.indexOf(PARA_OPEN, i + 1);
             }
-
-            SpannableStringBuilder span = new SpannableStringBuilder(in.subSequence(pos, pos + mSearch.length()));
-            span.setSpan(new BackgroundColorSpan(mHighlightColor), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-
-            out = TextUtils.concat(out, in.subSequence(lastIndex, pos), span);
-
-            lastIndex = pos + mSearch.length();
         }
+        boolean lineBreak = in.lastIndexOf('\n') > next || out.lastRenderedParaTag >= next;
+        return lineBreak && out.lastRawParaTag > next;
+    }
 
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+    /**
+     * Classifies a para tag by how it appeared in the text when poetic lines were rendered
+     * @param in
+     * @param pos the position of the tag
+     * @param parser
+     * @return {@link #PARA_RAW} if the tag was still in the text, {@link #PARA_HEADING} if it was a
+     * rendered heading with some content or {@link #PARA_BREAK} if it was rendered and began with a line break
+     */
+    private static int classifyPara(String in, int pos, USXPullParser parser) {
+        parser.setInput(in, pos, in.length());
+        if(parser.next() != USXPullParser.START_TAG || !parser.isStrict()
+                || parser.getAttributeCount() != 1 || !parser.getAttributeName(0).equals("style")) {
+            return PARA_RAW;
+        }
+        String style = parser.getAttributeValue(0);
+        if(parser.isEmptyElementTag()) {
+            return style.equals("b") ? PARA_BREAK : PARA_RAW;
+        }
+        if(!style.equals("ms") && !style.equals("s") && !style.equals("p")) return PARA_RAW;
+        int close = in.indexOf(PARA_CLOSE, parser.getEnd());
+        if(close < 0) return PARA_RAW;
+        if(style.equals("p")) return PARA_BREAK;
+        int contentStart = parser.getEnd();
+        while(contentStart < close && USFMLexer.isSpace(in.charAt(contentStart))) contentStart ++;
+        return contentStart < close ? PARA_HEADING : PARA_BREAK;
     }
 
     /**
-     * Renders major section headings.
+     * Emits a verse tag
      * @param in
-     * @return
+     * @param out
+     * @param foundVerses
      */
-    public CharSequence renderMajorSectionHeading(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("ms");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
+    private void renderVerse(String in, Output out, Set<Integer> foundVerses) {
+        USXPullParser parser = out.parser;
+        String number = null;
+        if(parser.isStrict() && parser.isEmptyElementTag() && parser.getAttributeCount() == 2
+                && parser.getAttributeName(0).equals("number")
+                && parser.getAttributeName(1).equals("style")
+                && parser.getAttributeValue(1).equals("v")) {
+            number = parser.getAttributeValue(0);
+        }
+        if(number == null || !isVerseNumber(number)) {
+            out.markup(in, parser.getStart(), parser.getEnd());
+            return;
+        }
+        out.drop();
+        if(!mRenderVerses) {
+            // exclude verse from display
+            return;
+        }
 
-        while(matcher.find()) {
-            if(isStopped()) return in;
+        USXVerseSpan verse;
+        if(mVerseListener == null) {
+            verse = new USXVerseSpan(number);
+        } else {
+            verse = new USXVersePinSpan(number);
+        }
 
-            if (mSuppressLeadingMajorSectionHeadings && 0 == matcher.start()) {
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
-            } else {
-                SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1).toUpperCase());
-                span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), span, "\n");
+        // record found verses
+        int startVerse = verse.getStartVerseNumber();
+        int endVerse = verse.getEndVerseNumber();
+        boolean alreadyRendered = false;
+        if(endVerse > startVerse) {
+            // range of verses
+            for(int i = startVerse; i <= endVerse; i ++) {
+                if(!foundVerses.add(i)) {
+                    alreadyRendered = true;
+                }
             }
-            lastIndex = matcher.end();
+        } else if(!foundVerses.add(startVerse)) {
+            alreadyRendered = true;
+        }
+        if(alreadyRendered) {
+            // exclude duplicate verse
+            return;
         }
 
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        // exclude verses not within the range
+        if(mExpectedVerseRange.length > 0) {
+            int minVerse = mExpectedVerseRange[0];
+            int maxVerse = (mExpectedVerseRange.length > 1) ? mExpectedVerseRange[1] : 0;
+            if(maxVerse == 0) maxVerse = minVerse;
+            if(endVerse == 0) endVerse = startVerse;
+            if(startVerse < minVerse || startVerse > maxVerse || endVerse < minVerse || endVerse > maxVerse) {
+                return;
+            }
+        }
+        verse.setOnClickListener(mVerseListener);
+        out.builder.append(verse.toCharSequence(context));
     }
 
     /**
-     * Strips out extra whitespace from the text
-     * @param in
-     * @return
+     * Emits a note element.
+     * Notes that contain anything other than chars cannot be parsed and are kept as they are.
+     * @param in the normalized input
+     * @param end the end of the range being rendered
+     * @param out
+     * @return the position after the element, -1 if only the tag was consumed
      */
-    public CharSequence renderWhiteSpace(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile("(\\s+)");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), " ");
-            lastIndex = matcher.end();
+    private int renderNote(String in, int end, Output out) {
+        USXPullParser parser = out.parser;
+        int tagStart = parser.getStart();
+        int tagEnd = parser.getEnd();
+        int close = in.indexOf(NOTE_CLOSE, tagEnd);
+        int next = close + NOTE_CLOSE.length();
+        if(!parser.hasSpaceAfterName() || close < 0 || next > end) {
+            out.markup(in, tagStart, tagEnd);
+            return -1;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        String noteText = in.substring(tagStart, next);
+        if(!isSingleLine(in, tagStart, tagEnd, close)) {
+            out.markup(in, tagStart, tagEnd);
+            return -1;
+        }
+
+        USXNoteSpan note = parseNote(in, tagStart, next, parser);
+        if(note != null) {
+            note.setOnClickListener(mNoteListener);
+            if(mSearch != null) {
+                boolean foundSearch = noteText.toLowerCase().contains(mSearch);
+                note.setHighlight(foundSearch);
+            }
+            int noteStart = out.builder.length();
+            out.builder.append(note.toCharSequence(context));
+            out.notes.add(new int[]{noteStart, out.builder.length()});
+            out.drop();
+        } else {
+            // failed to parse the note
+            out.markup(in, tagStart, next);
+        }
+        return next;
     }
 
     /**
-     * Strips out new lines and replaces them with a single space
+     * Reads a note element.
+     * This accepts the same notes as {@link USXNoteSpan#parseNote(CharSequence)} without creating a new xml parser for each note.
      * @param in
-     * @return
+     * @param start the start of the note tag
+     * @param end the end of the closing note tag
+     * @param parser
+     * @return null if the note could not be parsed
      */
-    public CharSequence renderLineBreaks(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile("(\\s*\\n+\\s*)");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), " ");
-            lastIndex = matcher.end();
+    private static USXNoteSpan parseNote(String in, int start, int end, USXPullParser parser) {
+        parser.setInput(in, start, end);
+        if(parser.next() != USXPullParser.START_TAG || parser.isEmptyElementTag()) return null;
+        String style = parser.getAttributeValue("style");
+        String caller = parser.getAttributeValue("caller");
+        if(style != null) {
+            style = USXPullParser.decodeEntities(style);
+            if(style == null) return null;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        if(caller != null) {
+            caller = USXPullParser.decodeEntities(caller);
+            if(caller == null) return null;
+        } else {
+            caller = USXNoteSpan.DEFAULT_CALLER;
+        }
+
+        // the note must begin with a char
+        int event = parser.next();
+        if(event == USXPullParser.TEXT && parser.getText().trim().isEmpty()) {
+            event = parser.next();
+        }
+        if(event != USXPullParser.START_TAG) return null;
+
+        List<USXChar> chars = new ArrayList<>();
+        while(event != USXPullParser.END_DOCUMENT) {
+            if(event == USXPullParser.START_TAG) {
+                if(!parser.getName().equals("char")) return null;
+                String charStyle = parser.getAttributeValue("style");
+                if(charStyle != null) {
+                    charStyle = USXPullParser.decodeEntities(charStyle);
+                    if(charStyle == null) return null;
+                }
+                String charText = "";
+                if(!parser.isEmptyElementTag()) {
+                    event = parser.next();
+                    if(event == USXPullParser.TEXT) {
+                        charText = decodeText(parser.getText());
+                        if(charText == null) return null;
+                        event = parser.next();
+                    }
+                    if(event != USXPullParser.END_TAG || !parser.getName().equals("char")) return null;
+                }
+                charText = charText.trim();
+                if(!charText.isEmpty()) {
+                    chars.add(new USXChar(charStyle, charText));
+                }
+            } else if(event == USXPullParser.TEXT) {
+                String text = decodeText(parser.getText());
+                if(text == null) return null;
+                text = text.trim();
+                if(!text.isEmpty()) {
+                    chars.add(new USXChar("ft", text));
+                }
+            } else if(!parser.getName().equals("note") || parser.getEnd() != end) {
+                return null;
+            }
+            event = parser.next();
+        }
+        return new USXNoteSpan(style, caller.trim(), chars);
+    }
+
+    private static String decodeText(String text) {
+        if(text.indexOf('<') >= 0) return null;
+        return USXPullParser.decodeEntities(text);
     }
 
     /**
-     * Renders all note tags
-     * @param in
-     * @return
+     * Emits a char element.
+     * A char closes at the first closing char tag after any notes within it, so a char opened
+     * within another one has no closing tag of its own and is kept as it is.
+     * @param in the normalized input
+     * @param end the end of the range being rendered
+     * @param out
+     * @param foundVerses
+     * @return the position after the element, -1 if only the tag was consumed or {@link #STOPPED}
      */
-    public CharSequence renderNote(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = Pattern.compile(USXNoteSpan.PATTERN);
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            String noteText = matcher.group();
-            USXNoteSpan note = USXNoteSpan.parseNote(noteText);
-            if(note != null) {
-                note.setOnClickListener(mNoteListener);
-                if(mSearch != null) {
-                    boolean foundSearch = noteText.toLowerCase().contains(mSearch);
-                    note.setHighlight(foundSearch);
+    private int renderChar(String in, int end, Output out, Set<Integer> foundVerses) {
+        USXPullParser parser = out.parser;
+        int tagStart = parser.getStart();
+        int tagEnd = parser.getEnd();
+        int close = findCharClose(in, tagEnd);
+        int next = close + CHAR_CLOSE.length();
+        if(parser.isEmptyElementTag() || !parser.hasSpaceAfterName() || close < 0 || next > end) {
+            out.markup(in, tagStart, tagEnd);
+            return -1;
+        }
+
+        int contentStart = tagEnd;
+        while(contentStart < close && USFMLexer.isSpace(in.charAt(contentStart))) contentStart ++;
+        int contentEnd;
+        boolean selah = parser.isStrict() && parser.getAttributeCount() == 1
+                && parser.getAttributeName(0).equals("style")
+                && parser.getAttributeValue(0).equals(USXChar.STYLE_SELAH);
+        if(selah) {
+            contentEnd = close;
+        } else {
+            // char text cannot span lines
+            if(!isSingleLine(in, tagStart, tagEnd, tagEnd)) {
+                out.markup(in, tagStart, tagEnd);
+                return -1;
+            }
+            contentEnd = contentStart;
+            while(contentEnd < close && !isLineTerminator(in.charAt(contentEnd))) contentEnd ++;
+            for(int i = contentEnd; i < close; i ++) {
+                if(!USFMLexer.isSpace(in.charAt(i))) {
+                    out.markup(in, tagStart, tagEnd);
+                    return -1;
                 }
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), note.toCharSequence(context));
-            } else {
-                // failed to parse the note
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.end()));
             }
+        }
 
-            lastIndex = matcher.end();
+        if(selah) {
+            out.builder.append("\n");
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        int start = out.builder.length();
+        if(!renderTokens(in, contentStart, contentEnd, out, foundVerses)) return STOPPED;
+        if(selah) {
+            out.style(start,
+                    new StyleSpan(Typeface.ITALIC),
+                    new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE));
+        }
+        out.drop();
+        return next;
     }
 
     /**
-     * Renders all verse tags
+     * Finds the closing tag of a char, skipping over the chars of any notes within it
      * @param in
-     * @return
+     * @param pos the end of the opening char tag
+     * @return the start of the closing tag or -1 if there is none
      */
-    public CharSequence renderVerse(CharSequence in) {
-        mAddedMissingVerse = false;
-        CharSequence out = "";
+    private static int findCharClose(String in, int pos) {
+        int close = in.indexOf(CHAR_CLOSE, pos);
+        int note = in.indexOf(NOTE_OPEN, pos);
+        while(close >= 0 && note >= 0 && note < close) {
+            int noteClose = in.indexOf(NOTE_CLOSE, note);
+            if(noteClose < 0) break;
+            close = in.indexOf(CHAR_CLOSE, noteClose);
+            note = in.indexOf(NOTE_OPEN, noteClose);
+        }
+        return close;
+    }
 
-        CharSequence insert = "";
+    /**
+     * Inserts verse markers for any expected verses that were not found in the input
+     * @param out
+     * @param foundVerses
+     */
+    private void populateMissingVerses(Output out, Set<Integer> foundVerses) {
+        int first;
+        int last;
+        if (mExpectedVerseRange.length == 1) {
+            first = last = mExpectedVerseRange[0];
+        } else if (mExpectedVerseRange.length == 2) {
+            first = mExpectedVerseRange[0];
+            last = mExpectedVerseRange[1];
+        } else {
+            return;
+        }
 
-        Pattern pattern = Pattern.compile(USXVerseSpan.PATTERN);
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        List<Integer> foundVerses = new ArrayList<>();
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            if(mRenderVerses) {
+        SpannableStringBuilder missing = new SpannableStringBuilder();
+        for (int i = first; i <= last; i ++) {
+            if (!foundVerses.contains(i)) {
+                // generate missing verse
                 Span verse;
-                if(mVerseListener == null) {
-                    verse = new USXVerseSpan(matcher.group(1));
-                } else {
-                    verse = new USXVersePinSpan(matcher.group(1));
-                }
-
-                if (verse != null) {
-                    // record found verses
-                    int startVerse = ((USXVerseSpan)verse).getStartVerseNumber();
-                    int endVerse = ((USXVerseSpan)verse).getEndVerseNumber();
-                    boolean alreadyRendered = false;
-                    if(endVerse > startVerse) {
-                        // range of verses
-                        for(int i = startVerse; i <= endVerse; i ++) {
-                            if(!foundVerses.contains(i)) {
-                                foundVerses.add(i);
-                            } else {
-                                alreadyRendered = true;
-                            }
-                        }
-                    } else {
-                        if(!foundVerses.contains(startVerse)) {
-                            foundVerses.add(startVerse);
-                        } else {
-                            alreadyRendered = true;
-                        }
-                    }
-                    // render verses not already found
-                    if(!alreadyRendered) {
-                        // exclude verses not within the range
-                        boolean invalidVerse = false;
-                        if(mExpectedVerseRange.length > 0) {
-                            int minVerse = mExpectedVerseRange[0];
-                            int maxVerse = (mExpectedVerseRange.length > 1) ? mExpectedVerseRange[1] : 0;
-                            if(maxVerse == 0) maxVerse = minVerse;
-
-                            int verseNumStart = ((USXVerseSpan) verse).getStartVerseNumber();
-                            int verseNumEnd = ((USXVerseSpan) verse).getEndVerseNumber();
-                            if(verseNumEnd == 0) verseNumEnd = verseNumStart;
-                            invalidVerse = verseNumStart < minVerse || verseNumStart > maxVerse || verseNumEnd < minVerse || verseNumEnd > maxVerse;
-                        }
-                        if(!invalidVerse) {
-                            verse.setOnClickListener(mVerseListener);
-                            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), insert, verse.toCharSequence(context));
-                        } else {
-                            // exclude invalid verse
-                            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
-                        }
-                    } else {
-                        // exclude duplicate verse
-                        out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
-                    }
+                if (mVerseListener == null) {
+                    verse = new USXVerseSpan(i);
                 } else {
-                    // failed to parse the verse
-                    out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.end()));
+                    verse = new USXVersePinSpan(i);
                 }
-            } else {
-                // exclude verse from display
-                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
+                verse.setOnClickListener(mVerseListener);
+                missing.append(verse.toCharSequence(context));
+                mAddedMissingVerse = true;
             }
-            lastIndex = matcher.end();
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-
-        if(mRenderVerses) {
-            // populate missing verses
-            if (mExpectedVerseRange.length == 1) {
-                if (!foundVerses.contains(mExpectedVerseRange[0])) {
-                    // generate missing verse
-                    Span verse;
-                    if (mVerseListener == null) {
-                        verse = new USXVerseSpan(mExpectedVerseRange[0]);
-                    } else {
-                        verse = new USXVersePinSpan(mExpectedVerseRange[0]);
-                    }
-                    verse.setOnClickListener(mVerseListener);
-                    out = TextUtils.concat(verse.toCharSequence(context), out);
-                    mAddedMissingVerse = true;
-                }
-            } else if (mExpectedVerseRange.length == 2) {
-                for (int i = mExpectedVerseRange[1]; i >= mExpectedVerseRange[0]; i--) {
-                    if (!foundVerses.contains(i)) {
-                        // generate missing verse
-                        Span verse;
-                        if (mVerseListener == null) {
-                            verse = new USXVerseSpan(i);
-                        } else {
-                            verse = new USXVersePinSpan(i);
-                        }
-                        verse.setOnClickListener(mVerseListener);
-                        out = TextUtils.concat(verse.toCharSequence(context), out);
-                        mAddedMissingVerse = true;
-                    }
-                }
+        if(missing.length() > 0) {
+            out.builder.insert(0, missing);
+            for(int[] note : out.notes) {
+                note[0] += missing.length();
+                note[1] += missing.length();
             }
         }
-        return out;
     }
 
     /**
-     * Renders all paragraph tags
-     * @param in
-     * @return
+     * Highlights the search string in the rendered output.
+     * Notes are skipped since they indicate matches with their own highlight.
+     * @param out
+     * @return false if rendering was stopped
      */
-    public CharSequence renderBrokenMarkers(CharSequence in) {
-        CharSequence out = "";
-        out = removePattern( in, beginParagraphPattern);
-        out = removePattern( out, endParagraphPattern);
-        return out;
+    private boolean highlightSearch(Output out) {
+        if(mSearch == null) {
+            return true;
+        }
+        return highlightSearch(out.builder, mSearch, out.notes, this, (start, end) ->
+                out.builder.setSpan(new BackgroundColorSpan(mHighlightColor), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE));
     }
 
     /**
-     * Renders all paragraph tags
+     * Checks if the text of a tag and its content up to the closing tag has no line breaks.
+     * Line breaks are allowed in the whitespace around the content.
      * @param in
+     * @param tagStart
+     * @param tagEnd
+     * @param close the start of the closing tag
      * @return
      */
-    public CharSequence removePattern(CharSequence in, Pattern pattern) {
-        Matcher matcher = pattern.matcher(in);
-        CharSequence out = "";
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
-            lastIndex = matcher.end();
+    private static boolean isSingleLine(String in, int tagStart, int tagEnd, int close) {
+        for(int i = tagStart; i < tagEnd; i ++) {
+            if(isLineTerminator(in.charAt(i))) return false;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        int start = tagEnd;
+        int end = close;
+        while(start < end && USFMLexer.isSpace(in.charAt(start))) start ++;
+        while(end > start && USFMLexer.isSpace(in.charAt(end - 1))) end --;
+        for(int i = start; i < end; i ++) {
+            if(isLineTerminator(in.charAt(i))) return false;
+        }
+        return true;
     }
 
     /**
-     * Renders all paragraph tags
-     * @param in
+     * Matches the characters excluded by the regular expression . without DOTALL
+     * @param c
      * @return
      */
-    public CharSequence renderParagraph(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("p");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            String lineBreak = "";
-            if(matcher.start() > 0) {
-                lineBreak = "\n";
-            }
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), lineBreak, "    ", in.subSequence(matcher.start(1), matcher.end(1)), "\n");
-            lastIndex = matcher.end();
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isWordChars(String value) {
+        for(int i = 0; i < value.length(); i ++) {
+            if(!USFMLexer.isWordChar(value.charAt(i))) return false;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        return true;
     }
 
-    /**
-     * Renders all blank line tags
-     * @param in
-     * @return
-     */
-    public CharSequence renderBlankLine(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraShortPattern("b");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while(matcher.find()) {
-            if(isStopped()) return in;
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n\n");
-            lastIndex = matcher.end();
+    private static boolean isVerseNumber(String number) {
+        int dash = number.indexOf('-');
+        if(dash < 0) return isDigits(number, 0, number.length());
+        return isDigits(number, 0, dash) && isDigits(number, dash + 1, number.length());
+    }
+
+    private static boolean isDigits(String value, int start, int end) {
+        if(end <= start) return false;
+        for(int i = start; i < end; i ++) {
+            if(!USFMLexer.isDigit(value.charAt(i))) return false;
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
+        return true;
     }
 
     /**
-     * Renders a chapter label
-     * @param in
-     * @return
+     * Accumulates the rendered output
      */
-    public CharSequence renderChapterLabel(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("cl");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
-        while (matcher.find()) {
-            if(isStopped()) return in;
+    private static class Output {
+        final SpannableStringBuilder builder = new SpannableStringBuilder();
+        final List<int[]> notes = new ArrayList<>();
+        final USXPullParser parser;
+        /**
+         * The last character other than a space in the text as it was when poetic lines
+         * were rendered. 0 if nothing has been read.
+         */
+        char lastMarkup = 0;
+        /**
+         * Nothing other than a suppressed major section heading has been read
+         */
+        boolean atStart = true;
+        // look ahead used by poetic lines
+        int lastRawParaTag = -2;
+        int lastRenderedParaTag = -2;
+
+        Output(USXPullParser parser) {
+            this.parser = parser;
+        }
+
+        /**
+         * Appends text from the input
+         * @param in
+         * @param start
+         * @param end
+         */
+        void text(String in, int start, int end) {
+            builder.append(in, start, end);
+            for(int i = end - 1; i >= start; i --) {
+                if(in.charAt(i) != ' ') {
+                    lastMarkup = in.charAt(i);
+                    break;
+                }
+            }
+            atStart = false;
+        }
 
-            SpannableString span = new SpannableString(in.subSequence(matcher.start(1), matcher.end(1)));
-            span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        /**
+         * Appends markup that is not rendered
+         * @param in
+         * @param start
+         * @param end
+         */
+        void markup(String in, int start, int end) {
+            builder.append(in, start, end);
+            drop();
+        }
 
-            out = TextUtils.concat(out,  in.subSequence(lastIndex, matcher.start()), span);
-            lastIndex = matcher.end();
+        /**
+         * Records markup that was consumed without output of its own
+         */
+        void drop() {
+            lastMarkup = '>';
+            atStart = false;
+        }
+
+        /**
+         * Appends a line break produced by a heading, paragraph or blank line
+         * @param lineBreak
+         */
+        void generated(String lineBreak) {
+            builder.append(lineBreak);
+            lastMarkup = '\n';
+            atStart = false;
+        }
+
+        /**
+         * Applies styles to the output from start to the current end
+         * @param start
+         * @param styles
+         */
+        void style(int start, Object... styles) {
+            int end = builder.length();
+            if(end <= start) return;
+            for(Object style : styles) {
+                builder.setSpan(style, start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-        return out;
     }
 
     /**
-     * Renders all poetic line tags
+     * Renders all note tags
      * @param in
      * @return
      */
-    public CharSequence renderPoeticLine(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("q(\\d+)");
+    public CharSequence renderNote(CharSequence in) {
+        SpannableStringBuilder out = new SpannableStringBuilder();
+        Pattern pattern = Pattern.compile(USXNoteSpan.PATTERN);
         Matcher matcher = pattern.matcher(in);
         int lastIndex = 0;
         while(matcher.find()) {
             if(isStopped()) return in;
-            int level = Integer.parseInt(matcher.group(1));
-            SpannableString span = new SpannableString(in.subSequence(matcher.start(2), matcher.end(2)));
-            span.setSpan(new StyleSpan(Typeface.NORMAL), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            String padding = "";
-            for(int i = 0; i < level; i ++) {
-                padding += "    ";
-            }
-
-            // outdent for verse markers
-            if (level > 0 && span.toString().indexOf("<verse number") == 0) {
-                padding = padding.substring(0, padding.length() - 2);
-            }
-
-            // don't stack new lines
-            String leadingLineBreak = "";
-            String trailingLineBreak = "";
-
-            // leading
-            if(in.subSequence(0, matcher.start()) != null) {
-                String previous = in.subSequence(0, matcher.start()).toString().replace(" ", "");
-                int lastLineBreak = previous.lastIndexOf("\n");
-                if (lastLineBreak < previous.length() - 1) {
-                    leadingLineBreak = "\n";
-                }
-            }
-
-            // trailing
-            if(in.subSequence(matcher.end(), in.length()) != null) {
-                String next = in.subSequence(matcher.end(), in.length()).toString().replace(" ", "");
-                int nextLineBreak = next.indexOf("\n");
-                int nextParagraph = next.indexOf("<para");
-                if (nextLineBreak > 0 && nextParagraph > 0) {
-                    trailingLineBreak = "\n";
+            String noteText = matcher.group();
+            USXNoteSpan note = USXNoteSpan.parseNote(noteText);
+            if(note != null) {
+                note.setOnClickListener(mNoteListener);
+                if(mSearch != null) {
+                    boolean foundSearch = noteText.toLowerCase().contains(mSearch);
+                    note.setHighlight(foundSearch);
                 }
+                out.append(in, lastIndex, matcher.start());
+                out.append(note.toCharSequence(context));
+            } else {
+                // failed to parse the note
+                out.append(in, lastIndex, matcher.end());
             }
 
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), leadingLineBreak, padding, span, trailingLineBreak);
             lastIndex = matcher.end();
         }
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        out.append(in, lastIndex, in.length());
         return out;
     }
 
     /**
-     * Renders all right-aligned poetic line tags
+     * Renders highlights search string.
      * @param in
      * @return
      */
-    public CharSequence renderRightAlignedPoeticLine(CharSequence in) {
-        CharSequence out = "";
-        Pattern pattern = paraPattern("qr");
-        Matcher matcher = pattern.matcher(in);
-        int lastIndex = 0;
+    public CharSequence renderHighlightSearch(CharSequence in) {
+        if(mSearch == null) {
+            return in;
+        }
 
-        while(matcher.find()) {
+        SpannableStringBuilder out = new SpannableStringBuilder(in);
+        String lowerCaseText = in.toString().toLowerCase();
+        int pos = lowerCaseText.indexOf(mSearch);
+        while(pos >= 0) {
             if(isStopped()) return in;
-            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
-            span.setSpan(new StyleSpan(Typeface.ITALIC), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n", span);
-            lastIndex = matcher.end();
+            int end = pos + mSearch.length();
+            out.setSpan(new BackgroundColorSpan(mHighlightColor), pos, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            pos = lowerCaseText.indexOf(mSearch, end);
         }
-
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
         return out;
     }
 
+    /**
+     * Renders all verse tags and leaves the rest of the input as it is
+     * @param in
+     * @return
+     */
+    @Override
+    public CharSequence renderVerse(CharSequence in) {
+        mAddedMissingVerse = false;
+        String text = in.toString();
+        Output out = new Output(sParser.get());
+        Set<Integer> foundVerses = new HashSet<>();
+        USXPullParser parser = out.parser;
+        parser.setInput(text, 0, text.length());
+        int event;
+        while((event = parser.next()) != USXPullParser.END_DOCUMENT) {
+            if(isStopped()) return in;
+            if(event == USXPullParser.START_TAG && parser.getName().equals("verse")) {
+                renderVerse(text, out, foundVerses);
+            } else {
+                out.markup(text, parser.getStart(), parser.getEnd());
+            }
+        }
+
+        if(mRenderVerses) {
+            populateMissingVerses(out, foundVerses);
+        }
+        return out.builder;
+    }
+
     /**
      * Return the leading section heading, if any. Non-leading major section headings, and leading
      * headings of other types, are not included.
@@ -686,49 +985,6 @@ public class USXRenderer extends ClickableRenderingEngine {
         }
     }
 
-    public CharSequence renderCharTags(CharSequence in) {
-        CharSequence out = "";
-
-        // Find and cache note tag positions first
-        Pattern notePattern = Pattern.compile(USXNoteSpan.PATTERN);
-        Matcher noteMatcher = notePattern.matcher(in);
-        List<Pair<Integer, Integer>> notes = new ArrayList<>();
-
-        while(noteMatcher.find()) {
-            if(isStopped()) return in;
-            notes.add(Pair.create(noteMatcher.start(), noteMatcher.end()));
-        }
-
-        Pattern charPattern = Pattern.compile(USXChar.PATTERN);
-        Matcher charMatcher = charPattern.matcher(in);
-
-        int lastIndex = 0;
-        while(charMatcher.find()) {
-            if(isStopped()) return in;
-
-            // Check if this char is a note char, so we can ignore it and not process as a single char
-            if (isCharInNote(charMatcher.start(), charMatcher.end(), notes)) {
-                continue;
-            }
-
-            out = TextUtils.concat(out, in.subSequence(lastIndex, charMatcher.start()), charMatcher.group(USXChar.CHAR_TEXT_GROUP));
-            lastIndex = charMatcher.end();
-        }
-
-        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
-
-        return out;
-    }
-
-    private boolean isCharInNote(Integer start, Integer end, List<Pair<Integer, Integer>> notes) {
-        for (Pair<Integer, Integer> note: notes) {
-            if (start >= note.first && end <= note.second) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Returns a pattern that matches a para tag pair e.g. <para style=""></para>
      * @param style a string or regular expression to identify the style
@@ -738,15 +994,6 @@ public class USXRenderer extends ClickableRenderingEngine {
         return Pattern.compile("<para\\s+style=\""+style+"\"\\s*>\\s*(((?!</para>).)*)</para>", Pattern.DOTALL);
     }
 
-    /**
-     * Returns a pattern that matches a single para tag e.g. <para style=""/>
-     * @param style a string or regular expression to identify the style
-     * @return
-     */
-    private static Pattern paraShortPattern(String style) {
-        return Pattern.compile("<para\\s+style=\""+style+"\"\\s*/>", Pattern.DOTALL);
-    }
-
     /**
      * see if missing verse was added
      */
@@ -23,6 +23,7 @@ import dagger.hilt.android.AndroidEntryPoint
 import org.eclipse.jgit.api.errors.JGitInternalException
 import org.unfoldingword.tools.foreground.Foreground
 import org.unfoldingword.tools.logger.Logger
+import java.io.File
 import java.util.Timer
 import java.util.TimerTask
 import javax.inject.Inject
@@ -40,6 +41,7 @@ class BackupService : Service(), Foreground.Listener {
     private val sTimer = Timer()
     private var isPaused = false
     private var executingBackup = false
+    private var backupRuns = 0
     private var foreground: Foreground? = null
     private lateinit var handler: Handler
     private var runner: Runnable? = null
@@ -121,8 +123,20 @@ class BackupService : Service(), Foreground.Listener {
         Logger.i(TAG, "Checking for changes")
 
         val targetTranslations = translator.targetTranslationFileNames
+        val writeBundles = prefRepository.getDefaultPref(
+            SettingsActivity.KEY_PREF_BACKUP_BUNDLES,
+            false
+        )
+
+        // TRICKY: changes written without going through the target translation are only
+        // found by a full check so one is run every few backups.
+        val fullCheck = backupRuns % FULL_CHECK_INTERVAL == 0
+        backupRuns++
 
         for (filename in targetTranslations) {
+            val dir = File(translator.path, filename)
+            if (!fullCheck && !backupRC.needsBackup(dir)) continue
+
             try {
                 // add delay to ease background processing and also slow the memory thrashing in background
                 Thread.sleep(1000)
@@ -151,7 +165,7 @@ class BackupService : Service(), Foreground.Listener {
             // run backup if there are translations
             if (t.numTranslated() > 0) {
                 try {
-                    val success = backupRC.backupTargetTranslation(t, false)
+                    val success = backupRC.backupTargetTranslation(t, false, writeBundles)
                     if (success) {
                         Logger.i(TAG, t.id + " backed up")
                         backupPerformed = true
@@ -159,6 +173,8 @@ class BackupService : Service(), Foreground.Listener {
                 } catch (e: Exception) {
                     Logger.e(TAG, "Could not backup " + t.id, e)
                 }
+            } else {
+                backupRC.skipBackup(dir)
             }
         }
 
@@ -235,6 +251,9 @@ class BackupService : Service(), Foreground.Listener {
     companion object {
         val TAG: String = BackupService::class.java.name
 
+        // the number of backups between full checks of every target translation
+        private const val FULL_CHECK_INTERVAL = 12
+
         /**
          * Checks if the service is running
          * @return
@@ -418,7 +418,8 @@ class SettingsActivity : AppCompatActivity() {
                 KEY_PREF_ALWAYS_SHARE,
                 KEY_PREF_CHECK_HARDWARE,
                 KEY_PREF_MIGRATE_OLD_APP,
-                KEY_PREF_ENABLE_TM_LINKS
+                KEY_PREF_ENABLE_TM_LINKS,
+                KEY_PREF_BACKUP_BUNDLES
             )
             if (key in ignored) return
 
@@ -504,6 +505,7 @@ class SettingsActivity : AppCompatActivity() {
 
         const val KEY_PREF_LOGGING_LEVEL = "logging_level"
         const val KEY_PREF_BACKUP_INTERVAL = "backup_interval"
+        const val KEY_PREF_BACKUP_BUNDLES = "backup_bundles"
         const val KEY_PREF_DEVICE_ALIAS = "device_name"
         const val KEY_PREF_GOGS_API = "gogs_api"
         const val KEY_PREF_CHECK_HARDWARE = "check_hardware_requirements"
@@ -32,6 +32,7 @@ import com.door43.translationstudio.core.TranslationViewMode
 import com.door43.translationstudio.core.Translator
 import com.door43.translationstudio.core.Translator.Companion.TSTUDIO_EXTENSION
 import com.door43.translationstudio.core.Translator.Companion.USFM_EXTENSION
+import com.door43.translationstudio.core.Translator.Companion.ZIP_EXTENSION
 import com.door43.translationstudio.databinding.DialogBackupBinding
 import com.door43.translationstudio.ui.ProfileActivity
 import com.door43.translationstudio.ui.SettingsActivity
@@ -46,7 +47,6 @@ import com.google.android.material.snackbar.Snackbar
 import dagger.hilt.android.AndroidEntryPoint
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
-import org.eclipse.jgit.api.ResetCommand
 import org.eclipse.jgit.merge.MergeStrategy
 import org.unfoldingword.door43client.Door43Client
 import org.unfoldingword.tools.logger.Logger
@@ -76,6 +76,7 @@ class BackupDialog : DialogFragment() {
     private lateinit var targetTranslation: TargetTranslation
     private lateinit var exportTranslationLauncher: ActivityResultLauncher<Intent>
     private lateinit var exportUSFMLauncher: ActivityResultLauncher<Intent>
+    private lateinit var exportLanguageUSFMLauncher: ActivityResultLauncher<Intent>
 
     private var _binding: DialogBackupBinding? = null
     private val binding get() = _binding!!
@@ -110,6 +111,19 @@ class BackupDialog : DialogFragment() {
             }
         }
 
+        exportLanguageUSFMLauncher = registerForActivityResult(
+            ActivityResultContracts.StartActivityForResult()
+        ) { result: ActivityResult ->
+            val uri = result.data?.data
+            if (result.resultCode == Activity.RESULT_OK && uri != null) {
+                if (validateUriExtension(uri, ZIP_EXTENSION)) {
+                    viewModel.exportLanguageUSFM(uri)
+                } else {
+                    notifyBackupFailed(targetTranslation)
+                }
+            }
+        }
+
         return dialog
     }
 
@@ -193,9 +207,13 @@ class BackupDialog : DialogFragment() {
 
             exportToUsfm.setOnClickListener { showExportToUsfmPrompt() }
 
+            exportLanguageToUsfm.setOnClickListener { showExportLanguageToUsfmPrompt() }
+
             if (viewModel.translation.value?.isObsProject == true) {
                 exportToUsfmSeparator.visibility = View.GONE
                 exportToUsfm.visibility = View.GONE
+                exportLanguageToUsfmSeparator.visibility = View.GONE
+                exportLanguageToUsfm.visibility = View.GONE
             }
 
 //            backupToDevice.setOnClickListener {
@@ -419,6 +437,14 @@ class BackupDialog : DialogFragment() {
         showExportPathPrompt(defaultFileName, EXPORT_USFM_MIME_TYPE)
     }
 
+    /**
+     * display confirmation prompt before exporting every book of the language to USFM
+     */
+    private fun showExportLanguageToUsfmPrompt() {
+        val filename = targetTranslation.targetLanguageId + "_usfm." + ZIP_EXTENSION
+        showExportPathPrompt(filename, EXPORT_ZIP_MIME_TYPE)
+    }
+
     /**
      * display confirmation prompt before USFM export (also allow entry of filename
      */
@@ -443,6 +469,7 @@ class BackupDialog : DialogFragment() {
         when (mimeType) {
             EXPORT_TSTUDIO_MIME_TYPE -> exportTranslationLauncher.launch(intent)
             EXPORT_USFM_MIME_TYPE -> exportUSFMLauncher.launch(intent)
+            EXPORT_ZIP_MIME_TYPE -> exportLanguageUSFMLauncher.launch(intent)
         }
     }
 
@@ -727,17 +754,8 @@ class BackupDialog : DialogFragment() {
     }
 
     private fun resetToMasterBackup(targetTranslation: TargetTranslation): Boolean {
-        try { // restore state before the pull
-            val git = targetTranslation.repo.git
-            val resetCommand = git.reset()
-            resetCommand.setMode(ResetCommand.ResetType.HARD)
-                .setRef("backup-master")
-                .call()
-        } catch (e: Exception) {
-            e.printStackTrace()
-            return false
-        }
-        return true
+        // restore state before the pull
+        return targetTranslation.resetToMasterBackup()
     }
 
     private fun showAuthFailure() {
@@ -814,5 +832,6 @@ class BackupDialog : DialogFragment() {
         private const val EXPORT_GENERIC_MIME = "application/octet-stream"
         private const val EXPORT_TSTUDIO_MIME_TYPE: String = "application/tstudio"
         private const val EXPORT_USFM_MIME_TYPE: String = "text/usfm"
+        private const val EXPORT_ZIP_MIME_TYPE: String = "application/zip"
     }
 }
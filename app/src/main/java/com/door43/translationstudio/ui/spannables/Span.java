@@ -93,30 +93,7 @@ public abstract class Span {
             spannable.setSpan(new SpannedString(mMachineReadable), 0, spannable.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
 
             if (mClickable) {
-                LongClickableSpan clickSpan = new LongClickableSpan() {
-                    @Override
-                    public void onLongClick(@NonNull View view) {
-                        if(mClickListener != null) {
-                            TextView tv = (TextView)view;
-                            Spanned s = (Spanned)tv.getText();
-                            int start = s.getSpanStart(this);
-                            int end = s.getSpanEnd(this);
-                            mClickListener.onLongClick(view, Span.this, start, end);
-                        }
-                    }
-
-                    @Override
-                    public void onClick(@NonNull View view) {
-                        if (mClickListener != null) {
-                            TextView tv = (TextView)view;
-                            Spanned s = (Spanned)tv.getText();
-                            int start = s.getSpanStart(this);
-                            int end = s.getSpanEnd(this);
-                            mClickListener.onClick(view, Span.this, start, end);
-                        }
-                    }
-                };
-                spannable.setSpan(clickSpan, 0, spannable.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                spannable.setSpan(new ClickHandler(), 0, spannable.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
         }
         return spannable;
@@ -147,6 +124,43 @@ public abstract class Span {
         return render();
     }
 
+    /**
+     * The clickable span attached to the rendered text.
+     * This forwards clicks to the click listener of the span that created it.
+     */
+    public class ClickHandler extends LongClickableSpan {
+
+        /**
+         * Returns the span that rendered this click handler
+         * @return
+         */
+        public Span getSpan() {
+            return Span.this;
+        }
+
+        @Override
+        public void onLongClick(@NonNull View view) {
+            if(mClickListener != null) {
+                TextView tv = (TextView)view;
+                Spanned s = (Spanned)tv.getText();
+                int start = s.getSpanStart(this);
+                int end = s.getSpanEnd(this);
+                mClickListener.onLongClick(view, Span.this, start, end);
+            }
+        }
+
+        @Override
+        public void onClick(@NonNull View view) {
+            if (mClickListener != null) {
+                TextView tv = (TextView)view;
+                Spanned s = (Spanned)tv.getText();
+                int start = s.getSpanStart(this);
+                int end = s.getSpanEnd(this);
+                mClickListener.onClick(view, Span.this, start, end);
+            }
+        }
+    }
+
     /**
      * Custom click listener when span is clicked
      */
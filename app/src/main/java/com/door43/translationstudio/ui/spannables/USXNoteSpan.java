@@ -50,7 +50,7 @@ public class USXNoteSpan extends NoteSpan {
     private final CharSequence mPassage;
     private final String mCaller;
     private List<USXChar> mChars;
-    private static final String DEFAULT_CALLER = "+";
+    public static final String DEFAULT_CALLER = "+";
     private String mStyle;
     private boolean mHighlight = false;
     private SpannableStringBuilder mSpannable;
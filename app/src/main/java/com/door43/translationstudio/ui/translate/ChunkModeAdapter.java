@@ -26,6 +26,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.door43.translationstudio.R;
 import com.door43.translationstudio.core.Frame;
 import com.door43.translationstudio.core.RenderingProvider;
+import com.door43.translationstudio.core.TranslationCompiler;
 import com.door43.translationstudio.core.TranslationFormat;
 import com.door43.translationstudio.core.TranslationType;
 import com.door43.translationstudio.core.TranslationViewMode;
@@ -35,6 +36,7 @@ import com.door43.translationstudio.databinding.FragmentChunkListItemBinding;
 import com.door43.translationstudio.rendering.ClickableRenderingEngine;
 import com.door43.translationstudio.rendering.Clickables;
 import com.door43.translationstudio.rendering.DefaultRenderer;
+import com.door43.translationstudio.rendering.RenderedTextCache;
 import com.door43.translationstudio.rendering.RenderingGroup;
 import com.door43.translationstudio.ui.spannables.NoteSpan;
 import com.door43.translationstudio.ui.spannables.Span;
@@ -48,6 +50,7 @@ import java.util.List;
  * Created by joel on 9/9/2015.
  */
 public class ChunkModeAdapter extends ViewModeAdapter<ChunkModeAdapter.ViewHolder> {
+    private static final String TAG = ChunkModeAdapter.class.getSimpleName();
     private static final int BOTTOM_ELEVATION = 2;
     private static final int TOP_ELEVATION = 3;
 
@@ -380,10 +383,7 @@ public class ChunkModeAdapter extends ViewModeAdapter<ChunkModeAdapter.ViewHolde
 
         // render source text
         if (item.renderedSourceText == null) {
-            item.renderedSourceText = renderText(
-                    item.getSourceText(),
-                    item.getSourceTranslationFormat()
-            );
+            item.renderedSourceText = renderSourceText(item);
         }
         holder.binding.sourceTranslationBody.setText(item.renderedSourceText);
 
@@ -429,7 +429,7 @@ public class ChunkModeAdapter extends ViewModeAdapter<ChunkModeAdapter.ViewHolde
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
                 // save
-                String translation = Translator.compileTranslation((Editable) s);
+                String translation = holder.mTranslationCompiler.update((Editable) s, start, before, count);
                 if (item.isProjectTitle()) {
                     try {
                         item.target.applyProjectTitleTranslation(translation);
@@ -485,26 +485,42 @@ public class ChunkModeAdapter extends ViewModeAdapter<ChunkModeAdapter.ViewHolde
         }
     }
 
+    /**
+     * Renders the source text. The render is shared through the rendered text cache
+     * @param item
+     * @return
+     */
+    private CharSequence renderSourceText(ListItem item) {
+        final TranslationFormat format = item.getSourceTranslationFormat();
+        RenderedTextCache.Key key = new RenderedTextCache.Key(
+                TAG + ":source",
+                item.source.slug,
+                item.chapterSlug,
+                item.chunkSlug,
+                format,
+                RenderedTextCache.FLAG_VERSES_DISABLED
+                        | RenderedTextCache.FLAG_PARAGRAPHS_DISABLED
+                        | RenderedTextCache.FLAG_TARGET,
+                item.getSourceText()
+        );
+        return renderingProvider.getRenderedTextCache().render(
+                key,
+                createNoteClickListener(),
+                listener -> createRenderingGroup(format, listener)
+        ).getText();
+    }
+
     private CharSequence renderText(String text, TranslationFormat format) {
+        RenderingGroup renderingGroup = createRenderingGroup(format, createNoteClickListener());
+        renderingGroup.init(text);
+        return renderingGroup.start();
+    }
+
+    private RenderingGroup createRenderingGroup(TranslationFormat format, Span.OnClickListener noteClickListener) {
         RenderingGroup renderingGroup = new RenderingGroup();
 
         if (Clickables.isClickableFormat(format)) {
-            // TODO: add click listeners for verses and notes
-            Span.OnClickListener noteClickListener = new Span.OnClickListener() {
-                @Override
-                public void onClick(View view, Span span, int start, int end) {
-                    if (span instanceof NoteSpan) {
-                        new AlertDialog.Builder(context, R.style.AppTheme_Dialog)
-                                .setTitle(R.string.title_footnote)
-                                .setMessage(((NoteSpan) span).getNotes())
-                                .setPositiveButton(R.string.dismiss, null)
-                                .show();
-                    }
-                }
-                @Override
-                public void onLongClick(View view, Span span, int start, int end) {
-                }
-            };
+            // TODO: add click listeners for verses
             ClickableRenderingEngine renderer = renderingProvider.setupRenderingGroup(
                     format,
                     renderingGroup,
@@ -518,9 +534,25 @@ public class ChunkModeAdapter extends ViewModeAdapter<ChunkModeAdapter.ViewHolde
             // TODO: add note click listener
             renderingGroup.addEngine(new DefaultRenderer(null));
         }
+        return renderingGroup;
+    }
 
-        renderingGroup.init(text);
-        return renderingGroup.start();
+    private Span.OnClickListener createNoteClickListener() {
+        return new Span.OnClickListener() {
+            @Override
+            public void onClick(View view, Span span, int start, int end) {
+                if (span instanceof NoteSpan) {
+                    new AlertDialog.Builder(context, R.style.AppTheme_Dialog)
+                            .setTitle(R.string.title_footnote)
+                            .setMessage(((NoteSpan) span).getNotes())
+                            .setPositiveButton(R.string.dismiss, null)
+                            .show();
+                }
+            }
+            @Override
+            public void onLongClick(View view, Span span, int start, int end) {
+            }
+        };
     }
 
     @Override
@@ -710,6 +742,7 @@ public class ChunkModeAdapter extends ViewModeAdapter<ChunkModeAdapter.ViewHolde
         public FragmentChunkListItemBinding binding;
         public int mLayoutBuildNumber = -1;
         public TextWatcher mTextWatcher;
+        public final TranslationCompiler mTranslationCompiler = new TranslationCompiler();
 
         public ViewHolder(FragmentChunkListItemBinding binding) {
             super(binding.getRoot());
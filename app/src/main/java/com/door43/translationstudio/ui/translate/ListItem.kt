@@ -26,8 +26,12 @@ abstract class ListItem(
     @JvmField var isEditing = false
     @JvmField var isDisabled = false
 
+    private var _sourceText: String? = null
+    /**
+     * The source text is only read once since the source does not change while the item exists
+     */
     val sourceText: String
-        get() = getSourceText(chapterSlug, chunkSlug)
+        get() = _sourceText ?: getSourceText(chapterSlug, chunkSlug).also { _sourceText = it }
 
     abstract fun getSourceText(chapterSlug: String, chunkSlug: String?): String
 
@@ -74,11 +78,18 @@ abstract class ListItem(
     private var _hasMergeConflicts: Boolean? = null
     var hasMergeConflicts: Boolean
         get() = _hasMergeConflicts ?: run {
-            _hasMergeConflicts = MergeConflictsHandler.isMergeConflicted(targetText)
+            _hasMergeConflicts = isConflicted()
             _hasMergeConflicts!!
         }
         set(value) { _hasMergeConflicts = value }
 
+    /**
+     * Looks up the item in the conflict index instead of reading the target text
+     */
+    protected open fun isConflicted(): Boolean {
+        return target.hasMergeConflicts(chapterSlug, chunkSlug)
+    }
+
     val sourceTranslationFormat: TranslationFormat
         get() = TranslationFormat.parse(source.contentMimeType)
 
@@ -240,6 +251,7 @@ abstract class ListItem(
             base::getTargetText,
             base::fetchTabs
         ).apply {
+            _sourceText = base._sourceText
             hasMergeConflicts = base.hasMergeConflicts
             renderedSourceText = base.renderedSourceText
             renderedTargetText = base.renderedTargetText
@@ -266,6 +278,11 @@ class ReadListItem(
         return getTargetTextFunc(chapterSlug, null)
     }
 
+    override fun isConflicted(): Boolean {
+        // the item shows the whole chapter
+        return target.conflictIndex.containsChapter(chapterSlug)
+    }
+
     override fun fetchTabs(): List<ContentValues> {
         return getTabsFunc()
     }
@@ -322,6 +339,8 @@ class ReviewListItem(
     @JvmField
     var hasMissingVerses = false
     @JvmField
+    var searchMatchOffsets: IntArray? = null
+    @JvmField
     var resourcesOpened = false
 
     override fun getSourceText(chapterSlug: String, chunkSlug: String?): String {
@@ -110,6 +110,9 @@ public class ReadModeAdapter extends ViewModeAdapter<ReadModeAdapter.ViewHolder>
 
     @Override
     protected int getConflictsCount() {
+        // most translations do not have any conflicts
+        if(chunks.isEmpty() || chunks.get(0).target.getConflictIndex().size() == 0) return 0;
+
         int conflictsCount = 0;
         for (ListItem item : chunks) {
             if(item.getHasMergeConflicts()) {
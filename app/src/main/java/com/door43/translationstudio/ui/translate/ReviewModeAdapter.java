@@ -40,7 +40,9 @@ import com.door43.translationstudio.core.FileHistory;
 import com.door43.translationstudio.core.FrameTranslation;
 import com.door43.translationstudio.core.MergeConflictsHandler;
 import com.door43.translationstudio.core.RenderingProvider;
+import com.door43.translationstudio.core.TargetTranslation;
 import com.door43.translationstudio.core.TranslationFormat;
+import com.door43.translationstudio.core.TranslationSearchIndex;
 import com.door43.translationstudio.core.TranslationType;
 import com.door43.translationstudio.core.Translator;
 import com.door43.translationstudio.core.Typography;
@@ -51,6 +53,7 @@ import com.door43.translationstudio.databinding.FragmentVerseMarkerBinding;
 import com.door43.translationstudio.rendering.ClickableRenderingEngine;
 import com.door43.translationstudio.rendering.Clickables;
 import com.door43.translationstudio.rendering.DefaultRenderer;
+import com.door43.translationstudio.rendering.RenderedTextCache;
 import com.door43.translationstudio.rendering.RenderingGroup;
 import com.door43.translationstudio.ui.spannables.NoteSpan;
 import com.door43.translationstudio.ui.spannables.Span;
@@ -71,8 +74,12 @@ import org.unfoldingword.tools.taskmanager.ThreadableUI;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -109,17 +116,24 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
     private OnRenderHelpsListener renderHelpsListener = null;
     private OnItemActionListener itemActionListener = null;
     private RenderingProvider renderingProvider;
+    private final TranslationSearchIndex searchIndex;
+    // TRICKY: a single thread so indexing always finishes before the searches queued after it
+    private static final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private volatile boolean targetSearchIndexChecked = false;
+    private int searchGeneration = 0;
 
     public ReviewModeAdapter(
             boolean openResources,
             boolean enableMergeConflictsFilter,
             Typography typography,
-            RenderingProvider renderingProvider
+            RenderingProvider renderingProvider,
+            TranslationSearchIndex searchIndex
     ) {
         resourcesOpened = openResources;
         mergeConflictFilterOn = enableMergeConflictsFilter;
         this.typography = typography;
         this.renderingProvider = renderingProvider;
+        this.searchIndex = searchIndex;
     }
 
     @Override
@@ -129,6 +143,8 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
             String startingChunk
     ) {
         super.initializeListItems(listItems, startingChapter, startingChunk);
+        // the chunks may have been edited outside of this adapter
+        targetSearchIndexChecked = false;
 
         setResourcesOpened(resourcesOpened);
         filter(searchText, searchSubject, searchPosition);
@@ -326,20 +342,28 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
                 .setPositiveButton(R.string.confirm, (dialog, which) -> {
                     int marked = 0;
                     int total = filteredItems.size();
-                    for (ListItem item : filteredItems) {
-                        try {
-                            markChunkCompleted(item, item.target.getFormat());
-                            marked++;
-                        } catch (Exception e) {
-                            String msg = String.format(
-                                    "There was an error in markAllChunksDone. Translation: " +
-                                     "%s, chapter: %s, chunk: %s. Error: %s",
-                                    item.target.getId(),
-                                    item.chapterSlug,
-                                    item.chunkSlug,
-                                    e.getMessage());
-                            Logger.e(TAG, msg);
+                    if (total == 0) return;
+                    // write the manifest once instead of once per chunk
+                    TargetTranslation target = filteredItems.get(0).target;
+                    target.beginBatchUpdate();
+                    try {
+                        for (ListItem item : filteredItems) {
+                            try {
+                                markChunkCompleted(item, item.target.getFormat());
+                                marked++;
+                            } catch (Exception e) {
+                                String msg = String.format(
+                                        "There was an error in markAllChunksDone. Translation: " +
+                                         "%s, chapter: %s, chunk: %s. Error: %s",
+                                        item.target.getId(),
+                                        item.chapterSlug,
+                                        item.chunkSlug,
+                                        e.getMessage());
+                                Logger.e(TAG, msg);
+                            }
                         }
+                    } finally {
+                        target.endBatchUpdate();
                     }
 
                     try {
@@ -549,7 +573,8 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
             }
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                String translation = applyChangedText(s, holder, item);
+                String translation = holder.translationCompiler.update((Editable) s, start, before, count);
+                applyNewCompiledText(translation, holder, item);
                 // commit immediately if editing history
                 FileHistory history = item.getFileHistory();
                 if (history != null && !history.isAtHead()) {
@@ -1115,6 +1140,29 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
 
         item.renderedTargetText = renderSourceText(translation, item.getTargetTranslationFormat(),
                 holder, (ReviewListItem) item, true);
+        indexSavedTarget((ReviewListItem) item, translation);
+    }
+
+    /**
+     * Keeps the search index up to date with the text that was saved
+     * @param item
+     * @param translation
+     */
+    private void indexSavedTarget(final ReviewListItem item, final String translation) {
+        final String container = TranslationSearchIndex.targetContainer(item.target.getId());
+        final TranslationFormat format = item.getTargetTranslationFormat();
+        final String sourceText = item.getSourceText();
+        final TranslationFormat sourceFormat = item.getSourceTranslationFormat();
+        searchExecutor.execute(() -> {
+            try {
+                CharSequence rendered = renderSearchableTargetText(translation, format, sourceText, sourceFormat);
+                searchIndex.index(container, item.chapterSlug, item.chunkSlug, translation.hashCode(), rendered);
+            } catch (Exception e) {
+                Logger.w(TAG, "Failed to index the saved chunk", e);
+                searchIndex.invalidate(container, item.chapterSlug, item.chunkSlug);
+                targetSearchIndexChecked = false;
+            }
+        });
     }
 
     /**
@@ -1617,6 +1665,47 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
         }
     }
 
+    /**
+     * Renders the target text the same as {@link #renderTargetText} but without click listeners,
+     * search highlighting or changes to the item, so it can be used on the search executor.
+     *
+     * @param text
+     * @param format
+     * @param sourceText the source text used to find the expected verses
+     * @param sourceFormat
+     * @return
+     */
+    private CharSequence renderSearchableTargetText(
+            String text,
+            TranslationFormat format,
+            String sourceText,
+            TranslationFormat sourceFormat
+    ) {
+        if ((text == null) || text.trim().isEmpty()) {
+            return "";
+        }
+
+        RenderingGroup renderingGroup = new RenderingGroup();
+        if (Clickables.isClickableFormat(format)) {
+            ClickableRenderingEngine renderer = renderingProvider.setupRenderingGroup(
+                    format,
+                    renderingGroup,
+                    null,
+                    null,
+                    true
+            );
+            renderer.setLinebreaksEnabled(true);
+            renderer.setPopulateVerseMarkers(
+                RenderingProvider.Companion.getVerseRange(sourceText, sourceFormat)
+            );
+        } else {
+            renderingGroup.addEngine(new DefaultRenderer(null));
+        }
+
+        renderingGroup.init(text);
+        return renderingGroup.start();
+    }
+
     /**
      * Find the closest position to drop verse marker.  Weighted toward beginning of word.
      *
@@ -2096,6 +2185,15 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
         boolean needRender = (text == null);
 
         boolean matcherEmpty = (matcher.isEmpty());
+        if (needRender && !matcherEmpty && item.searchMatchOffsets != null
+                && matchNumb >= 0 && target == searchingTarget) {
+            // answer from the search index until the text has been rendered
+            int[] offsets = item.searchMatchOffsets;
+            if (matchNumb < offsets.length) {
+                return new MatchResults(offsets[matchNumb], matchNumb + 1, false);
+            }
+            return new MatchResults(-1, offsets.length, false);
+        }
         if (matcherEmpty || needRender || (matchNumb < 0)
                 || (target != searchingTarget)) {
             return new MatchResults(-1, -1, needRender);
@@ -2145,6 +2243,7 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
             for (ListItem item: filteredItems) {
                 ReviewListItem reviewItem = (ReviewListItem) item;
                 // Item will be re-rendered with default text (without highlights)
+                reviewItem.searchMatchOffsets = null;
                 if (reviewItem.hasSearchText) {
                     reviewItem.hasSearchText = false;
                     reviewItem.renderedSourceText = null;
@@ -2330,42 +2429,62 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
      * @return
      */
     private CharSequence renderSourceText(final ReviewListItem item) {
-        RenderingGroup renderingGroup = new RenderingGroup();
         boolean enableSearch = searchText != null && searchSubject == SearchSubject.SOURCE;
 
-        if (Clickables.isClickableFormat(item.getSourceTranslationFormat())) {
-            // TODO: add click listeners for verses
-            Span.OnClickListener noteClickListener = new Span.OnClickListener() {
-                @Override
-                public void onClick(View view, Span span, int start, int end) {
-                    if(span instanceof NoteSpan) {
-                        onSourceFootnoteClick(item, (NoteSpan)span, start, end);
-                    }
-                }
-                @Override
-                public void onLongClick(View view, Span span, int start, int end) {
-                }
-            };
-            renderingProvider.setupRenderingGroup(
-                    item.getSourceTranslationFormat(),
-                    renderingGroup,
-                    null,
-                    noteClickListener,
-                    false
-            );
-        } else {
-            // TODO: add note click listener
-            renderingGroup.addEngine(new DefaultRenderer(null));
-        }
-
+        RenderedTextCache.Entry rendered = renderBaseSourceText(item);
+        item.hasMissingVerses = rendered.isAddedMissingVerse();
         if(enableSearch) {
-            renderingGroup.setSearchString(searchText, HIGHLIGHT_COLOR);
+            return RenderedTextCache.highlightSearch(rendered.getText(), searchText, HIGHLIGHT_COLOR);
         }
+        return rendered.getText();
+    }
 
-        renderingGroup.init(item.getSourceText());
-        CharSequence results = renderingGroup.start();
-        item.hasMissingVerses = renderingGroup.isAddedMissingVerse();
-        return results;
+    /**
+     * Returns the cached source text render without search highlighting
+     * @param item
+     * @return
+     */
+    private RenderedTextCache.Entry renderBaseSourceText(final ReviewListItem item) {
+        final TranslationFormat format = item.getSourceTranslationFormat();
+
+        // TODO: add click listeners for verses
+        Span.OnClickListener noteClickListener = new Span.OnClickListener() {
+            @Override
+            public void onClick(View view, Span span, int start, int end) {
+                if(span instanceof NoteSpan) {
+                    onSourceFootnoteClick(item, (NoteSpan)span, start, end);
+                }
+            }
+            @Override
+            public void onLongClick(View view, Span span, int start, int end) {
+            }
+        };
+
+        RenderedTextCache.Key key = new RenderedTextCache.Key(
+                TAG + ":source",
+                item.source.slug,
+                item.chapterSlug,
+                item.chunkSlug,
+                format,
+                0,
+                item.getSourceText()
+        );
+        return renderingProvider.getRenderedTextCache().render(key, noteClickListener, listener -> {
+            RenderingGroup renderingGroup = new RenderingGroup();
+            if (Clickables.isClickableFormat(format)) {
+                renderingProvider.setupRenderingGroup(
+                        format,
+                        renderingGroup,
+                        null,
+                        listener,
+                        false
+                );
+            } else {
+                // TODO: add note click listener
+                renderingGroup.addEngine(new DefaultRenderer(null));
+            }
+            return renderingGroup;
+        });
     }
 
     private void searchItems(final int initialPosition) {
@@ -2381,51 +2500,45 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
 
         onSearching(true, 0, true, true);
 
+        final int generation = ++searchGeneration;
+        if (matcherEmpty || items.isEmpty()) {
+            applySearchMatches(new HashMap<>(), initialPosition);
+            return;
+        }
+
+        // the index is updated and searched in the background
+        final List<ListItem> searchedItems = new ArrayList<>(items);
+        final boolean target = searchingTarget;
+        final Handler hand = new Handler(Looper.getMainLooper());
+        searchExecutor.execute(() -> {
+            Map<String, int[]> matches;
+            try {
+                matches = findSearchMatches(searchedItems, target, matcher);
+            } catch (Exception e) {
+                Logger.e(TAG, "Failed to search the translation", e);
+                matches = new HashMap<>();
+            }
+            final Map<String, int[]> found = matches;
+            hand.post(() -> {
+                // a newer search has started
+                if (generation != searchGeneration) return;
+                applySearchMatches(found, initialPosition);
+            });
+        });
+    }
+
+    /**
+     * Flags the items that matched the search
+     * @param matches the match offsets in the rendered text keyed by chunk
+     * @param initialPosition
+     */
+    private void applySearchMatches(Map<String, int[]> matches, int initialPosition) {
         chunkSearchMatchesCounter = 0;
         for (ListItem item : filteredItems) {
             ReviewListItem reviewItem = (ReviewListItem)item;
-            boolean match = false;
-
-            if (!matcherEmpty) {
-                if (searchingTarget) {
-                    boolean foundMatch;
-
-                    foundMatch = reviewItem.getTargetText().toLowerCase().contains(matcher);
-                    if (foundMatch) { // if match, it could be in markup, so we
-                        // double check by rendering and searching that
-                        CharSequence text = renderTargetText(
-                                reviewItem.getTargetText(),
-                                reviewItem.getTargetTranslationFormat(),
-                                reviewItem.getFt(),
-                                null,
-                                reviewItem
-                        );
-                        foundMatch = text.toString().toLowerCase().contains(matcher);
-                    }
-                    match = foundMatch || match;
-                }
-                if (!searchingTarget) {
-                    boolean foundMatch;
-                    if (reviewItem.renderedSourceText != null) {
-                        foundMatch = reviewItem.renderedSourceText.toString().toLowerCase()
-                                .contains(matcher);
-                    } else {
-                        foundMatch = reviewItem.getSourceText().toLowerCase().contains(matcher);
-                        if (foundMatch) { // if match, it could be in markup, so we
-                            // double check by rendering and searching that
-                            CharSequence text = renderSourceText(
-                                    reviewItem.getSourceText(),
-                                    reviewItem.getSourceTranslationFormat(),
-                                    null,
-                                    reviewItem,
-                                    false
-                            );
-                            foundMatch = text.toString().toLowerCase().contains(matcher);
-                        }
-                    }
-                    match = foundMatch || match;
-                }
-            }
+            int[] offsets = matches.get(TranslationSearchIndex.chunkKey(item.chapterSlug, item.chunkSlug));
+            boolean match = offsets != null;
+            reviewItem.searchMatchOffsets = offsets;
 
             if (reviewItem.hasSearchText && !match) { // check for search match cleared
                 reviewItem.renderedTargetText = null;  // re-render target
@@ -2451,6 +2564,92 @@ public class ReviewModeAdapter extends ViewModeAdapter<ReviewHolder> implements
         }
     }
 
+    /**
+     * Brings the search index up to date and looks up the chunks that match the search.
+     * This must be called on the search executor.
+     * @param items
+     * @param target true if the target text is searched
+     * @param matcher the lower case search string
+     * @return the match offsets in the rendered text keyed by chunk
+     */
+    private Map<String, int[]> findSearchMatches(List<ListItem> items, boolean target, String matcher) {
+        ListItem first = items.get(0);
+        String container;
+        long start = System.currentTimeMillis();
+        if (target) {
+            container = TranslationSearchIndex.targetContainer(first.target.getId());
+            // after the first check the index is updated as the chunks are saved
+            if (!targetSearchIndexChecked) {
+                updateTargetSearchIndex(container, items);
+                targetSearchIndexChecked = true;
+            }
+        } else {
+            container = TranslationSearchIndex.sourceContainer(first.source.slug);
+            updateSourceSearchIndex(container, String.valueOf(first.source.modifiedAt), items);
+        }
+        Map<String, int[]> matches = searchIndex.search(container, matcher);
+        Log.i(TAG, "findSearchMatches(): " + matches.size() + " chunks matched in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return matches;
+    }
+
+    /**
+     * Indexes the source text if the source container has changed since it was last indexed
+     * @param container
+     * @param stamp identifies the version of the source container
+     * @param items
+     */
+    private void updateSourceSearchIndex(String container, String stamp, List<ListItem> items) {
+        if (stamp.equals(searchIndex.getContainerStamp(container))) return;
+
+        boolean success = false;
+        searchIndex.beginTransaction();
+        try {
+            for (ListItem item : items) {
+                searchIndex.index(
+                        container,
+                        item.chapterSlug,
+                        item.chunkSlug,
+                        item.getSourceText().hashCode(),
+                        renderBaseSourceText((ReviewListItem) item).getText()
+                );
+            }
+            success = true;
+        } finally {
+            searchIndex.endTransaction(success);
+        }
+        searchIndex.setContainerStamp(container, stamp);
+    }
+
+    /**
+     * Re-indexes the target chunks that have been edited since they were last indexed
+     * @param container
+     * @param items
+     */
+    private void updateTargetSearchIndex(String container, List<ListItem> items) {
+        Map<String, Long> stamps = searchIndex.getChunkStamps(container);
+        boolean success = false;
+        searchIndex.beginTransaction();
+        try {
+            for (ListItem item : items) {
+                String text = item.getTargetText();
+                Long stamp = stamps.get(TranslationSearchIndex.chunkKey(item.chapterSlug, item.chunkSlug));
+                if (stamp != null && stamp == text.hashCode()) continue;
+
+                CharSequence rendered = renderSearchableTargetText(
+                        text,
+                        item.getTargetTranslationFormat(),
+                        item.getSourceText(),
+                        item.getSourceTranslationFormat()
+                );
+                searchIndex.index(container, item.chapterSlug, item.chunkSlug, text.hashCode(), rendered);
+            }
+            success = true;
+        } finally {
+            searchIndex.endTransaction(success);
+        }
+    }
+
     /**
      * Disable/Enable items
      * @param disable - disable or enable
@@ -25,6 +25,7 @@ import com.door43.data.IPreferenceRepository;
 import com.door43.translationstudio.R;
 import com.door43.translationstudio.core.Frame;
 import com.door43.translationstudio.core.TranslationFormat;
+import com.door43.translationstudio.core.TranslationSearchIndex;
 import com.door43.translationstudio.core.TranslationType;
 import com.door43.translationstudio.core.Util;
 import com.door43.translationstudio.databinding.FragmentResourcesExampleItemBinding;
@@ -70,6 +71,8 @@ public class ReviewModeFragment extends ViewModeFragment implements ReviewModeAd
 
     @Inject
     IPreferenceRepository prefRepository;
+    @Inject
+    TranslationSearchIndex searchIndex;
 
     private static final String STATE_RESOURCES_OPEN = "state_resources_open";
     private static final String STATE_RESOURCES_DRAWER_OPEN = "state_resources_drawer_open";
@@ -93,7 +96,7 @@ public class ReviewModeFragment extends ViewModeFragment implements ReviewModeAd
     @Override
     ViewModeAdapter generateAdapter() {
         return new ReviewModeAdapter(resourcesOpen, enableMergeConflictsFilter, typography,
-                renderingProvider);
+                renderingProvider, searchIndex);
     }
 
     @Override
@@ -447,6 +447,9 @@ public abstract class ViewModeAdapter<VH extends RecyclerView.ViewHolder> extend
     }
 
     protected int getConflictsCount() {
+        // most translations do not have any conflicts
+        if(items.isEmpty() || items.get(0).target.getConflictIndex().size() == 0) return 0;
+
         int conflictsCount = 0;
         for (ListItem item : items) {
             if(item.getHasMergeConflicts()) {
@@ -33,6 +33,7 @@ import android.widget.TextView;
 
 import com.door43.translationstudio.R;
 import com.door43.translationstudio.core.FileHistory;
+import com.door43.translationstudio.core.TranslationCompiler;
 import com.door43.translationstudio.core.TranslationFormat;
 import com.door43.translationstudio.core.TranslationType;
 import com.door43.translationstudio.ui.translate.TranslationHelp;
@@ -60,6 +61,7 @@ public class ReviewHolder extends RecyclerView.ViewHolder {
     public ReviewListItem currentItem = null;
     public int layoutBuildNumber = -1;
     public TextWatcher editableTextWatcher;
+    public final TranslationCompiler translationCompiler = new TranslationCompiler();
     private List<TextView> mergeTexts;
     private OnResourceClickListener listener;
     private List<TranslationHelp> notes = new ArrayList<>();
@@ -9,6 +9,7 @@ import androidx.lifecycle.viewModelScope
 import com.door43.data.IDirectoryProvider
 import com.door43.data.IPreferenceRepository
 import com.door43.translationstudio.R
+import com.door43.translationstudio.core.BibleCodes
 import com.door43.translationstudio.core.DownloadImages
 import com.door43.translationstudio.core.Profile
 import com.door43.translationstudio.core.TargetTranslation
@@ -128,6 +129,37 @@ class ExportViewModel @Inject constructor(
         }
     }
 
+    /**
+     * Save every book translated into the target language as USFM files in a zip
+     */
+    fun exportLanguageUSFM(uri: Uri) {
+        viewModelScope.launch {
+            _progress.value = ProgressHelper.Progress(application.getString(R.string.exporting))
+            translation.value?.let { targetTranslation ->
+                _exportResult.value = withContext(Dispatchers.IO) {
+                    export.exportUSFMBatch(getLanguageBooks(targetTranslation), uri)
+                }
+            }
+            _progress.value = null
+        }
+    }
+
+    /**
+     * Returns the books translated into the same language in canonical order.
+     * Books that are not in the bible are placed at the end.
+     */
+    private fun getLanguageBooks(targetTranslation: TargetTranslation): List<TargetTranslation> {
+        val bookList = BibleCodes.getBibleBooks().asList()
+        return translator.targetTranslations
+            .filter {
+                it.targetLanguageId == targetTranslation.targetLanguageId && !it.isObsProject
+            }
+            .sortedWith(compareBy<TargetTranslation>(
+                { bookList.indexOf(it.projectId).let { index -> if (index < 0) Int.MAX_VALUE else index } },
+                { it.projectId }
+            ))
+    }
+
     fun exportPDF(
         uri: Uri,
         includeImages: Boolean,
@@ -144,7 +176,9 @@ class ExportViewModel @Inject constructor(
                         includeImages,
                         includeIncompleteFrames,
                         imagesDir
-                    )
+                    ) { progress, max, message ->
+                        _progress.postValue(ProgressHelper.Progress(message, progress, max))
+                    }
                 }
             }
             _progress.value = null
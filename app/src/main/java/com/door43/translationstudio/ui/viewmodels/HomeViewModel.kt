@@ -10,6 +10,7 @@ import com.door43.data.IDirectoryProvider
 import com.door43.translationstudio.R
 import com.door43.translationstudio.core.Profile
 import com.door43.translationstudio.core.TargetTranslation
+import com.door43.translationstudio.core.TargetTranslationCatalog
 import com.door43.translationstudio.core.Translator
 import com.door43.translationstudio.ui.dialogs.ProgressHelper
 import com.door43.translationstudio.ui.home.TranslationItem
@@ -56,6 +57,7 @@ class HomeViewModel @Inject constructor(
     @Inject lateinit var backupRC: BackupRC
     @Inject lateinit var library: Door43Client
     @Inject lateinit var calculateProgress: TranslationProgress
+    @Inject lateinit var catalog: TargetTranslationCatalog
 
     private val _progress = MutableLiveData<ProgressHelper.Progress?>()
     val progress: LiveData<ProgressHelper.Progress?> = _progress
@@ -120,10 +122,36 @@ class HomeViewModel @Inject constructor(
     val loggedIn: Boolean
         get() = profile.gogsUser != null
 
+    /**
+     * Loads the target translations with the progress recorded in the catalog
+     * then calculates the progress of the translations that have changed
+     */
     fun loadTranslations() {
         viewModelScope.launch {
-            _translations.value = translator.targetTranslations.map {
-                TranslationItem(it, calculateProgress.execute(it), ::getProject)
+            val stale = arrayListOf<TargetTranslation>()
+            _translations.value = withContext(Dispatchers.IO) {
+                val translations = translator.targetTranslations
+                val ids = translations.map { it.id }.toSet()
+                catalog.getEntries()
+                    .filter { it.id !in ids }
+                    .forEach { catalog.remove(it.id) }
+
+                translations.map {
+                    val progress = calculateProgress.getCachedProgress(it)
+                    if (progress == null) stale.add(it)
+                    TranslationItem(it, progress ?: 0.0, ::getProject)
+                }
+            }
+
+            val refreshed = withContext(Dispatchers.IO) {
+                val progress = stale.associate { it.id to calculateProgress.execute(it) }
+                catalog.save()
+                progress
+            }
+            if (refreshed.isNotEmpty()) {
+                _translations.value = _translations.value?.map { item ->
+                    refreshed[item.translation.id]?.let { item.copy(progress = it) } ?: item
+                }
             }
         }
     }
@@ -159,6 +187,7 @@ class HomeViewModel @Inject constructor(
         backupRC.backupTargetTranslation(item.translation, orphaned)
         translator.deleteTargetTranslation(item.translation.id)
         translator.clearTargetTranslationSettings(item.translation.id)
+        catalog.remove(item.translation.id)
 
         _translations.value = _translations.value?.filter {
             it.translation.id != item.translation.id
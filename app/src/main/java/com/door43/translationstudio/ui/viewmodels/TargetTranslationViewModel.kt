@@ -185,7 +185,10 @@ class TargetTranslationViewModel @Inject constructor(
 
             withContext(Dispatchers.IO) {
                 translator.setSelectedSourceTranslation(targetTranslation.id, sourceTranslationId)
+                _resourceContainer?.let { ContainerCache.unpin(it.slug) }
                 _resourceContainer = library.index.getTranslation(sourceTranslationId)?.let { sourceTranslation ->
+                    // keep the open source in memory while the helps are loaded
+                    ContainerCache.pin(sourceTranslation.resourceContainerSlug)
                     ContainerCache.cache(
                         library,
                         sourceTranslation.resourceContainerSlug
@@ -193,6 +196,11 @@ class TargetTranslationViewModel @Inject constructor(
                 }
             }
 
+            _resourceContainer?.let { source ->
+                // chunks are read from the container files until the pack is ready
+                launch(Dispatchers.IO) { ContainerCache.pack(library, source.slug) }
+            }
+
             loadListItems()
             _progress.value = null
         }
@@ -363,18 +371,23 @@ class TargetTranslationViewModel @Inject constructor(
     }
 
     private fun fetchSourceText(source: ResourceContainer, chapterSlug: String, chunkSlug: String?): String {
+        // read from the packed content when available instead of a file per chunk
+        val packed = ContainerCache.cachePacked(library, source.slug)
+        val readChunk = { chapter: String, chunk: String ->
+            packed?.readChunk(chapter, chunk) ?: source.readChunk(chapter, chunk)
+        }
         return if (chunkSlug != null) {
-            source.readChunk(chapterSlug, chunkSlug)
+            readChunk(chapterSlug, chunkSlug)
         } else {
-            var chapterBody = ""
+            val chapterBody = StringBuilder()
             val sorter = SlugSorter()
-            val chunks = sorter.sort(source.chunks(chapterSlug))
+            val chunks = sorter.sort(packed?.chunks(chapterSlug) ?: source.chunks(chapterSlug))
             for (chunk in chunks) {
                 if(!chunk.equals("title")) {
-                    chapterBody += source.readChunk(chapterSlug, chunk);
+                    chapterBody.append(readChunk(chapterSlug, chunk))
                 }
             }
-            chapterBody
+            chapterBody.toString()
         }
     }
 
@@ -425,4 +438,8 @@ class TargetTranslationViewModel @Inject constructor(
         )
     }
 
+    override fun onCleared() {
+        super.onCleared()
+        _resourceContainer?.let { ContainerCache.unpin(it.slug) }
+    }
 }
\ No newline at end of file
@@ -3,16 +3,26 @@ package com.door43.usecases
 import android.content.Context
 import com.door43.data.IDirectoryProvider
 import com.door43.translationstudio.core.ArchiveDetails
+import com.door43.translationstudio.core.BackupJournal
 import com.door43.translationstudio.core.Profile
 import com.door43.translationstudio.core.TargetTranslation
+import com.door43.translationstudio.core.TargetTranslationCatalog
 import com.door43.translationstudio.core.TargetTranslationMigrator
 import com.door43.translationstudio.core.Translator
 import com.door43.util.FileUtilities
 import dagger.hilt.android.qualifiers.ApplicationContext
+import org.eclipse.jgit.errors.MissingObjectException
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.NullProgressMonitor
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.revwalk.RevWalk
+import org.eclipse.jgit.transport.BundleWriter
 import org.unfoldingword.door43client.Door43Client
 import org.unfoldingword.door43client.models.Translation
 import org.unfoldingword.resourcecontainer.ResourceContainer
+import org.unfoldingword.tools.logger.Logger
 import java.io.File
+import java.io.FileOutputStream
 import java.text.SimpleDateFormat
 import java.util.Date
 import java.util.Locale
@@ -24,7 +34,8 @@ class BackupRC @Inject constructor(
     private val migrator: TargetTranslationMigrator,
     private val exportProjects: ExportProjects,
     private val profile: Profile,
-    private val library: Door43Client
+    private val library: Door43Client,
+    private val journal: BackupJournal
 ) {
     fun backupResourceContainer(translation: Translation): File {
         val dest = File(
@@ -40,10 +51,22 @@ class BackupRC @Inject constructor(
         return dest
     }
 
+    /**
+     * Creates a backup of a target translation.
+     * Backups that are not orphaned are only written when the target translation has been
+     * committed since the last backup.
+     *
+     * @param targetTranslation the target translation to back up
+     * @param orphaned if true a time stamped archive will be created
+     * @param writeBundle if true a git bundle containing only the commits made since the
+     * previous backup will be written next to the backup
+     * @return true if the backup was actually performed
+     */
     @Throws(Exception::class)
     fun backupTargetTranslation(
         targetTranslation: TargetTranslation?,
-        orphaned: Boolean
+        orphaned: Boolean,
+        writeBundle: Boolean = false
     ): Boolean {
         if (targetTranslation != null) {
             var name = targetTranslation.id
@@ -61,33 +84,50 @@ class BackupRC @Inject constructor(
             val backup = File(directoryProvider.backupsDir, "$name.$archiveExtension")
 
             // check if we need to backup
+            var previousCommit: String? = null
             if (!orphaned) {
-                val details = ArchiveDetails.Builder(context, directoryProvider, migrator, library)
-                    .fromFile(backup, "en")
-                    .build()
-
-                // TRICKY: we only generate backups with a single target translation inside.
-                if (getCommitHash(details) == targetTranslation.commitHash) {
+                val commit = targetTranslation.commitHash
+                if (journal.isBackedUp(targetTranslation.id, commit, backup)) {
                     return false
                 }
+                previousCommit = journal.get(targetTranslation.id)?.commit
+
+                // TRICKY: backups made before the journal existed are read once
+                if (previousCommit == null && backup.isFile) {
+                    val details = ArchiveDetails.Builder(context, directoryProvider, migrator, library)
+                        .fromFile(backup, "en")
+                        .build()
+
+                    // TRICKY: we only generate backups with a single target translation inside.
+                    if (getCommitHash(details) == commit) {
+                        journal.record(targetTranslation.id, commit, backup)
+                        journal.save()
+                        return false
+                    }
+                }
             }
 
             // run backup
-            var temp: File? = null
-            try {
-                temp = directoryProvider.createTempFile(name, ".$archiveExtension")
-                targetTranslation.setDefaultContributor(profile.nativeSpeaker)
-                exportProjects.exportProject(targetTranslation, temp)
-                if (temp.exists() && temp.isFile) {
-                    // copy into backup locations
-                    backup.parentFile?.mkdirs()
-
-                    FileUtilities.copyFile(temp, backup)
-                    return true
+            targetTranslation.setDefaultContributor(profile.nativeSpeaker)
+            val written = FileUtilities.writeAtomically(backup) { out ->
+                exportProjects.exportProject(targetTranslation, out)
+            }
+            if (written && !orphaned) {
+                // the export commits any pending changes so HEAD is read again
+                val commit = targetTranslation.commitHash
+                if (commit != null) {
+                    if (writeBundle && previousCommit != null && previousCommit != commit) {
+                        try {
+                            writeBundle(targetTranslation, previousCommit, commit)
+                        } catch (e: Exception) {
+                            Logger.w(TAG, "Could not bundle the changes to " + targetTranslation.id, e)
+                        }
+                    }
+                    journal.record(targetTranslation.id, commit, backup)
+                    journal.save()
                 }
-            } finally {
-                FileUtilities.deleteQuietly(temp)
             }
+            return written
         }
         return false
     }
@@ -106,22 +146,69 @@ class BackupRC @Inject constructor(
         val backup = File(directoryProvider.backupsDir, name + "." + Translator.ZIP_EXTENSION)
 
         // run backup
-        var temp: File? = null
+        return FileUtilities.writeAtomically(backup) { out ->
+            exportProjects.exportProject(projectDir, out)
+        }
+    }
+
+    /**
+     * Checks if a target translation has changed since it was last backed up.
+     * This only reads the git HEAD so it is cheap enough to call for every target translation.
+     *
+     * @param targetTranslationDir the directory of the target translation
+     * @return
+     */
+    fun needsBackup(targetTranslationDir: File): Boolean {
+        if (TargetTranslation.hasUncommittedChanges(targetTranslationDir)) return true
+        val id = targetTranslationDir.name
+        val backup = File(directoryProvider.backupsDir, "$id.${Translator.TSTUDIO_EXTENSION}")
+        val head = TargetTranslationCatalog.readHead(targetTranslationDir)
+        return !journal.isBackedUp(id, head, backup)
+    }
+
+    /**
+     * Records that a target translation did not need to be backed up at its current HEAD
+     * @param targetTranslationDir the directory of the target translation
+     */
+    fun skipBackup(targetTranslationDir: File) {
+        val head = TargetTranslationCatalog.readHead(targetTranslationDir) ?: return
+        journal.recordSkipped(targetTranslationDir.name, head)
+        journal.save()
+    }
+
+    /**
+     * Writes a git bundle with the commits between two backups
+     * @param targetTranslation
+     * @param fromCommit the commit of the previous backup
+     * @param toCommit the commit of the new backup
+     */
+    @Throws(Exception::class)
+    private fun writeBundle(
+        targetTranslation: TargetTranslation,
+        fromCommit: String,
+        toCommit: String
+    ) {
+        val repository = targetTranslation.repo.git.repository
+        val bundleDir = File(directoryProvider.backupsDir, "bundles")
+        val bundle = File(
+            bundleDir,
+            "${targetTranslation.id}.${fromCommit.take(7)}-${toCommit.take(7)}.bundle"
+        )
+        val walk = RevWalk(repository)
         try {
-            temp = directoryProvider.createTempFile(name, "." + Translator.ZIP_EXTENSION)
-            exportProjects.exportProject(projectDir, temp)
-            if (temp.exists() && temp.isFile) {
-                // copy into backup locations
-                backup.parentFile?.mkdirs()
-
-                FileUtilities.copyFile(temp, backup)
-                return true
+            val writer = BundleWriter(repository)
+            writer.include(repository.fullBranch ?: Constants.HEAD, ObjectId.fromString(toCommit))
+            try {
+                writer.assume(walk.parseCommit(ObjectId.fromString(fromCommit)))
+            } catch (e: MissingObjectException) {
+                // the history was rewritten so the bundle will contain every commit
+            }
+            FileUtilities.writeAtomically(bundle) { out ->
+                FileOutputStream(out).use { writer.writeBundle(NullProgressMonitor.INSTANCE, it) }
             }
         } finally {
-            FileUtilities.deleteQuietly(temp)
+            walk.release()
         }
-
-        return false
     }
 
     /**
@@ -132,4 +219,8 @@ class BackupRC @Inject constructor(
     private fun getCommitHash(details: ArchiveDetails?): String {
         return details?.targetTranslationDetails?.firstOrNull()?.commitHash ?: ""
     }
-}
\ No newline at end of file
+
+    companion object {
+        private val TAG: String = BackupRC::class.java.simpleName
+    }
+}
@@ -56,6 +56,7 @@ class DownloadIndex @Inject constructor(
                         }
                     }
                 }
+                directoryProvider.deleteDatabaseJournal()
                 true
             } else false
         } catch (e: Exception) {
@@ -78,8 +79,9 @@ class DownloadIndex @Inject constructor(
                         total += count
                         output.write(data, 0, count)
                     }
-                    true
                 }
+                directoryProvider.deleteDatabaseJournal()
+                true
             } ?: false
         } catch (e: Exception) {
             Logger.e(this::javaClass.name, "Failed to import index", e)
@@ -3,6 +3,7 @@ package com.door43.usecases
 import android.content.Context
 import android.net.Uri
 import android.util.Log
+import com.door43.OnProgressListener
 import com.door43.data.IDirectoryProvider
 import com.door43.translationstudio.R
 import com.door43.translationstudio.core.FrameTranslation
@@ -22,12 +23,20 @@ import org.eclipse.jgit.errors.TransportException
 import org.json.JSONArray
 import org.json.JSONObject
 import org.unfoldingword.door43client.Door43Client
+import java.io.BufferedWriter
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
 import java.io.File
-import java.io.FileInputStream
 import java.io.FileOutputStream
-import java.io.PrintStream
+import java.io.OutputStream
+import java.io.OutputStreamWriter
 import java.util.Locale
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 import javax.inject.Inject
+import kotlin.math.max
+import kotlin.math.min
 
 class ExportProjects @Inject constructor(
     @ApplicationContext private val context: Context,
@@ -108,109 +117,85 @@ class ExportProjects @Inject constructor(
      * @param fileUri
      */
     fun exportUSFM(targetTranslation: TargetTranslation, fileUri: Uri): Result {
-        val tempDir = directoryProvider.createTempDir()
-
         val success = try {
-            tempDir.mkdirs()
-            val chapters = targetTranslation.chapterTranslations
-
             val bookData = BookData.generate(targetTranslation, library)
-            val bookCode = bookData.bookCode
-            val bookTitle = bookData.bookTitle
-            val bookName = bookData.bookName
-            val languageId = bookData.languageId
-            val languageName = bookData.languageName
-
-            val tempFile = directoryProvider.createTempFile("output", dir = tempDir)
-
-            PrintStream(tempFile).use { ps ->
-                val id = "\\id $bookCode $bookTitle, $bookName, $languageId, $languageName"
-                ps.println(id)
-                val ide = "\\ide usfm"
-                ps.println(ide)
-                val h = "\\h $bookTitle"
-                ps.println(h)
-                val bookID = "\\toc1 $bookTitle"
-                ps.println(bookID)
-                val bookNameID = "\\toc2 $bookName"
-                ps.println(bookNameID)
-                val shortBookID = "\\toc3 $bookCode"
-                ps.println(shortBookID)
-                val mt = "\\mt $bookTitle"
-                ps.println(mt)
-
-                for (chapter in chapters) {
-                    // TRICKY: the translation format doesn't matter for exporting
-                    val frames = targetTranslation.getFrameTranslations(
-                        chapter.id,
-                        TranslationFormat.DEFAULT
-                    )
-                    if (frames.isEmpty()) continue
-
-                    val chapterInt = Util.strToInt(chapter.id, 0)
-                    if (chapterInt != 0) {
-                        ps.println("\\s5") // section marker
-                        val chapterNumber = "\\c " + chapter.id
-                        ps.println(chapterNumber)
-                    }
-
-                    if (chapter.title != null && chapter.title.isNotEmpty()) {
-                        val chapterTitle = "\\cl " + chapter.title
-                        ps.println(chapterTitle)
-                    }
-
-                    if (chapter.reference != null && chapter.reference.isNotEmpty()) {
-                        val chapterRef = "\\cd " + chapter.reference
-                        ps.println(chapterRef)
-                    }
-
-                    ps.println("\\p") // paragraph marker
-
-                    val frameList = sortFrameTranslations(frames)
-                    var startChunk = 0
-                    if (frameList.isNotEmpty()) {
-                        val frame = frameList[0]
-                        val verseID = Util.strToInt(frame.id, 0)
-                        if ((verseID == 0)) {
-                            startChunk++
-                        }
-                    }
+            context.contentResolver.openOutputStream(fileUri)!!.use { output ->
+                UsfmWriter(output).use { writer ->
+                    writer.writeBook(targetTranslation, bookData)
+                }
+            }
+            true
+        } catch (e: Exception) {
+            Log.e(this::class.simpleName, "Failed to export USFM file", e)
+            false
+        }
 
-                    for (i in startChunk until frameList.size) {
-                        val frame = frameList[i]
-                        val text = frame.body
+        return Result(fileUri, success, ExportType.USFM)
+    }
 
-                        if (i > startChunk) {
-                            ps.println("\\s5") // section marker
+    /**
+     * Exports several target translations as USFM files in a single zip.
+     * e.g. every project of a language.
+     * The books are built on a worker pool and written to the zip in the order given.
+     *
+     * @param targetTranslations
+     * @param fileUri
+     * @param parallelism the number of books that are built at the same time
+     */
+    fun exportUSFMBatch(
+        targetTranslations: List<TargetTranslation>,
+        fileUri: Uri,
+        parallelism: Int = DEFAULT_PARALLELISM
+    ): Result {
+        val workers = max(1, min(parallelism, targetTranslations.size))
+        val executor = Executors.newFixedThreadPool(workers)
+        val success = try {
+            context.contentResolver.openOutputStream(fileUri)!!.use { output ->
+                Zip.Writer(output).use { zip ->
+                    // only keep a few finished books in memory while waiting for the next one
+                    val pending = ArrayDeque<Future<Pair<BookData, ByteArray>>>()
+                    val names = hashSetOf<String>()
+                    var next = 0
+                    while (next < targetTranslations.size || pending.isNotEmpty()) {
+                        while (next < targetTranslations.size && pending.size < workers * 2) {
+                            val targetTranslation = targetTranslations[next++]
+                            pending.add(executor.submit(Callable { buildBook(targetTranslation) }))
                         }
-                        ps.print(text)
-                    }
-                }
-                context.contentResolver.openOutputStream(fileUri).use { output ->
-                    FileInputStream(tempFile).use { input ->
-                        val buffer = ByteArray(1024)
-                        var length: Int
-                        while ((input.read(buffer).also { length = it }) > 0) {
-                            output!!.write(buffer, 0, length)
+                        val (bookData, usfm) = pending.removeFirst().get()
+                        var name = bookData.defaultUSFMFileName
+                        if (!names.add(name)) {
+                            name = bookData.targetTranslationId + ".usfm"
+                            names.add(name)
                         }
+                        zip.addBytes(usfm, name)
                     }
                 }
             }
             true
         } catch (e: Exception) {
-            Log.e(this::class.simpleName, "Failed to export USFM file", e)
+            Log.e(this::class.simpleName, "Failed to export USFM files", e)
             false
         } finally {
-            FileUtilities.deleteQuietly(tempDir)
+            executor.shutdownNow()
         }
 
         return Result(fileUri, success, ExportType.USFM)
     }
 
+    private fun buildBook(targetTranslation: TargetTranslation): Pair<BookData, ByteArray> {
+        val bookData = BookData.generate(targetTranslation, library)
+        val output = ByteArrayOutputStream()
+        UsfmWriter(output).use { writer ->
+            writer.writeBook(targetTranslation, bookData)
+        }
+        return Pair(bookData, output.toByteArray())
+    }
+
     /**
      * Exports a target translation as a PDF file
      * @param targetTranslation
      * @param fileUri
+     * @param progressListener receives the progress of each printed chapter
      * @return output file
      */
     fun exportPDF(
@@ -218,7 +203,8 @@ class ExportProjects @Inject constructor(
         fileUri: Uri,
         includeImages: Boolean,
         includeIncompleteFrames: Boolean,
-        imagesDir: File?
+        imagesDir: File?,
+        progressListener: OnProgressListener? = null
     ): Result {
         val success = try {
             val fontPath = typography.getAssetPath(TranslationType.TARGET)
@@ -233,7 +219,7 @@ class ExportProjects @Inject constructor(
             )
             printer.includeMedia(includeImages)
             printer.includeIncomplete(includeIncompleteFrames)
-            val pdf = printer.print()
+            val pdf = printer.print(progressListener)
             if (pdf.exists()) {
                 context.contentResolver.openOutputStream(fileUri).use { output ->
                     pdf.inputStream().use { input ->
@@ -312,6 +298,82 @@ class ExportProjects @Inject constructor(
         PDF
     }
 
+    /**
+     * Writes the USFM of a target translation directly to a stream
+     */
+    class UsfmWriter(output: OutputStream) : Closeable {
+        private val writer = BufferedWriter(OutputStreamWriter(output, Charsets.UTF_8), BUFFER_SIZE)
+
+        /**
+         * Writes the book headers followed by every chapter
+         * @param targetTranslation
+         * @param bookData
+         */
+        fun writeBook(targetTranslation: TargetTranslation, bookData: BookData) {
+            val bookCode = bookData.bookCode
+            val bookTitle = bookData.bookTitle
+            val bookName = bookData.bookName
+            writeLine("\\id $bookCode $bookTitle, $bookName, ${bookData.languageId}, ${bookData.languageName}")
+            writeLine("\\ide usfm")
+            writeLine("\\h $bookTitle")
+            writeLine("\\toc1 $bookTitle")
+            writeLine("\\toc2 $bookName")
+            writeLine("\\toc3 $bookCode")
+            writeLine("\\mt $bookTitle")
+
+            for (chapter in targetTranslation.chapterTranslations) {
+                // TRICKY: the translation format doesn't matter for exporting
+                val frames = targetTranslation.getFrameTranslations(
+                    chapter.id,
+                    TranslationFormat.DEFAULT
+                )
+                if (frames.isEmpty()) continue
+
+                val chapterInt = Util.strToInt(chapter.id, 0)
+                if (chapterInt != 0) {
+                    writeLine("\\s5") // section marker
+                    writeLine("\\c " + chapter.id)
+                }
+
+                if (chapter.title != null && chapter.title.isNotEmpty()) {
+                    writeLine("\\cl " + chapter.title)
+                }
+
+                if (chapter.reference != null && chapter.reference.isNotEmpty()) {
+                    writeLine("\\cd " + chapter.reference)
+                }
+
+                writeLine("\\p") // paragraph marker
+
+                val frameList = sortFrameTranslations(frames)
+                var startChunk = 0
+                if (frameList.isNotEmpty()) {
+                    val verseID = Util.strToInt(frameList[0].id, 0)
+                    if (verseID == 0) {
+                        startChunk++
+                    }
+                }
+
+                for (i in startChunk until frameList.size) {
+                    if (i > startChunk) {
+                        writeLine("\\s5") // section marker
+                    }
+                    writer.write(frameList[i].body)
+                }
+            }
+            writer.flush()
+        }
+
+        private fun writeLine(line: String) {
+            writer.write(line)
+            writer.write("\n")
+        }
+
+        override fun close() {
+            writer.close()
+        }
+    }
+
     /**
      * class to extract book data as well as default USFM output file name
      */
@@ -320,6 +382,7 @@ class ExportProjects @Inject constructor(
         library: Door43Client,
     ) {
         val defaultUSFMFileName: String
+        val targetTranslationId: String = targetTranslation.id
         val bookCode: String = targetTranslation.projectId.uppercase(Locale.getDefault())
         val languageId: String = targetTranslation.targetLanguageId
         val languageName: String = targetTranslation.targetLanguageName
@@ -374,6 +437,8 @@ class ExportProjects @Inject constructor(
     companion object {
         private const val GENERATOR_NAME = "ts-android"
         private const val TSTUDIO_PACKAGE_VERSION = 2
+        private const val BUFFER_SIZE = 64 * 1024
+        private val DEFAULT_PARALLELISM = min(4, Runtime.getRuntime().availableProcessors())
 
         /**
          * sort the frames
@@ -6,6 +6,8 @@ import com.door43.OnProgressListener
 import com.door43.data.IDirectoryProvider
 import com.door43.translationstudio.R
 import com.door43.translationstudio.core.ArchiveImporter
+import com.door43.translationstudio.core.ChunkStore
+import com.door43.translationstudio.core.ConflictIndex
 import com.door43.translationstudio.core.MergeConflictsHandler
 import com.door43.translationstudio.core.TargetTranslation
 import com.door43.translationstudio.core.Translator
@@ -154,6 +156,9 @@ class ImportProjects @Inject constructor(
                         // import new translation
                         safeDelete(destTargetTranslationDir) // in case local was an invalid target translation
                         moveOrCopyQuietly(project, destTargetTranslationDir)
+                        ChunkStore.invalidate(destTargetTranslationDir)
+                        ConflictIndex.invalidate(destTargetTranslationDir)
+                        TargetTranslation.untrackChanges(destTargetTranslationDir)
                     }
                     // update the generator info. TRICKY: we re-open to get the updated manifest.
                     TargetTranslation.updateGenerator(
@@ -309,6 +314,9 @@ class ImportProjects @Inject constructor(
                         // import new translation
                         safeDelete(localDir) // in case local was an invalid target translation
                         moveOrCopyQuietly(newDir, localDir)
+                        ChunkStore.invalidate(localDir)
+                        ConflictIndex.invalidate(localDir)
+                        TargetTranslation.untrackChanges(localDir)
                     }
                     // update the generator info. TRICKY: we re-open to get the updated manifest.
                     TargetTranslation.updateGenerator(context, TargetTranslation.open(localDir) {
@@ -123,11 +123,15 @@ class PullTargetTranslation @Inject constructor(
             .setStrategy(mergeStrategy)
             .setRemoteBranchName("master")
         try {
+            val oldHead = git.repository.resolve("HEAD")
             val result = pullCommand.call()
             val mergeResult = result.mergeResult
+            // chunks that were committed with conflicts may be brought in by a clean merge
+            targetTranslation.updateMergeConflicts(oldHead, mergeResult)
             if (!mergeResult?.conflicts.isNullOrEmpty()) {
                 status = Status.MERGE_CONFLICTS
                 conflicts = mergeResult.conflicts
+                targetTranslation.addMergeConflicts(conflicts.keys)
 
                 // revert manifest merge conflict to avoid corruption
                 if (conflicts.containsKey("manifest.json")) {
@@ -193,6 +197,10 @@ class PullTargetTranslation @Inject constructor(
         } catch (e: Throwable) {
             Logger.e(this.javaClass.name, e.message, e)
             return Result(status, null)
+        } finally {
+            // the pull may have changed any of the chunks or left unmerged paths
+            targetTranslation.invalidateChunks()
+            targetTranslation.untrackChanges()
         }
     }
 
@@ -1,7 +1,7 @@
 package com.door43.usecases
 
 import com.door43.translationstudio.core.ContainerCache
-import com.door43.translationstudio.core.Util
+import com.door43.translationstudio.core.VerseChunkMap
 import com.door43.translationstudio.ui.translate.ListItem
 import com.door43.translationstudio.ui.translate.TranslationHelp
 import org.unfoldingword.door43client.Door43Client
@@ -99,20 +99,15 @@ class RenderHelps @Inject constructor(
                 if(rc != null) {
                     // TRICKY: questions are id'd by verse not chunk
                     val verses = rc.chunks(item.chapterSlug)
-                    var rawQuestions = ""
-                    // TODO: 2/21/17 this is very inefficient.
-                    //  We should only have to map chunk id's once, not for every chunk.
+                    val chunkMap = VerseChunkMap.forChapter(item.source, item.chapterSlug)
+                    val rawQuestions = StringBuilder()
                     for (verse in verses) {
-                        val chunk = Util.mapVerseToChunk(
-                            item.source,
-                            item.chapterSlug,
-                            verse
-                        )
+                        val chunk = chunkMap?.getChunk(verse)
                         if (verse == chunk) {
-                            rawQuestions += "\n\n${rc.readChunk(item.chapterSlug, verse)}"
+                            rawQuestions.append("\n\n").append(rc.readChunk(item.chapterSlug, verse))
                         }
                     }
-                    val helps: List<TranslationHelp> = parseHelps(rawQuestions.trim())
+                    val helps: List<TranslationHelp> = parseHelps(rawQuestions.toString().trim())
                     translationQuestions.addAll(helps)
                 } else {
                     Logger.w(
@@ -2,6 +2,7 @@ package com.door43.usecases
 
 import com.door43.translationstudio.App
 import com.door43.translationstudio.core.TargetTranslation
+import com.door43.translationstudio.core.TargetTranslationCatalog
 import com.door43.translationstudio.core.Translator
 import org.unfoldingword.door43client.Door43Client
 import org.unfoldingword.door43client.models.Translation
@@ -10,13 +11,17 @@ import javax.inject.Inject
 
 class TranslationProgress @Inject constructor(
     private val library: Door43Client,
-    private val translator: Translator
+    private val translator: Translator,
+    private val catalog: TargetTranslationCatalog
 ) {
     fun execute(targetTranslation: TargetTranslation): Double {
         var progress: Double
 
+        val selectedSourceId = translator.getSelectedSourceTranslationId(targetTranslation.id)
+        getCachedProgress(targetTranslation, selectedSourceId)?.let { return it }
+
         // find matching source
-        val sourceTranslation = getSourceTranslation(targetTranslation)
+        val sourceTranslation = getSourceTranslation(targetTranslation, selectedSourceId)
             ?: return 0.0
 
         // load source
@@ -30,6 +35,19 @@ class TranslationProgress @Inject constructor(
         // count chunks
         val numSourceChunks = countChunks(container)
         val numTargetChunks = countChunks(targetTranslation)
+        catalog.put(
+            TargetTranslationCatalog.Entry(
+                targetTranslation.id,
+                targetTranslation.targetLanguageId,
+                targetTranslation.projectId,
+                targetTranslation.format.toString(),
+                selectedSourceId,
+                numTargetChunks,
+                numSourceChunks,
+                TargetTranslationCatalog.manifestModified(targetTranslation.path),
+                TargetTranslationCatalog.readHead(targetTranslation.path)
+            )
+        )
 
         progress = if (numSourceChunks == 0) {
             0.0
@@ -43,6 +61,23 @@ class TranslationProgress @Inject constructor(
         return progress
     }
 
+    /**
+     * Returns the progress recorded in the catalog without opening the source container
+     * @param targetTranslation the target translation
+     * @return null if the progress has not been cataloged or the target translation has changed
+     */
+    fun getCachedProgress(targetTranslation: TargetTranslation): Double? {
+        val selectedSourceId = translator.getSelectedSourceTranslationId(targetTranslation.id)
+        return getCachedProgress(targetTranslation, selectedSourceId)
+    }
+
+    private fun getCachedProgress(
+        targetTranslation: TargetTranslation,
+        selectedSourceId: String?
+    ): Double? {
+        return catalog.get(targetTranslation.path, selectedSourceId)?.progress
+    }
+
     /**
      * Counts the number of chunks in a target translation.
      * TODO: once target translations become resource containers we can use the method below instead.
@@ -69,11 +104,13 @@ class TranslationProgress @Inject constructor(
     /**
      * Returns a single source translation that corresponds to the target translation
      * @param targetTranslation the target translation to match against
+     * @param selectedSourceId the source translation selected for the target translation
      * @return a matching source translation or null
      */
-    private fun getSourceTranslation(targetTranslation: TargetTranslation): Translation? {
-        val selectedSourceId = translator.getSelectedSourceTranslationId(targetTranslation.id)
-
+    private fun getSourceTranslation(
+        targetTranslation: TargetTranslation,
+        selectedSourceId: String?
+    ): Translation? {
         val translations = library.index.findTranslations(
             null,
             targetTranslation.projectId,
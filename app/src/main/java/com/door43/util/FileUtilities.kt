@@ -191,6 +191,50 @@ object FileUtilities {
         return false
     }
 
+    /**
+     * Writes a file next to the destination and moves it into place so an interrupted
+     * write never replaces a good file.
+     * Some file systems will not rename over an existing file so the old file is first moved
+     * aside and is put back if the new file cannot be moved into place.
+     * @param destFile the file to write
+     * @param writer writes the contents to the temporary file it is given
+     * @return true if the destination now contains the new file
+     */
+    @JvmStatic
+    @Throws(Exception::class)
+    fun writeAtomically(destFile: File, writer: FileWriter): Boolean {
+        destFile.parentFile?.mkdirs()
+        val partFile = File(destFile.path + ".part")
+        try {
+            writer.write(partFile)
+            if (!partFile.isFile) return false
+            if (partFile.renameTo(destFile)) return true
+            if (!destFile.exists()) return false
+
+            val backupFile = File(destFile.path + ".bak")
+            deleteQuietly(backupFile)
+            if (!destFile.renameTo(backupFile)) return false
+            if (partFile.renameTo(destFile)) {
+                deleteQuietly(backupFile)
+                return true
+            }
+            if (!backupFile.renameTo(destFile)) {
+                Logger.e(FileUtilities::class.java.name, "Failed to restore ${destFile.path} from ${backupFile.name}")
+            }
+            return false
+        } finally {
+            deleteQuietly(partFile)
+        }
+    }
+
+    /**
+     * Writes the contents of a file
+     */
+    fun interface FileWriter {
+        @Throws(Exception::class)
+        fun write(file: File)
+    }
+
     /**
      * Deletes a file/directory by first moving it to a temporary location then deleting it.
      * This avoids an issue with FAT32 on some devices where you cannot create a file
@@ -5,16 +5,29 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * This class handles the management of a manifest file.
  *
+ * By default every change is written to the disk immediately. Changes can be grouped with
+ * {@link #beginBatch()} and {@link #endBatch()} so that many changes result in a single write.
+ * Writes go to a temporary file that replaces the manifest so a crash never leaves a partially
+ * written manifest behind.
  */
 public class Manifest {
     private final File mManifestFile;
     private JSONObject mManifest = new JSONObject();
+    // hashed copies of string arrays used for fast lookups
+    private final Map<String, Set<String>> mValueSets = new HashMap<>();
+    private boolean mDirty = false;
+    private int mBatchDepth = 0;
     public static final String MANIFEST_JSON = "manifest.json";
 
     /**
@@ -115,10 +128,10 @@ public class Manifest {
      * @param key
      * @param json
      */
-    public void put(String key, JSONObject json) {
+    public synchronized void put(String key, JSONObject json) {
         try {
             mManifest.put(key, json);
-            save();
+            changed(key);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -129,10 +142,10 @@ public class Manifest {
      * @param key
      * @param obj
      */
-    public void put(String key, Object obj) {
+    public synchronized void put(String key, Object obj) {
         try {
             mManifest.put(key, obj);
-            save();
+            changed(key);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -143,10 +156,10 @@ public class Manifest {
      * @param key
      * @param json
      */
-    public void put(String key, JSONArray json) {
+    public synchronized void put(String key, JSONArray json) {
         try {
             mManifest.put(key, json);
-            save();
+            changed(key);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -157,10 +170,10 @@ public class Manifest {
      * @param key
      * @param value
      */
-    public void put(String key, int value) {
+    public synchronized void put(String key, int value) {
         try {
             mManifest.put(key, value);
-            save();
+            changed(key);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -171,10 +184,10 @@ public class Manifest {
      * @param key
      * @param value
      */
-    public void put(String key, String value) {
+    public synchronized void put(String key, String value) {
         try {
             mManifest.put(key, value);
-            save();
+            changed(key);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -184,35 +197,170 @@ public class Manifest {
      * Removes an element from the manifest
      * @param key
      */
-    public void remove(String key) {
+    public synchronized void remove(String key) {
         mManifest.remove(key);
-        save();
+        changed(key);
     }
 
     /**
      * Saves the manifest to the disk
      */
-    public void save() {
+    public synchronized void save() {
+        mDirty = true;
+        flush();
+    }
+
+    /**
+     * Writes any pending changes to the disk
+     */
+    public synchronized void flush() {
+        if(!mDirty) return;
+        File tempFile = new File(mManifestFile.getParentFile(), mManifestFile.getName() + ".tmp");
         try {
-            FileUtilities.writeStringToFile(mManifestFile, mManifest.toString());
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(mManifest.toString().getBytes("UTF-8"));
+                out.getFD().sync();
+            }
+            if(!tempFile.renameTo(mManifestFile)) {
+                // fall back to writing in place
+                FileUtilities.writeStringToFile(mManifestFile, mManifest.toString());
+                tempFile.delete();
+            }
+            mDirty = false;
         } catch (IOException e) {
             e.printStackTrace();
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Checks if there are changes that have not been written to the disk
+     * @return
+     */
+    public synchronized boolean isDirty() {
+        return mDirty;
+    }
+
+    /**
+     * Holds all writes until {@link #endBatch()} is called.
+     * Batches may be nested.
+     */
+    public synchronized void beginBatch() {
+        mBatchDepth ++;
+    }
+
+    /**
+     * Ends a batch and writes the changes once the outermost batch has ended
+     */
+    public synchronized void endBatch() {
+        if(mBatchDepth > 0) mBatchDepth --;
+        if(mBatchDepth == 0) flush();
+    }
+
+    /**
+     * Records a change to the manifest
+     * @param key the key that changed
+     */
+    private synchronized void changed(String key) {
+        mValueSets.remove(key);
+        mDirty = true;
+        if(mBatchDepth > 0) return;
+        flush();
+    }
+
+    /**
+     * Checks if a string array in the manifest contains a value
+     * @param key the key of the array
+     * @param value
+     * @return
+     */
+    public synchronized boolean hasValue(String key, String value) {
+        return getValueSet(key).contains(value);
+    }
+
+    /**
+     * Adds a value to a string array in the manifest if it is not already present
+     * @param key the key of the array
+     * @param value
+     * @return true if the value was added
+     */
+    public synchronized boolean addValue(String key, String value) {
+        Set<String> values = getValueSet(key);
+        if(values.contains(value)) return false;
+        try {
+            JSONArray array = mManifest.optJSONArray(key);
+            if(array == null) {
+                array = new JSONArray();
+                mManifest.put(key, array);
+            }
+            array.put(value);
+            changed(key);
+            values.add(value);
+            mValueSets.put(key, values);
+            return true;
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return false;
         }
     }
 
+    /**
+     * Removes a value from a string array in the manifest
+     * @param key the key of the array
+     * @param value
+     * @return true if the value was removed
+     */
+    public synchronized boolean removeValue(String key, String value) {
+        Set<String> values = getValueSet(key);
+        if(!values.contains(value)) return false;
+        try {
+            mManifest.put(key, removeValue(getJSONArray(key), value));
+            changed(key);
+            values.remove(value);
+            mValueSets.put(key, values);
+            return true;
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the hashed values of a string array
+     */
+    private Set<String> getValueSet(String key) {
+        Set<String> values = mValueSets.get(key);
+        if(values == null) {
+            values = new HashSet<>();
+            JSONArray array = mManifest.optJSONArray(key);
+            if(array != null) {
+                for(int i = 0; i < array.length(); i ++) {
+                    String value = array.optString(i, null);
+                    if(value != null) values.add(value);
+                }
+            }
+            mValueSets.put(key, values);
+        }
+        return values;
+    }
 
     /**
      * Deletes the manifest file
      */
-    private void delete() {
+    private synchronized void delete() {
         mManifestFile.delete();
         mManifest = new JSONObject();
+        mValueSets.clear();
+        mDirty = false;
     }
 
     /**
      * Reads the manifest file from the disk
      */
-    public void load() {
+    public synchronized void load() {
+        // TRICKY: pending changes would be lost when the file is read
+        flush();
+        mValueSets.clear();
         String contents = "";
         try {
             contents = FileUtilities.readFileToString(mManifestFile);
@@ -236,7 +384,7 @@ public class Manifest {
      * @param newArray
      * @param key
      */
-    public void join(JSONArray newArray, String key) {
+    public synchronized void join(JSONArray newArray, String key) {
         if(newArray != null && key != null) {
             try {
                 if (!mManifest.has(key)) {
@@ -251,7 +399,7 @@ public class Manifest {
                     }
                     mManifest.put(key, array);
                 }
-                save();
+                changed(key);
             } catch (JSONException e) {
                 e.printStackTrace();
             }
@@ -263,7 +411,7 @@ public class Manifest {
      * @param newObj
      * @param key
      */
-    public void join(JSONObject newObj, String key) {
+    public synchronized void join(JSONObject newObj, String key) {
         if(newObj != null && key != null) {
             try {
                 if (!mManifest.has(key)) {
@@ -279,7 +427,7 @@ public class Manifest {
                     }
                     mManifest.put(key, obj);
                 }
-                save();
+                changed(key);
             } catch (JSONException e) {
                 e.printStackTrace();
             }
@@ -5,6 +5,7 @@ import androidx.annotation.Nullable;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -13,10 +14,16 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -24,6 +31,12 @@ import java.util.zip.ZipOutputStream;
  * This class handles zipping and un-zipping files and directories
  */
 public class Zip {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] STORED_EXTENSIONS = {
+            ".zip", ".tstudio", ".tsrc", ".jpg", ".jpeg", ".png", ".gif", ".webp",
+            ".mp3", ".mp4", ".m4a", ".ogg", ".gz", ".bz2", ".xz"
+    };
+
     /**
      * Creates a zip archive
      * http://stackoverflow.com/questions/6683600/zip-compress-a-folder-full-of-files-on-android
@@ -32,28 +45,9 @@ public class Zip {
      * @throws java.io.IOException
      */
     public static void zip(String sourcePath, String destPath) throws IOException {
-        final int BUFFER = 2048;
-        File sourceFile = new File(sourcePath);
-        BufferedInputStream origin = null;
-        FileOutputStream dest = new FileOutputStream(destPath);
-        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(dest));
-        if (sourceFile.isDirectory()) {
-            // TRICKY: we add 1 to the base path length to exclude the leading path separator
-            zipSubFolder(out, sourceFile, sourceFile.getParent().length() + 1);
-        } else {
-            byte data[] = new byte[BUFFER];
-            FileInputStream fi = new FileInputStream(sourcePath);
-            origin = new BufferedInputStream(fi, BUFFER);
-            String[] segments = sourcePath.split("/");
-            String lastPathComponent = segments[segments.length - 1];
-            ZipEntry entry = new ZipEntry(lastPathComponent);
-            out.putNextEntry(entry);
-            int count;
-            while ((count = origin.read(data, 0, BUFFER)) != -1) {
-                out.write(data, 0, count);
-            }
+        try (Writer writer = new Writer(new FileOutputStream(destPath))) {
+            writer.add(new File(sourcePath));
         }
-        out.close();
     }
 
     /**
@@ -138,31 +132,22 @@ public class Zip {
      * @param dest - destination output stream
      */
     public static void zipToStream(File[] files, OutputStream dest) throws IOException {
-        final int BUFFER = 2048;
-        BufferedInputStream origin = null;
-        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(
-                dest));
+        zipToStream(files, dest, Deflater.DEFAULT_COMPRESSION);
+    }
 
-        for(File f:files) {
-            if (f.isDirectory()) {
-                // TRICKY: we add 1 to the base path length to exclude the leading path separator
-                zipSubFolder(out, f, f.getParent().length() + 1);
-            } else {
-                byte data[] = new byte[BUFFER];
-                FileInputStream fi = new FileInputStream(f);
-                origin = new BufferedInputStream(fi, BUFFER);
-                String[] segments = f.getAbsolutePath().split("/");
-                String lastPathComponent = segments[segments.length - 1];
-                ZipEntry entry = new ZipEntry(lastPathComponent);
-                out.putNextEntry(entry);
-                int count;
-                while ((count = origin.read(data, 0, BUFFER)) != -1) {
-                    out.write(data, 0, count);
-                }
+    /**
+     * Zips up a list of files to output stream.
+     * Files that are already compressed are stored without being compressed again.
+     * @param files
+     * @param dest - destination output stream
+     * @param level - the compression level of the other files
+     */
+    public static void zipToStream(File[] files, OutputStream dest, int level) throws IOException {
+        try (Writer writer = new Writer(dest, level)) {
+            for(File f:files) {
+                writer.add(f);
             }
         }
-
-        out.close();
     }
 
     /**
@@ -203,38 +188,6 @@ public class Zip {
         out.close();
     }
 
-    /**
-     * Zips up a sub folder
-     * @param out
-     * @param folder
-     * @param basePathLength
-     * @throws IOException
-     */
-    private static void zipSubFolder(ZipOutputStream out, File folder, int basePathLength) throws IOException {
-        final int BUFFER = 2048;
-        File[] fileList = folder.listFiles();
-        BufferedInputStream origin = null;
-        if(fileList == null) return; // skip empty folders
-        for (File file : fileList) {
-            if (file.isDirectory()) {
-                zipSubFolder(out, file, basePathLength);
-            } else {
-                byte data[] = new byte[BUFFER];
-                String unmodifiedFilePath = file.getPath();
-                String relativePath = unmodifiedFilePath.substring(basePathLength);
-                FileInputStream fi = new FileInputStream(unmodifiedFilePath);
-                origin = new BufferedInputStream(fi, BUFFER);
-                ZipEntry entry = new ZipEntry(relativePath);
-                out.putNextEntry(entry);
-                int count;
-                while ((count = origin.read(data, 0, BUFFER)) != -1) {
-                    out.write(data, 0, count);
-                }
-                origin.close();
-            }
-        }
-    }
-
     /**
      * Zips up a sub folder
      * @param out
@@ -324,7 +277,7 @@ public class Zip {
      * @throws IOException
      */
     public static void unzipFromStream(InputStream is, File destDir) throws IOException {
-        byte[] buffer = new byte[1024];
+        byte[] buffer = new byte[BUFFER_SIZE];
         ZipInputStream zis;
         ZipEntry ze;
         String filename;
@@ -359,11 +312,24 @@ public class Zip {
      * @throws IOException
      */
     public static String[] list(File zipArchive) throws IOException {
-        InputStream is;
+        try (Reader reader = new Reader(zipArchive)) {
+            return reader.list();
+        } catch (ZipException e) {
+            // TRICKY: archives without a readable central directory can still be streamed
+            return listInputStream(new FileInputStream(zipArchive));
+        }
+    }
+
+    /**
+     * Lists the contents of a zip stream
+     * @param zipStream
+     * @return
+     * @throws IOException
+     */
+    public static String[] listInputStream(InputStream zipStream) throws IOException {
         ZipInputStream zis;
         ZipEntry ze;
-        is = new FileInputStream(zipArchive);
-        zis = new ZipInputStream(new BufferedInputStream(is));
+        zis = new ZipInputStream(new BufferedInputStream(zipStream));
 
         List<String> files = new ArrayList<>();
         while ((ze = zis.getNextEntry()) != null) {
@@ -378,15 +344,20 @@ public class Zip {
     }
 
     /**
-     * Reads the contents of a file from the zip archive
+     * Reads the contents of a file from the zip archive.
+     * Only the central directory and the requested entry are read.
      * @param zipArchive
      * @param path
      * @return
      */
+    @Nullable
     public static String read(File zipArchive, String path) throws IOException {
-        InputStream is;
-        is = new FileInputStream(zipArchive);
-        return readInputStream(is, path);
+        try (Reader reader = new Reader(zipArchive)) {
+            return reader.read(path);
+        } catch (ZipException e) {
+            // TRICKY: archives without a readable central directory can still be streamed
+            return readInputStream(new FileInputStream(zipArchive), path);
+        }
     }
 
     /**
@@ -394,7 +365,8 @@ public class Zip {
      * @param zipStream
      * @param path
      * @return
-     */    @Nullable
+     */
+    @Nullable
     public static String readInputStream(InputStream zipStream, String path) throws IOException {
         String contents = null;
         ZipInputStream zis;
@@ -406,14 +378,7 @@ public class Zip {
                 continue;
             }
             if(ze.getName().equalsIgnoreCase(path)) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(zis));
-                StringBuilder sb = new StringBuilder();
-
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line).append('\n');
-                }
-                contents = sb.toString();
+                contents = readLines(zis);
             }
             zis.closeEntry();
             if(contents != null) {
@@ -423,4 +388,265 @@ public class Zip {
         zis.close();
         return contents;
     }
+
+    /**
+     * Reads text one line at a time.
+     * TRICKY: every line is terminated with a new line to match the original zip reader
+     * @param is
+     * @return
+     * @throws IOException
+     */
+    private static String readLines(InputStream is) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+        StringBuilder sb = new StringBuilder();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decides which entries are already compressed and should be stored as they are
+     */
+    public interface EntryPolicy {
+        /**
+         * @param name the path of the entry in the archive
+         * @return true if the entry should be stored without compression
+         */
+        boolean isStored(String name);
+    }
+
+    /**
+     * Stores git objects and common compressed media formats.
+     * Loose git objects are zlib streams and pack files are compressed as well.
+     */
+    public static final EntryPolicy DEFAULT_POLICY = new EntryPolicy() {
+        @Override
+        public boolean isStored(String name) {
+            String lower = name.toLowerCase(Locale.US);
+            if(lower.startsWith(".git/objects/") || lower.contains("/.git/objects/")) return true;
+            for(String ext:STORED_EXTENSIONS) {
+                if(lower.endsWith(ext)) return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Reads entries from a zip archive using its central directory.
+     * Unlike the stream based methods this only reads the entries that are requested.
+     */
+    public static class Reader implements Closeable {
+        private final ZipFile zipFile;
+
+        /**
+         * @param zipArchive
+         * @throws IOException if the archive is not a valid zip file
+         */
+        public Reader(File zipArchive) throws IOException {
+            this.zipFile = new ZipFile(zipArchive);
+        }
+
+        /**
+         * Lists the contents of the archive
+         * @return
+         */
+        public String[] list() {
+            List<String> files = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while(entries.hasMoreElements()) {
+                files.add(entries.nextElement().getName());
+            }
+            return files.toArray(new String[files.size()]);
+        }
+
+        /**
+         * Returns an entry in the archive. Paths are matched without regard to case.
+         * @param path
+         * @return null if the entry does not exist or is a directory
+         */
+        @Nullable
+        public ZipEntry getEntry(String path) {
+            ZipEntry entry = zipFile.getEntry(path);
+            if(entry == null) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while(entries.hasMoreElements()) {
+                    ZipEntry e = entries.nextElement();
+                    if(e.getName().equalsIgnoreCase(path)) {
+                        entry = e;
+                        break;
+                    }
+                }
+            }
+            if(entry == null || entry.isDirectory()) return null;
+            return entry;
+        }
+
+        /**
+         * Opens an entry in the archive
+         * @param path
+         * @return null if the entry does not exist
+         * @throws IOException
+         */
+        @Nullable
+        public InputStream openInputStream(String path) throws IOException {
+            ZipEntry entry = getEntry(path);
+            if(entry == null) return null;
+            return zipFile.getInputStream(entry);
+        }
+
+        /**
+         * Reads the contents of a file in the archive
+         * @param path
+         * @return null if the file does not exist
+         * @throws IOException
+         */
+        @Nullable
+        public String read(String path) throws IOException {
+            InputStream is = openInputStream(path);
+            if(is == null) return null;
+            try {
+                return readLines(is);
+            } finally {
+                is.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Writes a zip archive.
+     * Entries chosen by the {@link EntryPolicy} are stored while the rest are deflated
+     * at the configured compression level.
+     */
+    public static class Writer implements Closeable {
+        private final ZipOutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final CRC32 crc = new CRC32();
+        private EntryPolicy policy = DEFAULT_POLICY;
+
+        /**
+         * @param dest
+         */
+        public Writer(OutputStream dest) {
+            this(dest, Deflater.DEFAULT_COMPRESSION);
+        }
+
+        /**
+         * @param dest
+         * @param level the compression level between 0 and 9 or {@link Deflater#DEFAULT_COMPRESSION}
+         */
+        public Writer(OutputStream dest, int level) {
+            out = new ZipOutputStream(new BufferedOutputStream(dest, BUFFER_SIZE));
+            out.setLevel(level);
+        }
+
+        /**
+         * Sets the policy that decides which entries are stored without compression
+         * @param policy
+         * @return
+         */
+        public Writer setPolicy(EntryPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * Adds a file or a directory to the root of the archive
+         * @param file
+         * @throws IOException
+         */
+        public void add(File file) throws IOException {
+            if(file.isDirectory()) {
+                addDirectory(file, file.getName());
+            } else {
+                addFile(file, file.getName());
+            }
+        }
+
+        /**
+         * Adds the contents of a directory. Empty directories are skipped.
+         * @param dir
+         * @param path the path of the directory in the archive
+         * @throws IOException
+         */
+        public void addDirectory(File dir, String path) throws IOException {
+            File[] fileList = dir.listFiles();
+            if(fileList == null) return;
+            for(File file:fileList) {
+                String name = path + "/" + file.getName();
+                if(file.isDirectory()) {
+                    addDirectory(file, name);
+                } else {
+                    addFile(file, name);
+                }
+            }
+        }
+
+        /**
+         * Adds a file
+         * @param file
+         * @param name the path of the file in the archive
+         * @throws IOException
+         */
+        public void addFile(File file, String name) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            if(policy.isStored(name)) {
+                // stored entries must declare their size and checksum up front
+                crc.reset();
+                long size = 0;
+                try (InputStream in = new FileInputStream(file)) {
+                    int count;
+                    while((count = in.read(buffer)) != -1) {
+                        crc.update(buffer, 0, count);
+                        size += count;
+                    }
+                }
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(size);
+                entry.setCompressedSize(size);
+                entry.setCrc(crc.getValue());
+            }
+            out.putNextEntry(entry);
+            try (InputStream in = new FileInputStream(file)) {
+                int count;
+                while((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            }
+            out.closeEntry();
+        }
+
+        /**
+         * Adds an entry from memory
+         * @param data
+         * @param name the path of the entry in the archive
+         * @throws IOException
+         */
+        public void addBytes(byte[] data, String name) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            if(policy.isStored(name)) {
+                crc.reset();
+                crc.update(data, 0, data.length);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(data.length);
+                entry.setCompressedSize(data.length);
+                entry.setCrc(crc.getValue());
+            }
+            out.putNextEntry(entry);
+            out.write(data);
+            out.closeEntry();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
 }
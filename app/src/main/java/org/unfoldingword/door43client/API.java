@@ -19,14 +19,19 @@ import org.unfoldingword.resourcecontainer.errors.InvalidRCException;
 import org.unfoldingword.resourcecontainer.errors.MissingRCException;
 import org.unfoldingword.resourcecontainer.errors.RCException;
 import org.unfoldingword.tools.http.GetRequest;
+import org.unfoldingword.tools.http.ResponseCache;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -35,9 +40,14 @@ import java.util.Map;
 class API {
     public static final String LEGACY_WORDS_ASSIGNMENTS_URL = "words_assignments_url";
     private static final OnLogListener defaultLogListener;
+    // catalogs that must be indexed again after the catalog they link to has been indexed
+    private static final Map<String, String[]> DEPENDENT_CATALOGS = new HashMap<>();
     private static SQLiteHelper sqLiteHelper = null;
 
     static {
+        DEPENDENT_CATALOGS.put("langnames", new String[]{"approved-temp-langnames"});
+        DEPENDENT_CATALOGS.put("temp-langnames", new String[]{"approved-temp-langnames"});
+
         defaultLogListener = new OnLogListener() {
             @Override
             public void onInfo(String message) {
@@ -55,6 +65,7 @@ class API {
 
     private final File resourceDir;
     private final Library library;
+    private final ResponseCache responseCache;
     private String globalCatalogHost = null;
     private OnLogListener logListener = defaultLogListener;
 
@@ -77,6 +88,7 @@ class API {
             }
         }
         this.library = new Library(sqLiteHelper);
+        this.responseCache = new ResponseCache(new File(databasePath.getParentFile(), dbName + "_http_cache"));
     }
 
     /**
@@ -129,17 +141,14 @@ class API {
      * @param listener an optional progress listener. This should receive progress id, total, completed
      */
     public void updateSources(String url, final OnProgressListener listener) throws Exception {
-        library.beginTransaction();
-        try {
-            GetRequest getPrimaryCatalog = new GetRequest(new URL(url));
-            String data = getPrimaryCatalog.read();
-            // process legacy catalog data
-            LegacyTools.processCatalog(library, data, listener);
-        } catch(Exception e) {
-            library.endTransaction(false);
-            throw e;
-        }
-        library.endTransaction(true);
+        GetRequest getPrimaryCatalog = new GetRequest(new URL(url));
+        getPrimaryCatalog.setResponseCache(responseCache);
+        String data = getPrimaryCatalog.read();
+        // TRICKY: the catalogs are written in short transactions while the downloads are in flight
+        library.resetBatchStats();
+        // process legacy catalog data
+        LegacyTools.processCatalog(library, responseCache, data, listener);
+        logBatchStats("sources");
     }
 
     /**
@@ -148,14 +157,24 @@ class API {
      * @throws Exception
      */
     public void updateChunks(OnProgressListener listener) throws Exception {
-        library.beginTransaction();
+        library.beginBatch();
         try {
-            LegacyTools.processChunks(library, listener);
+            LegacyTools.processChunks(library, responseCache, listener);
         } catch (Exception e) {
-            library.endTransaction(false);
+            library.endBatch(false);
             throw e;
         }
-        library.endTransaction(true);
+        library.endBatch(true);
+        logBatchStats("chunks");
+    }
+
+    /**
+     * Logs the indexing throughput of the last batch
+     * @param name
+     */
+    private void logBatchStats(String name) {
+        logListener.onInfo(String.format(Locale.US, "Indexed %d %s rows (%.0f rows/sec)",
+                library.getBatchRowCount(), name, library.getBatchRowsPerSecond()));
     }
 
     /**
@@ -170,6 +189,13 @@ class API {
             LegacyTools.injectGlobalCatalogs(library, globalCatalogHost);
         }
         List<Catalog> catalogs = library.getCatalogs();
+        // TRICKY: the dependent catalogs are indexed last so they link to the updated rows
+        Collections.sort(catalogs, new Comparator<Catalog>() {
+            @Override
+            public int compare(Catalog a, Catalog b) {
+                return Boolean.compare(isDependentCatalog(a.slug), isDependentCatalog(b.slug));
+            }
+        });
         for(Catalog c:catalogs) {
             updateCatalog(c, listener);
         }
@@ -199,56 +225,108 @@ class API {
      */
     private void updateCatalog(Catalog catalog, OnProgressListener listener) throws Exception {
         if(catalog == null) throw new Exception("Unknown catalog");
-        GetRequest request = new GetRequest(new URL(catalog.url));
-        String data = request.read();
-        library.beginTransaction();
+        // TRICKY: catalogs are downloaded to a file so the large ones can be streamed
+        File data = File.createTempFile("catalog", ".json");
         try {
-            switch (catalog.slug) {
-                case "langnames":
-                    library.clearTargetLanguages();
-                    indexTargetLanguageCatalog(data, listener);
-                    break;
-                case "new-language-questions":
-                    library.clearNewLanguageQuestions();
-                    indexNewLanguageQuestionsCatalog(data, listener);
-                    break;
-                case "temp-langnames":
-                    library.clearTempLanguages();
-                    indexTempLanguagesCatalog(data, listener);
-                    break;
-                case "approved-temp-langnames":
-                    library.clearApprovedTempLanguages();
-                    indexApprovedTempLanguagesCatalog(data, listener);
-                    break;
-                default:
-                    throw new Exception("Parsing this catalog has not been implemented");
+            GetRequest request = new GetRequest(new URL(catalog.url));
+            request.setResponseCache(responseCache);
+            request.download(data);
+            // TRICKY: the catalog is only marked as modified once it has been indexed into this database
+            if(isUpToDate(library, catalog, request.isNotModified())) {
+                logListener.onInfo("The " + catalog.slug + " catalog has not changed");
+                return;
             }
-        } catch (Exception e) {
-            library.endTransaction(false);
-            throw e;
+            library.beginBatch();
+            try {
+                switch (catalog.slug) {
+                    case "langnames":
+                        library.clearTargetLanguages();
+                        indexTargetLanguageCatalog(data, listener);
+                        break;
+                    case "new-language-questions":
+                        library.clearNewLanguageQuestions();
+                        indexNewLanguageQuestionsCatalog(FileUtil.readFileToString(data), listener);
+                        break;
+                    case "temp-langnames":
+                        library.clearTempLanguages();
+                        indexTempLanguagesCatalog(data, listener);
+                        break;
+                    case "approved-temp-langnames":
+                        library.clearApprovedTempLanguages();
+                        indexApprovedTempLanguagesCatalog(data, listener);
+                        break;
+                    default:
+                        throw new Exception("Parsing this catalog has not been implemented");
+                }
+                library.addCatalog(new Catalog(catalog.slug, catalog.url, (int) (System.currentTimeMillis() / 1000)));
+                invalidateDependentCatalogs(library, catalog.slug);
+            } catch (Exception e) {
+                library.endBatch(false);
+                throw e;
+            }
+            library.endBatch(true);
+            logBatchStats(catalog.slug);
+        } finally {
+            FileUtil.deleteQuietly(data);
         }
-        library.endTransaction(true);
     }
 
     /**
-     * parses the target language catalog and indexes it
-     * @param data
-     * @param listener
+     * Checks if a catalog does not need to be indexed again
+     * @param library
+     * @param catalog
+     * @param notModified true if the server reported the catalog has not changed
+     * @return
      */
-    private void indexTargetLanguageCatalog(String data, OnProgressListener listener) throws Exception {
-        JSONArray languages = new JSONArray(data);
-        for(int i = 0; i < languages.length(); i ++) {
-            JSONObject l = languages.getJSONObject(i);
-            boolean isGateway = l.has("gl") ? l.getBoolean("gl") : false;
-            TargetLanguage language = new TargetLanguage(l.getString("lc"), l.getString("ln"),
-                    l.getString("ang"), l.getString("ld"), l.getString("lr"), isGateway);
-            if(!library.addTargetLanguage(language)) {
-                logListener.onWarning("Failed to add the target language: " + language.slug);
+    static boolean isUpToDate(Library library, Catalog catalog, boolean notModified) {
+        if(!notModified) return false;
+        // TRICKY: read the stored catalog since it may have been invalidated by an earlier catalog in this update
+        Catalog stored = library.getCatalog(catalog.slug);
+        return stored != null && stored.modifiedAt > 0;
+    }
+
+    private static boolean isDependentCatalog(String slug) {
+        for(String[] dependents:DEPENDENT_CATALOGS.values()) {
+            if(Arrays.asList(dependents).contains(slug)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the catalogs that link to the rows of a catalog so they are indexed again.
+     * e.g. the approvals in approved-temp-langnames are cleared when temp-langnames is indexed.
+     * @param library
+     * @param slug the catalog that was indexed
+     * @throws Exception
+     */
+    static void invalidateDependentCatalogs(Library library, String slug) throws Exception {
+        String[] dependents = DEPENDENT_CATALOGS.get(slug);
+        if(dependents == null) return;
+        for(String dependentSlug:dependents) {
+            Catalog dependent = library.getCatalog(dependentSlug);
+            if(dependent != null && dependent.modifiedAt > 0) {
+                library.addCatalog(new Catalog(dependent.slug, dependent.url, 0));
             }
-            if(listener != null) {
-                if(!listener.onProgress("langnames", languages.length(), i + 1)) break;
+        }
+    }
+
+    /**
+     * parses the target language catalog and indexes it
+     * @param data the downloaded catalog
+     * @param listener receives the progress in bytes
+     */
+    private void indexTargetLanguageCatalog(File data, OnProgressListener listener) throws Exception {
+        try (LanguageCatalogReader reader = new LanguageCatalogReader(data)) {
+            while(reader.hasNext()) {
+                TargetLanguage language = reader.nextLanguage();
+                if(!library.addTargetLanguage(language)) {
+                    logListener.onWarning("Failed to add the target language: " + language.slug);
+                }
+                if(listener != null) {
+                    if(!listener.onProgress("langnames", reader.getSize(), reader.getBytesRead())) break;
+                }
+                library.yieldSafely();
             }
-            library.yieldSafely();
         }
     }
 
@@ -306,46 +384,42 @@ class API {
 
     /**
      * Parses the temporary language codes catalog and indexes it
-     * @param data
-     * @param listener
+     * @param data the downloaded catalog
+     * @param listener receives the progress in bytes
      */
-    private void indexTempLanguagesCatalog(String data, OnProgressListener listener) throws Exception {
-        JSONArray languages = new JSONArray(data);
-        for(int i = 0; i < languages.length(); i ++) {
-            JSONObject l = languages.getJSONObject(i);
-            boolean isGateway = l.has("gl") ? l.getBoolean("gl") : false;
-            TargetLanguage language = new TargetLanguage(l.getString("lc"), l.getString("ln"),
-                    l.getString("ang"), l.getString("ld"), l.getString("lr"), isGateway);
-            if(!library.addTempTargetLanguage(language)) {
-                logListener.onWarning("Failed to add the temp target language: " + language.slug);
-            }
-            if(listener != null) {
-                if(!listener.onProgress("temp-langnames", languages.length(), i + 1)) break;
+    private void indexTempLanguagesCatalog(File data, OnProgressListener listener) throws Exception {
+        try (LanguageCatalogReader reader = new LanguageCatalogReader(data)) {
+            while(reader.hasNext()) {
+                TargetLanguage language = reader.nextLanguage();
+                if(!library.addTempTargetLanguage(language)) {
+                    logListener.onWarning("Failed to add the temp target language: " + language.slug);
+                }
+                if(listener != null) {
+                    if(!listener.onProgress("temp-langnames", reader.getSize(), reader.getBytesRead())) break;
+                }
+                library.yieldSafely();
             }
-            library.yieldSafely();
         }
     }
 
     /**
      * Parses the approved temporary language codes catalog and indexes it
-     * @param data
-     * @param listener
+     * @param data the downloaded catalog
+     * @param listener receives the progress in bytes
      */
-    private void indexApprovedTempLanguagesCatalog(String data, OnProgressListener listener) throws Exception {
-        JSONArray languages = new JSONArray(data);
-        for(int i = 0; i < languages.length(); i ++) {
-            JSONObject l = languages.getJSONObject(i);
-            Iterator<String> keys = l.keys();
-            while(keys.hasNext()) {
-                String key = keys.next();
-                if(!library.setApprovedTargetLanguage(key, l.getString(key))) {
-                    logListener.onWarning("Failed to approve the temp target language: " + key + " as " + l.getString(key));
+    private void indexApprovedTempLanguagesCatalog(File data, OnProgressListener listener) throws Exception {
+        try (LanguageCatalogReader reader = new LanguageCatalogReader(data)) {
+            while(reader.hasNext()) {
+                for(Map.Entry<String, String> approval:reader.nextStrings().entrySet()) {
+                    if(!library.setApprovedTargetLanguage(approval.getKey(), approval.getValue())) {
+                        logListener.onWarning("Failed to approve the temp target language: " + approval.getKey() + " as " + approval.getValue());
+                    }
                 }
+                if(listener != null) {
+                    if(!listener.onProgress("approved-temp-langnames", reader.getSize(), reader.getBytesRead())) break;
+                }
+                library.yieldSafely();
             }
-            if(listener != null) {
-                if(!listener.onProgress("approved-temp-langnames", languages.length(), i + 1)) break;
-            }
-            library.yieldSafely();
         }
     }
 
@@ -375,7 +449,9 @@ class API {
 
         // clean downloaded file
         FileUtil.deleteQuietly(path);
-        return convertLegacyResource(sourceLanguageSlug, projectSlug, resourceSlug, data);
+        ResourceContainer rc = convertLegacyResource(sourceLanguageSlug, projectSlug, resourceSlug, data);
+        packResourceContainer(rc.slug);
+        return rc;
     }
 
     /**
@@ -402,6 +478,7 @@ class API {
 
         FileUtil.deleteQuietly(destFile);
         FileUtil.deleteQuietly(containerDir);
+        FileUtil.deleteQuietly(new File(resourceDir, containerSlug + "." + PackedContainer.FILE_EXTENSION));
 
         destFile.getParentFile().mkdirs();
         if(containerFormat.url == null || containerFormat.url.isEmpty()) throw new Exception("Missing resource format url");
@@ -579,6 +656,7 @@ class API {
         library.endTransaction(indexError == null);
         if(indexError != null) throw indexError;
 
+        packResourceContainer(rc.slug);
         return openResourceContainer(rc.language.slug, rc.project.slug, rc.resource.slug);
     }
 
@@ -641,6 +719,70 @@ class API {
         return ResourceContainer.open(archive, directory);
     }
 
+    /**
+     * Packs the content of an open resource container into a single file so it can be
+     * read by {@link #openPackedContainer(String)}.
+     * The container will still be readable if this fails.
+     *
+     * @param containerSlug
+     */
+    public synchronized void packResourceContainer(String containerSlug) {
+        File directory = new File(resourceDir, containerSlug);
+        File packFile = new File(directory + "." + PackedContainer.FILE_EXTENSION);
+        try {
+            PackedContainer.pack(directory, packFile);
+        } catch (Exception e) {
+            FileUtil.deleteQuietly(packFile);
+            logListener.onWarning("Failed to pack the resource container " + containerSlug + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Packs a resource container if it has not been packed since it was last opened.
+     * This reads every chunk of the container so it should not be called on the main thread.
+     *
+     * @param containerSlug
+     * @return true if the container has an up to date pack
+     */
+    public synchronized boolean packResourceContainerIfStale(String containerSlug) {
+        File directory = new File(resourceDir, containerSlug);
+        if(!isPackStale(directory)) return true;
+        if(!directory.isDirectory()) return false;
+        packResourceContainer(containerSlug);
+        return !isPackStale(directory);
+    }
+
+    /**
+     * Checks if the pack is missing or the container was opened again since it was packed
+     * @param directory the resource container directory
+     * @return
+     */
+    private static boolean isPackStale(File directory) {
+        File packFile = new File(directory + "." + PackedContainer.FILE_EXTENSION);
+        File manifest = new File(directory, "package.json");
+        return !packFile.exists() || manifest.lastModified() > packFile.lastModified();
+    }
+
+    /**
+     * Opens the packed content of a resource container.
+     * Containers are not packed here, see {@link #packResourceContainerIfStale(String)}.
+     *
+     * @param containerSlug
+     * @return the packed container or null if the container has not been packed
+     */
+    public synchronized PackedContainer openPackedContainer(String containerSlug) {
+        File directory = new File(resourceDir, containerSlug);
+        File packFile = new File(directory + "." + PackedContainer.FILE_EXTENSION);
+        if(isPackStale(directory)) return null;
+        try {
+            return PackedContainer.open(packFile);
+        } catch (Exception e) {
+            logListener.onWarning("Failed to open the packed resource container " + containerSlug + ": " + e.getMessage());
+            FileUtil.deleteQuietly(packFile);
+            return null;
+        }
+    }
+
     /**
      * Closes a resource container archive.
      *
@@ -705,9 +847,11 @@ class API {
     public void deleteResourceContainer(String containerSlug) {
         File directory = new File(resourceDir, containerSlug);
         File archive = new File(directory + "." + ResourceContainer.fileExtension);
+        File packFile = new File(directory + "." + PackedContainer.FILE_EXTENSION);
         if(directory.exists() && directory.isDirectory()) {
             FileUtil.deleteQuietly(directory);
         }
+        FileUtil.deleteQuietly(packFile);
         if(archive.exists() && archive.isFile()) {
             FileUtil.deleteQuietly(archive);
         }
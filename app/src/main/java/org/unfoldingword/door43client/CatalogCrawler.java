@@ -0,0 +1,272 @@
+package org.unfoldingword.door43client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.unfoldingword.tools.http.GetRequest;
+import org.unfoldingword.tools.http.ResponseCache;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Crawls the legacy source catalogs with a pipeline.
+ *
+ * The project, language and resource catalogs are downloaded and parsed concurrently by a bounded
+ * pool of fetch threads. The calling thread is the only writer. It receives the parsed catalogs
+ * in the same order as the serial crawl so the indexed content does not depend on the order in
+ * which downloads complete.
+ *
+ * Writes are grouped into short transactions. A transaction is committed after {@link #BATCH_SIZE}
+ * languages or whenever the writer has to wait for a download so the database is never locked
+ * during network round trips.
+ */
+class CatalogCrawler {
+    public static final int DEFAULT_THREADS = 6;
+    public static final int BATCH_SIZE = 20;
+
+    private final Writer writer;
+    private final Fetcher fetcher;
+    private final int threads;
+    // the number of projects that may be downloaded ahead of the writer
+    private final int window;
+
+    /**
+     * @param writer receives the parsed catalogs
+     * @param fetcher downloads the catalogs
+     * @param threads the number of concurrent downloads
+     */
+    public CatalogCrawler(Writer writer, Fetcher fetcher, int threads) {
+        this.writer = writer;
+        this.fetcher = fetcher;
+        this.threads = Math.max(1, threads);
+        this.window = this.threads * 2;
+    }
+
+    /**
+     * Crawls the catalogs.
+     * This blocks until everything has been written, the crawl is canceled or a download fails.
+     *
+     * @param catalog the primary catalog listing the projects
+     * @param taUrls the translationAcademy catalogs to index after the projects
+     * @param listener receives progress events for each project and the translationAcademy catalogs.
+     *                 Returning false will stop the crawl.
+     * @throws Exception
+     */
+    public void crawl(String catalog, String[] taUrls, OnProgressListener listener) throws Exception {
+        final JSONArray projects = new JSONArray(catalog);
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        boolean inBatch = false;
+        int batchCount = 0;
+        try {
+            // download ahead of the writer
+            LinkedList<Future<List<LanguageRecord>>> pending = new LinkedList<>();
+            int submitted = 0;
+            while(submitted < projects.length() && submitted < window) {
+                pending.add(pool.submit(fetchLanguages(pool, projects.getJSONObject(submitted))));
+                submitted ++;
+            }
+            List<Future<JSONObject>> taCatalogs = new ArrayList<>();
+            if(submitted == projects.length()) {
+                taCatalogs = submitTA(pool, taUrls);
+            }
+
+            // projects
+            boolean canceled = false;
+            for(int i = 0; i < projects.length(); i ++) {
+                JSONObject pJson = projects.getJSONObject(i);
+                if(listener != null && !listener.onProgress(pJson.getString("slug"), projects.length(), i + 1)) {
+                    canceled = true;
+                    break;
+                }
+
+                Future<List<LanguageRecord>> languages = pending.removeFirst();
+                if(submitted < projects.length()) {
+                    pending.add(pool.submit(fetchLanguages(pool, projects.getJSONObject(submitted))));
+                    submitted ++;
+                    if(submitted == projects.length()) taCatalogs = submitTA(pool, taUrls);
+                }
+
+                if(inBatch && !languages.isDone()) {
+                    writer.endBatch(true);
+                    inBatch = false;
+                }
+                for(LanguageRecord language:await(languages)) {
+                    if(inBatch && (!language.resources.isDone() || batchCount >= BATCH_SIZE)) {
+                        writer.endBatch(true);
+                        inBatch = false;
+                    }
+                    JSONArray resources = await(language.resources);
+                    if(!inBatch) {
+                        writer.beginBatch();
+                        inBatch = true;
+                        batchCount = 0;
+                    }
+                    writer.writeLanguage(pJson, language.json, resources);
+                    batchCount ++;
+                }
+            }
+
+            // tA
+            for(int i = 0; !canceled && i < taCatalogs.size(); i ++) {
+                if(inBatch && !taCatalogs.get(i).isDone()) {
+                    writer.endBatch(true);
+                    inBatch = false;
+                }
+                JSONObject ta = await(taCatalogs.get(i));
+                if(!inBatch) {
+                    writer.beginBatch();
+                    inBatch = true;
+                }
+                writer.writeTA(taUrls[i], ta);
+                if(listener != null && !listener.onProgress("ta", taCatalogs.size(), i + 1)) break;
+            }
+
+            if(inBatch) {
+                inBatch = false;
+                writer.endBatch(true);
+            }
+        } finally {
+            pool.shutdownNow();
+            if(inBatch) writer.endBatch(false);
+        }
+    }
+
+    /**
+     * Downloads the languages of a project and queues the download of their resources
+     */
+    private Callable<List<LanguageRecord>> fetchLanguages(final ExecutorService pool, final JSONObject pJson) {
+        return new Callable<List<LanguageRecord>>() {
+            @Override
+            public List<LanguageRecord> call() throws Exception {
+                JSONArray languages = new JSONArray(fetcher.fetch(pJson.getString("lang_catalog")));
+                List<LanguageRecord> records = new ArrayList<>();
+                for(int i = 0; i < languages.length(); i ++) {
+                    final JSONObject lJson = languages.getJSONObject(i);
+                    Future<JSONArray> resources = pool.submit(new Callable<JSONArray>() {
+                        @Override
+                        public JSONArray call() throws Exception {
+                            return new JSONArray(fetcher.fetch(lJson.getString("res_catalog")));
+                        }
+                    });
+                    records.add(new LanguageRecord(lJson, resources));
+                }
+                return records;
+            }
+        };
+    }
+
+    private List<Future<JSONObject>> submitTA(ExecutorService pool, String[] urls) {
+        List<Future<JSONObject>> catalogs = new ArrayList<>();
+        if(urls == null) return catalogs;
+        for(final String url:urls) {
+            catalogs.add(pool.submit(new Callable<JSONObject>() {
+                @Override
+                public JSONObject call() throws Exception {
+                    return new JSONObject(fetcher.fetch(url));
+                }
+            }));
+        }
+        return catalogs;
+    }
+
+    /**
+     * Waits for a download and re-throws its error
+     */
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * A source language and the pending download of its resources
+     */
+    private static class LanguageRecord {
+        final JSONObject json;
+        final Future<JSONArray> resources;
+
+        LanguageRecord(JSONObject json, Future<JSONArray> resources) {
+            this.json = json;
+            this.resources = resources;
+        }
+    }
+
+    /**
+     * Downloads catalogs over http
+     */
+    static class HttpFetcher implements Fetcher {
+        private final ResponseCache cache;
+
+        /**
+         * @param cache used to revalidate the catalogs. This may be null
+         */
+        HttpFetcher(ResponseCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public String fetch(String url) throws IOException {
+            GetRequest request = new GetRequest(new URL(url));
+            request.setResponseCache(cache);
+            return request.read();
+        }
+    }
+
+    /**
+     * Downloads a catalog
+     */
+    interface Fetcher {
+        /**
+         * @param url
+         * @return the body of the response
+         * @throws IOException
+         */
+        String fetch(String url) throws IOException;
+    }
+
+    /**
+     * Receives the parsed catalogs.
+     * All of these methods are called on the thread that started the crawl.
+     */
+    interface Writer {
+        /**
+         * Opens a transaction
+         */
+        void beginBatch();
+
+        /**
+         * Closes a transaction
+         * @param success set to false if the changes should be rolled back
+         */
+        void endBatch(boolean success);
+
+        /**
+         * Writes a source language of a project along with its resources
+         * @param project the project json from the primary catalog
+         * @param language the language json from the project's language catalog
+         * @param resources the language's resource catalog
+         * @throws Exception
+         */
+        void writeLanguage(JSONObject project, JSONObject language, JSONArray resources) throws Exception;
+
+        /**
+         * Writes a translationAcademy catalog
+         * @param url the url of the catalog
+         * @param ta
+         * @throws Exception
+         */
+        void writeTA(String url, JSONObject ta) throws Exception;
+    }
+}
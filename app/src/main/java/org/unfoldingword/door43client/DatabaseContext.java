@@ -72,6 +72,6 @@ class DatabaseContext extends ContextWrapper {
      */
     @Override
     public SQLiteDatabase openOrCreateDatabase(String name, int mode, SQLiteDatabase.CursorFactory factory) {
-        return SQLiteDatabase.openOrCreateDatabase(getDatabasePath(name), null);
+        return SQLiteDatabase.openOrCreateDatabase(getDatabasePath(name), factory);
     }
 }
\ No newline at end of file
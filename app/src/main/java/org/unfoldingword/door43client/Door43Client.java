@@ -145,6 +145,25 @@ public class Door43Client {
         return api.openResourceContainer(containerSlug);
     }
 
+    /**
+     * Opens the packed content of a resource container.
+     * @param containerSlug
+     * @return the packed container or null if the container has not been packed
+     */
+    public PackedContainer openPacked(String containerSlug) {
+        return api.openPackedContainer(containerSlug);
+    }
+
+    /**
+     * Packs a resource container that was opened since it was last packed.
+     * This should not be called on the main thread.
+     * @param containerSlug
+     * @return true if the container has an up to date pack
+     */
+    public boolean pack(String containerSlug) {
+        return api.packResourceContainerIfStale(containerSlug);
+    }
+
     /**
      * Imports an external resource container into the client and indexes it for use.
      * @param directory the directory of the resource container to be imported
@@ -0,0 +1,380 @@
+package org.unfoldingword.door43client;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes rows into the library index using compiled statements that are cached per table.
+ *
+ * When the platform sqlite supports it rows are updated with a single
+ * INSERT ... ON CONFLICT DO UPDATE ... RETURNING id statement and rows that are only inserted
+ * use INSERT ... ON CONFLICT DO NOTHING so the existing row is only looked up after a conflict.
+ * Older versions of sqlite fall back to a cached select followed by an insert or update
+ * so that conflicts never have to be detected by catching exceptions.
+ *
+ * The writer also keeps track of how many rows have been written so the indexing throughput can be reported.
+ */
+class IndexWriter {
+    static final int MODE_LEGACY = 0;
+    /** sqlite 3.24 */
+    static final int MODE_UPSERT = 1;
+    /** sqlite 3.35 */
+    static final int MODE_UPSERT_RETURNING = 2;
+
+    private final SQLiteDatabase db;
+    private final int mode;
+    private final Map<String, SQLiteStatement> statements = new HashMap<>();
+    // statements that could not be compiled e.g. when the unique columns do not match a constraint
+    private final Set<String> unsupported = new HashSet<>();
+
+    private long rowCount = 0;
+    private long writeNanos = 0;
+    private long batchStart = 0;
+    private long batchEnd = 0;
+
+    /**
+     * @param db the database that will be written to
+     */
+    public IndexWriter(SQLiteDatabase db) {
+        this(db, detectMode(db));
+    }
+
+    /**
+     * @param db the database that will be written to
+     * @param mode the write strategy. This must be supported by the sqlite version of the database.
+     */
+    IndexWriter(SQLiteDatabase db, int mode) {
+        this.db = db;
+        this.mode = mode;
+    }
+
+    /**
+     * Inserts a row unless it already exists
+     * @param table
+     * @param values
+     * @param uniqueColumns the columns that uniquely identify the row. These must be a subset of the values.
+     * @return the id of the row or -1 if the row could not be inserted
+     */
+    public synchronized Result insertOrIgnore(String table, ContentValues values, String[] uniqueColumns) {
+        long start = System.nanoTime();
+        try {
+            if(mode != MODE_LEGACY) {
+                List<String> columns = sortedColumns(values);
+                String key = "ignore:" + table + ":" + columns + ":" + sortedUnique(uniqueColumns);
+                SQLiteStatement insert = compile(key, buildIgnoreSql(table, columns, uniqueColumns));
+                if(insert != null) {
+                    bind(insert, values, columns);
+                    try {
+                        long id = insert.executeInsert();
+                        if(id != -1) return new Result(id, true);
+                        // the row already exists
+                        return new Result(selectId(table, values, uniqueColumns), false);
+                    } catch (SQLException e) {
+                        // e.g. a conflict on a different constraint. Let the legacy path decide.
+                    }
+                }
+            }
+            return selectOrInsert(table, values, uniqueColumns);
+        } finally {
+            recordWrite(start);
+        }
+    }
+
+    /**
+     * Inserts a row or updates the existing row
+     * @param table
+     * @param values
+     * @param uniqueColumns the columns that uniquely identify the row. These must be a subset of the values.
+     * @return the id of the row
+     * @throws Exception if the row could be neither inserted nor updated
+     */
+    public synchronized Result insertOrUpdate(String table, ContentValues values, String[] uniqueColumns) throws Exception {
+        long start = System.nanoTime();
+        try {
+            List<String> columns = sortedColumns(values);
+            List<String> updateColumns = new ArrayList<>(columns);
+            updateColumns.removeAll(Arrays.asList(uniqueColumns));
+            if(updateColumns.isEmpty()) {
+                // there is nothing to update
+                Result result = selectOrInsert(table, values, uniqueColumns);
+                if(result.id == -1) throw new Exception("Failed to insert the row in " + table);
+                return result;
+            }
+
+            if(mode != MODE_LEGACY) {
+                String key = "upsert:" + table + ":" + columns + ":" + sortedUnique(uniqueColumns);
+                if(!unsupported.contains(key)) {
+                    SQLiteStatement upsert = compile(key, buildUpsertSql(table, columns, uniqueColumns, mode == MODE_UPSERT_RETURNING));
+                    if(upsert != null) {
+                        bind(upsert, values, columns);
+                        try {
+                            if(mode == MODE_UPSERT_RETURNING) {
+                                return new Result(upsert.simpleQueryForLong(), false);
+                            }
+                            upsert.execute();
+                            long id = selectId(table, values, uniqueColumns);
+                            if(id == -1) throw new Exception("Failed to find the row in " + table);
+                            return new Result(id, false);
+                        } catch (SQLException e) {
+                            // e.g. a conflict on a different constraint. Let the legacy path decide.
+                        }
+                    }
+                }
+            }
+
+            long id = selectId(table, values, uniqueColumns);
+            if(id == -1) {
+                id = insert(table, values);
+                if(id != -1) return new Result(id, true);
+                throw new Exception("Failed to update the row in " + table);
+            }
+            SQLiteStatement update = compile("update:" + table + ":" + updateColumns + ":" + sortedUnique(uniqueColumns),
+                    buildUpdateSql(table, updateColumns, uniqueColumns));
+            if(update == null) throw new Exception("Failed to update the row in " + table);
+            bind(update, values, updateColumns);
+            bind(update, values, Arrays.asList(uniqueColumns), updateColumns.size());
+            if(update.executeUpdateDelete() == 0) {
+                throw new Exception("Failed to update the row in " + table);
+            }
+            return new Result(id, false);
+        } finally {
+            recordWrite(start);
+        }
+    }
+
+    /**
+     * Resets the throughput counters
+     */
+    public synchronized void resetStats() {
+        rowCount = 0;
+        writeNanos = 0;
+        batchStart = System.nanoTime();
+        batchEnd = 0;
+    }
+
+    /**
+     * Stops the clock used to measure the throughput
+     */
+    public synchronized void stopStats() {
+        batchEnd = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of rows written since the counters were reset
+     * @return
+     */
+    public synchronized long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of rows written per second since the counters were reset.
+     * This is measured against the wall clock so it includes the time spent preparing the rows.
+     * @return
+     */
+    public synchronized double getRowsPerSecond() {
+        long elapsed = (batchEnd == 0 ? System.nanoTime() : batchEnd) - batchStart;
+        if(rowCount == 0 || elapsed <= 0) return 0;
+        return rowCount * 1000000000.0 / elapsed;
+    }
+
+    /**
+     * Returns the time spent writing rows since the counters were reset
+     * @return milliseconds
+     */
+    public synchronized long getWriteTime() {
+        return writeNanos / 1000000;
+    }
+
+    /**
+     * Releases the cached statements
+     */
+    public synchronized void close() {
+        for(SQLiteStatement statement:statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+        unsupported.clear();
+    }
+
+    private void recordWrite(long start) {
+        rowCount ++;
+        writeNanos += System.nanoTime() - start;
+    }
+
+    private Result selectOrInsert(String table, ContentValues values, String[] uniqueColumns) {
+        long id = selectId(table, values, uniqueColumns);
+        if(id != -1) return new Result(id, false);
+        return new Result(insert(table, values), true);
+    }
+
+    /**
+     * Looks up the id of an existing row
+     * @return the id or -1 if the row does not exist
+     */
+    private long selectId(String table, ContentValues values, String[] uniqueColumns) {
+        SQLiteStatement select = compile("select:" + table + ":" + Arrays.toString(uniqueColumns),
+                "select id from " + table + " where " + TextUtils.join("=? and ", uniqueColumns) + "=?");
+        if(select == null) return -1;
+        bind(select, values, Arrays.asList(uniqueColumns));
+        try {
+            return select.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Inserts a new row
+     * @return the id of the row or -1 if the insert failed
+     */
+    private long insert(String table, ContentValues values) {
+        List<String> columns = sortedColumns(values);
+        SQLiteStatement insert = compile("insert:" + table + ":" + columns, buildInsertSql(table, columns));
+        if(insert == null) return -1;
+        bind(insert, values, columns);
+        try {
+            return insert.executeInsert();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Returns a cached statement or compiles a new one
+     * @return null if the statement cannot be compiled
+     */
+    private SQLiteStatement compile(String key, String sql) {
+        SQLiteStatement statement = statements.get(key);
+        if(statement != null) {
+            statement.clearBindings();
+            return statement;
+        }
+        if(unsupported.contains(key)) return null;
+        try {
+            statement = db.compileStatement(sql);
+        } catch (SQLException e) {
+            unsupported.add(key);
+            return null;
+        }
+        statements.put(key, statement);
+        return statement;
+    }
+
+    private static void bind(SQLiteStatement statement, ContentValues values, List<String> columns) {
+        bind(statement, values, columns, 0);
+    }
+
+    private static void bind(SQLiteStatement statement, ContentValues values, List<String> columns, int offset) {
+        for(int i = 0; i < columns.size(); i ++) {
+            DatabaseUtils.bindObjectToProgram(statement, offset + i + 1, values.get(columns.get(i)));
+        }
+    }
+
+    private static List<String> sortedColumns(ContentValues values) {
+        List<String> columns = new ArrayList<>(values.keySet());
+        Collections.sort(columns);
+        return columns;
+    }
+
+    private static List<String> sortedUnique(String[] uniqueColumns) {
+        List<String> columns = new ArrayList<>(Arrays.asList(uniqueColumns));
+        Collections.sort(columns);
+        return columns;
+    }
+
+    static String buildInsertSql(String table, List<String> columns) {
+        String[] params = new String[columns.size()];
+        Arrays.fill(params, "?");
+        return "insert into " + table + " (" + TextUtils.join(", ", columns) + ")"
+                + " values (" + TextUtils.join(", ", params) + ")";
+    }
+
+    static String buildUpdateSql(String table, List<String> updateColumns, String[] uniqueColumns) {
+        return "update " + table + " set " + TextUtils.join("=?, ", updateColumns) + "=?"
+                + " where " + TextUtils.join("=? and ", uniqueColumns) + "=?";
+    }
+
+    static String buildIgnoreSql(String table, List<String> columns, String[] uniqueColumns) {
+        return buildInsertSql(table, columns)
+                + " on conflict (" + TextUtils.join(", ", uniqueColumns) + ") do nothing";
+    }
+
+    static String buildUpsertSql(String table, List<String> columns, String[] uniqueColumns, boolean returning) {
+        Set<String> unique = new HashSet<>(Arrays.asList(uniqueColumns));
+        List<String> assignments = new ArrayList<>();
+        for(String column:columns) {
+            if(!unique.contains(column)) assignments.add(column + "=excluded." + column);
+        }
+        return buildInsertSql(table, columns)
+                + " on conflict (" + TextUtils.join(", ", uniqueColumns) + ")"
+                + " do update set " + TextUtils.join(", ", assignments)
+                + (returning ? " returning id" : "");
+    }
+
+    /**
+     * Chooses the write strategy supported by the sqlite version
+     * @param version e.g. 3.28.0
+     * @return
+     */
+    static int modeForVersion(String version) {
+        if(version == null) return MODE_LEGACY;
+        String[] parts = version.trim().split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            if(major > 3 || (major == 3 && minor >= 35)) return MODE_UPSERT_RETURNING;
+            if(major == 3 && minor >= 24) return MODE_UPSERT;
+        } catch (NumberFormatException e) {
+            // unknown version
+        }
+        return MODE_LEGACY;
+    }
+
+    /**
+     * Chooses the write strategy supported by the sqlite version of a database
+     * @param db
+     * @return
+     */
+    static int detectMode(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("select sqlite_version()", null)) {
+            if(cursor.moveToFirst()) return modeForVersion(cursor.getString(0));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return MODE_LEGACY;
+    }
+
+    /**
+     * The result of writing a row
+     */
+    static class Result {
+        public final boolean inserted;
+        public final long id;
+
+        /**
+         * @param id the id of the record
+         * @param inserted set to true if the record was a new insert and false if it is an existing one
+         */
+        Result(long id, boolean inserted) {
+            this.id = id;
+            this.inserted = inserted;
+        }
+    }
+}
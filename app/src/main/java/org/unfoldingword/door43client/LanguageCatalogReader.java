@@ -0,0 +1,164 @@
+package org.unfoldingword.door43client;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.unfoldingword.door43client.models.TargetLanguage;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streams the entries of a language catalog (a json array of objects) from a file.
+ * Only the current entry is held in memory so catalogs with thousands of languages can be
+ * indexed with constant memory.
+ */
+class LanguageCatalogReader implements Closeable {
+    private final long size;
+    private final CountingInputStream counter;
+    private final JsonReader reader;
+
+    /**
+     * @param file the downloaded catalog
+     * @throws IOException
+     */
+    public LanguageCatalogReader(File file) throws IOException {
+        this.size = file.length();
+        this.counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+        this.reader = new JsonReader(new InputStreamReader(counter, "UTF-8"));
+        try {
+            reader.beginArray();
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the catalog
+     * @return bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns roughly how much of the catalog has been read
+     * @return bytes
+     */
+    public long getBytesRead() {
+        return Math.min(size, counter.getByteCount());
+    }
+
+    /**
+     * Checks if there are more entries in the catalog
+     * @return
+     * @throws IOException
+     */
+    public boolean hasNext() throws IOException {
+        return reader.hasNext();
+    }
+
+    /**
+     * Reads the next entry as a target language
+     * @return
+     * @throws IOException if the entry is not a valid language
+     */
+    public TargetLanguage nextLanguage() throws IOException {
+        String slug = null;
+        String name = null;
+        String anglicizedName = null;
+        String direction = null;
+        String region = null;
+        boolean isGateway = false;
+
+        reader.beginObject();
+        while(reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "lc":
+                    slug = nextString();
+                    break;
+                case "ln":
+                    name = nextString();
+                    break;
+                case "ang":
+                    anglicizedName = nextString();
+                    break;
+                case "ld":
+                    direction = nextString();
+                    break;
+                case "lr":
+                    region = nextString();
+                    break;
+                case "gl":
+                    isGateway = nextBoolean();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if(slug == null || name == null || anglicizedName == null || direction == null || region == null) {
+            throw new IOException("Invalid target language " + slug);
+        }
+        return new TargetLanguage(slug, name, anglicizedName, direction, region, isGateway);
+    }
+
+    /**
+     * Reads the next entry as a map of strings
+     * @return
+     * @throws IOException
+     */
+    public Map<String, String> nextStrings() throws IOException {
+        Map<String, String> values = new LinkedHashMap<>();
+        reader.beginObject();
+        while(reader.hasNext()) {
+            String key = reader.nextName();
+            values.put(key, nextString());
+        }
+        reader.endObject();
+        return values;
+    }
+
+    /**
+     * Reads a value as a string.
+     * TRICKY: null values are read as "null" to match JSONObject.getString()
+     * @return
+     * @throws IOException
+     */
+    private String nextString() throws IOException {
+        JsonToken token = reader.peek();
+        if(token == JsonToken.NULL) {
+            reader.nextNull();
+            return "null";
+        } else if(token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        // numbers are also read as strings
+        return reader.nextString();
+    }
+
+    private boolean nextBoolean() throws IOException {
+        JsonToken token = reader.peek();
+        if(token == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        } else if(token == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return Boolean.parseBoolean(reader.nextString());
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -13,6 +13,7 @@ import org.unfoldingword.resourcecontainer.Project;
 import org.unfoldingword.resourcecontainer.Resource;
 import org.unfoldingword.resourcecontainer.ResourceContainer;
 import org.unfoldingword.tools.http.GetRequest;
+import org.unfoldingword.tools.http.ResponseCache;
 
 import java.io.IOException;
 import java.net.URL;
@@ -27,6 +28,18 @@ import java.util.Map;
  */
 class LegacyTools {
 
+    /** The tA projects */
+    private static final String[] TA_URLS = new String[]{
+            "https://api.unfoldingword.org/ta/txt/1/en/audio_2.json",
+            "https://api.unfoldingword.org/ta/txt/1/en/checking_1.json",
+            "https://api.unfoldingword.org/ta/txt/1/en/checking_2.json",
+            "https://api.unfoldingword.org/ta/txt/1/en/gateway_3.json",
+            "https://api.unfoldingword.org/ta/txt/1/en/intro_1.json",
+            "https://api.unfoldingword.org/ta/txt/1/en/process_1.json",
+            "https://api.unfoldingword.org/ta/txt/1/en/translate_1.json",
+            "https://api.unfoldingword.org/ta/txt/1/en/translate_2.json"
+    };
+
     /** Defines a configurable languages URL to be used when updating catalogs */
     private static String LANG_NAMES_URL = "https://langnames.bibleineverylanguage.org/langnames.json";
 
@@ -39,27 +52,59 @@ class LegacyTools {
     public static void injectGlobalCatalogs(Library library, String host) throws Exception {
         host = host != null && !host.trim().isEmpty() ? host : "https://td.unfoldingword.org";
 
-        library.addCatalog(new Catalog("langnames", LANG_NAMES_URL, 0));
+        injectCatalog(library, "langnames", LANG_NAMES_URL);
         // TRICKY: the trailing / is required on these urls
-        library.addCatalog(new Catalog("new-language-questions", host + "/api/questionnaire/", 0));
-        library.addCatalog(new Catalog("temp-langnames", host + "/api/templanguages/", 0));
+        injectCatalog(library, "new-language-questions", host + "/api/questionnaire/");
+        injectCatalog(library, "temp-langnames", host + "/api/templanguages/");
         // TRICKY: this catalog should always be indexed after langnames and temp-langnames otherwise the linking will fail!
-        library.addCatalog(new Catalog("approved-temp-langnames", host + "/api/templanguages/assignment/changed/", 0));
+        injectCatalog(library, "approved-temp-langnames", host + "/api/templanguages/assignment/changed/");
     }
 
-    public static void processCatalog(Library library, String data, OnProgressListener listener) throws Exception {
-        JSONArray projects = new JSONArray(data);
-        for(int i = 0; i < projects.length(); i ++) {
-            JSONObject pJson = projects.getJSONObject(i);
-            if(listener != null) {
-                if(!listener.onProgress(pJson.getString("slug"), projects.length(), i + 1)) break;
+    /**
+     * Adds a global catalog.
+     * The modified date is kept if the url has not changed so unchanged catalogs are not indexed again.
+     * @param library
+     * @param slug
+     * @param url
+     * @throws Exception
+     */
+    private static void injectCatalog(Library library, String slug, String url) throws Exception {
+        Catalog existing = library.getCatalog(slug);
+        int modifiedAt = existing != null && url.equals(existing.url) ? existing.modifiedAt : 0;
+        library.addCatalog(new Catalog(slug, url, modifiedAt));
+    }
+
+    /**
+     * Indexes the primary catalog along with all of the project, language and resource catalogs it links to
+     * @param library
+     * @param cache used to revalidate the catalogs
+     * @param data the primary catalog
+     * @param listener
+     * @throws Exception
+     */
+    public static void processCatalog(final Library library, ResponseCache cache, String data, OnProgressListener listener) throws Exception {
+        CatalogCrawler crawler = new CatalogCrawler(new CatalogCrawler.Writer() {
+            @Override
+            public void beginBatch() {
+                library.beginTransaction();
             }
-            downloadSourceLanguages(library, pJson, null);
-            library.yieldSafely();
-        }
 
-        // tA
-        updateTA(library, listener);
+            @Override
+            public void endBatch(boolean success) {
+                library.endTransaction(success);
+            }
+
+            @Override
+            public void writeLanguage(JSONObject project, JSONObject language, JSONArray resources) throws Exception {
+                indexSourceLanguage(library, project, language, resources);
+            }
+
+            @Override
+            public void writeTA(String url, JSONObject ta) throws Exception {
+                indexTA(library, url, ta);
+            }
+        }, new CatalogCrawler.HttpFetcher(cache), CatalogCrawler.DEFAULT_THREADS);
+        crawler.crawl(data, TA_URLS, listener);
     }
 
     public static void setLangNamesUrl(String url) { LANG_NAMES_URL = url; }
@@ -109,44 +154,14 @@ class LegacyTools {
     }
 
     /**
-     * Downloads the tA projects
-     * @param library
-     * @param listener
-     * @throws Exception
-     */
-    private static void updateTA(Library library, OnProgressListener listener) throws Exception {
-        String[] urls = new String[]{
-                "https://api.unfoldingword.org/ta/txt/1/en/audio_2.json",
-                "https://api.unfoldingword.org/ta/txt/1/en/checking_1.json",
-                "https://api.unfoldingword.org/ta/txt/1/en/checking_2.json",
-                "https://api.unfoldingword.org/ta/txt/1/en/gateway_3.json",
-                "https://api.unfoldingword.org/ta/txt/1/en/intro_1.json",
-                "https://api.unfoldingword.org/ta/txt/1/en/process_1.json",
-                "https://api.unfoldingword.org/ta/txt/1/en/translate_1.json",
-                "https://api.unfoldingword.org/ta/txt/1/en/translate_2.json"
-        };
-        for(int i = 0; i < urls.length; i ++) {
-            downloadTA(library, urls[i]);
-            if(listener != null) {
-                if(!listener.onProgress("ta", urls.length, i + 1)) break;
-            }
-            library.yieldSafely();
-        }
-    }
-
-    /**
-     * Downloads the tA projects
-     * Continues from updateTA()
+     * Indexes a tA project
      *
      * @param library
-     * @param url
+     * @param url the url of the tA catalog
+     * @param ta the tA catalog
      * @throws Exception
      */
-    private static void downloadTA(Library library, String url) throws Exception {
-        GetRequest get = new GetRequest(new URL(url));
-        String data = get.read();
-        JSONObject ta = new JSONObject(data);
-
+    private static void indexTA(Library library, String url, JSONObject ta) throws Exception {
         // add language (right now only english)
         long languageId = library.addSourceLanguage(new SourceLanguage("en", "English", "ltr"));
 
@@ -185,42 +200,31 @@ class LegacyTools {
     }
 
     /**
-     * This will download the source languages for a project.
+     * This will index a source language of a project.
      * Some of the project info is mixed with languages
      * so we are creating the projects and langauges here
      *
      * @param library
      * @param pJson the project json
-     * @param listener
+     * @param lJson the language json
+     * @param resources the resource catalog of the language
      * @throws Exception
      */
-    private static void downloadSourceLanguages(Library library, JSONObject pJson, OnProgressListener listener) throws Exception {
-        GetRequest request = new GetRequest(new URL(pJson.getString("lang_catalog")));
-        String response = request.read();
-
-        JSONArray languages = new JSONArray(response);
-        for(int i = 0; i < languages.length(); i ++) {
-            JSONObject lJson = languages.getJSONObject(i);
-
-            if(listener != null) {
-                if(!listener.onProgress(lJson.getJSONObject("language").getString("slug") + pJson.getString("slug"), languages.length(), i + 1)) break;
-            }
-
-            SourceLanguage sl = new SourceLanguage(lJson.getJSONObject("language").getString("slug"),
-                    lJson.getJSONObject("language").getString("name"),
-                    lJson.getJSONObject("language").getString("direction"));
-            long languageId = library.addSourceLanguage(sl);
+    private static void indexSourceLanguage(Library library, JSONObject pJson, JSONObject lJson, JSONArray resources) throws Exception {
+        SourceLanguage sl = new SourceLanguage(lJson.getJSONObject("language").getString("slug"),
+                lJson.getJSONObject("language").getString("name"),
+                lJson.getJSONObject("language").getString("direction"));
+        long languageId = library.addSourceLanguage(sl);
 
-            // TODO: retrieve the correct versification name(s) from the source language
-            library.addVersification(new Versification("en-US", "American English"), languageId);
+        // TODO: retrieve the correct versification name(s) from the source language
+        library.addVersification(new Versification("en-US", "American English"), languageId);
 
-            downloadResources(library, pJson, languageId, lJson);
-            library.yieldSafely();
-        }
+        indexResources(library, pJson, languageId, lJson, resources);
+        library.yieldSafely();
     }
 
     /**
-     * Downloads resources for a project.
+     * Indexes resources for a project.
      * This will split notes and questions into their own resource.
      * words are added as a new project.
      *
@@ -228,13 +232,10 @@ class LegacyTools {
      * @param pJson
      * @param languageId
      * @param lJson
+     * @param resources the resource catalog of the language
      * @throws Exception
      */
-    private static void downloadResources(Library library, JSONObject pJson, long languageId, JSONObject lJson) throws Exception {
-        GetRequest request = new GetRequest(new URL(lJson.getString("res_catalog")));
-        String response = request.read();
-
-        JSONArray resources = new JSONArray(response);
+    private static void indexResources(Library library, JSONObject pJson, long languageId, JSONObject lJson, JSONArray resources) throws Exception {
         for(int i = 0; i < resources.length(); i ++) {
             JSONObject rJson = resources.getJSONObject(i);
 
@@ -349,16 +350,20 @@ class LegacyTools {
     /**
      * Downloads chunks for a project
      * @param library
+     * @param cache used to revalidate the chunks
      * @param chunksUrl
      * @param projectSlug
      * @throws Exception
      */
-    private static void downloadChunks(Library library, String chunksUrl, String projectSlug) throws Exception {
+    private static void downloadChunks(Library library, ResponseCache cache, String chunksUrl, String projectSlug) throws Exception {
         // TODO: pull the correct versification slug from the data. For now there is only one versification
         Versification v = library.getVersification("en", "en-US");
         if(v != null) {
             GetRequest request = new GetRequest(new URL(chunksUrl));
+            request.setResponseCache(cache);
             String data = request.read();
+            // chunk markers are never removed so there is nothing to update
+            if(request.isNotModified() && !library.getChunkMarkers(projectSlug, v.slug).isEmpty()) return;
             JSONArray chunks = new JSONArray(data);
             for(int i = 0; i < chunks.length(); i ++) {
                 JSONObject chunk = chunks.getJSONObject(i);
@@ -423,7 +428,7 @@ class LegacyTools {
         return list;
     }
 
-    public static void processChunks(Library library, OnProgressListener listener) throws Exception {
+    public static void processChunks(Library library, ResponseCache cache, OnProgressListener listener) throws Exception {
         // TRICKY: currently all chunk markers are defined according to the english versification system
         Map<String, String> markers = new HashMap<>();
         for(SourceLanguage l:library.getSourceLanguages()) {
@@ -436,7 +441,7 @@ class LegacyTools {
 
         int pos = 0;
         for(String key:markers.keySet()) {
-            downloadChunks(library, markers.get(key), key);
+            downloadChunks(library, cache, markers.get(key), key);
             pos ++;
             if(listener != null) {
                 if(!listener.onProgress("chunk_markers", markers.size(), pos)) break;
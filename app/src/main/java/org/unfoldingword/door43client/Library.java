@@ -2,7 +2,6 @@ package org.unfoldingword.door43client;
 
 import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 
 import androidx.annotation.Nullable;
@@ -39,9 +38,13 @@ import java.util.Map;
  * Manages the indexed library content.
  */
 class Library implements Index {
+    // matches resources that have an imported format without aggregating every resource
+    private static final String IS_IMPORTED = "exists (select 1 from resource_format as rf" +
+            " where rf.resource_id=r.id and rf.imported='1')";
 
     private final SQLiteHelper sqliteHelper;
     private final SQLiteDatabase db;
+    private final IndexWriter writer;
 
     /**
      * Instantiates a new library
@@ -53,6 +56,7 @@ class Library implements Index {
         if(this.db.getVersion() == 0) throw new IOException("Invalid database version." +
                 "You probably manually generated the database and forgot to set the " +
                 "\"User Version\" to " + SQLiteHelper.DATABASE_VERSION);
+        this.writer = new IndexWriter(this.db);
     }
 
     /**
@@ -80,10 +84,53 @@ class Library implements Index {
         db.endTransaction();
     }
 
+    /**
+     * Opens a transaction for indexing a large number of rows.
+     * This also resets the throughput counters.
+     */
+    public void beginBatch() {
+        beginTransaction();
+        resetBatchStats();
+    }
+
+    /**
+     * Resets the throughput counters.
+     * Use this when the rows will be written in several transactions.
+     */
+    public void resetBatchStats() {
+        writer.resetStats();
+    }
+
+    /**
+     * Closes a transaction opened with {@link #beginBatch()}
+     * @param success set to false if the transaction should fail and the changes rolled back.
+     */
+    public void endBatch(boolean success) {
+        endTransaction(success);
+        writer.stopStats();
+    }
+
+    /**
+     * Returns the number of rows indexed since the last batch began
+     * @return
+     */
+    public long getBatchRowCount() {
+        return writer.getRowCount();
+    }
+
+    /**
+     * Returns the indexing throughput since the last batch began
+     * @return rows per second
+     */
+    public double getBatchRowsPerSecond() {
+        return writer.getRowsPerSecond();
+    }
+
     /**
      * Closes the database
      */
     public void closeDatabase() {
+        writer.close();
         sqliteHelper.close();
     }
 
@@ -108,43 +155,13 @@ class Library implements Index {
     /**
      * Attempts to insert a row.
      *
-     * There is a bug in the SQLiteDatabase API that prevents us from using insertWithOnConflict + CONFLICT_IGNORE
-     * https://code.google.com/p/android/issues/detail?id=13045
      * @param table
      * @param values
      * @param uniqueColumns
      * @return the id of the inserted row or the id of the existing row.
      */
-    synchronized private InsertResult insertOrIgnore(String table, ContentValues values, String[] uniqueColumns) {
-        // try to insert
-        Exception error = null;
-        try {
-            long id = db.insertOrThrow(table, null, values);
-            return new InsertResult(id, true);
-        } catch (SQLException e) {
-            error = e;
-        }
-        long id = -1;
-
-        WhereClause where = WhereClause.prepare(values, uniqueColumns);
-
-        Cursor cursor = null;
-        try {
-            cursor = db.rawQuery("select id from " + table + " where " + where.statement, where.arguments);
-            if (cursor.moveToFirst()) {
-                id = cursor.getLong(0);
-                cursor.close();
-            } else {
-                cursor.close();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            if(cursor != null) cursor.close();
-        }
-
-        // TRICKY: print the insert stacktrace only if the select failed.
-        if(error != null && id == -1) error.printStackTrace();
-        return new InsertResult(id, false);
+    private IndexWriter.Result insertOrIgnore(String table, ContentValues values, String[] uniqueColumns) {
+        return writer.insertOrIgnore(table, values, uniqueColumns);
     }
 
     /**
@@ -157,36 +174,8 @@ class Library implements Index {
      * @param uniqueColumns an array of unique columns on this table. This should be a subset of the values.
      * @return the id of the inserted/updated row
      */
-    synchronized private InsertResult insertOrUpdate(String table, ContentValues values, String[] uniqueColumns) throws Exception {
-        // insert
-        InsertResult result = insertOrIgnore(table, values, uniqueColumns);
-        if(!result.inserted) {
-            WhereClause where = WhereClause.prepare(values, uniqueColumns);
-
-            // clean values
-            for(String key:uniqueColumns) {
-                values.remove(key);
-            }
-
-            // update
-            int numRows = db.updateWithOnConflict(table, values, where.statement, where.arguments, SQLiteDatabase.CONFLICT_ROLLBACK);
-            if(numRows == 0) {
-                throw new Exception("Failed to update the row in " + table);
-            } else {
-                // retrieve updated row id
-                Cursor cursor = db.rawQuery("select id from " + table + " where " + where.statement, where.arguments);
-                if(cursor.moveToFirst()) {
-                    long id = cursor.getLong(0);
-                    cursor.close();
-                    return new InsertResult(id, false);
-                } else {
-                    cursor.close();
-                    throw new Exception("Failed to find the row in " + table);
-                }
-            }
-        } else {
-            return result;
-        }
+    private IndexWriter.Result insertOrUpdate(String table, ContentValues values, String[] uniqueColumns) throws Exception {
+        return writer.insertOrUpdate(table, values, uniqueColumns);
     }
 
     /**
@@ -621,11 +610,7 @@ class Library implements Index {
                 " lri.translation_words_assignments_url" +
                 " from source_language as l" +
                 " left join project as p on p.source_language_id=l.id" +
-                " left join (" +
-                "   select r.*, count(rf.id) as num_imported from resource as r" +
-                "   left join resource_format as rf on rf.resource_id=r.id and rf.imported='1'" +
-                "   group by r.id" +
-                " ) as r on r.project_id=p.id" +
+                " left join resource as r on r.project_id=p.id" +
                 " left join legacy_resource_info as lri on lri.resource_id=r.id" +
                 " where l.slug like(?) and p.slug like(?) and r.slug like(?)" +
                 " and (" +
@@ -634,7 +619,7 @@ class Library implements Index {
                       conditionMaxChecking +
                 "     and r.translate_mode like(?)" +
                 "   )" +
-                "   or r.num_imported > 0" +
+                "   or " + IS_IMPORTED +
                 " )" +
                 " and r.type like(?)",
                 new String[]{languageSlug, projectSlug, resourceSlug, translateMode, resourceType});
@@ -657,13 +642,9 @@ class Library implements Index {
                         " lri.translation_words_assignments_url" +
                         " from source_language as l" +
                         " left join project as p on p.source_language_id=l.id" +
-                        " left join (" +
-                        "   select r.*, count(rf.id) as num_imported from resource as r" +
-                        "   left join resource_format as rf on rf.resource_id=r.id and rf.imported='1'" +
-                        "   group by r.id" +
-                        " ) as r on r.project_id=p.id" +
+                        " left join resource as r on r.project_id=p.id" +
                         " left join legacy_resource_info as lri on lri.resource_id=r.id" +
-                        " where r.num_imported > 0",
+                        " where " + IS_IMPORTED,
                 new String[]{});
 
         cursor.moveToFirst();
@@ -780,12 +761,13 @@ class Library implements Index {
 
     public TargetLanguage getTargetLanguage(String targetLanguageSlug) {
         TargetLanguage targetLanguage = null;
-        Cursor cursor = db.rawQuery("select * from (" +
-                "  select slug, name, anglicized_name, direction, region, is_gateway_language from target_language" +
-                "  union" +
-                "  select slug, name, anglicized_name, direction, region, is_gateway_language from temp_target_language" +
-                "  where approved_target_language_slug is null" +
-                ") where slug=? limit 1", new String[]{targetLanguageSlug});
+        // TRICKY: the slug is matched in both halves of the union so each can use its index
+        Cursor cursor = db.rawQuery("select slug, name, anglicized_name, direction, region, is_gateway_language from target_language" +
+                " where slug=?" +
+                " union" +
+                " select slug, name, anglicized_name, direction, region, is_gateway_language from temp_target_language" +
+                " where slug=? and approved_target_language_slug is null" +
+                " limit 1", new String[]{targetLanguageSlug, targetLanguageSlug});
 
         if(cursor.moveToFirst()) {
             CursorReader reader = new CursorReader(cursor);
@@ -1042,11 +1024,7 @@ class Library implements Index {
                     " c.id, c.slug, c.parent_id, count(p.id) as num, max(p.sort) as csort from category as c" +
                     " left join (" +
                     "  select p.id, p.category_id, p.sort, count(r.id) as num from project as p" +
-                    "  left join (" +
-                    "   select r.*, count(rf.id) as num_imported from resource as r" +
-                    "   left join resource_format as rf on rf.resource_id=r.id and rf.imported='1'" +
-                    "   group by r.id" +
-                    "  ) as r on r.project_id=p.id and (r.translate_mode like (?) or r.num_imported > 0)" +
+                    "  left join resource as r on r.project_id=p.id and (r.translate_mode like (?) or " + IS_IMPORTED + ")" +
                     "  group by p.slug" +
                     " ) p on p.category_id=c.id and p.num > 0" +
                     " where parent_id=" + parentCategoryId + " and num > 0 " +
@@ -1094,11 +1072,7 @@ class Library implements Index {
         Cursor projectCursor = db.rawQuery("select * from (" +
                 " select \'project\' as type, \'\' as source_language_slug," +
                 " p.id, p.slug, p.sort, p.name, count(r.id) as num from project as p" +
-                " left join (" +
-                "  select r.*, count(rf.id) as num_imported from resource as r" +
-                "  left join resource_format as rf on rf.resource_id=r.id and rf.imported='1'" +
-                "  group by r.id" +
-                " ) as r on r.project_id=p.id and (r.translate_mode like (?) or r.num_imported > 0)" +
+                " left join resource as r on r.project_id=p.id and (r.translate_mode like (?) or " + IS_IMPORTED + ")" +
                 " where p.category_id=" + parentCategoryId + " group by p.slug" +
                 " order by p.sort asc)" + (!translateMode.isEmpty() ? " where num > 0" : ""),
                 new String[]{(!translateMode.isEmpty() ? translateMode : "%")});
@@ -1572,25 +1546,6 @@ class Library implements Index {
             e.printStackTrace();
         }
     }
-
-    /**
-     * Represents the result from and insertOrIgnore or insertOrUpdate
-     */
-    private static class InsertResult {
-        public final boolean inserted;
-        public final long id;
-
-        /**
-         *
-         * @param id the id of the record
-         * @param inserted set to true if the record was a new insert and false if it is an existing one
-         */
-        public InsertResult(long id, boolean inserted) {
-            this.id = id;
-            this.inserted = inserted;
-        }
-    }
-
     /**
      * A helper class to make reading from a cursor easier.
      */
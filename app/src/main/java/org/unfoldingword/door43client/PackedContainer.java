@@ -0,0 +1,232 @@
+package org.unfoldingword.door43client;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A read only copy of the content of a resource container packed into a single file.
+ *
+ * The file begins with a table of the chapters and chunks and the offset of each chunk
+ * followed by the chunk data. The file is memory mapped so reading a chunk only decodes a slice
+ * of the mapping instead of opening a file.
+ *
+ * Chunks are read through the same methods as {@link org.unfoldingword.resourcecontainer.ResourceContainer}.
+ */
+public class PackedContainer {
+    public static final String FILE_EXTENSION = "pack";
+
+    private static final int MAGIC = 0x52435043; // RCPC
+    private static final int VERSION = 1;
+    private static final String CONTENT_DIR = "content";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public final File path;
+    private final ByteBuffer data;
+    // chapter slug -> chunk slug -> {offset, length}
+    private final Map<String, Map<String, int[]>> chapters;
+
+    private PackedContainer(File path, ByteBuffer data, Map<String, Map<String, int[]>> chapters) {
+        this.path = path;
+        this.data = data;
+        this.chapters = chapters;
+    }
+
+    /**
+     * Packs the content of an open resource container
+     * @param containerDir the resource container directory
+     * @param destFile the pack file that will be written
+     * @return the pack file
+     * @throws IOException
+     */
+    public static File pack(File containerDir, File destFile) throws IOException {
+        File contentDir = new File(containerDir, CONTENT_DIR);
+        if(!contentDir.isDirectory()) throw new IOException("Missing container content in " + containerDir);
+
+        // build the table
+        Map<String, Map<String, File>> files = new LinkedHashMap<>();
+        String[] chapterSlugs = contentDir.list();
+        Arrays.sort(chapterSlugs);
+        for(String chapterSlug:chapterSlugs) {
+            File chapterDir = new File(contentDir, chapterSlug);
+            if(!chapterDir.isDirectory()) continue;
+            Map<String, File> chunks = new LinkedHashMap<>();
+            String[] chunkNames = chapterDir.list();
+            Arrays.sort(chunkNames);
+            for(String chunkName:chunkNames) {
+                File chunkFile = new File(chapterDir, chunkName);
+                String chunkSlug = chunkName.split("\\.")[0];
+                if(chunkFile.isFile() && !chunks.containsKey(chunkSlug)) chunks.put(chunkSlug, chunkFile);
+            }
+            files.put(chapterSlug, chunks);
+        }
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream tableOut = new DataOutputStream(table);
+        tableOut.writeInt(files.size());
+        long offset = 0;
+        for(Map.Entry<String, Map<String, File>> chapter:files.entrySet()) {
+            tableOut.writeUTF(chapter.getKey());
+            tableOut.writeInt(chapter.getValue().size());
+            for(Map.Entry<String, File> chunk:chapter.getValue().entrySet()) {
+                long length = chunk.getValue().length();
+                if(offset + length > Integer.MAX_VALUE) throw new IOException("The container is too large to pack");
+                tableOut.writeUTF(chunk.getKey());
+                tableOut.writeInt((int)offset);
+                tableOut.writeInt((int)length);
+                offset += length;
+            }
+        }
+        tableOut.flush();
+
+        // write the table and data
+        File tempFile = new File(destFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(FileUtil.openOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(table.size());
+            table.writeTo(out);
+            byte[] buffer = new byte[8192];
+            for(Map<String, File> chunks:files.values()) {
+                for(File chunkFile:chunks.values()) {
+                    copyExactly(chunkFile, out, buffer);
+                }
+            }
+        } catch (IOException e) {
+            FileUtil.closeQuietly(out);
+            FileUtil.deleteQuietly(tempFile);
+            throw e;
+        }
+        out.close();
+
+        FileUtil.deleteQuietly(destFile);
+        if(!tempFile.renameTo(destFile)) {
+            FileUtil.deleteQuietly(tempFile);
+            throw new IOException("Failed to write the pack " + destFile);
+        }
+        return destFile;
+    }
+
+    /**
+     * Opens a pack file for reading
+     * @param packFile
+     * @return
+     * @throws IOException
+     */
+    public static PackedContainer open(File packFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(packFile, "r");
+        MappedByteBuffer buffer;
+        try {
+            FileChannel channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // the mapping stays valid after the file is closed
+            file.close();
+        }
+
+        try {
+            if(buffer.getInt() != MAGIC) throw new IOException("Not a packed container " + packFile);
+            if(buffer.getInt() != VERSION) throw new IOException("Unsupported pack version in " + packFile);
+            byte[] table = new byte[buffer.getInt()];
+            buffer.get(table);
+
+            Map<String, Map<String, int[]>> chapters = new LinkedHashMap<>();
+            DataInputStream tableIn = new DataInputStream(new ByteArrayInputStream(table));
+            int numChapters = tableIn.readInt();
+            for(int i = 0; i < numChapters; i ++) {
+                String chapterSlug = tableIn.readUTF();
+                int numChunks = tableIn.readInt();
+                Map<String, int[]> chunks = new LinkedHashMap<>();
+                for(int j = 0; j < numChunks; j ++) {
+                    String chunkSlug = tableIn.readUTF();
+                    int offset = tableIn.readInt();
+                    int length = tableIn.readInt();
+                    chunks.put(chunkSlug, new int[]{offset, length});
+                }
+                chapters.put(chapterSlug, chunks);
+            }
+
+            ByteBuffer data = buffer.slice();
+            for(Map<String, int[]> chunks:chapters.values()) {
+                for(int[] chunk:chunks.values()) {
+                    if(chunk[0] < 0 || chunk[1] < 0 || chunk[0] + chunk[1] > data.capacity()) {
+                        throw new IOException("Corrupt pack table in " + packFile);
+                    }
+                }
+            }
+            return new PackedContainer(packFile, data, chapters);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt pack " + packFile, e);
+        }
+    }
+
+    /**
+     * Returns an array of chapters in this resource container
+     * @return
+     */
+    public String[] chapters() {
+        return chapters.keySet().toArray(new String[chapters.size()]);
+    }
+
+    /**
+     * Returns an array of chunks in the chapter
+     * @param chapterSlug
+     * @return
+     */
+    public String[] chunks(String chapterSlug) {
+        Map<String, int[]> chunks = chapters.get(chapterSlug);
+        if(chunks == null) return new String[0];
+        return chunks.keySet().toArray(new String[chunks.size()]);
+    }
+
+    /**
+     * Returns the contents of a chunk
+     * @param chapterSlug
+     * @param chunkSlug
+     * @return the chunk text or an empty string if it does not exist
+     */
+    public String readChunk(String chapterSlug, String chunkSlug) {
+        Map<String, int[]> chunks = chapters.get(chapterSlug);
+        if(chunks == null) return "";
+        int[] chunk = chunks.get(chunkSlug);
+        if(chunk == null) return "";
+
+        // TRICKY: duplicate so concurrent reads do not share a position
+        ByteBuffer slice = data.duplicate();
+        slice.limit(chunk[0] + chunk[1]);
+        slice.position(chunk[0]);
+        return UTF_8.decode(slice).toString();
+    }
+
+    private static void copyExactly(File file, OutputStream out, byte[] buffer) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            long remaining = file.length();
+            while(remaining > 0) {
+                int read = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                if(read == -1) throw new IOException("The file " + file + " changed while it was being packed");
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
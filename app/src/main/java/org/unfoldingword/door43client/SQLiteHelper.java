@@ -8,7 +8,7 @@ import android.database.sqlite.SQLiteOpenHelper;
  * A SQLite database helper
  */
 class SQLiteHelper extends SQLiteOpenHelper {
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 2;
     private final String schema;
 
     /**
@@ -18,7 +18,18 @@ class SQLiteHelper extends SQLiteOpenHelper {
      * @param name the db name
      */
     public SQLiteHelper(Context context, String schema, String name) {
-        super(context, name, null, DATABASE_VERSION);
+        this(context, schema, name, null);
+    }
+
+    /**
+     *
+     * @param context
+     * @param schema The sqlite schema
+     * @param name the db name
+     * @param factory creates the cursors returned by queries
+     */
+    SQLiteHelper(Context context, String schema, String name, SQLiteDatabase.CursorFactory factory) {
+        super(context, name, factory, DATABASE_VERSION);
         this.schema = schema;
     }
 
@@ -45,12 +56,32 @@ class SQLiteHelper extends SQLiteOpenHelper {
     @Override
     public void onConfigure(SQLiteDatabase db) {
         db.setForeignKeyConstraintsEnabled(false);
+        // lets the library be read from other threads while it is being indexed
+        db.enableWriteAheadLogging();
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         // TRICKY: if this is used to manage upgrades care must be taken to ensure the correct DATABASE_VERSION
         // is set in the db that is packaged with an android app. Otherwise the packaged db may get overwritten.
+        // Upgrades must therefore only add to the db without touching the indexed content.
+        if(oldVersion < 2) {
+            createIndexes(db);
+        }
+    }
+
+    /**
+     * Creates any indexes in the schema that are missing from the db
+     * @param db
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        for (String query : schema.split(";")) {
+            query = query.trim();
+            int start = query.indexOf("CREATE INDEX ");
+            if(start >= 0) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS " + query.substring(start + "CREATE INDEX ".length()));
+            }
+        }
     }
 
     @Override
@@ -31,6 +31,9 @@ public abstract class Request {
     private String responseMessage = null;
     private int ttl = 0;
     private OnProgressListener progressListener = null;
+    private ResponseCache responseCache = null;
+    private ResponseCache.Entry cachedResponse = null;
+    private boolean notModified = false;
 
     /**
      * Prepare a new network request
@@ -68,6 +71,24 @@ public abstract class Request {
         this.progressListener = listener;
     }
 
+    /**
+     * Sets the cache used to make conditional GET requests.
+     * When the server reports the resource has not been modified the cached response is used.
+     * @param cache the response cache
+     */
+    public void setResponseCache(ResponseCache cache) {
+        this.responseCache = cache;
+    }
+
+    /**
+     * Checks if the server reported the resource has not changed since it was cached.
+     * In this case the response was read from the cache.
+     * @return true if the response was not modified
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
     /**
      * Sets the credentials used for authenticating the report
      * Basic authentication.
@@ -125,6 +146,19 @@ public abstract class Request {
             conn.setRequestProperty("Content-Type", contentType);
         }
         conn.setRequestMethod(requestMethod);
+        notModified = false;
+        cachedResponse = null;
+        if(responseCache != null && requestMethod.equals("GET")) {
+            cachedResponse = responseCache.get(url.toString());
+            if(cachedResponse != null) {
+                if(cachedResponse.etag != null) {
+                    conn.setRequestProperty("If-None-Match", cachedResponse.etag);
+                }
+                if(cachedResponse.lastModified != null) {
+                    conn.setRequestProperty("If-Modified-Since", cachedResponse.lastModified);
+                }
+            }
+        }
         conn.setConnectTimeout(ttl);
         conn.setReadTimeout(ttl);
 
@@ -163,6 +197,11 @@ public abstract class Request {
     public final void download(File destination) throws IOException {
         HttpURLConnection connection = openConnection();
 
+        if(isCachedResponseValid(connection)) {
+            connection.disconnect();
+            cachedResponse.copyTo(destination);
+            return;
+        }
         if (connection.getResponseCode() != 200) {
             throw new IOException(connection.getResponseMessage());
         }
@@ -204,6 +243,11 @@ public abstract class Request {
         if(in != null) in.close();
         out.close();
         connection.disconnect();
+
+        if(responseCache != null) {
+            responseCache.put(url.toString(), connection.getHeaderField("ETag"),
+                    connection.getHeaderField("Last-Modified"), destination);
+        }
     }
 
     /**
@@ -214,6 +258,11 @@ public abstract class Request {
     public final String read() throws IOException {
         HttpURLConnection connection = openConnection();
 
+        if(isCachedResponseValid(connection)) {
+            connection.disconnect();
+            return cachedResponse.read();
+        }
+
         // Perhaps we should not check for response code here
         // Because we don't have it yet
 //        if (connection.getResponseCode() != 200) {
@@ -248,9 +297,27 @@ public abstract class Request {
             connection.disconnect();
         }
 
+        if(responseCache != null && connection.getResponseCode() == 200) {
+            responseCache.put(url.toString(), connection.getHeaderField("ETag"),
+                    connection.getHeaderField("Last-Modified"), out.toByteArray());
+        }
         return out.toString("UTF-8");
     }
 
+    /**
+     * Checks if the server validated the cached response
+     * @param connection
+     * @return true if the cached response should be used
+     * @throws IOException
+     */
+    private boolean isCachedResponseValid(HttpURLConnection connection) throws IOException {
+        if(cachedResponse != null && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            notModified = true;
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Sends notifications to the progress listener
      * @param totalBytes the total size of the payload
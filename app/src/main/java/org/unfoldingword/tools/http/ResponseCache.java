@@ -0,0 +1,230 @@
+package org.unfoldingword.tools.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * A disk cache of GET responses that can be revalidated with the server.
+ *
+ * Only responses that include an ETag or Last-Modified header are stored.
+ * Requests using this cache send the stored validators and receive the cached body when
+ * the server answers with 304 Not Modified.
+ */
+public class ResponseCache {
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+    private static final String KEY_URL = "url";
+
+    private final File dir;
+
+    /**
+     * @param dir the directory where the responses will be stored
+     */
+    public ResponseCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the cached response for a url
+     * @param url
+     * @return null if the url has not been cached
+     */
+    public synchronized Entry get(String url) {
+        String key = keyOf(url);
+        File metaFile = new File(dir, key + ".meta");
+        File bodyFile = new File(dir, key + ".body");
+        if(!metaFile.isFile() || !bodyFile.isFile()) return null;
+
+        Properties meta = new Properties();
+        try (InputStream in = new FileInputStream(metaFile)) {
+            meta.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        // guard against hash collisions
+        if(!url.equals(meta.getProperty(KEY_URL))) return null;
+        String etag = meta.getProperty(ETAG);
+        String lastModified = meta.getProperty(LAST_MODIFIED);
+        if(etag == null && lastModified == null) return null;
+        return new Entry(etag, lastModified, bodyFile);
+    }
+
+    /**
+     * Stores a response
+     * @param url
+     * @param etag the ETag header of the response
+     * @param lastModified the Last-Modified header of the response
+     * @param body the response body
+     */
+    public synchronized void put(String url, String etag, String lastModified, byte[] body) {
+        if(etag == null && lastModified == null) {
+            remove(url);
+            return;
+        }
+        String key = keyOf(url);
+        File bodyFile = new File(dir, key + ".body");
+        File tempFile = new File(dir, key + ".body.tmp");
+        dir.mkdirs();
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            out.write(body);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tempFile.delete();
+            return;
+        }
+        put(url, etag, lastModified, tempFile, bodyFile);
+    }
+
+    /**
+     * Stores a response that has been downloaded to a file
+     * @param url
+     * @param etag the ETag header of the response
+     * @param lastModified the Last-Modified header of the response
+     * @param body the downloaded response. This file is copied into the cache.
+     */
+    public synchronized void put(String url, String etag, String lastModified, File body) {
+        if(etag == null && lastModified == null) {
+            remove(url);
+            return;
+        }
+        String key = keyOf(url);
+        File bodyFile = new File(dir, key + ".body");
+        File tempFile = new File(dir, key + ".body.tmp");
+        dir.mkdirs();
+        try {
+            copy(body, tempFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tempFile.delete();
+            return;
+        }
+        put(url, etag, lastModified, tempFile, bodyFile);
+    }
+
+    /**
+     * Removes a response from the cache
+     * @param url
+     */
+    public synchronized void remove(String url) {
+        String key = keyOf(url);
+        new File(dir, key + ".meta").delete();
+        new File(dir, key + ".body").delete();
+    }
+
+    /**
+     * Removes all of the cached responses
+     */
+    public synchronized void clear() {
+        File[] files = dir.listFiles();
+        if(files == null) return;
+        for(File f:files) {
+            f.delete();
+        }
+    }
+
+    private void put(String url, String etag, String lastModified, File tempBody, File bodyFile) {
+        File metaFile = new File(dir, keyOf(url) + ".meta");
+        // TRICKY: remove the validators first so a partial write is never revalidated
+        metaFile.delete();
+        if(!tempBody.renameTo(bodyFile)) {
+            bodyFile.delete();
+            if(!tempBody.renameTo(bodyFile)) {
+                tempBody.delete();
+                return;
+            }
+        }
+
+        Properties meta = new Properties();
+        meta.setProperty(KEY_URL, url);
+        if(etag != null) meta.setProperty(ETAG, etag);
+        if(lastModified != null) meta.setProperty(LAST_MODIFIED, lastModified);
+        File tempMeta = new File(dir, metaFile.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempMeta)) {
+            meta.store(out, null);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tempMeta.delete();
+            return;
+        }
+        if(!tempMeta.renameTo(metaFile)) tempMeta.delete();
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        try (InputStream in = new FileInputStream(from);
+             OutputStream out = new FileOutputStream(to)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Generates a file name for a url
+     * @param url
+     * @return
+     */
+    static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for(byte b:hash) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    /**
+     * A cached response
+     */
+    public static class Entry {
+        public final String etag;
+        public final String lastModified;
+        public final File body;
+
+        Entry(String etag, String lastModified, File body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        /**
+         * Copies the cached body to a file
+         * @param destination
+         * @throws IOException
+         */
+        public void copyTo(File destination) throws IOException {
+            if(destination.getParentFile() != null) destination.getParentFile().mkdirs();
+            copy(body, destination);
+        }
+
+        /**
+         * Reads the cached body
+         * @return
+         * @throws IOException
+         */
+        public String read() throws IOException {
+            byte[] bytes = new byte[(int) body.length()];
+            try (InputStream in = new FileInputStream(body)) {
+                int offset = 0;
+                int n;
+                while(offset < bytes.length && (n = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                    offset += n;
+                }
+            }
+            return new String(bytes, "UTF-8");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.door43.translationstudio.rendering;
+
+import android.content.Context;
+
+import com.door43.translationstudio.ui.spannables.USFMChar;
+import com.door43.translationstudio.ui.spannables.USFMNoteSpan;
+import com.door43.translationstudio.ui.spannables.USFMParagraphSpan;
+import com.door43.translationstudio.ui.spannables.USFMVerseSpan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The original multi-pass regular expression pipeline of {@link USFMRenderer}, kept as a
+ * reference for the text produced by the single pass renderer.
+ * Each pass rebuilds the whole text, but only the characters are produced (no spans).
+ *
+ * NOTE: the original note pass collapsed the line breaks of the entire chunk rather than
+ * just those within the notes, which dropped every paragraph, blank line and poetic line break.
+ * Here line breaks are only collapsed within the notes.
+ */
+public class LegacyUSFMRenderer {
+
+    private final Context mContext;
+    private boolean mRenderLinebreaks = false;
+    private boolean mRenderParagraphs = true;
+    private boolean mRenderVerses = true;
+    private boolean mSuppressLeadingMajorSectionHeadings = false;
+    private int[] mExpectedVerseRange = new int[0];
+
+    /**
+     * @param context used to render verses and notes. May be null when neither are rendered.
+     */
+    public LegacyUSFMRenderer(Context context) {
+        mContext = context;
+    }
+
+    public void setVersesEnabled(boolean enable) {
+        mRenderVerses = enable;
+    }
+
+    public void setLinebreaksEnabled(boolean enable) {
+        mRenderLinebreaks = enable;
+    }
+
+    public void setParagraphsEnabled(boolean enable) {
+        mRenderParagraphs = enable;
+    }
+
+    public void setPopulateVerseMarkers(int[] verseRange) {
+        mExpectedVerseRange = verseRange;
+    }
+
+    public void setSuppressLeadingMajorSectionHeadings(boolean suppress) {
+        mSuppressLeadingMajorSectionHeadings = suppress;
+    }
+
+    /**
+     * Renders the text of the USFM input
+     * @param in the raw input string
+     * @return
+     */
+    public String render(CharSequence in) {
+        String out = in.toString();
+
+        out = replace(out, Pattern.compile("(^\\s*|\\s*$)"), m -> "").replace("\r", "");
+        if(!mRenderLinebreaks) {
+            out = renderLineBreaks(out);
+        }
+        out = replace(out, Pattern.compile("\\\\c +\\d+ *", Pattern.DOTALL), m -> "");
+        out = replace(out, paraPattern("ms"), m -> {
+            if(mSuppressLeadingMajorSectionHeadings && m.start() == 0) {
+                return "";
+            }
+            return m.group(1).toUpperCase() + "\n";
+        });
+        out = replace(out, paraPattern("s"), m -> m.group(1) + "\n");
+        out = replace(out, Pattern.compile(USFMParagraphSpan.PATTERN, Pattern.DOTALL),
+                m -> mRenderParagraphs ? "\n" : m.group());
+        out = replace(out, paraPattern("p"), m -> (m.start() > 0 ? "\n" : "") + "    " + m.group(1) + "\n");
+        out = replace(out, Pattern.compile("<para\\s+style=\"b\"\\s*/>", Pattern.DOTALL), m -> "\n\n");
+        out = renderPoeticLine(out);
+        out = replace(out, paraPattern("qr"), m -> "\n" + m.group(1));
+        out = renderVerse(out);
+        out = replace(out, Pattern.compile(USFMNoteSpan.PATTERN), m -> {
+            String noteText = renderLineBreaks(m.group(2));
+            return USFMNoteSpan.parseNote(m.group(1), noteText).toCharSequence(mContext).toString();
+        });
+        out = replace(out, paraPattern("cl"), m -> m.group(1));
+        out = replace(out, USFMChar.getPattern(USFMChar.STYLE_SELAH), m -> "\n" + m.group(1));
+        return out;
+    }
+
+    private static String renderLineBreaks(String in) {
+        return replace(in, Pattern.compile("(\\s*\\n+\\s*)"), m -> " ");
+    }
+
+    private String renderPoeticLine(String in) {
+        return replace(in, paraPattern("q(\\d+)"), m -> {
+            int level = Integer.parseInt(m.group(1));
+            String padding = "";
+            for(int i = 0; i < level; i ++) {
+                padding += "    ";
+            }
+
+            // don't stack new lines
+            String leadingLineBreak = "";
+            String previous = in.substring(0, m.start()).replace(" ", "");
+            if(previous.lastIndexOf("\n") < previous.length() - 1) {
+                leadingLineBreak = "\n";
+            }
+            String trailingLineBreak = "";
+            String next = in.substring(m.end()).replace(" ", "");
+            if(next.indexOf("\n") > 0 && next.indexOf("<para") > 0) {
+                trailingLineBreak = "\n";
+            }
+            return leadingLineBreak + padding + m.group(2) + trailingLineBreak;
+        });
+    }
+
+    /**
+     * Renders only the verse markers
+     * @param in
+     * @return
+     */
+    public String renderVerse(String in) {
+        List<Integer> foundVerses = new ArrayList<>();
+        String out = replace(in, Pattern.compile(USFMVerseSpan.PATTERN), m -> {
+            if(!mRenderVerses) {
+                return m.group();
+            }
+            USFMVerseSpan verse = new USFMVerseSpan(m.group(1));
+            int start = verse.getStartVerseNumber();
+            int end = Math.max(start, verse.getEndVerseNumber());
+            for(int i = start; i <= end; i ++) {
+                if(!foundVerses.contains(i)) foundVerses.add(i);
+            }
+            return verse.toCharSequence(mContext).toString();
+        });
+        if(mRenderVerses && mExpectedVerseRange.length > 0) {
+            int first = mExpectedVerseRange[0];
+            int last = mExpectedVerseRange[mExpectedVerseRange.length - 1];
+            StringBuilder missing = new StringBuilder();
+            for(int i = first; i <= last; i ++) {
+                if(!foundVerses.contains(i)) {
+                    missing.append(new USFMVerseSpan(i).toCharSequence(mContext));
+                }
+            }
+            out = missing + out;
+        }
+        return out;
+    }
+
+    private static Pattern paraPattern(String style) {
+        return Pattern.compile("<para\\s+style=\"" + style + "\"\\s*>\\s*(((?!</para>).)*)</para>", Pattern.DOTALL);
+    }
+
+    private interface Replacement {
+        String replace(Matcher matcher);
+    }
+
+    /**
+     * Replaces every match of the pattern
+     * @param in
+     * @param pattern
+     * @param replacement
+     * @return
+     */
+    private static String replace(String in, Pattern pattern, Replacement replacement) {
+        StringBuilder out = new StringBuilder();
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while(matcher.find()) {
+            out.append(in, lastIndex, matcher.start());
+            out.append(replacement.replace(matcher));
+            lastIndex = matcher.end();
+        }
+        out.append(in, lastIndex, in.length());
+        return out.toString();
+    }
+}
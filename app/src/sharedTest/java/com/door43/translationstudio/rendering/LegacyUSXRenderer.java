@@ -0,0 +1,638 @@
+package com.door43.translationstudio.rendering;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.SpannableStringBuilder;
+import android.text.TextUtils;
+import android.text.style.AlignmentSpan;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.StyleSpan;
+import android.util.Pair;
+
+import com.door43.translationstudio.ui.spannables.Span;
+import com.door43.translationstudio.ui.spannables.USXChar;
+import com.door43.translationstudio.ui.spannables.USXNoteSpan;
+import com.door43.translationstudio.ui.spannables.USXVersePinSpan;
+import com.door43.translationstudio.ui.spannables.USXVerseSpan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The original multi-pass regular expression pipeline of {@link USXRenderer}, kept as a
+ * reference for the output of the single pass renderer.
+ * Each pass rebuilds the whole text with {@link TextUtils#concat(CharSequence...)}.
+ *
+ * NOTE: overlapping or unclosed markup was rendered in the order of the passes rather than the
+ * order of the input, so the single pass renderer only matches this for well formed markup.
+ */
+public class LegacyUSXRenderer {
+
+    private final Context context;
+    private Span.OnClickListener mNoteListener;
+    private Span.OnClickListener mVerseListener;
+    private boolean mRenderLinebreaks = false;
+    private boolean mRenderVerses = true;
+    private String mSearch;
+    private int mHighlightColor = 0;
+    private int[] mExpectedVerseRange = new int[0];
+    private boolean mSuppressLeadingMajorSectionHeadings = false;
+    private boolean mAddedMissingVerse = false;
+
+    /**
+     * @param context used to render verses and notes
+     */
+    public LegacyUSXRenderer(Context context) {
+        this.context = context;
+    }
+
+    public LegacyUSXRenderer(
+            Context context,
+            Span.OnClickListener verseListener,
+            Span.OnClickListener noteListener
+    ) {
+        this.context = context;
+        mVerseListener = verseListener;
+        mNoteListener = noteListener;
+    }
+
+    public void setVersesEnabled(boolean enable) {
+        mRenderVerses = enable;
+    }
+
+    public void setLinebreaksEnabled(boolean enable) {
+        mRenderLinebreaks = enable;
+    }
+
+    public void setSearchString(CharSequence searchString, int highlightColor) {
+        mHighlightColor = highlightColor;
+        if((searchString != null) && (searchString.length() > 0) ) {
+            mSearch = searchString.toString().toLowerCase();
+        } else {
+            mSearch = null;
+        }
+    }
+
+    public void setPopulateVerseMarkers(int[] verseRange) {
+        mExpectedVerseRange = verseRange;
+    }
+
+    public void setSuppressLeadingMajorSectionHeadings(boolean suppress) {
+        mSuppressLeadingMajorSectionHeadings = suppress;
+    }
+
+    public boolean isAddedMissingVerse() {
+        return mAddedMissingVerse;
+    }
+
+    /**
+     * Renders the usx input into a readable form
+     * @param in the raw input string
+     * @return
+     */
+    public CharSequence render(CharSequence in) {
+        CharSequence out = in;
+
+        out = trimWhitespace(out);
+        if(!mRenderLinebreaks) {
+            out = renderLineBreaks(out);  // TODO: Eventually we may want to convert these to paragraphs.
+        }
+        out = renderMajorSectionHeading(out);
+        out = renderSectionHeading(out);
+        out = renderParagraph(out);
+        out = renderBlankLine(out);
+        out = renderPoeticLine(out);
+        out = renderRightAlignedPoeticLine(out);
+        out = renderVerse(out);
+        out = renderHighlightSearch(out);
+        out = renderNote(out);
+        out = renderChapterLabel(out);
+        out = renderSelah(out);
+        out = renderBrokenMarkers(out);
+        out = renderCharTags(out);
+
+        return out;
+    }
+
+    /**
+     * Renders all the Selah tags
+     * @param in
+     * @return
+     */
+    private CharSequence renderSelah(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = USXChar.getPattern(USXChar.STYLE_SELAH);
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while(matcher.find()) {
+            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
+            span.setSpan(new StyleSpan(Typeface.ITALIC), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n", span);
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Strips out new lines and replaces them with a single space
+     * @param in
+     * @return
+     */
+    private CharSequence trimWhitespace(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = Pattern.compile("(^\\s*|\\s*$)");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while(matcher.find()) {
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "");
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders section headings.
+     * @param in
+     * @return
+     */
+    private CharSequence renderSectionHeading(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = paraPattern("s");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+
+        while(matcher.find()) {
+            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
+            span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), span, "\n");
+            lastIndex = matcher.end();
+        }
+
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders highlights search string.
+     * @param in
+     * @return
+     */
+    private CharSequence renderHighlightSearch(CharSequence in) {
+        if(mSearch == null) {
+            return in;
+        }
+
+        CharSequence out = "";
+        String lowerCaseText = in.toString().toLowerCase();
+        int lastIndex = 0;
+
+        while(lastIndex < in.length()) {
+
+            int pos = lowerCaseText.indexOf(mSearch, lastIndex);
+            if(pos < 0) {
+                break;
+            }
+
+            SpannableStringBuilder span = new SpannableStringBuilder(in.subSequence(pos, pos + mSearch.length()));
+            span.setSpan(new BackgroundColorSpan(mHighlightColor), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+            out = TextUtils.concat(out, in.subSequence(lastIndex, pos), span);
+
+            lastIndex = pos + mSearch.length();
+        }
+
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders major section headings.
+     * @param in
+     * @return
+     */
+    private CharSequence renderMajorSectionHeading(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = paraPattern("ms");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+
+        while(matcher.find()) {
+
+            if (mSuppressLeadingMajorSectionHeadings && 0 == matcher.start()) {
+                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
+            } else {
+                SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1).toUpperCase());
+                span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), span, "\n");
+            }
+            lastIndex = matcher.end();
+        }
+
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Strips out new lines and replaces them with a single space
+     * @param in
+     * @return
+     */
+    private CharSequence renderLineBreaks(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = Pattern.compile("(\\s*\\n+\\s*)");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while(matcher.find()) {
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), " ");
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders all note tags
+     * @param in
+     * @return
+     */
+    private CharSequence renderNote(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = Pattern.compile(USXNoteSpan.PATTERN);
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while(matcher.find()) {
+            String noteText = matcher.group();
+            USXNoteSpan note = USXNoteSpan.parseNote(noteText);
+            if(note != null) {
+                note.setOnClickListener(mNoteListener);
+                if(mSearch != null) {
+                    boolean foundSearch = noteText.toLowerCase().contains(mSearch);
+                    note.setHighlight(foundSearch);
+                }
+                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), note.toCharSequence(context));
+            } else {
+                // failed to parse the note
+                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.end()));
+            }
+
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders all verse tags
+     * @param in
+     * @return
+     */
+    private CharSequence renderVerse(CharSequence in) {
+        mAddedMissingVerse = false;
+        CharSequence out = "";
+
+        CharSequence insert = "";
+
+        Pattern pattern = Pattern.compile(USXVerseSpan.PATTERN);
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        List<Integer> foundVerses = new ArrayList<>();
+        while(matcher.find()) {
+            if(mRenderVerses) {
+                Span verse;
+                if(mVerseListener == null) {
+                    verse = new USXVerseSpan(matcher.group(1));
+                } else {
+                    verse = new USXVersePinSpan(matcher.group(1));
+                }
+
+                if (verse != null) {
+                    // record found verses
+                    int startVerse = ((USXVerseSpan)verse).getStartVerseNumber();
+                    int endVerse = ((USXVerseSpan)verse).getEndVerseNumber();
+                    boolean alreadyRendered = false;
+                    if(endVerse > startVerse) {
+                        // range of verses
+                        for(int i = startVerse; i <= endVerse; i ++) {
+                            if(!foundVerses.contains(i)) {
+                                foundVerses.add(i);
+                            } else {
+                                alreadyRendered = true;
+                            }
+                        }
+                    } else {
+                        if(!foundVerses.contains(startVerse)) {
+                            foundVerses.add(startVerse);
+                        } else {
+                            alreadyRendered = true;
+                        }
+                    }
+                    // render verses not already found
+                    if(!alreadyRendered) {
+                        // exclude verses not within the range
+                        boolean invalidVerse = false;
+                        if(mExpectedVerseRange.length > 0) {
+                            int minVerse = mExpectedVerseRange[0];
+                            int maxVerse = (mExpectedVerseRange.length > 1) ? mExpectedVerseRange[1] : 0;
+                            if(maxVerse == 0) maxVerse = minVerse;
+
+                            int verseNumStart = ((USXVerseSpan) verse).getStartVerseNumber();
+                            int verseNumEnd = ((USXVerseSpan) verse).getEndVerseNumber();
+                            if(verseNumEnd == 0) verseNumEnd = verseNumStart;
+                            invalidVerse = verseNumStart < minVerse || verseNumStart > maxVerse || verseNumEnd < minVerse || verseNumEnd > maxVerse;
+                        }
+                        if(!invalidVerse) {
+                            verse.setOnClickListener(mVerseListener);
+                            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), insert, verse.toCharSequence(context));
+                        } else {
+                            // exclude invalid verse
+                            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
+                        }
+                    } else {
+                        // exclude duplicate verse
+                        out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
+                    }
+                } else {
+                    // failed to parse the verse
+                    out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.end()));
+                }
+            } else {
+                // exclude verse from display
+                out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
+            }
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+
+        if(mRenderVerses) {
+            // populate missing verses
+            if (mExpectedVerseRange.length == 1) {
+                if (!foundVerses.contains(mExpectedVerseRange[0])) {
+                    // generate missing verse
+                    Span verse;
+                    if (mVerseListener == null) {
+                        verse = new USXVerseSpan(mExpectedVerseRange[0]);
+                    } else {
+                        verse = new USXVersePinSpan(mExpectedVerseRange[0]);
+                    }
+                    verse.setOnClickListener(mVerseListener);
+                    out = TextUtils.concat(verse.toCharSequence(context), out);
+                    mAddedMissingVerse = true;
+                }
+            } else if (mExpectedVerseRange.length == 2) {
+                for (int i = mExpectedVerseRange[1]; i >= mExpectedVerseRange[0]; i--) {
+                    if (!foundVerses.contains(i)) {
+                        // generate missing verse
+                        Span verse;
+                        if (mVerseListener == null) {
+                            verse = new USXVerseSpan(i);
+                        } else {
+                            verse = new USXVersePinSpan(i);
+                        }
+                        verse.setOnClickListener(mVerseListener);
+                        out = TextUtils.concat(verse.toCharSequence(context), out);
+                        mAddedMissingVerse = true;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Renders all paragraph tags
+     * @param in
+     * @return
+     */
+    private CharSequence renderBrokenMarkers(CharSequence in) {
+        CharSequence out = "";
+        out = removePattern( in, USXRenderer.beginParagraphPattern);
+        out = removePattern( out, USXRenderer.endParagraphPattern);
+        return out;
+    }
+
+    /**
+     * Renders all paragraph tags
+     * @param in
+     * @return
+     */
+    private CharSequence removePattern(CharSequence in, Pattern pattern) {
+        Matcher matcher = pattern.matcher(in);
+        CharSequence out = "";
+        int lastIndex = 0;
+        while(matcher.find()) {
+
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()));
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders all paragraph tags
+     * @param in
+     * @return
+     */
+    private CharSequence renderParagraph(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = paraPattern("p");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while(matcher.find()) {
+            String lineBreak = "";
+            if(matcher.start() > 0) {
+                lineBreak = "\n";
+            }
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), lineBreak, "    ", in.subSequence(matcher.start(1), matcher.end(1)), "\n");
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders all blank line tags
+     * @param in
+     * @return
+     */
+    private CharSequence renderBlankLine(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = paraShortPattern("b");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while(matcher.find()) {
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n\n");
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders a chapter label
+     * @param in
+     * @return
+     */
+    private CharSequence renderChapterLabel(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = paraPattern("cl");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while (matcher.find()) {
+
+            SpannableString span = new SpannableString(in.subSequence(matcher.start(1), matcher.end(1)));
+            span.setSpan(new StyleSpan(Typeface.BOLD), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+            out = TextUtils.concat(out,  in.subSequence(lastIndex, matcher.start()), span);
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders all poetic line tags
+     * @param in
+     * @return
+     */
+    private CharSequence renderPoeticLine(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = paraPattern("q(\\d+)");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+        while(matcher.find()) {
+            int level = Integer.parseInt(matcher.group(1));
+            SpannableString span = new SpannableString(in.subSequence(matcher.start(2), matcher.end(2)));
+            span.setSpan(new StyleSpan(Typeface.NORMAL), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            String padding = "";
+            for(int i = 0; i < level; i ++) {
+                padding += "    ";
+            }
+
+            // outdent for verse markers
+            if (level > 0 && span.toString().indexOf("<verse number") == 0) {
+                padding = padding.substring(0, padding.length() - 2);
+            }
+
+            // don't stack new lines
+            String leadingLineBreak = "";
+            String trailingLineBreak = "";
+
+            // leading
+            if(in.subSequence(0, matcher.start()) != null) {
+                String previous = in.subSequence(0, matcher.start()).toString().replace(" ", "");
+                int lastLineBreak = previous.lastIndexOf("\n");
+                if (lastLineBreak < previous.length() - 1) {
+                    leadingLineBreak = "\n";
+                }
+            }
+
+            // trailing
+            if(in.subSequence(matcher.end(), in.length()) != null) {
+                String next = in.subSequence(matcher.end(), in.length()).toString().replace(" ", "");
+                int nextLineBreak = next.indexOf("\n");
+                int nextParagraph = next.indexOf("<para");
+                if (nextLineBreak > 0 && nextParagraph > 0) {
+                    trailingLineBreak = "\n";
+                }
+            }
+
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), leadingLineBreak, padding, span, trailingLineBreak);
+            lastIndex = matcher.end();
+        }
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    /**
+     * Renders all right-aligned poetic line tags
+     * @param in
+     * @return
+     */
+    private CharSequence renderRightAlignedPoeticLine(CharSequence in) {
+        CharSequence out = "";
+        Pattern pattern = paraPattern("qr");
+        Matcher matcher = pattern.matcher(in);
+        int lastIndex = 0;
+
+        while(matcher.find()) {
+            SpannableStringBuilder span = new SpannableStringBuilder(matcher.group(1));
+            span.setSpan(new StyleSpan(Typeface.ITALIC), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            span.setSpan(new AlignmentSpan.Standard(Layout.Alignment.ALIGN_OPPOSITE), 0, span.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            out = TextUtils.concat(out, in.subSequence(lastIndex, matcher.start()), "\n", span);
+            lastIndex = matcher.end();
+        }
+
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+        return out;
+    }
+
+    private CharSequence renderCharTags(CharSequence in) {
+        CharSequence out = "";
+
+        // Find and cache note tag positions first
+        Pattern notePattern = Pattern.compile(USXNoteSpan.PATTERN);
+        Matcher noteMatcher = notePattern.matcher(in);
+        List<Pair<Integer, Integer>> notes = new ArrayList<>();
+
+        while(noteMatcher.find()) {
+            notes.add(Pair.create(noteMatcher.start(), noteMatcher.end()));
+        }
+
+        Pattern charPattern = Pattern.compile(USXChar.PATTERN);
+        Matcher charMatcher = charPattern.matcher(in);
+
+        int lastIndex = 0;
+        while(charMatcher.find()) {
+
+            // Check if this char is a note char, so we can ignore it and not process as a single char
+            if (isCharInNote(charMatcher.start(), charMatcher.end(), notes)) {
+                continue;
+            }
+
+            out = TextUtils.concat(out, in.subSequence(lastIndex, charMatcher.start()), charMatcher.group(USXChar.CHAR_TEXT_GROUP));
+            lastIndex = charMatcher.end();
+        }
+
+        out = TextUtils.concat(out, in.subSequence(lastIndex, in.length()));
+
+        return out;
+    }
+
+    private boolean isCharInNote(Integer start, Integer end, List<Pair<Integer, Integer>> notes) {
+        for (Pair<Integer, Integer> note: notes) {
+            if (start >= note.first && end <= note.second) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a pattern that matches a para tag pair e.g. <para style=""></para>
+     * @param style a string or regular expression to identify the style
+     * @return
+     */
+    private static Pattern paraPattern(String style) {
+        return Pattern.compile("<para\\s+style=\""+style+"\"\\s*>\\s*(((?!</para>).)*)</para>", Pattern.DOTALL);
+    }
+
+    /**
+     * Returns a pattern that matches a single para tag e.g. <para style=""/>
+     * @param style a string or regular expression to identify the style
+     * @return
+     */
+    private static Pattern paraShortPattern(String style) {
+        return Pattern.compile("<para\\s+style=\""+style+"\"\\s*/>", Pattern.DOTALL);
+    }
+}
@@ -0,0 +1,87 @@
+package com.door43.translationstudio.core;
+
+import com.door43.util.FileUtilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ChunkStoreTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("chunks").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ChunkStore.invalidate(dir);
+        FileUtilities.deleteQuietly(dir);
+    }
+
+    @Test
+    public void readsEachChunkOnce() throws Exception {
+        File file = write("01/01.txt", "\\v 1 In the beginning");
+        ChunkStore store = ChunkStore.get(dir);
+
+        assertEquals("\\v 1 In the beginning", store.read("01", "01", file));
+        assertEquals("\\v 1 In the beginning", store.read("01", "01", file));
+        assertNull(store.read("01", "02", new File(dir, "01/02.txt")));
+        assertNull(store.read("01", "02", new File(dir, "01/02.txt")));
+        assertEquals(1, store.getReadCount());
+        assertEquals(2, store.getHitCount());
+
+        // changes made outside of the store are not seen until it is invalidated
+        write("01/01.txt", "\\v 1 changed");
+        assertEquals("\\v 1 In the beginning", store.read("01", "01", file));
+        ChunkStore.invalidate(dir);
+        assertNotSame(store, ChunkStore.get(dir));
+        assertEquals("\\v 1 changed", ChunkStore.get(dir).read("01", "01", file));
+    }
+
+    @Test
+    public void savedTextReplacesChunk() throws Exception {
+        File file = write("02/title.txt", "Chapter 2");
+        ChunkStore store = ChunkStore.get(dir);
+        store.read("02", "title", file);
+
+        store.put("02", "title", "Chapter Two");
+        assertEquals("Chapter Two", store.read("02", "title", file));
+        store.put("02", "title", null);
+        assertNull(store.read("02", "title", file));
+        store.put("02", "01", "\\v 1 new");
+        assertEquals("\\v 1 new", store.read("02", "01", new File(dir, "02/01.txt")));
+        assertEquals(1, store.getReadCount());
+
+        store.resetStats();
+        assertEquals(0, store.getReadCount());
+        assertEquals(0, store.getHitCount());
+    }
+
+    @Test
+    public void keepsRecentStores() throws Exception {
+        ChunkStore store = ChunkStore.get(dir);
+        for(int i = 0; i < ChunkStore.MAX_STORES - 1; i ++) {
+            ChunkStore.get(new File(dir, "other" + i));
+        }
+        assertSame(store, ChunkStore.get(dir));
+        for(int i = 0; i < ChunkStore.MAX_STORES; i ++) {
+            ChunkStore.get(new File(dir, "other" + i));
+        }
+        assertNotSame(store, ChunkStore.get(dir));
+    }
+
+    private File write(String path, String contents) throws Exception {
+        File file = new File(dir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes("UTF-8"));
+        return file;
+    }
+}
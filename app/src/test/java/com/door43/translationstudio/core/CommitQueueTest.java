@@ -0,0 +1,73 @@
+package com.door43.translationstudio.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class CommitQueueTest {
+
+    @Test
+    public void coalesceWaitingCommits() throws Exception {
+        CommitQueue queue = CommitQueue.get(new File("coalesce-" + System.nanoTime()));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch results = new CountDownLatch(4);
+        TargetTranslation.OnCommitListener listener = new TargetTranslation.OnCommitListener() {
+            @Override
+            public void onCommit(boolean success) {
+                assertTrue(success);
+                results.countDown();
+            }
+        };
+        CommitQueue.Commit commit = new CommitQueue.Commit() {
+            @Override
+            public boolean run() throws Exception {
+                runs.incrementAndGet();
+                started.countDown();
+                release.await();
+                return true;
+            }
+        };
+
+        queue.enqueue(commit, listener);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // these arrive while the first commit is running and are merged together
+        queue.enqueue(commit, listener);
+        queue.enqueue(commit, listener);
+        queue.enqueue(commit, listener);
+        release.countDown();
+
+        assertTrue(results.await(5, TimeUnit.SECONDS));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void dirtyPaths() {
+        CommitQueue queue = CommitQueue.get(new File("dirty-" + System.nanoTime()));
+        queue.markDirty("01/01.txt");
+        queue.markDirty("01/02.txt");
+        queue.markDirty("01/01.txt");
+
+        Set<String> paths = queue.takeDirtyPaths();
+        assertEquals(2, paths.size());
+        assertTrue(queue.takeDirtyPaths().isEmpty());
+
+        queue.restoreDirtyPaths(paths);
+        assertEquals(paths, queue.takeDirtyPaths());
+        assertFalse(queue.isTracked());
+    }
+
+    @Test
+    public void sameQueuePerRepository() {
+        File dir = new File("repo-" + System.nanoTime());
+        assertSame(CommitQueue.get(dir), CommitQueue.get(new File(dir.getPath())));
+    }
+}
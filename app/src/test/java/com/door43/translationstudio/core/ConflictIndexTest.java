@@ -0,0 +1,129 @@
+package com.door43.translationstudio.core;
+
+import com.door43.util.FileUtilities;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ConflictIndexTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("conflicts").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        ConflictIndex.invalidate(dir);
+        FileUtilities.deleteQuietly(dir);
+    }
+
+    @Test
+    public void recordsMergedChunks() {
+        ConflictIndex index = ConflictIndex.get(dir);
+        assertFalse(index.isBuilt());
+        index.add(Collections.singletonList("01/01.txt"));
+        assertEquals(0, index.size());
+
+        index.build(Collections.<String>emptyList());
+        index.add(Arrays.asList("manifest.json", "LICENSE.md", "01/01.txt", "01/title.txt", "front/title.txt"));
+        assertEquals(3, index.size());
+        assertTrue(index.contains("01", "01"));
+        assertTrue(index.contains("front", "title"));
+        assertFalse(index.contains("01", "02"));
+        assertTrue(index.containsChapter("01"));
+        assertFalse(index.containsChapter("0"));
+        assertFalse(index.containsChapter("02"));
+    }
+
+    @Test
+    public void savedChunksAreResolved() {
+        ConflictIndex index = ConflictIndex.get(dir);
+        index.build(Arrays.asList("01/01.txt", "02/03.txt"));
+
+        index.update("01", "01", false);
+        index.update("02", "04", true);
+        assertEquals(Arrays.asList("02/03.txt", "02/04.txt"), Arrays.asList(index.getPaths().toArray()));
+
+        // the index is kept on the disk
+        assertSame(index, ConflictIndex.get(dir));
+        assertEquals("02/03.txt\n02/04.txt\n", read(new File(dir, ".git/conflicts")));
+
+        ConflictIndex.invalidate(dir);
+        assertFalse(new File(dir, ".git/conflicts").exists());
+        assertFalse(ConflictIndex.get(dir).isBuilt());
+    }
+
+    @Test
+    public void loadsSavedIndex() throws Exception {
+        File file = new File(dir, ".git/conflicts");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "01/05.txt\n".getBytes("UTF-8"));
+
+        ConflictIndex index = ConflictIndex.get(dir);
+        assertTrue(index.isBuilt());
+        assertTrue(index.contains("01", "05"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void fastForwardBringsInConflicts() throws Exception {
+        Git git = Git.init().setDirectory(dir).call();
+        write("01/01.txt", "\\v 1 In the beginning");
+        write("01/02.txt", "<<<<<<< HEAD\n\\v 2 old\n=======\n\\v 2 new\n>>>>>>> new\n");
+        commit(git, "first");
+        ConflictIndex index = ConflictIndex.get(dir);
+        index.build(Collections.singletonList("01/02.txt"));
+
+        // another device committed a chunk that still has conflicts and resolved one
+        git.checkout().setCreateBranch(true).setName("new").call();
+        write("01/01.txt", "<<<<<<< HEAD\n\\v 1 In the beginning\n=======\n\\v 1 At first\n>>>>>>> new\n");
+        write("01/02.txt", "\\v 2 resolved");
+        write("manifest.json", "<<<<<<< HEAD");
+        commit(git, "second");
+        git.checkout().setName("master").call();
+
+        ObjectId oldHead = git.getRepository().resolve("HEAD");
+        MergeResult result = git.merge().include(git.getRepository().getRef("new")).call();
+        assertEquals(MergeResult.MergeStatus.FAST_FORWARD, result.getMergeStatus());
+        assertTrue(result.getConflicts() == null || result.getConflicts().isEmpty());
+
+        for(ObjectId commit:result.getMergedCommits()) {
+            index.updateChanged(git.getRepository(), oldHead, commit);
+        }
+        assertEquals(Collections.singleton("01/01.txt"), index.getPaths());
+        git.getRepository().close();
+    }
+
+    private void commit(Git git, String message) throws Exception {
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage(message).call();
+    }
+
+    private void write(String path, String contents) throws Exception {
+        File file = new File(dir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes("UTF-8"));
+    }
+
+    private static String read(File file) {
+        try {
+            return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.door43.translationstudio.core
+
+import io.mockk.every
+import io.mockk.just
+import io.mockk.mockk
+import io.mockk.mockkStatic
+import io.mockk.runs
+import io.mockk.unmockkAll
+import io.mockk.verify
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Test
+import org.unfoldingword.door43client.Door43Client
+import org.unfoldingword.door43client.PackedContainer
+import org.unfoldingword.resourcecontainer.ResourceContainer
+import org.unfoldingword.tools.logger.Logger
+
+class ContainerCacheTest {
+
+    private val library: Door43Client = mockk()
+
+    @Before
+    fun setup() {
+        mockkStatic(Logger::class)
+        every { Logger.w(any(), any(), any()) } just runs
+        ContainerCache.empty()
+        ContainerCache.resetStats()
+    }
+
+    @After
+    fun tearDown() {
+        ContainerCache.unpin("pinned")
+        ContainerCache.empty()
+        unmockkAll()
+    }
+
+    @Test
+    fun concurrentRequestsOpenOnce() {
+        val rc: ResourceContainer = mockk()
+        every { library.open("en_mrk_ulb") } answers {
+            Thread.sleep(200)
+            rc
+        }
+
+        val results = arrayOfNulls<ResourceContainer>(4)
+        val threads = (0 until 4).map { i ->
+            Thread { results[i] = ContainerCache.cache(library, "en_mrk_ulb") }
+        }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+
+        verify(exactly = 1) { library.open("en_mrk_ulb") }
+        results.forEach { assertSame(rc, it) }
+        assertSame(rc, ContainerCache.get("en_mrk_ulb"))
+        assertEquals(1, ContainerCache.getStats().loads)
+    }
+
+    @Test
+    fun failedOpenIsNotRetriedUntilRemoved() {
+        every { library.open("en_mrk_tn") } throws Exception("missing")
+
+        assertNull(ContainerCache.cache(library, "en_mrk_tn"))
+        assertNull(ContainerCache.cache(library, "en_mrk_tn"))
+        verify(exactly = 1) { library.open("en_mrk_tn") }
+
+        ContainerCache.remove("en_mrk_tn")
+        assertNull(ContainerCache.cache(library, "en_mrk_tn"))
+        verify(exactly = 2) { library.open("en_mrk_tn") }
+    }
+
+    @Test
+    fun pinnedContainersAreNotEvicted() {
+        every { library.open(any()) } answers { mockk<ResourceContainer>() }
+
+        ContainerCache.pin("pinned")
+        ContainerCache.cache(library, "pinned")
+        for (i in 0..ContainerCache.MAX_CONTAINERS) {
+            ContainerCache.cache(library, "rc$i")
+        }
+
+        assertNotNull(ContainerCache.get("pinned"))
+        assertNull(ContainerCache.get("rc0"))
+        assertNotNull(ContainerCache.get("rc1"))
+        assertEquals(1, ContainerCache.getStats().evictions)
+    }
+
+    @Test
+    fun pinnedPacksAreNotEvicted() {
+        every { library.openPacked(any()) } answers { mockk<PackedContainer>() }
+
+        ContainerCache.pin("pinned")
+        val pinned = ContainerCache.cachePacked(library, "pinned")
+        for (i in 0..ContainerCache.MAX_CONTAINERS) {
+            ContainerCache.cachePacked(library, "rc$i")
+        }
+
+        assertSame(pinned, ContainerCache.cachePacked(library, "pinned"))
+        verify(exactly = 1) { library.openPacked("pinned") }
+        ContainerCache.cachePacked(library, "rc0")
+        verify(exactly = 2) { library.openPacked("rc0") }
+    }
+
+    @Test
+    fun unpackedContainersAreReadAfterPacking() {
+        val packed: PackedContainer = mockk()
+        var isPacked = false
+        every { library.openPacked("en_mrk_ulb") } answers { if (isPacked) packed else null }
+        every { library.pack("en_mrk_ulb") } answers {
+            isPacked = true
+            true
+        }
+
+        // reading does not pack the container
+        assertNull(ContainerCache.cachePacked(library, "en_mrk_ulb"))
+        assertNull(ContainerCache.cachePacked(library, "en_mrk_ulb"))
+        verify(exactly = 1) { library.openPacked("en_mrk_ulb") }
+        verify(exactly = 0) { library.pack(any()) }
+
+        ContainerCache.pack(library, "en_mrk_ulb")
+        assertSame(packed, ContainerCache.cachePacked(library, "en_mrk_ulb"))
+        assertSame(packed, ContainerCache.cachePacked(library, "en_mrk_ulb"))
+        verify(exactly = 2) { library.openPacked("en_mrk_ulb") }
+    }
+}
@@ -0,0 +1,124 @@
+package com.door43.translationstudio.core;
+
+import com.door43.util.FileUtilities;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class FileHistoryIndexTest {
+
+    private File dir;
+    private Git git;
+    private long time = 1500000000000L;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("history").toFile();
+        git = Git.init().setDirectory(dir).call();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        git.getRepository().close();
+        FileUtilities.deleteQuietly(dir);
+    }
+
+    @Test
+    public void linearHistory() throws Exception {
+        commit("01/01.txt", "a");
+        commit("01/02.txt", "b");
+        RevCommit third = commit("01/01.txt", "c");
+
+        FileHistoryIndex index = FileHistoryIndex.get(dir);
+        FileHistoryIndex.Entry[] history = index.getHistory(git.getRepository(), "01/01.txt");
+        assertMatchesLog("01/01.txt", history);
+        assertEquals(third, history[0].commit);
+        assertEquals("c", read(history[0].blob));
+        assertEquals("a", read(history[1].blob));
+
+        // new commits are added to the existing index
+        commit("01/02.txt", "d");
+        delete("01/01.txt");
+        history = index.getHistory(git.getRepository(), "01/01.txt");
+        assertMatchesLog("01/01.txt", history);
+        assertNull(history[0].blob);
+        assertMatchesLog("01/02.txt", index.getHistory(git.getRepository(), "01/02.txt"));
+        assertEquals(0, index.getHistory(git.getRepository(), "missing.txt").length);
+    }
+
+    @Test
+    public void mergedHistory() throws Exception {
+        commit("01/01.txt", "a");
+        commit("01/02.txt", "b");
+        RevCommit base = commit("01/03.txt", "1\n2\n3\n4\n5\n");
+
+        git.branchCreate().setName("side").setStartPoint(base).call();
+        commit("01/01.txt", "main");
+        commit("01/03.txt", "one\n2\n3\n4\n5\n");
+        git.checkout().setName("side").call();
+        commit("01/02.txt", "side");
+        commit("01/03.txt", "1\n2\n3\n4\nfive\n");
+        commit("01/04.txt", "side");
+        git.checkout().setName("master").call();
+        // the merge takes 01/02.txt and 01/04.txt from the side branch and combines 01/03.txt
+        assertTrue(git.merge().include(git.getRepository().getRef("side"))
+                .setFastForward(MergeCommand.FastForwardMode.NO_FF).call().getMergeStatus().isSuccessful());
+        commit("01/02.txt", "after");
+
+        FileHistoryIndex index = FileHistoryIndex.get(dir);
+        for(String path:new String[]{"01/01.txt", "01/02.txt", "01/03.txt", "01/04.txt"}) {
+            assertMatchesLog(path, index.getHistory(git.getRepository(), path));
+        }
+    }
+
+    private void assertMatchesLog(String path, FileHistoryIndex.Entry[] history) throws Exception {
+        List<ObjectId> expected = new ArrayList<>();
+        for(RevCommit commit:git.log().addPath(path).call()) {
+            expected.add(commit.getId());
+        }
+        List<ObjectId> actual = new ArrayList<>();
+        for(FileHistoryIndex.Entry entry:history) {
+            actual.add(entry.commit.getId());
+        }
+        assertEquals(path, expected, actual);
+    }
+
+    private RevCommit commit(String path, String contents) throws Exception {
+        File file = new File(dir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes("UTF-8"));
+        git.add().addFilepattern(path).call();
+        return commit(path);
+    }
+
+    private RevCommit delete(String path) throws Exception {
+        git.rm().addFilepattern(path).call();
+        return commit(path);
+    }
+
+    private RevCommit commit(String message) throws Exception {
+        // TRICKY: commit times must increase for the log order to be stable
+        time += 1000;
+        PersonIdent author = new PersonIdent("test", "test@example.com", new Date(time), TimeZone.getDefault());
+        return git.commit().setMessage(message).setAuthor(author).setCommitter(author).call();
+    }
+
+    private String read(ObjectId blob) throws Exception {
+        return new String(git.getRepository().open(blob).getBytes(), "UTF-8");
+    }
+}
@@ -31,7 +31,9 @@ import org.json.JSONObject
 import org.junit.After
 import org.junit.Assert.assertFalse
 import org.junit.Before
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 import org.unfoldingword.door43client.Door43Client
 import org.unfoldingword.door43client.Index
 import org.unfoldingword.door43client.models.ChunkMarker
@@ -39,7 +41,11 @@ import org.unfoldingword.door43client.models.TargetLanguage
 import org.unfoldingword.door43client.models.Versification
 
 import java.io.File
+import java.io.FileOutputStream
 import java.io.InputStream
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 
 
 class ProcessUSFMTest {
@@ -60,6 +66,10 @@ class ProcessUSFMTest {
     @MockK private lateinit var mockFile: File
     @MockK private lateinit var mockUri: Uri
 
+    @JvmField
+    @Rule
+    var tempDir: TemporaryFolder = TemporaryFolder()
+
     @Before
     fun setUp() {
         MockKAnnotations.init(this)
@@ -382,6 +392,80 @@ class ProcessUSFMTest {
         verify { FileUtilities.readFileToString(mockFile) }
     }
 
+    @Test fun `test verse range within a chunk`() {
+        val (processUSFM, chunks) = importBook(
+            """
+            \c 1
+            \v 1 one
+            \v 2-3 two three
+            \v 4 four
+            \v 5 five
+            \v 6 six
+            \v 7 seven
+            """.trimIndent() + CHAPTER_2
+        )
+
+        assertEquals("\\v 1 one\n\\v 2-3 two three\n", chunks["01/01.txt"])
+        assertEquals("\\v 4 four\n\\v 5 five\n\\v 6 six\n", chunks["01/04.txt"])
+        assertFalse(processUSFM.resultsString.contains("in range 1 to 3 in chapter: 01"))
+        assertFalse(processUSFM.resultsString.contains("in range 4 to 6 in chapter: 01"))
+    }
+
+    @Test fun `test chunk starting in the middle of a verse range`() {
+        val (processUSFM, chunks) = importBook(
+            """
+            \c 1
+            \v 1 one
+            \v 2 two
+            \v 3-4 three four
+            \v 5 five
+            \v 6 six
+            \v 7 seven
+            """.trimIndent() + CHAPTER_2
+        )
+
+        // the range stays in the chunk it starts in
+        assertEquals("\\v 1 one\n\\v 2 two\n\\v 3-4 three four\n", chunks["01/01.txt"])
+        assertEquals("\\v 5 five\n\\v 6 six\n", chunks["01/04.txt"])
+        assertTrue(processUSFM.resultsString.contains("Warning Extra 1 verse(s) in range 1 to 3 in chapter: 01"))
+        assertTrue(processUSFM.resultsString.contains("Warning Missing 1 verse(s) in range 4 to 6 in chapter: 01"))
+    }
+
+    @Test fun `test chapter missing its first verse`() {
+        val (processUSFM, chunks) = importBook(
+            """
+            \c 1
+            \v 2 two
+            \v 3 three
+            \v 4 four
+            """.trimIndent() + CHAPTER_2
+        )
+
+        assertEquals("\\v 2 two\n\\v 3 three\n", chunks["01/01.txt"])
+        assertEquals("\\v 4 four\n", chunks["01/04.txt"])
+        assertTrue(processUSFM.resultsString.contains("Warning Missing 1 verse(s) in range 1 to 3 in chapter: 01"))
+    }
+
+    @Test fun `test CRLF line endings produce the same chunks`() {
+        val usfm = """
+            \c 1
+            \cl Chapter One
+            \v 1 one
+            \s5
+            \v 2 two
+            \v 3-4 three four
+            \v 5 five
+            """.trimIndent() + CHAPTER_2
+
+        val lf = importBook(usfm)
+        val crlf = importBook(usfm.replace("\n", "\r\n"))
+
+        assertEquals("\\v 1 one\n\\v 2 two\n\\v 3-4 three four\n", crlf.second["01/01.txt"])
+        assertEquals("Chapter One", crlf.second["01/title.txt"])
+        assertEquals(lf.second, crlf.second)
+        assertEquals(lf.first.resultsString, crlf.first.resultsString)
+    }
+
     @Test fun `test processing bad usfm file fails`() {
         every { mockFile.name }.returns("mrk.usfm")
         every { FileUtilities.readFileToString(mockFile) }.returns(
@@ -478,6 +562,96 @@ class ProcessUSFMTest {
         verify {resources.getString(R.string.missing_book_name) }
     }
 
+    @Test fun `test parallel zip import matches sequential import`() {
+        mockChunkMarkers()
+        TestUtils.setPropertyReflection(targetLanguage, "slug", "aa")
+
+        val zipFile = File(tempDir.root, "bible.zip")
+        ZipOutputStream(FileOutputStream(zipFile)).use { zip ->
+            // the last book replaces the first one because both are Mark
+            for ((name, resource) in listOf(
+                "01-mrk.usfm" to "mrk.usfm",
+                "02-bad.usfm" to "mrk-bad-file.usfm",
+                "03-mrk.usfm" to "mrk-missing-verse.usfm"
+            )) {
+                zip.putNextEntry(ZipEntry("bible/$name"))
+                zip.write(TestUtils.getResource(resource)!!.readBytes())
+                zip.closeEntry()
+            }
+        }
+
+        val sequential = importZip(zipFile, 1)
+        val parallel = importZip(zipFile, 3)
+
+        assertEquals(sequential.first.isProcessSuccess, parallel.first.isProcessSuccess)
+        assertEquals(sequential.first.resultsString, parallel.first.resultsString)
+        assertEquals(
+            sequential.first.importProjects.map { it.name },
+            parallel.first.importProjects.map { it.name }
+        )
+        assertEquals(
+            sequential.first.booksMissingNames.map { it.description },
+            parallel.first.booksMissingNames.map { it.description }
+        )
+        assertTrue(sequential.second.isNotEmpty())
+        assertEquals(sequential.second, parallel.second)
+        verify { progressListener.onProgress(any(), any(), any()) }
+    }
+
+    /**
+     * imports a zip file and records the chunk files that were written
+     */
+    private fun importZip(zipFile: File, threads: Int): Pair<ProcessUSFM, Map<String, String>> {
+        val writes = ConcurrentHashMap<String, String>()
+        every { directoryProvider.cacheDir } returns tempDir.newFolder()
+        every { FileUtilities.writeStringToFile(any(), any()) } answers {
+            writes[firstArg<File>().path.substringAfter("output")] = secondArg()
+        }
+
+        val processUSFM = ProcessUSFM.Builder(
+            context,
+            directoryProvider,
+            profile,
+            library,
+            assetsProvider
+        )
+            .setParallelism(threads)
+            .fromFile(targetLanguage, zipFile, progressListener)
+            .build()
+
+        requireNotNull(processUSFM)
+        return processUSFM to HashMap(writes)
+    }
+
+    /**
+     * imports the chapters of a book and records the chunk files that were written
+     * by chapter folder and file name
+     */
+    private fun importBook(chapters: String): Pair<ProcessUSFM, Map<String, String>> {
+        val writes = HashMap<String, String>()
+        every { mockFile.name }.returns("mrk.usfm")
+        every { FileUtilities.readFileToString(mockFile) }.returns(BOOK_HEADER + chapters)
+        every { FileUtilities.writeStringToFile(any(), any()) } answers {
+            val file = firstArg<File>()
+            writes["${file.parentFile?.name}/${file.name}"] = secondArg()
+        }
+        mockChunkMarkers()
+        TestUtils.setPropertyReflection(targetLanguage, "slug", "aa")
+
+        val processUSFM = ProcessUSFM.Builder(
+            context,
+            directoryProvider,
+            profile,
+            library,
+            assetsProvider
+        )
+            .fromFile(targetLanguage, mockFile, progressListener)
+            .build()
+
+        requireNotNull(processUSFM)
+        return processUSFM to writes
+    }
+
     @Test fun `test cleanup temp directory`() {
         val processUSFM = ProcessUSFM.Builder(
             context,
@@ -636,4 +810,9 @@ class ProcessUSFMTest {
         verify { FileUtilities.writeStringToFile(any(), any()) }
         verify { profile.nativeSpeaker }
     }
+
+    companion object {
+        private const val BOOK_HEADER = "\\id MRK\n\\toc1 Mark\n"
+        private const val CHAPTER_2 = "\n\\c 2\n\\v 1 a\n\\v 5 b\n\\v 9 c\n"
+    }
 }
@@ -0,0 +1,116 @@
+package com.door43.translationstudio.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+
+public class TargetTranslationCatalogTest {
+
+    private File dir;
+    private File translationDir;
+    private File catalogFile;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("catalog").toFile();
+        translationDir = new File(dir, "aa_mrk_text_ulb");
+        catalogFile = new File(dir, "target_translations.catalog");
+        write(new File(translationDir, "manifest.json"), "{}");
+        write(new File(translationDir, ".git/HEAD"), "ref: refs/heads/master\n");
+        write(new File(translationDir, ".git/refs/heads/master"), "1111111111111111111111111111111111111111\n");
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void saveAndLoad() {
+        TargetTranslationCatalog catalog = new TargetTranslationCatalog(catalogFile);
+        catalog.put(entry("en_mrk_ulb", 3, 12));
+        catalog.save();
+
+        TargetTranslationCatalog loaded = new TargetTranslationCatalog(catalogFile);
+        TargetTranslationCatalog.Entry entry = loaded.get(translationDir, "en_mrk_ulb");
+        assertNotNull(entry);
+        assertEquals("aa", entry.targetLanguageId);
+        assertEquals("mrk", entry.projectId);
+        assertEquals(3, entry.finishedChunks);
+        assertEquals(0.25, entry.getProgress(), 0.0);
+    }
+
+    @Test
+    public void invalidatedByManifest() {
+        TargetTranslationCatalog catalog = new TargetTranslationCatalog(catalogFile);
+        catalog.put(entry("en_mrk_ulb", 3, 12));
+
+        assertTrue(new File(translationDir, "manifest.json").setLastModified(1000));
+        assertNull(catalog.get(translationDir, "en_mrk_ulb"));
+    }
+
+    @Test
+    public void invalidatedByCommit() throws Exception {
+        TargetTranslationCatalog catalog = new TargetTranslationCatalog(catalogFile);
+        catalog.put(entry("en_mrk_ulb", 3, 12));
+
+        write(new File(translationDir, ".git/refs/heads/master"), "2222222222222222222222222222222222222222\n");
+        assertNull(catalog.get(translationDir, "en_mrk_ulb"));
+    }
+
+    @Test
+    public void invalidatedBySourceTranslation() {
+        TargetTranslationCatalog catalog = new TargetTranslationCatalog(catalogFile);
+        catalog.put(entry("en_mrk_ulb", 3, 12));
+
+        assertNull(catalog.get(translationDir, "id_mrk_ayt"));
+        assertNull(catalog.get(translationDir, null));
+    }
+
+    @Test
+    public void readPackedHead() throws Exception {
+        new File(translationDir, ".git/refs/heads/master").delete();
+        write(new File(translationDir, ".git/packed-refs"),
+                "# pack-refs with: peeled fully-peeled\n3333333333333333333333333333333333333333 refs/heads/master\n");
+
+        assertEquals("3333333333333333333333333333333333333333", TargetTranslationCatalog.readHead(translationDir));
+    }
+
+    @Test
+    public void corruptCatalogIsIgnored() throws Exception {
+        write(catalogFile, "not a catalog");
+
+        TargetTranslationCatalog catalog = new TargetTranslationCatalog(catalogFile);
+        assertTrue(catalog.getEntries().isEmpty());
+    }
+
+    private TargetTranslationCatalog.Entry entry(String sourceId, int finished, int sourceChunks) {
+        return new TargetTranslationCatalog.Entry(translationDir.getName(), "aa", "mrk", "usfm",
+                sourceId, finished, sourceChunks,
+                TargetTranslationCatalog.manifestModified(translationDir),
+                TargetTranslationCatalog.readHead(translationDir));
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files != null) {
+            for(File f:files) delete(f);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,44 @@
+package com.door43.translationstudio.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+
+public class TranslationSearchIndexTest {
+
+    @Test
+    public void grams() {
+        assertEquals(Arrays.asList("lig", "igh", "ght", "ht", "t"),
+                new ArrayList<>(TranslationSearchIndex.grams("light")));
+        assertEquals(Arrays.asList("aa", "a"), new ArrayList<>(TranslationSearchIndex.grams("aa")));
+        assertTrue(TranslationSearchIndex.grams("").isEmpty());
+    }
+
+    @Test
+    public void queryGrams() {
+        assertEquals(Arrays.asList("the", "he ", "e l", " li"),
+                new ArrayList<>(TranslationSearchIndex.queryGrams("the li")));
+        assertEquals(Arrays.asList("aaa"), new ArrayList<>(TranslationSearchIndex.queryGrams("aaaaa")));
+        // every gram of the search string is a gram of the text that contains it
+        assertTrue(TranslationSearchIndex.grams("in the light").containsAll(TranslationSearchIndex.queryGrams("the li")));
+    }
+
+    @Test
+    public void prefixEnd() {
+        assertEquals("lj", TranslationSearchIndex.prefixEnd("li"));
+        assertEquals("\ue000", TranslationSearchIndex.prefixEnd("\ud7ff"));
+        assertEquals("a\ud83d\ude01", TranslationSearchIndex.prefixEnd("a\ud83d\ude00"));
+        assertNull(TranslationSearchIndex.prefixEnd(new String(Character.toChars(Character.MAX_CODE_POINT))));
+    }
+
+    @Test
+    public void findOffsets() {
+        assertArrayEquals(new int[]{0, 14}, TranslationSearchIndex.findOffsets("the light and the darkness", "the"));
+        assertArrayEquals(new int[]{0, 2}, TranslationSearchIndex.findOffsets("aaaa", "aa"));
+        assertArrayEquals(new int[0], TranslationSearchIndex.findOffsets("light", "dark"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.door43.translationstudio.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class VerseChunkMapTest {
+
+    @Test
+    public void mapVersesToChunks() {
+        String[] chunks = new String[]{"title", "07", "01", "04", "10"};
+        VerseChunkMap map = new VerseChunkMap(chunks);
+        String[] sorted = new String[]{"01", "04", "07", "10", "title"};
+
+        for(int verse = 1; verse <= 12; verse ++) {
+            String slug = String.format("%02d", verse);
+            assertEquals(Util.verseToChunk(slug, sorted), map.getChunk(slug));
+        }
+        assertEquals("04", map.getChunk("6"));
+        assertEquals("10", map.getChunk("30"));
+    }
+
+    @Test
+    public void versesOutsideChunksAreReturned() {
+        VerseChunkMap map = new VerseChunkMap(new String[]{"03", "06", "front"});
+
+        assertEquals("01", map.getChunk("01"));
+        assertEquals("front", map.getChunk("front"));
+        assertEquals("title", map.getChunk("title"));
+    }
+
+    @Test
+    public void findChunkStartingAtVerse() {
+        VerseChunkMap map = new VerseChunkMap(new String[]{"01", "05", "09"});
+
+        assertEquals("05", map.getChunkStartingAt("5"));
+        assertEquals("09", map.getChunkStartingAt("09"));
+        assertNull(map.getChunkStartingAt("06"));
+        assertNull(map.getChunkStartingAt("front"));
+    }
+}
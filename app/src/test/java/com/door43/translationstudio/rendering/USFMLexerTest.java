@@ -0,0 +1,71 @@
+package com.door43.translationstudio.rendering;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class USFMLexerTest {
+
+    @Test
+    public void tokenizeMarkers() {
+        String usfm = "\\c 1 \\v 1 In the beginning\\f + \\ft a note\\f* \\p\n\\v 2-3 more";
+        USFMLexer lexer = new USFMLexer(usfm, 0, usfm.length());
+
+        assertEquals(USFMLexer.TOKEN_CHAPTER, lexer.next());
+        assertEquals(USFMLexer.TOKEN_VERSE, lexer.next());
+        assertEquals("1", value(usfm, lexer));
+        assertEquals(USFMLexer.TOKEN_TEXT, lexer.next());
+        assertEquals(USFMLexer.TOKEN_WHITESPACE, lexer.next());
+        assertEquals(USFMLexer.TOKEN_TEXT, lexer.next());
+        assertEquals(USFMLexer.TOKEN_WHITESPACE, lexer.next());
+        assertEquals(USFMLexer.TOKEN_TEXT, lexer.next());
+        assertEquals("beginning", usfm.substring(lexer.getTokenStart(), lexer.getTokenEnd()));
+        assertEquals(USFMLexer.TOKEN_NOTE, lexer.next());
+        assertEquals("+", lexer.getStyle());
+        assertEquals("\\ft a note", value(usfm, lexer));
+        assertEquals(USFMLexer.TOKEN_WHITESPACE, lexer.next());
+        assertEquals(USFMLexer.TOKEN_PARAGRAPH, lexer.next());
+        assertEquals(USFMLexer.TOKEN_VERSE, lexer.next());
+        assertEquals("2-3", value(usfm, lexer));
+        assertEquals(USFMLexer.TOKEN_TEXT, lexer.next());
+        assertEquals(USFMLexer.TOKEN_EOF, lexer.next());
+    }
+
+    @Test
+    public void unterminatedMarkersAreText() {
+        String usfm = "\\f + open note \\v x \\c";
+        USFMLexer lexer = new USFMLexer(usfm, 0, usfm.length());
+        int token;
+        while((token = lexer.next()) != USFMLexer.TOKEN_EOF) {
+            assertTrue(token == USFMLexer.TOKEN_TEXT || token == USFMLexer.TOKEN_WHITESPACE);
+        }
+    }
+
+    @Test
+    public void tokenizeParas() {
+        String usfm = "<para style=\"q1\"> poem</para><para style=\"b\"/><para style=\"x\">y</para>";
+        USFMLexer lexer = new USFMLexer(usfm, 0, usfm.length());
+
+        assertEquals(USFMLexer.TOKEN_PARA, lexer.next());
+        assertEquals("q1", lexer.getStyle());
+        assertEquals("poem", value(usfm, lexer));
+        assertEquals(USFMLexer.TOKEN_PARA_EMPTY, lexer.next());
+        assertEquals("b", lexer.getStyle());
+        // unsupported styles are left as text
+        assertEquals(USFMLexer.TOKEN_TEXT, lexer.next());
+        assertEquals("<para", usfm.substring(lexer.getTokenStart(), lexer.getTokenEnd()));
+    }
+
+    @Test
+    public void collapseLineBreaks() {
+        String text = "a \n\n b  c\n";
+        assertEquals("a b  c ", USFMLexer.collapseLineBreaks(text, 0, text.length()));
+        assertEquals(2, USFMLexer.getPoeticLevel("q2"));
+        assertEquals(-1, USFMLexer.getPoeticLevel("qr"));
+    }
+
+    private static String value(String usfm, USFMLexer lexer) {
+        return usfm.substring(lexer.getValueStart(), lexer.getValueEnd());
+    }
+}
@@ -0,0 +1,92 @@
+package com.door43.translationstudio.rendering;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class USFMRendererTest {
+
+    private static final String PARAGRAPHS = "\\v 1 alpha \\p\n\\v 2 beta \\p gamma";
+    private static final String BLANK_LINE = "\\v 1 alpha<para style=\"b\"/>\\v 2 beta";
+    private static final String POETRY = "\\c 1 <para style=\"q1\">\\v 1 first line</para>\n"
+            + "<para style=\"q2\">second line</para> \\p\n"
+            + "<para style=\"q1\">\\v 2 third line</para>\n"
+            + "<para style=\"q2\">fourth line</para>";
+    private static final String HEADINGS = "<para style=\"ms\">Book One</para>\n"
+            + "<para style=\"s\">The heading</para>\n"
+            + "\\v 1 alpha <para style=\"p\">\\v 2 beta</para> gamma";
+
+    @Test
+    public void renderParagraphs() {
+        assertEquals("\\v 1 alpha \n\\v 2 beta \ngamma", layout(PARAGRAPHS, false));
+        assertRendersLikeLegacy(PARAGRAPHS);
+    }
+
+    @Test
+    public void renderBlankLines() {
+        assertEquals("\\v 1 alpha\n\n\\v 2 beta", layout(BLANK_LINE, false));
+        assertRendersLikeLegacy(BLANK_LINE);
+    }
+
+    @Test
+    public void renderPoeticLines() {
+        assertEquals("    \\v 1 first line \n        second line \n    \\v 2 third line \n        fourth line",
+                layout(POETRY, false));
+        assertRendersLikeLegacy(POETRY);
+    }
+
+    @Test
+    public void renderHeadings() {
+        assertEquals("BOOK ONE\n The heading\n \\v 1 alpha \n    \\v 2 beta\n gamma", layout(HEADINGS, false));
+        assertRendersLikeLegacy(HEADINGS);
+    }
+
+    @Test
+    public void renderSourceLineBreaks() {
+        String usfm = "\\v 1 alpha\n\nbeta \\p\n\\v 2 gamma";
+        assertEquals("\\v 1 alpha beta \n\\v 2 gamma", layout(usfm, false));
+        assertEquals("\\v 1 alpha\n\nbeta \n\\v 2 gamma", layout(usfm, true));
+        assertRendersLikeLegacy(usfm);
+    }
+
+    @Test
+    public void renderDisabledParagraphs() {
+        USFMRenderer renderer = createRenderer(false);
+        renderer.setParagraphsEnabled(false);
+        LegacyUSFMRenderer legacy = createLegacyRenderer(false);
+        legacy.setParagraphsEnabled(false);
+
+        assertEquals("\\v 1 alpha \\p \\v 2 beta \\p gamma", renderer.layout(PARAGRAPHS).text.toString());
+        assertEquals(legacy.render(PARAGRAPHS), renderer.layout(PARAGRAPHS).text.toString());
+    }
+
+    /**
+     * Compares the single pass renderer against the legacy pipeline
+     * with and without line breaks enabled
+     * @param usfm
+     */
+    private static void assertRendersLikeLegacy(String usfm) {
+        for(boolean linebreaks : new boolean[]{false, true}) {
+            assertEquals(createLegacyRenderer(linebreaks).render(usfm), layout(usfm, linebreaks));
+        }
+    }
+
+    private static String layout(String usfm, boolean linebreaks) {
+        return createRenderer(linebreaks).layout(usfm).text.toString();
+    }
+
+    private static USFMRenderer createRenderer(boolean linebreaks) {
+        USFMRenderer renderer = new USFMRenderer(null);
+        renderer.setVersesEnabled(false);
+        renderer.setLinebreaksEnabled(linebreaks);
+        return renderer;
+    }
+
+    private static LegacyUSFMRenderer createLegacyRenderer(boolean linebreaks) {
+        LegacyUSFMRenderer renderer = new LegacyUSFMRenderer(null);
+        renderer.setVersesEnabled(false);
+        renderer.setLinebreaksEnabled(linebreaks);
+        return renderer;
+    }
+}
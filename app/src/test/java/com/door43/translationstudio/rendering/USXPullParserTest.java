@@ -0,0 +1,75 @@
+package com.door43.translationstudio.rendering;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class USXPullParserTest {
+
+    @Test
+    public void readTags() {
+        String usx = "<para style=\"p\"><verse number=\"1\" style=\"v\" />In the beginning</para>";
+        USXPullParser parser = new USXPullParser();
+        parser.setInput(usx, 0, usx.length());
+
+        assertEquals(USXPullParser.START_TAG, parser.next());
+        assertEquals("para", parser.getName());
+        assertEquals("p", parser.getAttributeValue("style"));
+        assertTrue(parser.isStrict());
+        assertFalse(parser.isEmptyElementTag());
+
+        assertEquals(USXPullParser.START_TAG, parser.next());
+        assertEquals("verse", parser.getName());
+        assertTrue(parser.isEmptyElementTag());
+        assertEquals(2, parser.getAttributeCount());
+        assertEquals("number", parser.getAttributeName(0));
+        assertEquals("1", parser.getAttributeValue(0));
+
+        assertEquals(USXPullParser.TEXT, parser.next());
+        assertEquals("In the beginning", parser.getText());
+
+        assertEquals(USXPullParser.END_TAG, parser.next());
+        assertEquals("para", parser.getName());
+        assertEquals(usx.length(), parser.getEnd());
+        assertEquals(USXPullParser.END_DOCUMENT, parser.next());
+    }
+
+    @Test
+    public void brokenTagsAreText() {
+        String usx = "a < b <para style=\"p\" <note";
+        USXPullParser parser = new USXPullParser();
+        parser.setInput(usx, 0, usx.length());
+        int event;
+        while((event = parser.next()) != USXPullParser.END_DOCUMENT) {
+            assertEquals(USXPullParser.TEXT, event);
+        }
+    }
+
+    @Test
+    public void reuseParser() {
+        String usx = "<char style='wj'>one</char><char  style = \"wj\">two</char>";
+        USXPullParser parser = new USXPullParser();
+
+        parser.setInput(usx, 0, usx.length());
+        assertEquals(USXPullParser.START_TAG, parser.next());
+        assertFalse(parser.isStrict());
+
+        int second = usx.indexOf("<char", 1);
+        parser.setInput(usx, second, usx.length());
+        assertEquals(USXPullParser.START_TAG, parser.next());
+        assertEquals(second, parser.getStart());
+        assertEquals("wj", parser.getAttributeValue("style"));
+        assertFalse(parser.isStrict());
+        assertEquals(USXPullParser.TEXT, parser.next());
+        assertEquals("two", parser.getText());
+    }
+
+    @Test
+    public void decodeEntities() {
+        assertEquals("a & b < c", USXPullParser.decodeEntities("a &amp; b &lt; c"));
+        assertEquals("\u00e9A", USXPullParser.decodeEntities("&#233;&#x41;"));
+        assertNull(USXPullParser.decodeEntities("a & b"));
+        assertNull(USXPullParser.decodeEntities("&nbsp;"));
+    }
+}
@@ -3,27 +3,28 @@ package com.door43.usecases
 import android.content.Context
 import com.door43.TestUtils
 import com.door43.data.IDirectoryProvider
+import com.door43.translationstudio.core.BackupJournal
 import com.door43.translationstudio.core.Profile
 import com.door43.translationstudio.core.TargetTranslation
 import com.door43.translationstudio.core.TargetTranslationMigrator
-import com.door43.util.FileUtilities
 import io.mockk.MockKAnnotations
 import io.mockk.runs
 import io.mockk.every
 import io.mockk.impl.annotations.MockK
 import io.mockk.just
 import io.mockk.mockk
-import io.mockk.mockkObject
-import io.mockk.mockkStatic
 import io.mockk.unmockkAll
 import io.mockk.verify
 import junit.framework.TestCase.assertEquals
 import junit.framework.TestCase.assertTrue
 import org.junit.After
 import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
 import org.junit.Assert.assertThrows
 import org.junit.Before
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 import org.unfoldingword.door43client.Door43Client
 import org.unfoldingword.door43client.models.Translation
 import org.unfoldingword.resourcecontainer.Language
@@ -45,27 +46,32 @@ class BackupRCTest {
     @MockK private lateinit var resource: Resource
     @MockK private lateinit var targetTranslation: TargetTranslation
 
+    @JvmField
+    @Rule
+    var tempDir: TemporaryFolder = TemporaryFolder()
+
     private lateinit var backupRC: BackupRC
+    private lateinit var backupsDir: File
+    private lateinit var journal: BackupJournal
 
     @Before
     fun setup() {
         MockKAnnotations.init(this)
 
+        backupsDir = tempDir.newFolder("backups")
+        journal = BackupJournal(File(tempDir.root, "backups.journal"))
+
         backupRC = BackupRC(
             context,
             directoryProvider,
             migrator,
             exportProjects,
             profile,
-            library
+            library,
+            journal
         )
 
-        mockkStatic(FileUtilities::class)
-
-        every { FileUtilities.deleteQuietly(any()) }.returns(true)
-        every { FileUtilities.copyFile(any(), any()) } just runs
-
-        every { directoryProvider.backupsDir }.returns(File("/backups"))
+        every { directoryProvider.backupsDir }.returns(backupsDir)
         every { profile.nativeSpeaker }.returns(mockk())
 
         TestUtils.setPropertyReflection(translation, "language", language)
@@ -96,7 +102,7 @@ class BackupRCTest {
 
         val backupFile = backupRC.backupResourceContainer(translation)
 
-        assertEquals("/backups/fa_mrk_nmv.tsrc", backupFile.path)
+        assertEquals(File(backupsDir, "fa_mrk_nmv.tsrc"), backupFile)
 
         verify {
             library.exportResourceContainer(
@@ -140,87 +146,82 @@ class BackupRCTest {
 
     @Test
     fun `test backupTargetTranslation with valid targetTranslation`() {
-        val tempFile: File = mockk()
-        every { tempFile.exists() }.returns(true)
-        every { tempFile.isFile }.returns(true)
-
         every { targetTranslation.id }.returns("aa_mrk_text_reg")
         every { targetTranslation.commitHash }.returns("abcdefghijklmnopqrstuvwxyz")
-        every {
-            directoryProvider.createTempFile(
-                "aa_mrk_text_reg",
-                ".tstudio",
-                null
-            )
-        }.returns(tempFile)
         every { targetTranslation.setDefaultContributor(any()) } just runs
-        every { exportProjects.exportProject(targetTranslation, tempFile) }.returns(mockk())
+        every { exportProjects.exportProject(targetTranslation, any<File>()) } answers {
+            secondArg<File>().writeText("archive")
+        }
 
         val success = backupRC.backupTargetTranslation(targetTranslation, false)
 
         assertTrue(success)
+        val backup = File(backupsDir, "aa_mrk_text_reg.tstudio")
+        assertEquals("archive", backup.readText())
+        assertFalse(File(backupsDir, "aa_mrk_text_reg.tstudio.part").exists())
+        assertEquals("abcdefghijklmnopqrstuvwxyz", journal.get("aa_mrk_text_reg").commit)
 
-        verify { tempFile.exists() }
-        verify { tempFile.isFile }
         verify { targetTranslation.id }
         verify { targetTranslation.commitHash }
-        verify {
-            directoryProvider.createTempFile(
-                "aa_mrk_text_reg",
-                ".tstudio",
-                null
-            )
-        }
         verify { targetTranslation.setDefaultContributor(any()) }
-        verify { exportProjects.exportProject(targetTranslation, tempFile) }
+        verify { exportProjects.exportProject(targetTranslation, any<File>()) }
     }
 
     @Test
-    fun `test backupTargetTranslation orphaned`() {
-        val tempFile: File = mockk()
-        every { tempFile.exists() }.returns(true)
-        every { tempFile.isFile }.returns(true)
+    fun `test backupTargetTranslation skips unchanged targetTranslation`() {
+        every { targetTranslation.id }.returns("aa_mrk_text_reg")
+        every { targetTranslation.commitHash }.returns("abcdefghijklmnopqrstuvwxyz")
+        every { targetTranslation.setDefaultContributor(any()) } just runs
+        every { exportProjects.exportProject(targetTranslation, any<File>()) } answers {
+            secondArg<File>().writeText("archive")
+        }
+
+        assertTrue(backupRC.backupTargetTranslation(targetTranslation, false))
+        assertFalse(backupRC.backupTargetTranslation(targetTranslation, false))
+
+        // a new commit is backed up again
+        every { targetTranslation.commitHash }.returns("zyxwvutsrqponmlkjihgfedcba")
+        assertTrue(backupRC.backupTargetTranslation(targetTranslation, false))
+
+        verify(exactly = 2) { exportProjects.exportProject(targetTranslation, any<File>()) }
+    }
 
+    @Test
+    fun `test backupTargetTranslation orphaned`() {
         every { targetTranslation.id }.returns("aa_mrk_text_reg")
         every { targetTranslation.commitHash }.returns("abcdefghijklmnopqrstuvwxyz")
-        every { directoryProvider.createTempFile(any(), any(), null) }.returns(tempFile)
         every { targetTranslation.setDefaultContributor(any()) } just runs
-        every { exportProjects.exportProject(targetTranslation, tempFile) }.returns(mockk())
+        every { exportProjects.exportProject(targetTranslation, any<File>()) } answers {
+            secondArg<File>().writeText("archive")
+        }
 
         val success = backupRC.backupTargetTranslation(targetTranslation, true)
 
         assertTrue(success)
+        assertEquals(1, backupsDir.listFiles { f -> f.name.endsWith(".zip") }!!.size)
+        assertNull(journal.get("aa_mrk_text_reg"))
 
-        verify { tempFile.exists() }
-        verify { tempFile.isFile }
         verify { targetTranslation.id }
         verify(exactly = 0) { targetTranslation.commitHash }
-        verify { directoryProvider.createTempFile(any(), any(), null) }
         verify { targetTranslation.setDefaultContributor(any()) }
-        verify { exportProjects.exportProject(targetTranslation, tempFile) }
+        verify { exportProjects.exportProject(targetTranslation, any<File>()) }
     }
 
     @Test
     fun `test backupTargetTranslation from a directory`() {
         val projectDir: File = mockk()
         every { projectDir.name }.returns("aa_mrk_text_reg")
-        val tempFile: File = mockk()
-        every { tempFile.exists() }.returns(true)
-        every { tempFile.isFile }.returns(true)
-
-        every { directoryProvider.createTempFile(any(), any(), null) }.returns(tempFile)
-        every { exportProjects.exportProject(projectDir, tempFile) } just runs
+        every { exportProjects.exportProject(projectDir, any<File>()) } answers {
+            secondArg<File>().writeText("archive")
+        }
 
         val success = backupRC.backupTargetTranslation(projectDir)
 
         assertTrue(success)
+        assertEquals(1, backupsDir.listFiles { f -> f.name.endsWith(".zip") }!!.size)
 
         verify { projectDir.name }
-        verify { tempFile.exists() }
-        verify { tempFile.isFile }
-        verify { directoryProvider.createTempFile(any(), any(), null) }
-        verify { exportProjects.exportProject(projectDir, tempFile) }
-        verify { FileUtilities.deleteQuietly(any()) }
+        verify { exportProjects.exportProject(projectDir, any<File>()) }
     }
 
     @Test
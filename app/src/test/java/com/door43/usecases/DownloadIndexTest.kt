@@ -66,6 +66,7 @@ class DownloadIndexTest {
 
         every { library.tearDown() }.just(runs)
         every { directoryProvider.databaseFile }.returns(dbFile)
+        every { directoryProvider.deleteDatabaseJournal() }.just(runs)
     }
 
     @After
@@ -90,6 +91,7 @@ class DownloadIndexTest {
         verify { prefRepository.getDefaultPref(any(), any(), String::class.java) }
         verify { library.tearDown() }
         verify { directoryProvider.databaseFile }
+        verify { directoryProvider.deleteDatabaseJournal() }
     }
 
     @Test
@@ -118,6 +120,7 @@ class DownloadIndexTest {
         verify { progressListener.onProgress(any(), any(), "Downloading index") }
         verify { resources.getString(R.string.downloading_index) }
         verify { library.tearDown() }
+        verify(exactly = 0) { directoryProvider.deleteDatabaseJournal() }
     }
 
     @Test
@@ -139,6 +142,7 @@ class DownloadIndexTest {
 
         verify { library.tearDown() }
         verify { directoryProvider.databaseFile }
+        verify { directoryProvider.deleteDatabaseJournal() }
     }
 
     private fun createDownloadResponse(): MockResponse {
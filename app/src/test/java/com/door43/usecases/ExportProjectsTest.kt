@@ -46,8 +46,11 @@ import org.unfoldingword.door43client.Door43Client
 import org.unfoldingword.door43client.Index
 import org.unfoldingword.resourcecontainer.Project
 import org.unfoldingword.resourcecontainer.Resource
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.OutputStream
+import java.util.zip.ZipInputStream
 
 
 class ExportProjectsTest {
@@ -118,7 +121,7 @@ class ExportProjectsTest {
         
         every { anyConstructed<PdfPrinter>().includeMedia(any()) }.just(runs)
         every { anyConstructed<PdfPrinter>().includeIncomplete(any()) }.just(runs)
-        every { BaseFont.createFont(any(), any(), any()) }.returns(mockk())
+        every { BaseFont.createFont(any(), any(), any()) }.returns(mockk(relaxed = true))
     }
 
     @After
@@ -247,11 +250,6 @@ class ExportProjectsTest {
     fun `test export project as USFM file`() {
         val uri: Uri = mockk()
 
-        val dir = tempDir.newFolder("project")
-        every { directoryProvider.createTempDir() }.returns(dir)
-        val file = tempDir.newFile("output.usfm")
-        every { directoryProvider.createTempFile(any(), any(), any()) }.returns(file)
-
         mockTranslationContents()
         val bookData = mockBookData()
 
@@ -264,6 +262,7 @@ class ExportProjectsTest {
             }
         }
         every { contentResolver.openOutputStream(uri) }.returns(outputStream)
+        every { outputStream.flush() } just runs
         every { outputStream.close() } just runs
 
         val result = ExportProjects(
@@ -277,8 +276,6 @@ class ExportProjectsTest {
         assertEquals(uri, result.uri)
         assertEquals(ExportType.USFM, result.exportType)
 
-        assertTrue(file.length() > 0)
-
         val text = outputText.toString()
 
         assertTrue(text.contains("\\id mrk Gospel of Mark, Mark, aa, Afar"))
@@ -303,13 +300,8 @@ class ExportProjectsTest {
     fun `test export project as USFM file fails with bad uri`() {
         val uri: Uri = mockk()
 
-        val dir = tempDir.newFolder("project")
-        every { directoryProvider.createTempDir() }.returns(dir)
-        val file = tempDir.newFile("output.usfm")
-        every { directoryProvider.createTempFile(any(), any(), any()) }.returns(file)
-
         mockTranslationContents()
-        val bookData = mockBookData()
+        mockBookData()
 
         val outputText = StringBuffer()
         val outputStream: OutputStream = mockk {
@@ -333,23 +325,66 @@ class ExportProjectsTest {
         assertEquals(uri, result.uri)
         assertEquals(ExportType.USFM, result.exportType)
 
-        assertTrue(file.length() > 0)
-
         val text = outputText.toString()
         assertTrue(text.isEmpty())
 
-        verifyUSFMExport(uri, bookData)
+        // nothing is read when the destination cannot be opened
+        verify { ExportProjects.BookData.generate(any(), any()) }
+        verify { contentResolver.openOutputStream(uri) }
+        verify(exactly = 0) { targetTranslation.chapterTranslations }
 
         verify(exactly = 0) { outputStream.write(any(), any(), any()) }
         verify(exactly = 0) { outputStream.close() }
     }
 
+    @Test
+    fun `test export projects as USFM zip`() {
+        val uri: Uri = mockk()
+
+        mockTranslationContents()
+        val bookData = mockBookData()
+        every { bookData.defaultUSFMFileName }.returns("aa_MRK_Mark.usfm")
+        every { bookData.targetTranslationId }.returns("aa_mrk_text_udb")
+
+        val output = ByteArrayOutputStream()
+        every { contentResolver.openOutputStream(uri) }.returns(output)
+
+        val result = ExportProjects(
+            context,
+            directoryProvider,
+            library,
+            typography
+        ).exportUSFMBatch(listOf(targetTranslation, targetTranslation), uri, 2)
+
+        assertTrue(result.success)
+        assertEquals(ExportType.USFM, result.exportType)
+
+        val entries = linkedMapOf<String, String>()
+        ZipInputStream(ByteArrayInputStream(output.toByteArray())).use { zip ->
+            var entry = zip.nextEntry
+            while (entry != null) {
+                entries[entry.name] = zip.readBytes().toString(Charsets.UTF_8)
+                entry = zip.nextEntry
+            }
+        }
+        // books with the same name are named after the target translation
+        assertEquals(listOf("aa_MRK_Mark.usfm", "aa_mrk_text_udb.usfm"), entries.keys.toList())
+        for (usfm in entries.values) {
+            assertTrue(usfm.startsWith("\\id mrk Gospel of Mark, Mark, aa, Afar\n"))
+            assertTrue(usfm.contains("\\c 01\n\\cl Chapter 1\n\\cd Chapter reference\n\\p\n"))
+            assertTrue(usfm.endsWith("This is a test verse contents"))
+        }
+
+        verify(exactly = 2) { ExportProjects.BookData.generate(any(), any()) }
+        verify(exactly = 2) { targetTranslation.getFrameTranslations(any(), any()) }
+    }
+
     @Test
     fun `test export project as PDF file`() {
         val uri: Uri = mockk()
 
         val file = tempDir.newFile("test.pdf")
-        every { anyConstructed<PdfPrinter>().print() }.returns(file)
+        every { anyConstructed<PdfPrinter>().print(any()) }.returns(file)
 
         val outputStream: OutputStream = mockk()
         every { contentResolver.openOutputStream(uri) }.returns(outputStream)
@@ -383,7 +418,7 @@ class ExportProjectsTest {
         val uri: Uri = mockk()
 
         val file = tempDir.newFile("test.pdf")
-        every { anyConstructed<PdfPrinter>().print() }.returns(file)
+        every { anyConstructed<PdfPrinter>().print(any()) }.returns(file)
 
         val outputStream: OutputStream = mockk()
         every { contentResolver.openOutputStream(uri) }.throws(Exception("Bad uri"))
@@ -416,8 +451,6 @@ class ExportProjectsTest {
         uri: Uri,
         bookData: ExportProjects.BookData
     ) {
-        verify { directoryProvider.createTempDir() }
-        verify { directoryProvider.createTempFile(any(), any(), any()) }
         verify { targetTranslation.chapterTranslations }
         verify { targetTranslation.getFrameTranslations(any(), any()) }
         verify { bookData.bookCode }
@@ -428,11 +461,10 @@ class ExportProjectsTest {
 
         verify { ExportProjects.BookData.generate(any(), any()) }
         verify { contentResolver.openOutputStream(uri) }
-        verify { FileUtilities.deleteQuietly(any()) }
     }
 
     private fun verifyPDFExport(uri: Uri) {
-        verify { anyConstructed<PdfPrinter>().print() }
+        verify { anyConstructed<PdfPrinter>().print(any()) }
         verify { contentResolver.openOutputStream(uri) }
         verify { typography.getAssetPath(any()) }
         verify { typography.getFontSize(any()) }
@@ -29,6 +29,7 @@ import org.eclipse.jgit.api.PullCommand
 import org.eclipse.jgit.api.PullResult
 import org.eclipse.jgit.api.errors.TransportException
 import org.eclipse.jgit.errors.NoRemoteRepositoryException
+import org.eclipse.jgit.lib.ObjectId
 import org.eclipse.jgit.merge.MergeStrategy
 import org.eclipse.jgit.transport.URIish
 import org.junit.After
@@ -50,6 +51,8 @@ class PullTargetTranslationTest {
     @MockK private lateinit var progressListener: OnProgressListener
     @MockK private lateinit var targetTranslation: TargetTranslation
     @MockK private lateinit var git: Git
+    @MockK private lateinit var gitRepository: org.eclipse.jgit.lib.Repository
+    private val headId = ObjectId.zeroId()
     @MockK private lateinit var repo: Repo
     @MockK private lateinit var resources: Resources
     @MockK private lateinit var deleteCommand: DeleteBranchCommand
@@ -78,12 +81,18 @@ class PullTargetTranslationTest {
 
         every { submitNewLanguageRequests.execute(progressListener) }.just(runs)
         every { targetTranslation.commitSync() }.returns(true)
+        every { targetTranslation.invalidateChunks() }.just(runs)
+        every { targetTranslation.untrackChanges() }.just(runs)
+        every { targetTranslation.addMergeConflicts(any()) }.just(runs)
+        every { targetTranslation.updateMergeConflicts(any(), any()) }.just(runs)
 
         every { progressListener.onProgress(any(), any(), any()) }.just(runs)
         every { git.branchDelete() }.returns(deleteCommand)
         every { git.branchCreate() }.returns(createCommand)
         every { git.pull() }.returns(pullCommand)
         every { git.checkout() }.returns(checkoutCommand)
+        every { git.repository }.returns(gitRepository)
+        every { gitRepository.resolve("HEAD") }.returns(headId)
 
         every { deleteCommand.setBranchNames(any()) }.returns(deleteCommand)
         every { deleteCommand.setForce(any()) }.returns(deleteCommand)
@@ -321,6 +330,8 @@ class PullTargetTranslationTest {
         verify { targetTranslation.repo }
         verify { targetTranslation.path }
         verify { mergeResult.conflicts }
+        verify { targetTranslation.addMergeConflicts(conflicts.keys) }
+        verify { targetTranslation.updateMergeConflicts(headId, mergeResult) }
         verify { pullResult.mergeResult }
         verify { pullCommand.call() }
         verify(exactly = 2) { git.checkout() }
@@ -2,6 +2,8 @@ package com.door43.usecases
 
 import com.door43.TestUtils
 import com.door43.translationstudio.core.TargetTranslation
+import com.door43.translationstudio.core.TargetTranslationCatalog
+import com.door43.translationstudio.core.TranslationFormat
 import com.door43.translationstudio.core.Translator
 import io.mockk.MockKAnnotations
 import io.mockk.every
@@ -11,6 +13,7 @@ import io.mockk.unmockkAll
 import io.mockk.verify
 import org.junit.After
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Before
 import org.junit.Test
 import org.unfoldingword.door43client.Door43Client
@@ -19,6 +22,8 @@ import org.unfoldingword.door43client.models.Translation
 import org.unfoldingword.resourcecontainer.Language
 import org.unfoldingword.resourcecontainer.Resource
 import org.unfoldingword.resourcecontainer.ResourceContainer
+import java.io.File
+import java.nio.file.Files
 
 class TranslationProgressTest {
 
@@ -27,14 +32,25 @@ class TranslationProgressTest {
     @MockK private lateinit var targetTranslation: TargetTranslation
     @MockK private lateinit var index: Index
 
+    private lateinit var tempDir: File
+    private lateinit var catalog: TargetTranslationCatalog
+
     @Before
     fun setup() {
         MockKAnnotations.init(this)
 
         TestUtils.setPropertyReflection(library, "index", index)
 
+        tempDir = Files.createTempDirectory("translation_progress").toFile()
+        catalog = TargetTranslationCatalog(File(tempDir, "target_translations.catalog"))
+        val targetTranslationDir = File(tempDir, "aa_mrk_text_ulb")
+        targetTranslationDir.mkdirs()
+
         every { targetTranslation.projectId }.returns("mrk")
         every { targetTranslation.id }.returns("aa_mrk_text_ulb")
+        every { targetTranslation.targetLanguageId }.returns("aa")
+        every { targetTranslation.format }.returns(TranslationFormat.USFM)
+        every { targetTranslation.path }.returns(targetTranslationDir)
 
         mockSourceTranslations()
     }
@@ -42,6 +58,7 @@ class TranslationProgressTest {
     @After
     fun tearDown() {
         unmockkAll()
+        tempDir.deleteRecursively()
     }
 
     @Test
@@ -63,7 +80,7 @@ class TranslationProgressTest {
             .returns("id_mrk_ayt")
         every { targetTranslation.numFinished() }.returns(8)
 
-        val progress = TranslationProgress(library, translator).execute(targetTranslation)
+        val progress = TranslationProgress(library, translator, catalog).execute(targetTranslation)
 
         assertEquals(1.0, progress, 0.0)
 
@@ -94,7 +111,7 @@ class TranslationProgressTest {
             .returns(null)
         every { targetTranslation.numFinished() }.returns(8)
 
-        val progress = TranslationProgress(library, translator).execute(targetTranslation)
+        val progress = TranslationProgress(library, translator, catalog).execute(targetTranslation)
 
         assertEquals(1.0, progress, 0.0)
 
@@ -113,7 +130,7 @@ class TranslationProgressTest {
         every { index.findTranslations(any(), any(), any(), any(), any(), any(), any()) }
             .returns(listOf())
 
-        val progress = TranslationProgress(library, translator).execute(targetTranslation)
+        val progress = TranslationProgress(library, translator, catalog).execute(targetTranslation)
 
         assertEquals(0.0, progress, 0.0)
 
@@ -130,7 +147,7 @@ class TranslationProgressTest {
             .returns("id_mrk_ayt")
         every { targetTranslation.numFinished() }.returns(8)
 
-        val progress = TranslationProgress(library, translator).execute(targetTranslation)
+        val progress = TranslationProgress(library, translator, catalog).execute(targetTranslation)
 
         assertEquals(0.0, progress, 0.0)
 
@@ -159,7 +176,7 @@ class TranslationProgressTest {
             .returns("id_mrk_ayt")
         every { targetTranslation.numFinished() }.returns(4)
 
-        val progress = TranslationProgress(library, translator).execute(targetTranslation)
+        val progress = TranslationProgress(library, translator, catalog).execute(targetTranslation)
 
         assertEquals(0.5, progress, 0.0)
 
@@ -190,7 +207,7 @@ class TranslationProgressTest {
             .returns("id_mrk_ayt")
         every { targetTranslation.numFinished() }.returns(10)
 
-        val progress = TranslationProgress(library, translator).execute(targetTranslation)
+        val progress = TranslationProgress(library, translator, catalog).execute(targetTranslation)
 
         assertEquals(1.0, progress, 0.0)
 
@@ -213,7 +230,7 @@ class TranslationProgressTest {
             .returns("id_mrk_ayt")
         every { targetTranslation.numFinished() }.returns(8)
 
-        val progress = TranslationProgress(library, translator).execute(targetTranslation)
+        val progress = TranslationProgress(library, translator, catalog).execute(targetTranslation)
 
         assertEquals(0.0, progress, 0.0)
 
@@ -225,6 +242,31 @@ class TranslationProgressTest {
         verify(exactly = 0) { rc.chunks(any()) }
     }
 
+    @Test
+    fun `test cached progress is returned without opening the source`() {
+        val rc: ResourceContainer = mockk {
+            every { chapters() }.returns(arrayOf("01"))
+            every { chunks(any()) }.returns(arrayOf("01", "02", "03", "04"))
+        }
+        every { library.open(any()) }.returns(rc)
+        every { translator.getSelectedSourceTranslationId(any()) }
+            .returns("id_mrk_ayt")
+        every { targetTranslation.numFinished() }.returns(1)
+
+        val translationProgress = TranslationProgress(library, translator, catalog)
+        assertNull(translationProgress.getCachedProgress(targetTranslation))
+        assertEquals(0.25, translationProgress.execute(targetTranslation), 0.0)
+
+        assertEquals(0.25, translationProgress.getCachedProgress(targetTranslation)!!, 0.0)
+        assertEquals(0.25, translationProgress.execute(targetTranslation), 0.0)
+        verify(exactly = 1) { library.open(any()) }
+
+        // changing the selected source invalidates the cached progress
+        every { translator.getSelectedSourceTranslationId(any()) }
+            .returns("en_mrk_ulb")
+        assertNull(translationProgress.getCachedProgress(targetTranslation))
+    }
+
     private fun mockSourceTranslations() {
         val english: Language = mockk()
         val ulb: Resource = mockk()
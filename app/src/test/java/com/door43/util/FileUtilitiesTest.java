@@ -0,0 +1,68 @@
+package com.door43.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class FileUtilitiesTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("files").toFile();
+        file = new File(dir, "journal");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtilities.deleteQuietly(dir);
+    }
+
+    @Test
+    public void writeAtomicallyCreatesFile() throws Exception {
+        assertTrue(FileUtilities.writeAtomically(file, part -> FileUtilities.writeStringToFile(part, "new")));
+
+        assertEquals("new", FileUtilities.readFileToString(file));
+        assertFalse(new File(file.getPath() + ".part").exists());
+    }
+
+    @Test
+    public void writeAtomicallyReplacesFile() throws Exception {
+        FileUtilities.writeStringToFile(file, "old");
+
+        assertTrue(FileUtilities.writeAtomically(file, part -> FileUtilities.writeStringToFile(part, "new")));
+
+        assertEquals("new", FileUtilities.readFileToString(file));
+        assertFalse(new File(file.getPath() + ".bak").exists());
+    }
+
+    @Test
+    public void writeAtomicallyKeepsFileWhenWriteFails() throws Exception {
+        FileUtilities.writeStringToFile(file, "old");
+
+        assertThrows(IOException.class, () -> FileUtilities.writeAtomically(file, part -> {
+            FileUtilities.writeStringToFile(part, "partial");
+            throw new IOException("disk full");
+        }));
+
+        assertEquals("old", FileUtilities.readFileToString(file));
+        assertFalse(new File(file.getPath() + ".part").exists());
+    }
+
+    @Test
+    public void writeAtomicallyKeepsFileWhenNothingWritten() throws Exception {
+        FileUtilities.writeStringToFile(file, "old");
+
+        assertFalse(FileUtilities.writeAtomically(file, part -> { }));
+
+        assertEquals("old", FileUtilities.readFileToString(file));
+    }
+}
@@ -0,0 +1,115 @@
+package com.door43.util;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+
+public class ManifestTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("manifest").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for(File f:files) f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void finishedValues() throws Exception {
+        Manifest manifest = Manifest.generate(dir);
+
+        assertTrue(manifest.addValue("finished_chunks", "01-01"));
+        assertTrue(manifest.addValue("finished_chunks", "01-02"));
+        assertFalse(manifest.addValue("finished_chunks", "01-01"));
+        assertTrue(manifest.hasValue("finished_chunks", "01-02"));
+        assertEquals(2, manifest.getJSONArray("finished_chunks").length());
+
+        assertTrue(manifest.removeValue("finished_chunks", "01-01"));
+        assertFalse(manifest.hasValue("finished_chunks", "01-01"));
+        assertEquals(1, manifest.getJSONArray("finished_chunks").length());
+
+        // values are found after the array is replaced
+        manifest.put("finished_chunks", new JSONArray().put("02-01"));
+        assertTrue(manifest.hasValue("finished_chunks", "02-01"));
+        assertFalse(manifest.hasValue("finished_chunks", "01-02"));
+
+        Manifest reloaded = Manifest.generate(dir);
+        assertTrue(reloaded.hasValue("finished_chunks", "02-01"));
+    }
+
+    @Test
+    public void batchWritesOnce() throws Exception {
+        Manifest manifest = Manifest.generate(dir);
+        manifest.put("name", "test");
+        long length = manifestFile().length();
+
+        manifest.beginBatch();
+        for(int i = 0; i < 1000; i ++) {
+            manifest.addValue("finished_chunks", "01-" + i);
+        }
+        assertTrue(manifest.isDirty());
+        assertEquals(length, manifestFile().length());
+        manifest.endBatch();
+
+        assertFalse(manifest.isDirty());
+        assertFalse(new File(dir, Manifest.MANIFEST_JSON + ".tmp").exists());
+        assertEquals(1000, Manifest.generate(dir).getJSONArray("finished_chunks").length());
+    }
+
+    @Test
+    public void nestedBatchesWriteWhenTheOuterBatchEnds() throws Exception {
+        Manifest manifest = Manifest.generate(dir);
+
+        manifest.beginBatch();
+        manifest.put("name", "test");
+        manifest.beginBatch();
+        manifest.addValue("finished_chunks", "01-01");
+        manifest.endBatch();
+        assertTrue(manifest.isDirty());
+        assertFalse(Manifest.generate(dir).has("name"));
+        manifest.endBatch();
+
+        assertFalse(manifest.isDirty());
+        Manifest reloaded = Manifest.generate(dir);
+        assertEquals("test", reloaded.getString("name"));
+        assertTrue(reloaded.hasValue("finished_chunks", "01-01"));
+
+        // unbalanced calls do not hold later writes
+        manifest.endBatch();
+        manifest.put("name", "changed");
+        assertFalse(manifest.isDirty());
+        assertEquals("changed", Manifest.generate(dir).getString("name"));
+    }
+
+    @Test
+    public void loadKeepsBatchedChanges() throws Exception {
+        Manifest manifest = Manifest.generate(dir);
+
+        manifest.beginBatch();
+        manifest.addValue("finished_chunks", "01-01");
+        manifest.load();
+        manifest.endBatch();
+
+        assertTrue(manifest.hasValue("finished_chunks", "01-01"));
+        assertTrue(Manifest.generate(dir).hasValue("finished_chunks", "01-01"));
+    }
+
+    private File manifestFile() {
+        return new File(dir, Manifest.MANIFEST_JSON);
+    }
+}
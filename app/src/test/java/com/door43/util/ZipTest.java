@@ -0,0 +1,101 @@
+package com.door43.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.*;
+
+public class ZipTest {
+
+    private File dir;
+    private File archive;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("zip").toFile();
+        File project = new File(dir, "aa_mrk_text_reg");
+        write(new File(project, "manifest.json"), "{\"id\":\"aa_mrk_text_reg\"}");
+        write(new File(project, "01/01.txt"), "In the beginning\nof the gospel");
+        write(new File(project, ".git/objects/ab/cdef0123"), "compressed object");
+        write(new File(dir, "manifest.json"), "{\"package_version\":2}");
+
+        archive = new File(dir, "backup.tstudio");
+        Zip.zipToStream(new File[]{new File(dir, "manifest.json"), project}, new FileOutputStream(archive));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtilities.deleteQuietly(dir);
+    }
+
+    @Test
+    public void storesGitObjects() throws Exception {
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("aa_mrk_text_reg/.git/objects/ab/cdef0123").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("aa_mrk_text_reg/01/01.txt").getMethod());
+        }
+    }
+
+    @Test
+    public void readEntries() throws Exception {
+        assertEquals("{\"package_version\":2}\n", Zip.read(archive, "manifest.json"));
+        assertEquals("In the beginning\nof the gospel\n", Zip.read(archive, "AA_MRK_TEXT_REG/01/01.txt"));
+        assertNull(Zip.read(archive, "missing.json"));
+
+        try (Zip.Reader reader = new Zip.Reader(archive)) {
+            assertEquals("compressed object\n", reader.read("aa_mrk_text_reg/.git/objects/ab/cdef0123"));
+            assertEquals("{\"id\":\"aa_mrk_text_reg\"}\n", reader.read("aa_mrk_text_reg/manifest.json"));
+        }
+    }
+
+    @Test
+    public void listEntries() throws Exception {
+        List<String> files = Arrays.asList(Zip.list(archive));
+        assertEquals(4, files.size());
+        assertTrue(files.contains("manifest.json"));
+        assertTrue(files.contains("aa_mrk_text_reg/01/01.txt"));
+    }
+
+    @Test
+    public void unzipRoundTrip() throws Exception {
+        File dest = new File(dir, "extracted");
+        Zip.unzip(archive, dest);
+        assertEquals("compressed object",
+                new String(Files.readAllBytes(new File(dest, "aa_mrk_text_reg/.git/objects/ab/cdef0123").toPath()), "UTF-8"));
+    }
+
+    @Test
+    public void streamArchivesWithoutCentralDirectory() throws Exception {
+        // drop the end of central directory record
+        byte[] bytes = Files.readAllBytes(archive.toPath());
+        File truncated = new File(dir, "truncated.tstudio");
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length - 22));
+
+        try (Zip.Reader reader = new Zip.Reader(truncated)) {
+            fail("the central directory should be missing");
+        } catch (ZipException e) {
+            // expected
+        }
+        assertEquals("{\"package_version\":2}\n", Zip.read(truncated, "manifest.json"));
+        try (FileInputStream stream = new FileInputStream(truncated)) {
+            assertEquals("In the beginning\nof the gospel\n", Zip.readInputStream(stream, "aa_mrk_text_reg/01/01.txt"));
+        }
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes("UTF-8"));
+    }
+}
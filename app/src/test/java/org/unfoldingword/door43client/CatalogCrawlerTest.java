@@ -0,0 +1,221 @@
+package org.unfoldingword.door43client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+
+public class CatalogCrawlerTest {
+
+    private static final int NUM_PROJECTS = 5;
+    private static final String[] LANGUAGES = new String[]{"en", "fr", "es"};
+
+    private MockWebServer server;
+    private RecordingWriter writer;
+    private final List<String> progress = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        writer = new RecordingWriter();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void writesInCatalogOrder() throws Exception {
+        server.setDispatcher(new CatalogDispatcher(null));
+
+        CatalogCrawler crawler = new CatalogCrawler(writer, new CatalogCrawler.HttpFetcher(null), 4);
+        crawler.crawl(projectCatalog(), taUrls(), listener(true));
+
+        List<String> expected = new ArrayList<>();
+        for(int p = 0; p < NUM_PROJECTS; p ++) {
+            for(String l:LANGUAGES) {
+                expected.add("p" + p + "-" + l + ":" + l + "-res");
+            }
+        }
+        expected.add("ta:vol1");
+        expected.add("ta:vol2");
+        assertEquals(expected, writer.writes);
+        assertEquals(0, writer.openBatches);
+        assertFalse(writer.rolledBack);
+        assertEquals(NUM_PROJECTS + 2, progress.size());
+        assertEquals("p0:" + NUM_PROJECTS + ":1", progress.get(0));
+        assertEquals("ta:2:2", progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void fetchesInParallel() throws Exception {
+        // the first two language catalogs are only served once both have been requested
+        CountDownLatch latch = new CountDownLatch(2);
+        server.setDispatcher(new CatalogDispatcher(latch));
+
+        CatalogCrawler crawler = new CatalogCrawler(writer, new CatalogCrawler.HttpFetcher(null), 4);
+        crawler.crawl(projectCatalog(), taUrls(), null);
+
+        assertEquals(NUM_PROJECTS * LANGUAGES.length + 2, writer.writes.size());
+    }
+
+    @Test
+    public void cancelCrawl() throws Exception {
+        server.setDispatcher(new CatalogDispatcher(null));
+
+        CatalogCrawler crawler = new CatalogCrawler(writer, new CatalogCrawler.HttpFetcher(null), 4);
+        crawler.crawl(projectCatalog(), taUrls(), listener(false));
+
+        assertTrue(writer.writes.isEmpty());
+        assertEquals(1, progress.size());
+        assertEquals(0, writer.openBatches);
+    }
+
+    @Test
+    public void failedDownloadStopsCrawl() throws Exception {
+        server.setDispatcher(new CatalogDispatcher(null) {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if(request.getPath().startsWith("/p2/")) {
+                    return new MockResponse().setResponseCode(500).setBody("error");
+                }
+                return super.dispatch(request);
+            }
+        });
+
+        CatalogCrawler crawler = new CatalogCrawler(writer, new CatalogCrawler.HttpFetcher(null), 4);
+        try {
+            crawler.crawl(projectCatalog(), taUrls(), null);
+            fail("The crawl should have failed");
+        } catch (Exception e) {
+            // expected
+        }
+        assertEquals(2 * LANGUAGES.length, writer.writes.size());
+        assertEquals(0, writer.openBatches);
+    }
+
+    private OnProgressListener listener(final boolean proceed) {
+        return new OnProgressListener() {
+            @Override
+            public boolean onProgress(String id, long total, long completed) {
+                progress.add(id + ":" + total + ":" + completed);
+                return proceed;
+            }
+        };
+    }
+
+    private String projectCatalog() throws Exception {
+        JSONArray projects = new JSONArray();
+        for(int p = 0; p < NUM_PROJECTS; p ++) {
+            JSONObject project = new JSONObject();
+            project.put("slug", "p" + p);
+            project.put("lang_catalog", server.url("/p" + p + "/languages.json").toString());
+            projects.put(project);
+        }
+        return projects.toString();
+    }
+
+    private String[] taUrls() {
+        return new String[]{
+                server.url("/ta/vol1.json").toString(),
+                server.url("/ta/vol2.json").toString()
+        };
+    }
+
+    /**
+     * Serves the language, resource and tA catalogs
+     */
+    private class CatalogDispatcher extends Dispatcher {
+        private final CountDownLatch latch;
+
+        CatalogDispatcher(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            String path = request.getPath();
+            try {
+                if(path.endsWith("/languages.json")) {
+                    if(latch != null && (path.startsWith("/p0/") || path.startsWith("/p1/"))) {
+                        latch.countDown();
+                        if(!latch.await(5, TimeUnit.SECONDS)) {
+                            return new MockResponse().setResponseCode(500);
+                        }
+                    }
+                    String project = path.substring(1, path.indexOf("/", 1));
+                    JSONArray languages = new JSONArray();
+                    for(String l:LANGUAGES) {
+                        JSONObject language = new JSONObject();
+                        language.put("slug", project + "-" + l);
+                        language.put("res_catalog", server.url("/" + project + "/" + l + "/resources.json").toString());
+                        languages.put(language);
+                    }
+                    return new MockResponse().setBody(languages.toString());
+                } else if(path.endsWith("/resources.json")) {
+                    String[] parts = path.split("/");
+                    JSONArray resources = new JSONArray();
+                    resources.put(new JSONObject().put("slug", parts[2] + "-res"));
+                    // make the later catalogs arrive first
+                    return new MockResponse().setBody(resources.toString())
+                            .setBodyDelay(parts[1].equals("p0") ? 200 : 0, TimeUnit.MILLISECONDS);
+                } else if(path.startsWith("/ta/")) {
+                    String volume = path.substring(4, path.indexOf(".json"));
+                    return new MockResponse().setBody(new JSONObject().put("volume", volume).toString());
+                }
+            } catch (Exception e) {
+                return new MockResponse().setResponseCode(500);
+            }
+            return new MockResponse().setResponseCode(404);
+        }
+    }
+
+    /**
+     * Records the writes
+     */
+    private static class RecordingWriter implements CatalogCrawler.Writer {
+        final List<String> writes = new ArrayList<>();
+        int openBatches = 0;
+        boolean rolledBack = false;
+
+        @Override
+        public void beginBatch() {
+            openBatches ++;
+        }
+
+        @Override
+        public void endBatch(boolean success) {
+            openBatches --;
+            if(!success) rolledBack = true;
+        }
+
+        @Override
+        public void writeLanguage(JSONObject project, JSONObject language, JSONArray resources) throws Exception {
+            assertEquals(1, openBatches);
+            writes.add(language.getString("slug") + ":" + resources.getJSONObject(0).getString("slug"));
+        }
+
+        @Override
+        public void writeTA(String url, JSONObject ta) throws Exception {
+            assertEquals(1, openBatches);
+            writes.add("ta:" + ta.getString("volume"));
+        }
+    }
+}
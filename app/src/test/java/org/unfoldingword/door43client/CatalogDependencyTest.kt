@@ -0,0 +1,110 @@
+package org.unfoldingword.door43client
+
+import io.mockk.every
+import io.mockk.mockk
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.unfoldingword.door43client.models.Catalog
+import org.unfoldingword.tools.http.GetRequest
+import org.unfoldingword.tools.http.ResponseCache
+import java.io.File
+import java.net.URL
+import java.nio.file.Files
+
+class CatalogDependencyTest {
+
+    private lateinit var server: MockWebServer
+    private lateinit var cacheDir: File
+    private lateinit var cache: ResponseCache
+    private lateinit var library: Library
+    private val catalogs = mutableMapOf<String, Catalog>()
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        server.start()
+        cacheDir = Files.createTempDirectory("http_cache").toFile()
+        cache = ResponseCache(cacheDir)
+
+        library = mockk()
+        every { library.getCatalog(any()) } answers { catalogs[firstArg()] }
+        every { library.addCatalog(any()) } answers {
+            val catalog = firstArg<Catalog>()
+            catalogs[catalog.slug] = catalog
+            1L
+        }
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        cache.clear()
+        cacheDir.delete()
+    }
+
+    @Test
+    fun `approvals are indexed again after temp languages change`() {
+        val tempUrl = server.url("/templanguages/").toString()
+        val approvedUrl = server.url("/templanguages/assignment/changed/").toString()
+        catalogs["temp-langnames"] = Catalog("temp-langnames", tempUrl, 0)
+        catalogs["approved-temp-langnames"] = Catalog("approved-temp-langnames", approvedUrl, 0)
+
+        // first update indexes both catalogs
+        server.enqueue(MockResponse().setBody("[\"temp v1\"]").addHeader("ETag", "\"t1\""))
+        server.enqueue(MockResponse().setBody("[\"approved\"]").addHeader("ETag", "\"a1\""))
+        assertEquals("[\"temp v1\"]", update("temp-langnames"))
+        assertEquals("[\"approved\"]", update("approved-temp-langnames"))
+
+        // nothing changed
+        server.enqueue(MockResponse().setResponseCode(304))
+        server.enqueue(MockResponse().setResponseCode(304))
+        assertEquals(null, update("temp-langnames"))
+        assertEquals(null, update("approved-temp-langnames"))
+
+        // the temp languages changed but the approvals did not
+        server.enqueue(MockResponse().setBody("[\"temp v2\"]").addHeader("ETag", "\"t2\""))
+        server.enqueue(MockResponse().setResponseCode(304))
+        assertEquals("[\"temp v2\"]", update("temp-langnames"))
+        assertEquals(0, catalogs["approved-temp-langnames"]!!.modifiedAt)
+        // the cached approvals are indexed again
+        assertEquals("[\"approved\"]", update("approved-temp-langnames"))
+        assertTrue(catalogs["approved-temp-langnames"]!!.modifiedAt > 0)
+    }
+
+    @Test
+    fun `independent catalogs are not invalidated`() {
+        catalogs["new-language-questions"] = Catalog("new-language-questions", "http://example.com/q/", 10)
+        catalogs["approved-temp-langnames"] = Catalog("approved-temp-langnames", "http://example.com/a/", 10)
+
+        API.invalidateDependentCatalogs(library, "new-language-questions")
+        API.invalidateDependentCatalogs(library, "approved-temp-langnames")
+        assertEquals(10, catalogs["approved-temp-langnames"]!!.modifiedAt)
+
+        API.invalidateDependentCatalogs(library, "langnames")
+        assertEquals(0, catalogs["approved-temp-langnames"]!!.modifiedAt)
+        assertFalse(API.isUpToDate(library, catalogs["approved-temp-langnames"]!!, true))
+        assertTrue(API.isUpToDate(library, catalogs["new-language-questions"]!!, true))
+        assertFalse(API.isUpToDate(library, catalogs["new-language-questions"]!!, false))
+    }
+
+    /**
+     * Performs the same steps as API.updateCatalog
+     * @return the indexed catalog or null if it was skipped
+     */
+    private fun update(slug: String): String? {
+        val catalog = catalogs[slug]!!
+        val request = GetRequest(URL(catalog.url))
+        request.setResponseCache(cache)
+        val data = request.read()
+        if (API.isUpToDate(library, catalog, request.isNotModified)) return null
+        library.addCatalog(Catalog(catalog.slug, catalog.url, 100))
+        API.invalidateDependentCatalogs(library, catalog.slug)
+        return data
+    }
+}
@@ -0,0 +1,26 @@
+package org.unfoldingword.door43client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class IndexWriterTest {
+
+    @Test
+    public void modeForVersion() {
+        assertEquals(IndexWriter.MODE_LEGACY, IndexWriter.modeForVersion("3.8.10.2"));
+        assertEquals(IndexWriter.MODE_LEGACY, IndexWriter.modeForVersion("3.22.0"));
+        assertEquals(IndexWriter.MODE_UPSERT, IndexWriter.modeForVersion("3.24.0"));
+        assertEquals(IndexWriter.MODE_UPSERT, IndexWriter.modeForVersion("3.28.0"));
+        assertEquals(IndexWriter.MODE_UPSERT_RETURNING, IndexWriter.modeForVersion("3.35.5"));
+        assertEquals(IndexWriter.MODE_UPSERT_RETURNING, IndexWriter.modeForVersion("3.39.2"));
+    }
+
+    @Test
+    public void modeForUnknownVersion() {
+        assertEquals(IndexWriter.MODE_LEGACY, IndexWriter.modeForVersion(null));
+        assertEquals(IndexWriter.MODE_LEGACY, IndexWriter.modeForVersion(""));
+        assertEquals(IndexWriter.MODE_LEGACY, IndexWriter.modeForVersion("unknown"));
+    }
+}
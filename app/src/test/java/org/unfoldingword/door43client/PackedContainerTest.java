@@ -0,0 +1,74 @@
+package org.unfoldingword.door43client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class PackedContainerTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("rc").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteQuietly(dir);
+    }
+
+    @Test
+    public void readsPackedChunks() throws Exception {
+        File containerDir = new File(dir, "en_gen_ulb");
+        write(containerDir, "content/front/title.usfm", "Genesis");
+        write(containerDir, "content/01/title.usfm", "Chapter 1");
+        write(containerDir, "content/01/01.usfm", "\\v 1 In the beginning");
+        write(containerDir, "content/01/03.usfm", "\\v 3 God said, «Let there be light»");
+        write(containerDir, "content/02/01.usfm", "");
+
+        File packFile = PackedContainer.pack(containerDir, new File(dir, "en_gen_ulb.pack"));
+        PackedContainer packed = PackedContainer.open(packFile);
+
+        assertArrayEquals(new String[]{"01", "02", "front"}, packed.chapters());
+        assertArrayEquals(new String[]{"01", "03", "title"}, packed.chunks("01"));
+        assertEquals(0, packed.chunks("99").length);
+        assertEquals("Genesis", packed.readChunk("front", "title"));
+        assertEquals("\\v 1 In the beginning", packed.readChunk("01", "01"));
+        assertEquals("\\v 3 God said, «Let there be light»", packed.readChunk("01", "03"));
+        assertEquals("", packed.readChunk("02", "01"));
+        assertEquals("", packed.readChunk("01", "02"));
+        assertEquals("", packed.readChunk("99", "01"));
+    }
+
+    @Test
+    public void rejectsInvalidPacks() throws Exception {
+        try {
+            PackedContainer.pack(new File(dir, "missing"), new File(dir, "missing.pack"));
+            fail();
+        } catch (IOException e) {
+            assertFalse(new File(dir, "missing.pack").exists());
+        }
+
+        File file = write(dir, "invalid.pack", "not a pack");
+        try {
+            PackedContainer.open(file);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static File write(File dir, String path, String contents) throws Exception {
+        File file = new File(dir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes("UTF-8"));
+        return file;
+    }
+}
@@ -0,0 +1,113 @@
+package org.unfoldingword.tools.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+
+public class ResponseCacheTest {
+
+    private MockWebServer server;
+    private File cacheDir;
+    private ResponseCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        cacheDir = Files.createTempDirectory("http_cache").toFile();
+        cache = new ResponseCache(cacheDir);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        cache.clear();
+        cacheDir.delete();
+    }
+
+    @Test
+    public void revalidateWithETag() throws Exception {
+        URL url = new URL(server.url("/langnames.json").toString());
+        server.enqueue(new MockResponse().setBody("[1,2,3]").addHeader("ETag", "\"v1\""));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        GetRequest first = new GetRequest(url);
+        first.setResponseCache(cache);
+        assertEquals("[1,2,3]", first.read());
+        assertFalse(first.isNotModified());
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+
+        GetRequest second = new GetRequest(url);
+        second.setResponseCache(cache);
+        assertEquals("[1,2,3]", second.read());
+        assertTrue(second.isNotModified());
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void revalidateWithLastModified() throws Exception {
+        URL url = new URL(server.url("/chunks.json").toString());
+        String date = "Wed, 21 Oct 2015 07:28:00 GMT";
+        server.enqueue(new MockResponse().setBody("old").addHeader("Last-Modified", date));
+        server.enqueue(new MockResponse().setBody("new").addHeader("Last-Modified", date));
+
+        GetRequest first = new GetRequest(url);
+        first.setResponseCache(cache);
+        assertEquals("old", first.read());
+        server.takeRequest();
+
+        GetRequest second = new GetRequest(url);
+        second.setResponseCache(cache);
+        assertEquals("new", second.read());
+        assertFalse(second.isNotModified());
+        RecordedRequest request = server.takeRequest();
+        assertEquals(date, request.getHeader("If-Modified-Since"));
+        assertEquals("new", cache.get(url.toString()).read());
+    }
+
+    @Test
+    public void responsesWithoutValidatorsAreNotCached() throws Exception {
+        URL url = new URL(server.url("/templanguages/").toString());
+        server.enqueue(new MockResponse().setBody("[]"));
+
+        GetRequest request = new GetRequest(url);
+        request.setResponseCache(cache);
+        assertEquals("[]", request.read());
+        assertNull(cache.get(url.toString()));
+    }
+
+    @Test
+    public void downloadFromCache() throws Exception {
+        URL url = new URL(server.url("/container.zip").toString());
+        server.enqueue(new MockResponse().setBody("data").addHeader("ETag", "\"abc\""));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        File first = new File(cacheDir.getParentFile(), "first-" + System.nanoTime());
+        File second = new File(cacheDir.getParentFile(), "second-" + System.nanoTime());
+        try {
+            GetRequest request = new GetRequest(url);
+            request.setResponseCache(cache);
+            request.download(first);
+
+            request = new GetRequest(url);
+            request.setResponseCache(cache);
+            request.download(second);
+            assertTrue(request.isNotModified());
+            assertEquals("data", new String(Files.readAllBytes(second.toPath()), "UTF-8"));
+        } finally {
+            first.delete();
+            second.delete();
+        }
+    }
+}